@@ -58,6 +58,19 @@ android {
         targetCompatibility = JavaVersion.VERSION_17
         isCoreLibraryDesugaringEnabled = true
     }
+
+    testOptions {
+        // 本地单元测试中android.util.Log等桩方法返回默认值
+        unitTests.isReturnDefaultValues = true
+        // Robolectric测试（查询计划审计）需要合并后的资源和清单
+        unitTests.isIncludeAndroidResources = true
+    }
+
+    sourceSets {
+        // 查询计划审计的核心由本地测试和设备测试共用
+        getByName("test").java.srcDir("src/sharedTest/java")
+        getByName("androidTest").java.srcDir("src/sharedTest/java")
+    }
     
 }
 
@@ -91,6 +104,8 @@ dependencies {
     
     // Testing
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.test.core)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
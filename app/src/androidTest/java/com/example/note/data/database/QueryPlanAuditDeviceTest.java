@@ -0,0 +1,66 @@
+package com.example.note.data.database;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.note.data.dao.CellDao;
+import com.example.note.data.dao.ColumnDao;
+import com.example.note.data.dao.JobDao;
+import com.example.note.data.dao.NotebookDao;
+import com.example.note.data.dao.RowDao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * 查询计划审计（设备）：在设备自带的SQLite上运行QueryPlanAudit
+ * 在API 26（SQLite 3.18）的模拟器上运行时，检查的就是最低支持版本上的查询计划。
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanAuditDeviceTest {
+
+    private static final String TAG = "QueryPlanAudit";
+
+    private QueryPlanAudit audit;
+
+    @Before
+    public void setUp() {
+        audit = new QueryPlanAudit(InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                InstrumentationRegistry.getInstrumentation()::runOnMainSync);
+        Log.i(TAG, "sqlite_version() = " + audit.sqliteVersion());
+    }
+
+    @After
+    public void tearDown() {
+        audit.close();
+    }
+
+    @Test
+    public void cellDaoQueriesUseIndexes() throws Exception {
+        audit.audit(CellDao.class, audit.getDatabase().cellDao());
+    }
+
+    @Test
+    public void rowDaoQueriesUseIndexes() throws Exception {
+        audit.audit(RowDao.class, audit.getDatabase().rowDao());
+    }
+
+    @Test
+    public void columnDaoQueriesUseIndexes() throws Exception {
+        audit.audit(ColumnDao.class, audit.getDatabase().columnDao());
+    }
+
+    @Test
+    public void notebookDaoQueriesUseIndexes() throws Exception {
+        audit.audit(NotebookDao.class, audit.getDatabase().notebookDao());
+    }
+
+    @Test
+    public void jobDaoQueriesUseIndexes() throws Exception {
+        audit.audit(JobDao.class, audit.getDatabase().jobDao());
+    }
+}
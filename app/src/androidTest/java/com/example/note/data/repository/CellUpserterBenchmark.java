@@ -0,0 +1,211 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Notebook;
+import com.example.note.util.CellValueUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 10万单元格笔记本中随机单格写入的耗时：INSERT OR REPLACE（原来的DAO语句）、原生UPSERT、UPDATE后INSERT
+ * 使用正式数据库，统计和搜索触发器都在；设备的SQLite低于3.24时没有原生UPSERT一项
+ */
+@RunWith(AndroidJUnit4.class)
+public class CellUpserterBenchmark {
+
+    private static final String TAG = "CellUpserterBenchmark";
+    private static final int ROWS = 5000;
+    private static final int COLS = 20;
+    private static final int WRITES = 20_000;
+    private static final int WARMUP = 1000;
+
+    // 替换前的写法：整行REPLACE，其余列用相关子查询带回
+    private static final String CELL = "FROM cells WHERE notebook_id = ?1 AND row_index = ?2 AND col_index = ?3";
+    private static final String CONTENT_REPLACE =
+            "INSERT OR REPLACE INTO cells (id, notebook_id, row_index, col_index, content, num_value, date_value, " +
+            "style_id, image_id, updated_at, created_at) VALUES ((SELECT id " + CELL + "), ?1, ?2, ?3, ?4, ?5, ?6, " +
+            "COALESCE((SELECT style_id " + CELL + "), 1), (SELECT image_id " + CELL + "), ?7, " +
+            "COALESCE((SELECT created_at " + CELL + "), ?7))";
+    private static final String STYLE_REPLACE =
+            "INSERT OR REPLACE INTO cells (id, notebook_id, row_index, col_index, content, num_value, date_value, " +
+            "style_id, image_id, updated_at, created_at) VALUES ((SELECT id " + CELL + "), ?1, ?2, ?3, " +
+            "COALESCE((SELECT content " + CELL + "), ''), (SELECT num_value " + CELL + "), " +
+            "(SELECT date_value " + CELL + "), ?4, (SELECT image_id " + CELL + "), ?5, " +
+            "COALESCE((SELECT created_at " + CELL + "), ?5))";
+
+    private AppDatabase database;
+    private Notebook notebook;
+    private long boldStyleId;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = AppDatabase.getInstance(context);
+        boldStyleId = CellStyleRepository.getInstance(context)
+                .internSync(new CellStyle(null, null, true, false, 0, null));
+
+        notebook = new Notebook("upsert benchmark", "#FFFFFF");
+        database.runInTransaction(() -> {
+            long id = database.notebookDao().insert(notebook);
+            notebook.setId(id);
+            List<Cell> cells = new ArrayList<>(ROWS * COLS);
+            for (int r = 0; r < ROWS; r++) {
+                for (int c = 0; c < COLS; c++) {
+                    cells.add(new Cell(id, r, c, "r" + r + "c" + c));
+                }
+            }
+            database.cellDao().insertAll(cells);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        database.notebookDao().delete(notebook);
+    }
+
+    @Test
+    public void contentWrites() throws Exception {
+        long id = notebook.getId();
+        double replace = microsPerWrite((row, col, i) -> replaceContent(id, row, col, "v" + i));
+        CellUpserter fallbackUpserter = new CellUpserter(database, false);
+        double fallback = microsPerWrite((row, col, i) ->
+                fallbackUpserter.upsertContent(id, row, col, "f" + i, now()));
+        String upsert = nativeMicros((upserter, row, col, i) -> upserter.upsertContent(id, row, col, "u" + i, now()));
+        Log.i(TAG, "content: REPLACE " + format(replace) + ", UPSERT " + upsert
+                + ", UPDATE+INSERT " + format(fallback));
+        assertEquals(ROWS * COLS, cellCount());
+    }
+
+    @Test
+    public void styleWrites() throws Exception {
+        long id = notebook.getId();
+        double replace = microsPerWrite((row, col, i) -> replaceStyle(id, row, col, styleFor(i)));
+        CellUpserter fallbackUpserter = new CellUpserter(database, false);
+        double fallback = microsPerWrite((row, col, i) ->
+                fallbackUpserter.upsertStyle(id, row, col, styleFor(i), now()));
+        String upsert = nativeMicros((upserter, row, col, i) -> upserter.upsertStyle(id, row, col, styleFor(i), now()));
+        Log.i(TAG, "style: REPLACE " + format(replace) + ", UPSERT " + upsert
+                + ", UPDATE+INSERT " + format(fallback));
+        assertEquals(ROWS * COLS, cellCount());
+    }
+
+    /**
+     * 原生UPSERT的每次写入耗时，设备不支持时返回"n/a"
+     */
+    private String nativeMicros(UpserterWrite write) throws IOException {
+        if (!CellUpserter.supportsUpsert(database.getOpenHelper().getWritableDatabase())) {
+            return "n/a";
+        }
+        CellUpserter upserter = new CellUpserter(database, true);
+        return format(microsPerWrite((row, col, i) -> write.write(upserter, row, col, i)));
+    }
+
+    /**
+     * 先预热，再对固定种子的随机位置写入WRITES次，返回每次写入的平均微秒数
+     */
+    private double microsPerWrite(Write write) throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < WARMUP; i++) {
+            write.write(random.nextInt(ROWS), random.nextInt(COLS), i);
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < WRITES; i++) {
+            write.write(random.nextInt(ROWS), random.nextInt(COLS), i);
+        }
+        return (SystemClock.elapsedRealtimeNanos() - start) / 1000.0 / WRITES;
+    }
+
+    private void replaceContent(long notebookId, int row, int col, String content) throws IOException {
+        Double number = CellValueUtils.parseNumber(content);
+        Long day = CellValueUtils.parseDate(content);
+        database.beginTransaction();
+        try (SupportSQLiteStatement statement = database.compileStatement(CONTENT_REPLACE)) {
+            statement.bindLong(1, notebookId);
+            statement.bindLong(2, row);
+            statement.bindLong(3, col);
+            statement.bindString(4, content);
+            if (number != null) {
+                statement.bindDouble(5, number);
+            } else {
+                statement.bindNull(5);
+            }
+            if (day != null) {
+                statement.bindLong(6, day);
+            } else {
+                statement.bindNull(6);
+            }
+            statement.bindLong(7, now());
+            statement.executeInsert();
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private void replaceStyle(long notebookId, int row, int col, long styleId) throws IOException {
+        database.beginTransaction();
+        try (SupportSQLiteStatement statement = database.compileStatement(STYLE_REPLACE)) {
+            statement.bindLong(1, notebookId);
+            statement.bindLong(2, row);
+            statement.bindLong(3, col);
+            statement.bindLong(4, styleId);
+            statement.bindLong(5, now());
+            statement.executeInsert();
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * 交替写入粗体和默认样式，保证大多数写入确实改变了值
+     */
+    private long styleFor(int i) {
+        return i % 2 == 0 ? boldStyleId : CellStyle.DEFAULT_ID;
+    }
+
+    private int cellCount() {
+        try (Cursor cursor = database.query("SELECT COUNT(*) FROM cells WHERE notebook_id = ?",
+                new Object[]{notebook.getId()})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        }
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static String format(double micros) {
+        return String.format(Locale.ROOT, "%.1f us/op", micros);
+    }
+
+    private interface Write {
+        void write(int row, int col, int i) throws IOException;
+    }
+
+    private interface UpserterWrite {
+        void write(CellUpserter upserter, int row, int col, int i) throws IOException;
+    }
+}
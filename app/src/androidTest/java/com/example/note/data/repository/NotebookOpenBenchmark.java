@@ -0,0 +1,159 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.note.data.cache.NotebookSnapshotCache;
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.model.TableModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 10万单元格笔记本的打开耗时：冷加载（查数据库）对比快照加载
+ */
+@RunWith(AndroidJUnit4.class)
+public class NotebookOpenBenchmark {
+
+    private static final String TAG = "NotebookOpenBenchmark";
+    private static final int ROWS = 5000;
+    private static final int COLS = 20;
+
+    private AppDatabase database;
+    private NotebookSnapshotCache snapshotCache;
+    private NotebookLoader loader;
+    private Notebook notebook;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = AppDatabase.getInstance(context);
+        snapshotCache = NotebookSnapshotCache.getInstance(context);
+        loader = NotebookLoader.getInstance(context);
+
+        notebook = new Notebook("benchmark", "#FFFFFF");
+        long boldStyleId = CellStyleRepository.getInstance(context)
+                .internSync(new CellStyle(null, null, true, false, 0, null));
+        database.runInTransaction(() -> {
+            long id = database.notebookDao().insert(notebook);
+            notebook.setId(id);
+            List<Column> columns = new ArrayList<>();
+            for (int c = 0; c < COLS; c++) {
+                columns.add(new Column(id, c, "列" + (c + 1)));
+            }
+            database.columnDao().insertAll(columns);
+            List<Cell> cells = new ArrayList<>(ROWS * COLS);
+            for (int r = 0; r < ROWS; r++) {
+                for (int c = 0; c < COLS; c++) {
+                    Cell cell = new Cell(id, r, c, "r" + r + "c" + c);
+                    if ((r + c) % 7 == 0) {
+                        cell.setStyleId(boldStyleId);
+                    }
+                    cells.add(cell);
+                }
+            }
+            database.cellDao().insertAll(cells);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        snapshotCache.invalidate(notebook.getId());
+        database.notebookDao().delete(notebook);
+    }
+
+    @Test
+    public void snapshotOpenMatchesColdOpen() throws Exception {
+        snapshotCache.invalidate(notebook.getId());
+
+        long coldStart = SystemClock.elapsedRealtime();
+        TableModel cold = loader.loadSync(notebook.getId());
+        long coldMillis = SystemClock.elapsedRealtime() - coldStart;
+        assertNotNull(cold);
+        assertFalse(cold.fromSnapshot);
+        assertEquals(ROWS * COLS, cold.getCellCount());
+
+        // 冷加载后快照在后台写入，等待其可读
+        long deadline = SystemClock.elapsedRealtime() + 10_000;
+        while (snapshotCache.read(notebook.getId(), cold.notebook.getUpdatedAt()) == null) {
+            assertTrue("snapshot not written", SystemClock.elapsedRealtime() < deadline);
+            SystemClock.sleep(20);
+        }
+
+        long warmStart = SystemClock.elapsedRealtime();
+        TableModel warm = loader.loadSync(notebook.getId());
+        long warmMillis = SystemClock.elapsedRealtime() - warmStart;
+        assertNotNull(warm);
+        assertTrue(warm.fromSnapshot);
+
+        Log.i(TAG, ROWS * COLS + " cells: cold " + coldMillis + "ms, snapshot " + warmMillis + "ms");
+
+        assertEquals(cold.rowCount, warm.rowCount);
+        assertEquals(cold.columnCount, warm.columnCount);
+        assertCellsEqual(cold.scrollableCells, warm.scrollableCells);
+        assertCellsEqual(cold.frozenCells, warm.frozenCells);
+    }
+
+    @Test
+    public void partialWriteInvalidatesSnapshot() throws Exception {
+        TableModel cold = loader.loadSync(notebook.getId());
+        assertNotNull(cold);
+        long deadline = SystemClock.elapsedRealtime() + 10_000;
+        while (snapshotCache.read(notebook.getId(), cold.notebook.getUpdatedAt()) == null) {
+            assertTrue("snapshot not written", SystemClock.elapsedRealtime() < deadline);
+            SystemClock.sleep(20);
+        }
+
+        // 单格写入不会更新笔记本时间戳，必须靠失效保证不读到旧快照
+        CountDownLatch written = new CountDownLatch(1);
+        CellRepository.getInstance(InstrumentationRegistry.getInstrumentation().getTargetContext())
+                .updateCellContent(notebook.getId(), 0, 0, "changed", new CellRepository.RepositoryCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                        written.countDown();
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                    }
+                });
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+
+        TableModel reloaded = loader.loadSync(notebook.getId());
+        assertFalse(reloaded.fromSnapshot);
+        assertEquals("changed", reloaded.scrollableCells.get(0).getContent());
+    }
+
+    private static void assertCellsEqual(List<Cell> expected, List<Cell> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Cell e = expected.get(i);
+            Cell a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getRowIndex(), a.getRowIndex());
+            assertEquals(e.getColIndex(), a.getColIndex());
+            assertEquals(e.getContent(), a.getContent());
+            assertEquals(e.getStyleId(), a.getStyleId());
+            assertEquals(e.getImageId(), a.getImageId());
+            assertEquals(e.getUpdatedAt(), a.getUpdatedAt());
+        }
+    }
+}
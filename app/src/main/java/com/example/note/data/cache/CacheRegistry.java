@@ -0,0 +1,191 @@
+package com.example.note.data.cache;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 缓存注册中心
+ * 笔记/表格层的缓存在这里登记大小、命中率和优先级，系统内存紧张时按onTrimMemory级别分层回收。
+ * 只持有弱引用，随界面创建的缓存不需要显式注销。
+ */
+public final class CacheRegistry implements ComponentCallbacks2 {
+
+    private static final String TAG = "CacheRegistry";
+    private static volatile CacheRegistry INSTANCE;
+
+    // 优先级：数值越小越先回收
+    public static final int PRIORITY_SPECULATIVE = 0; // 预取等推测性缓存
+    public static final int PRIORITY_REBUILDABLE = 1; // 可从数据库或磁盘重建
+    public static final int PRIORITY_ACTIVE = 2;      // 当前界面正在使用
+
+    /**
+     * 可回收的缓存
+     */
+    public interface TrimmableCache {
+        String getCacheName();
+        int getCachePriority();
+        /** 当前占用的堆内存字节数（估算） */
+        long getSizeBytes();
+        long getHitCount();
+        long getMissCount();
+        /** 回收到不超过maxBytes，0表示清空 */
+        void trimToSize(long maxBytes);
+    }
+
+    private final List<WeakReference<TrimmableCache>> caches = new CopyOnWriteArrayList<>();
+
+    private CacheRegistry() {
+    }
+
+    /**
+     * 获取注册中心实例（单例模式），首次获取时注册内存回调
+     */
+    public static CacheRegistry getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (CacheRegistry.class) {
+                if (INSTANCE == null) {
+                    CacheRegistry registry = new CacheRegistry();
+                    context.getApplicationContext().registerComponentCallbacks(registry);
+                    INSTANCE = registry;
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 登记缓存
+     */
+    public void register(TrimmableCache cache) {
+        for (WeakReference<TrimmableCache> ref : caches) {
+            if (ref.get() == cache) {
+                return;
+            }
+        }
+        caches.add(new WeakReference<>(cache));
+    }
+
+    /**
+     * 注销缓存
+     */
+    public void unregister(TrimmableCache cache) {
+        for (WeakReference<TrimmableCache> ref : caches) {
+            TrimmableCache registered = ref.get();
+            if (registered == null || registered == cache) {
+                caches.remove(ref);
+            }
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        long before = totalBytes();
+        for (TrimmableCache cache : liveCaches()) {
+            float retain = retainFraction(level, cache.getCachePriority());
+            if (retain >= 1f) {
+                continue;
+            }
+            long target = (long) (cache.getSizeBytes() * retain);
+            try {
+                cache.trimToSize(target);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to trim " + cache.getCacheName(), e);
+            }
+        }
+        Log.i(TAG, "onTrimMemory(" + level + "): " + before + " -> " + totalBytes() + " bytes");
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    /**
+     * 各级别下每个优先级保留的比例
+     * 前台运行时只回收推测性与可重建的缓存；进入后台后逐级加大力度，最终全部清空
+     */
+    static float retainFraction(int level, int priority) {
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            return 0f;
+        }
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            return priority == PRIORITY_ACTIVE ? 0.5f : 0f;
+        }
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            if (priority == PRIORITY_SPECULATIVE) {
+                return 0f;
+            }
+            return priority == PRIORITY_REBUILDABLE ? 0.5f : 1f;
+        }
+        if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_MODERATE) {
+            return priority == PRIORITY_SPECULATIVE ? 0f : 1f;
+        }
+        return 1f;
+    }
+
+    /**
+     * 已登记缓存的总字节数
+     */
+    public long totalBytes() {
+        long total = 0;
+        for (TrimmableCache cache : liveCaches()) {
+            total += cache.getSizeBytes();
+        }
+        return total;
+    }
+
+    /**
+     * 输出每个缓存的占用和命中率（调试用，可通过 adb shell dumpsys activity 查看）
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Caches (" + totalBytes() + " bytes):");
+        for (TrimmableCache cache : liveCaches()) {
+            long hits = cache.getHitCount();
+            long misses = cache.getMissCount();
+            long lookups = hits + misses;
+            writer.println(prefix + String.format(Locale.US, "  %-16s p%d %10d bytes  hit %d/%d (%s)",
+                    cache.getCacheName(), cache.getCachePriority(), cache.getSizeBytes(), hits, lookups,
+                    lookups > 0 ? String.format(Locale.US, "%.1f%%", hits * 100f / lookups) : "-"));
+        }
+    }
+
+    /**
+     * 以字符串形式返回dump内容
+     */
+    public String dump() {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        dump("", writer);
+        writer.flush();
+        return out.toString();
+    }
+
+    private List<TrimmableCache> liveCaches() {
+        List<TrimmableCache> live = new ArrayList<>();
+        for (WeakReference<TrimmableCache> ref : caches) {
+            TrimmableCache cache = ref.get();
+            if (cache != null) {
+                live.add(cache);
+            } else {
+                caches.remove(ref);
+            }
+        }
+        return live;
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.note.data.cache;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.model.TableModel;
+import com.example.note.data.repository.NotebookLoader;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 笔记本预取器
+ * 在主页列表上预先加载最可能被打开的笔记本（按下的卡片、置顶、最近更新），
+ * 结果放入有内存预算的LRU缓存；打开笔记本时先取预取结果，校验仍有效才使用。
+ */
+public class NotebookPrefetcher implements CacheRegistry.TrimmableCache {
+
+    private static final String TAG = "NotebookPrefetcher";
+    private static volatile NotebookPrefetcher INSTANCE;
+
+    // 优先级：数值越小越先执行
+    public static final int PRIORITY_TOUCH = 0;
+    public static final int PRIORITY_PINNED = 1;
+    public static final int PRIORITY_RECENT = 2;
+
+    // 列表变化时最多预取的笔记本数
+    private static final int MAX_CANDIDATES = 3;
+    // 单元格估算开销（Cell对象、装箱字段和字符串头）
+    private static final int CELL_OVERHEAD_BYTES = 160;
+
+    private final NotebookLoader loader;
+    private final NotebookSnapshotCache snapshotCache;
+    private final ThreadPoolExecutor prefetchExecutor;
+    private final ExecutorService openExecutor;
+    private final Handler mainHandler;
+    private final long budgetBytes;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    // 按访问顺序排列，最久未用的最先淘汰；以下字段都由this保护
+    private final LinkedHashMap<Long, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, PrefetchTask> pending = new LinkedHashMap<>();
+    private long cachedBytes = 0;
+    private long touchedNotebookId = -1;
+
+    private NotebookPrefetcher(Context context) {
+        loader = NotebookLoader.getInstance(context);
+        snapshotCache = NotebookSnapshotCache.getInstance(context);
+        prefetchExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+        openExecutor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+        budgetBytes = Math.min(Runtime.getRuntime().maxMemory() / 16, 32L * 1024 * 1024);
+        CacheRegistry.getInstance(context).register(this);
+    }
+
+    /**
+     * 获取预取器实例（单例模式）
+     */
+    public static NotebookPrefetcher getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (NotebookPrefetcher.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new NotebookPrefetcher(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 列表刷新后预取候选笔记本：先置顶的，再按最近更新时间
+     */
+    public void prefetchCandidates(List<Notebook> notebooks) {
+        List<Notebook> pinned = new ArrayList<>();
+        List<Notebook> recent = new ArrayList<>();
+        for (Notebook notebook : notebooks) {
+            if (notebook.isDeleted()) {
+                continue;
+            }
+            (notebook.isPinned() ? pinned : recent).add(notebook);
+        }
+        pinned.sort((a, b) -> Long.compare(b.getUpdatedAt(), a.getUpdatedAt()));
+        recent.sort((a, b) -> Long.compare(b.getUpdatedAt(), a.getUpdatedAt()));
+
+        int remaining = MAX_CANDIDATES;
+        for (int i = 0; i < pinned.size() && remaining > 0; i++, remaining--) {
+            prefetch(pinned.get(i).getId(), PRIORITY_PINNED);
+        }
+        for (int i = 0; i < recent.size() && remaining > 0; i++, remaining--) {
+            prefetch(recent.get(i).getId(), PRIORITY_RECENT);
+        }
+    }
+
+    /**
+     * 手指按下卡片时预取，抢在点击确认之前开始加载
+     */
+    public void prefetchOnTouch(long notebookId) {
+        synchronized (this) {
+            touchedNotebookId = notebookId;
+        }
+        prefetch(notebookId, PRIORITY_TOUCH);
+    }
+
+    /**
+     * 按下变成了滚动：取消尚未开始的按下预取
+     */
+    public void cancelTouchPrefetch() {
+        long notebookId;
+        synchronized (this) {
+            notebookId = touchedNotebookId;
+            touchedNotebookId = -1;
+        }
+        if (notebookId >= 0) {
+            cancel(notebookId);
+        }
+    }
+
+    /**
+     * 预取指定笔记本；已缓存或已在队列中时忽略
+     */
+    public void prefetch(long notebookId, int priority) {
+        PrefetchTask task;
+        synchronized (this) {
+            if (cache.containsKey(notebookId) || pending.containsKey(notebookId)) {
+                return;
+            }
+            task = new PrefetchTask(notebookId, priority, sequence.getAndIncrement());
+            pending.put(notebookId, task);
+        }
+        prefetchExecutor.execute(task);
+    }
+
+    /**
+     * 取消尚未开始的预取（卡片滑出屏幕时调用）；已在执行的让它完成，结果仍可复用
+     */
+    public void cancel(long notebookId) {
+        PrefetchTask task;
+        synchronized (this) {
+            task = pending.get(notebookId);
+            if (task == null || !prefetchExecutor.remove(task)) {
+                return;
+            }
+            pending.remove(notebookId);
+        }
+        task.cancel(false);
+    }
+
+    /**
+     * 打开笔记本：优先使用仍然有效的预取结果，否则正常加载，结果投递到主线程
+     */
+    public void open(long notebookId, NotebookLoader.RepositoryCallback<TableModel> callback) {
+        openExecutor.execute(() -> {
+            try {
+                TableModel model = takeValid(notebookId);
+                if (model == null) {
+                    model = loader.loadSync(notebookId);
+                }
+                TableModel result = model;
+                mainHandler.post(() -> callback.onSuccess(result));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to open notebook " + notebookId, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 清空预取缓存
+     */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    @Override
+    public String getCacheName() {
+        return "prefetch";
+    }
+
+    @Override
+    public int getCachePriority() {
+        return CacheRegistry.PRIORITY_SPECULATIVE;
+    }
+
+    @Override
+    public synchronized long getSizeBytes() {
+        return cachedBytes;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 按LRU顺序淘汰；清空时同时丢弃排队中的预取
+     */
+    @Override
+    public void trimToSize(long maxBytes) {
+        List<PrefetchTask> dropped = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Long, Entry>> it = cache.entrySet().iterator();
+            while (cachedBytes > maxBytes && it.hasNext()) {
+                cachedBytes -= it.next().getValue().bytes;
+                it.remove();
+            }
+            if (maxBytes == 0) {
+                Iterator<PrefetchTask> pendingIt = pending.values().iterator();
+                while (pendingIt.hasNext()) {
+                    PrefetchTask task = pendingIt.next();
+                    if (prefetchExecutor.remove(task)) {
+                        pendingIt.remove();
+                        dropped.add(task);
+                    }
+                }
+            }
+        }
+        for (PrefetchTask task : dropped) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * 取出预取结果并校验；正在预取时等待其完成，尚未开始则直接放弃由调用方加载
+     */
+    private TableModel takeValid(long notebookId) throws Exception {
+        PrefetchTask task;
+        synchronized (this) {
+            task = pending.get(notebookId);
+        }
+        if (task != null) {
+            if (prefetchExecutor.remove(task)) {
+                synchronized (this) {
+                    pending.remove(notebookId);
+                }
+                task.cancel(false);
+                missCount.incrementAndGet();
+                return null;
+            }
+            try {
+                task.get();
+            } catch (CancellationException | ExecutionException e) {
+                missCount.incrementAndGet();
+                return null;
+            }
+        }
+
+        Entry entry;
+        synchronized (this) {
+            entry = cache.remove(notebookId);
+            if (entry != null) {
+                cachedBytes -= entry.bytes;
+            }
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        TableModel model = loader.revalidateSync(entry.model, entry.generation);
+        (model != null ? hitCount : missCount).incrementAndGet();
+        Log.d(TAG, "Prefetched notebook " + notebookId + (model != null ? " used" : " stale"));
+        return model;
+    }
+
+    private void put(long notebookId, Entry entry) {
+        synchronized (this) {
+            pending.remove(notebookId);
+            if (entry.bytes > budgetBytes) {
+                Log.d(TAG, "Notebook " + notebookId + " too large to prefetch: " + entry.bytes + " bytes");
+                return;
+            }
+            cache.put(notebookId, entry);
+            cachedBytes += entry.bytes;
+            Iterator<Map.Entry<Long, Entry>> it = cache.entrySet().iterator();
+            while (cachedBytes > budgetBytes && it.hasNext()) {
+                Map.Entry<Long, Entry> eldest = it.next();
+                if (eldest.getKey() == notebookId) {
+                    continue;
+                }
+                cachedBytes -= eldest.getValue().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 估算模型占用的堆内存
+     */
+    private static long estimateBytes(TableModel model) {
+        long bytes = 0;
+        bytes += estimateCells(model.frozenCells);
+        bytes += estimateCells(model.scrollableCells);
+        return bytes;
+    }
+
+    private static long estimateCells(List<Cell> cells) {
+        long bytes = (long) cells.size() * CELL_OVERHEAD_BYTES;
+        for (Cell cell : cells) {
+            String content = cell.getContent();
+            if (content != null) {
+                bytes += 2L * content.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 预取结果
+     */
+    private static final class Entry {
+        final TableModel model;
+        final int generation;
+        final long bytes;
+
+        Entry(TableModel model, int generation, long bytes) {
+            this.model = model;
+            this.generation = generation;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * 可按优先级排队的预取任务，同优先级先进先出
+     */
+    private final class PrefetchTask extends FutureTask<Void> implements Comparable<PrefetchTask> {
+        final int priority;
+        final long seq;
+
+        PrefetchTask(long notebookId, int priority, long seq) {
+            super(() -> {
+                try {
+                    // 代数须在读取之前获取，之后发生的失效会让结果作废
+                    int generation = snapshotCache.generation(notebookId);
+                    TableModel model = loader.loadSync(notebookId);
+                    if (model != null) {
+                        put(notebookId, new Entry(model, generation, estimateBytes(model)));
+                        Log.d(TAG, "Prefetched notebook " + notebookId + ": " + model.getCellCount() + " cells");
+                        return null;
+                    }
+                } catch (Exception e) {
+                    Log.w(TAG, "Prefetch failed for notebook " + notebookId, e);
+                }
+                synchronized (NotebookPrefetcher.this) {
+                    pending.remove(notebookId);
+                }
+                return null;
+            });
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(PrefetchTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.note.data.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.note.data.model.CellColumns;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 笔记本单元格快照缓存
+ * 每个笔记本一个二进制快照文件，按列存放单元格，字符串集中在去重后的字符串表中。
+ * 打开时内存映射读取，以笔记本updated_at和CRC32校验，不匹配即视为失效，数据库始终是数据源。
+ *
+ * 文件格式（小端）：
+ * [header 40字节] magic, version, notebookId, updatedAt, cellCount, stringCount, bodyLength, crc32
+ * [body] long id/createdAt/updatedAt，int row/col/styleId/内容和图片的字符串引用，
+ *        int 字符串偏移表，UTF-8字符串数据
+ */
+public class NotebookSnapshotCache implements CacheRegistry.TrimmableCache {
+
+    private static final String TAG = "NotebookSnapshotCache";
+    private static final String SNAPSHOT_DIR = "snapshots";
+    private static final int MAGIC = 0x4E534E50; // "NSNP"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 40;
+
+    private static final int NULL_REF = -1;
+
+    private static volatile NotebookSnapshotCache INSTANCE;
+
+    private final File dir;
+    private final Executor executor;
+    // 每个笔记本的失效代数，排队中的写入发现代数变化后放弃，避免写回已失效的内容
+    private final Map<Long, Integer> generations = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    NotebookSnapshotCache(File dir) {
+        this.dir = dir;
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * 获取缓存实例（单例模式）
+     */
+    public static NotebookSnapshotCache getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (NotebookSnapshotCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new NotebookSnapshotCache(
+                            new File(context.getApplicationContext().getCacheDir(), SNAPSHOT_DIR));
+                    CacheRegistry.getInstance(context).register(INSTANCE);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private File fileFor(long notebookId) {
+        return new File(dir, notebookId + ".snap");
+    }
+
+    /**
+     * 读取快照；文件不存在、版本/时间戳不匹配或校验失败时返回null
+     * @param expectedUpdatedAt 数据库中笔记本当前的updated_at
+     */
+    public CellColumns read(long notebookId, long expectedUpdatedAt) {
+        CellColumns cells = readFile(notebookId, expectedUpdatedAt);
+        (cells != null ? hitCount : missCount).incrementAndGet();
+        return cells;
+    }
+
+    private CellColumns readFile(long notebookId, long expectedUpdatedAt) {
+        File file = fileFor(notebookId);
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return discard(file, "truncated header");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                    || mapped.getLong(8) != notebookId) {
+                return discard(file, "bad header");
+            }
+            if (mapped.getLong(16) != expectedUpdatedAt) {
+                // 时间戳不匹配：快照过期，或另一次保存刚写入了更新的快照，不删除文件
+                Log.d(TAG, "Snapshot out of date for notebook " + notebookId);
+                return null;
+            }
+            int cellCount = mapped.getInt(24);
+            int stringCount = mapped.getInt(28);
+            int bodyLength = mapped.getInt(32);
+            int checksum = mapped.getInt(36);
+            if (cellCount < 0 || stringCount < 0 || HEADER_SIZE + (long) bodyLength != size) {
+                return discard(file, "bad length");
+            }
+
+            ByteBuffer body = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            body.position(HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                return discard(file, "checksum mismatch");
+            }
+
+            body.position(HEADER_SIZE);
+            return decode(body, cellCount, stringCount);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read snapshot for notebook " + notebookId, e);
+            return discard(file, "read error");
+        }
+    }
+
+    /**
+     * 当前失效代数；从数据库读取单元格之前获取，回写快照时传回
+     */
+    public int generation(long notebookId) {
+        return generations.getOrDefault(notebookId, 0);
+    }
+
+    /**
+     * 后台写入快照
+     * @param updatedAt 与这批单元格对应的笔记本updated_at
+     */
+    public void writeAsync(long notebookId, long updatedAt, CellColumns cells) {
+        writeAsync(notebookId, updatedAt, cells, generation(notebookId));
+    }
+
+    /**
+     * 后台写入快照，期间发生过失效则放弃
+     * @param generation 读取这批单元格之前获取的失效代数
+     */
+    public void writeAsync(long notebookId, long updatedAt, CellColumns cells, int generation) {
+        executor.execute(() -> {
+            synchronized (this) {
+                if (generations.getOrDefault(notebookId, 0) != generation) {
+                    return;
+                }
+                try {
+                    write(notebookId, updatedAt, cells);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to write snapshot for notebook " + notebookId, e);
+                    fileFor(notebookId).delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * 使快照失效（绕过保存流程直接修改了单元格时调用）
+     */
+    public synchronized void invalidate(long notebookId) {
+        generations.merge(notebookId, 1, Integer::sum);
+        File file = fileFor(notebookId);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete snapshot: " + file.getName());
+        }
+    }
+
+    @Override
+    public String getCacheName() {
+        return "snapshot";
+    }
+
+    @Override
+    public int getCachePriority() {
+        return CacheRegistry.PRIORITY_REBUILDABLE;
+    }
+
+    /**
+     * 快照在磁盘上，读取时的映射随即释放，不占用常驻堆内存
+     */
+    @Override
+    public long getSizeBytes() {
+        return 0;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public void trimToSize(long maxBytes) {
+        // 没有常驻内存可回收，磁盘文件交给系统清理cacheDir
+    }
+
+    /**
+     * 同步写入快照：先写临时文件再原子替换
+     */
+    void write(long notebookId, long updatedAt, CellColumns cells) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create snapshot dir");
+        }
+        int n = cells.count;
+
+        // 构建去重字符串表
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] contentRef = new int[n];
+        int[] styleRef = new int[n];
+        int[] imageRef = new int[n];
+        int blobLength = 0;
+        for (int i = 0; i < n; i++) {
+            contentRef[i] = intern(cells.content[i], stringIndex, strings);
+            styleRef[i] = (int) cells.styleId[i];
+            imageRef[i] = intern(cells.imageId[i], stringIndex, strings);
+        }
+        for (byte[] bytes : strings) {
+            blobLength += bytes.length;
+        }
+        int stringCount = strings.size();
+
+        long bodyLength = (long) n * (8 * 3 + 4 * 5) + 4L * (stringCount + 1) + blobLength;
+        if (bodyLength > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IOException("Snapshot too large");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (int) bodyLength).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_SIZE);
+
+        buffer.asLongBuffer().put(cells.id, 0, n);
+        buffer.position(buffer.position() + n * 8);
+        buffer.asLongBuffer().put(cells.createdAt, 0, n);
+        buffer.position(buffer.position() + n * 8);
+        buffer.asLongBuffer().put(cells.updatedAt, 0, n);
+        buffer.position(buffer.position() + n * 8);
+        putInts(buffer, cells.row, n);
+        putInts(buffer, cells.col, n);
+        putInts(buffer, styleRef, n);
+        putInts(buffer, contentRef, n);
+        putInts(buffer, imageRef, n);
+
+        int offset = 0;
+        for (byte[] bytes : strings) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] bytes : strings) {
+            buffer.put(bytes);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, (int) bodyLength);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, notebookId);
+        buffer.putLong(16, updatedAt);
+        buffer.putInt(24, n);
+        buffer.putInt(28, stringCount);
+        buffer.putInt(32, (int) bodyLength);
+        buffer.putInt(36, (int) crc.getValue());
+
+        File target = fileFor(notebookId);
+        File tmp = new File(dir, notebookId + ".snap.tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(buffer.array());
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Failed to replace snapshot file");
+        }
+        Log.d(TAG, "Snapshot written for notebook " + notebookId + ": " + n + " cells, "
+                + stringCount + " strings, " + (HEADER_SIZE + bodyLength) + " bytes");
+    }
+
+    private static CellColumns decode(ByteBuffer body, int n, int stringCount) {
+        CellColumns cells = new CellColumns(n);
+        body.asLongBuffer().get(cells.id, 0, n);
+        body.position(body.position() + n * 8);
+        body.asLongBuffer().get(cells.createdAt, 0, n);
+        body.position(body.position() + n * 8);
+        body.asLongBuffer().get(cells.updatedAt, 0, n);
+        body.position(body.position() + n * 8);
+        getInts(body, cells.row, n);
+        getInts(body, cells.col, n);
+        int[] styleRef = getInts(body, new int[n], n);
+        int[] contentRef = getInts(body, new int[n], n);
+        int[] imageRef = getInts(body, new int[n], n);
+
+        int[] offsets = getInts(body, new int[stringCount + 1], stringCount + 1);
+
+        // 字符串表只解码一次，重复的内容共享同一个String对象
+        int blobStart = body.position();
+        String[] strings = new String[stringCount];
+        byte[] scratch = new byte[256];
+        for (int s = 0; s < stringCount; s++) {
+            int len = offsets[s + 1] - offsets[s];
+            if (scratch.length < len) {
+                scratch = new byte[len];
+            }
+            body.position(blobStart + offsets[s]);
+            body.get(scratch, 0, len);
+            strings[s] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+
+        for (int i = 0; i < n; i++) {
+            cells.styleId[i] = styleRef[i];
+            cells.content[i] = resolve(strings, contentRef[i]);
+            cells.imageId[i] = resolve(strings, imageRef[i]);
+        }
+        cells.count = n;
+        return cells;
+    }
+
+    private static int intern(String value, Map<String, Integer> index, List<byte[]> strings) {
+        if (value == null) {
+            return NULL_REF;
+        }
+        Integer ref = index.get(value);
+        if (ref == null) {
+            ref = strings.size();
+            index.put(value, ref);
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return ref;
+    }
+
+    private static String resolve(String[] strings, int ref) {
+        return ref == NULL_REF ? null : strings[ref];
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values, int n) {
+        buffer.asIntBuffer().put(values, 0, n);
+        buffer.position(buffer.position() + n * 4);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int[] out, int n) {
+        buffer.asIntBuffer().get(out, 0, n);
+        buffer.position(buffer.position() + n * 4);
+        return out;
+    }
+
+    private CellColumns discard(File file, String reason) {
+        Log.d(TAG, "Discarding snapshot " + file.getName() + ": " + reason);
+        file.delete();
+        return null;
+    }
+}
@@ -6,7 +6,9 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.example.note.data.entity.Cell;
 
@@ -30,66 +32,6 @@ public interface CellDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     List<Long> insertAll(List<Cell> cells);
     
-    /**
-     * 使用复合键UPSERT单个单元格（兼容版本）
-     */
-    @Query("INSERT OR REPLACE INTO cells (" +
-           "  id, notebook_id, row_index, col_index, " +
-           "  content, text_color, background_color, " +
-           "  is_bold, is_italic, text_size, text_alignment, image_id, " +
-           "  updated_at, created_at" +
-           ") VALUES (" +
-           "  (SELECT id FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex)," +
-           "  :notebookId, :rowIndex, :colIndex," +
-           "  :content, :textColor, :backgroundColor, :isBold, :isItalic, :textSize, :textAlignment, :imageId," +
-           "  :updatedAt," +
-           "  COALESCE((SELECT created_at FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), :createdAt)" +
-           ")")
-    void upsertCell(long notebookId, int rowIndex, int colIndex, String content, String textColor, String backgroundColor, boolean isBold, boolean isItalic, float textSize, String textAlignment, String imageId, long updatedAt, long createdAt);
-    
-    /**
-     * 使用复合键UPSERT单元格内容（兼容版本）
-     */
-    @Query("INSERT OR REPLACE INTO cells (" +
-           "  id, notebook_id, row_index, col_index, " +
-           "  content, text_color, background_color, " +
-           "  is_bold, is_italic, text_size, text_alignment, image_id, " +
-           "  updated_at, created_at" +
-           ") VALUES (" +
-           "  (SELECT id FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex)," +
-           "  :notebookId, :rowIndex, :colIndex," +
-           "  :content," +
-           "  COALESCE((SELECT text_color       FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), '')," +
-           "  COALESCE((SELECT background_color FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), '')," +
-           "  COALESCE((SELECT is_bold          FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), 0)," +
-           "  COALESCE((SELECT is_italic        FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), 0)," +
-           "  COALESCE((SELECT text_size        FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), 14)," +
-           "  COALESCE((SELECT text_alignment   FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), 'LEFT')," +
-           "  COALESCE((SELECT image_id         FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), NULL)," +
-           "  :updatedAt," +
-           "  COALESCE((SELECT created_at       FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), :createdAt)" +
-           ")")
-    void upsertCellContent(long notebookId, int rowIndex, int colIndex, String content, long updatedAt, long createdAt);
-    
-    /**
-     * 使用复合键UPSERT单元格格式（兼容版本）
-     */
-    @Query("INSERT OR REPLACE INTO cells (" +
-           "  id, notebook_id, row_index, col_index, " +
-           "  content, text_color, background_color, " +
-           "  is_bold, is_italic, text_size, text_alignment, image_id, " +
-           "  updated_at, created_at" +
-           ") VALUES (" +
-           "  (SELECT id FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex)," +
-           "  :notebookId, :rowIndex, :colIndex," +
-           "  COALESCE((SELECT content          FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), '')," +
-           "  :textColor, :backgroundColor, :isBold, :isItalic, :textSize, :textAlignment," +
-           "  COALESCE((SELECT image_id         FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), NULL)," +
-           "  :updatedAt," +
-           "  COALESCE((SELECT created_at       FROM cells WHERE notebook_id=:notebookId AND row_index=:rowIndex AND col_index=:colIndex), :createdAt)" +
-           ")")
-    void upsertCellFormat(long notebookId, int rowIndex, int colIndex, String textColor, String backgroundColor, boolean isBold, boolean isItalic, float textSize, String textAlignment, long updatedAt, long createdAt);
-    
     /**
      * 更新单元格
      */
@@ -156,11 +98,6 @@ public interface CellDao {
     @Query("SELECT * FROM cells WHERE notebook_id = :notebookId AND row_index BETWEEN :startRow AND :endRow AND col_index BETWEEN :startCol AND :endCol ORDER BY row_index, col_index")
     LiveData<List<Cell>> getCellsByRange(long notebookId, int startRow, int endRow, int startCol, int endCol);
     
-    /**
-     * 搜索单元格内容
-     */
-    @Query("SELECT * FROM cells WHERE notebook_id = :notebookId AND content LIKE '%' || :query || '%' ORDER BY row_index, col_index")
-    LiveData<List<Cell>> searchCells(long notebookId, String query);
     
     /**
      * 获取包含图片的单元格
@@ -175,43 +112,42 @@ public interface CellDao {
     LiveData<List<Cell>> getNonEmptyCells(long notebookId);
     
     /**
-     * 根据列筛选和排序获取单元格
-     * @param notebookId 笔记本ID
-     * @param colIndex 列索引
-     * @param filterType 筛选类型：text_contains, number_range, date_range, boolean
-     * @param filterValue 筛选值
-     * @param sortOrder 排序方式：ASC, DESC, 或空字符串表示默认排序
+     * 执行RowQuery编译出的行查询，返回按显示顺序排列的原始行号
+     */
+    @RawQuery
+    List<Integer> getRowOrder(SupportSQLiteQuery query);
+    
+    /**
+     * 按数值范围筛选指定列，在(notebook_id, col_index, num_value)索引上做范围扫描，按数值升序返回
      */
     @Query("SELECT * FROM cells WHERE notebook_id = :notebookId AND col_index = :colIndex " +
-           "AND (:filterType = '' OR " +
-           "(:filterType = 'text_contains' AND content LIKE '%' || :filterValue || '%') OR " +
-           "(:filterType = 'number_range' AND CAST(content AS REAL) BETWEEN :minValue AND :maxValue) OR " +
-           "(:filterType = 'boolean' AND content = :filterValue)) " +
-           "ORDER BY CASE WHEN :sortOrder = 'ASC' THEN content END ASC, " +
-           "CASE WHEN :sortOrder = 'DESC' THEN content END DESC, " +
-           "CASE WHEN :sortOrder = '' THEN row_index END ASC")
-    LiveData<List<Cell>> getCellsByColumnWithFilter(long notebookId, int colIndex, String filterType, 
-                                                   String filterValue, double minValue, double maxValue, String sortOrder);
+           "AND num_value BETWEEN :minValue AND :maxValue " +
+           "ORDER BY num_value ASC, row_index ASC")
+    LiveData<List<Cell>> getCellsByColumnInNumberRange(long notebookId, int colIndex, double minValue, double maxValue);
     
     /**
-     * 获取指定列的所有单元格并排序
+     * 按数值范围筛选指定列，按数值降序返回
      */
     @Query("SELECT * FROM cells WHERE notebook_id = :notebookId AND col_index = :colIndex " +
-           "ORDER BY CASE WHEN :sortOrder = 'ASC' THEN content END ASC, " +
-           "CASE WHEN :sortOrder = 'DESC' THEN content END DESC, " +
-           "CASE WHEN :sortOrder = '' THEN row_index END ASC")
-    LiveData<List<Cell>> getCellsByColumnSorted(long notebookId, int colIndex, String sortOrder);
+           "AND num_value BETWEEN :minValue AND :maxValue " +
+           "ORDER BY num_value DESC, row_index ASC")
+    LiveData<List<Cell>> getCellsByColumnInNumberRangeDesc(long notebookId, int colIndex, double minValue, double maxValue);
     
     /**
-     * 获取所有单元格并按指定列排序
+     * 按日期范围（距1970-01-01的天数）筛选指定列，按日期升序返回
      */
-    @Query("SELECT c.* FROM cells c " +
-           "LEFT JOIN cells sort_col ON c.notebook_id = sort_col.notebook_id AND c.row_index = sort_col.row_index AND sort_col.col_index = :sortColIndex " +
-           "WHERE c.notebook_id = :notebookId " +
-           "ORDER BY CASE WHEN :sortOrder = 'ASC' THEN sort_col.content END ASC, " +
-           "CASE WHEN :sortOrder = 'DESC' THEN sort_col.content END DESC, " +
-           "CASE WHEN :sortOrder = '' THEN c.row_index END ASC, c.col_index ASC")
-    LiveData<List<Cell>> getAllCellsSortedByColumn(long notebookId, int sortColIndex, String sortOrder);
+    @Query("SELECT * FROM cells WHERE notebook_id = :notebookId AND col_index = :colIndex " +
+           "AND date_value BETWEEN :minDay AND :maxDay " +
+           "ORDER BY date_value ASC, row_index ASC")
+    LiveData<List<Cell>> getCellsByColumnInDateRange(long notebookId, int colIndex, long minDay, long maxDay);
+    
+    /**
+     * 按日期范围筛选指定列，按日期降序返回
+     */
+    @Query("SELECT * FROM cells WHERE notebook_id = :notebookId AND col_index = :colIndex " +
+           "AND date_value BETWEEN :minDay AND :maxDay " +
+           "ORDER BY date_value DESC, row_index ASC")
+    LiveData<List<Cell>> getCellsByColumnInDateRangeDesc(long notebookId, int colIndex, long minDay, long maxDay);
     
     /**
      * 删除笔记本的所有单元格
@@ -219,6 +155,46 @@ public interface CellDao {
     @Query("DELETE FROM cells WHERE notebook_id = :notebookId")
     int deleteCellsByNotebookId(long notebookId);
     
+    /**
+     * 把源笔记本的全部单元格复制到目标笔记本（INSERT…SELECT，不经过Java对象），返回最后插入的rowid
+     */
+    @Query("INSERT INTO cells (notebook_id, row_index, col_index, content, num_value, date_value, style_id, image_id, " +
+           "created_at, updated_at) " +
+           "SELECT :targetId, row_index, col_index, content, num_value, date_value, style_id, image_id, :now, :now " +
+           "FROM cells WHERE notebook_id = :sourceId ORDER BY row_index, col_index")
+    long copyCells(long sourceId, long targetId, long now);
+    
+    /**
+     * 生成rows×cols的默认样式空白单元格（递归CTE在SQLite内生成行列号），已有的单元格保留
+     */
+    @Query("INSERT OR IGNORE INTO cells (notebook_id, row_index, col_index, content, style_id, created_at, updated_at) " +
+           "WITH RECURSIVE r(i) AS (SELECT 0 WHERE :rows > 0 UNION ALL SELECT i + 1 FROM r WHERE i + 1 < :rows), " +
+           "c(j) AS (SELECT 0 WHERE :cols > 0 UNION ALL SELECT j + 1 FROM c WHERE j + 1 < :cols) " +
+           "SELECT :notebookId, i, j, '', 1, :now, :now FROM r, c ORDER BY i, j")
+    long insertEmptyGrid(long notebookId, int rows, int cols, long now);
+    
+    /**
+     * 生成[fromRow, toRow)行、每行cols列的空白单元格，已有的单元格保留；大笔记本按行分段调用，每段一个事务
+     */
+    @Query("INSERT OR IGNORE INTO cells (notebook_id, row_index, col_index, content, style_id, created_at, updated_at) " +
+           "WITH RECURSIVE r(i) AS (SELECT :fromRow WHERE :fromRow < :toRow UNION ALL SELECT i + 1 FROM r WHERE i + 1 < :toRow), " +
+           "c(j) AS (SELECT 0 WHERE :cols > 0 UNION ALL SELECT j + 1 FROM c WHERE j + 1 < :cols) " +
+           "SELECT :notebookId, i, j, '', 1, :now, :now FROM r, c ORDER BY i, j")
+    long insertEmptyGridRows(long notebookId, int fromRow, int toRow, int cols, long now);
+    
+    /**
+     * 分块删除笔记本的单元格，每次最多limit个，返回删除数
+     */
+    @Query("DELETE FROM cells WHERE id IN (SELECT id FROM cells WHERE notebook_id = :notebookId LIMIT :limit)")
+    int deleteCellsChunk(long notebookId, int limit);
+    
+    /**
+     * 分块删除rows行、cols列范围之外的单元格，每次最多limit个，返回删除数（导入时去掉末尾只有格式的空白单元格）
+     */
+    @Query("DELETE FROM cells WHERE id IN (SELECT id FROM cells WHERE notebook_id = :notebookId " +
+           "AND (row_index >= :rows OR col_index >= :cols) LIMIT :limit)")
+    int deleteCellsOutsideChunk(long notebookId, int rows, int cols, int limit);
+    
     /**
      * 删除指定行的所有单元格
      */
@@ -232,10 +208,11 @@ public interface CellDao {
     int deleteCellsByColumn(long notebookId, int colIndex);
     
     /**
-     * 更新单元格内容
+     * 更新单元格内容（numValue/dateValue由调用方用CellValueUtils从content解析）
      */
-    @Query("UPDATE cells SET content = :content, updated_at = :updatedAt WHERE id = :id")
-    int updateContent(long id, String content, long updatedAt);
+    @Query("UPDATE cells SET content = :content, num_value = :numValue, date_value = :dateValue, " +
+           "updated_at = :updatedAt WHERE id = :id")
+    int updateContent(long id, String content, Double numValue, Long dateValue, long updatedAt);
     
     /**
      * 更新单元格图片
@@ -246,13 +223,14 @@ public interface CellDao {
     /**
      * 更新单元格格式
      */
-    @Query("UPDATE cells SET text_color = :textColor, background_color = :backgroundColor, is_bold = :isBold, is_italic = :isItalic, text_size = :textSize, text_alignment = :textAlignment, updated_at = :updatedAt WHERE id = :id")
-    int updateFormat(long id, String textColor, String backgroundColor, boolean isBold, boolean isItalic, float textSize, String textAlignment, long updatedAt);
+    @Query("UPDATE cells SET style_id = :styleId, updated_at = :updatedAt WHERE id = :id")
+    int updateFormat(long id, long styleId, long updatedAt);
     
     /**
      * 清空单元格内容
      */
-    @Query("UPDATE cells SET content = '', image_id = NULL, updated_at = :updatedAt WHERE id = :id")
+    @Query("UPDATE cells SET content = '', num_value = NULL, date_value = NULL, image_id = NULL, " +
+           "updated_at = :updatedAt WHERE id = :id")
     int clearCell(long id, long updatedAt);
     
     /**
@@ -304,15 +282,15 @@ public interface CellDao {
     int getMaxColumnIndex(long notebookId);
     
     /**
-     * 获取单元格总数
+     * 获取单元格总数（读取触发器维护的统计列）
      */
-    @Query("SELECT COUNT(*) FROM cells WHERE notebook_id = :notebookId")
+    @Query("SELECT cell_count FROM notebooks WHERE id = :notebookId")
     LiveData<Integer> getCellCount(long notebookId);
     
     /**
-     * 获取非空单元格总数
+     * 获取非空单元格总数（读取触发器维护的统计列）
      */
-    @Query("SELECT COUNT(*) FROM cells WHERE notebook_id = :notebookId AND (content IS NOT NULL AND content != '' OR image_id IS NOT NULL AND image_id != '')")
+    @Query("SELECT non_empty_count FROM notebooks WHERE id = :notebookId")
     LiveData<Integer> getNonEmptyCellCount(long notebookId);
     
     /**
@@ -0,0 +1,45 @@
+package com.example.note.data.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.note.data.entity.CellStyle;
+
+import java.util.List;
+
+/**
+ * 单元格样式数据访问对象
+ * 样式只增不删，调用方通过CellStyleRepository去重后再插入
+ */
+@Dao
+public interface CellStyleDao {
+
+    /**
+     * 插入样式，已存在相同样式时返回-1
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertStyle(CellStyle style);
+
+    /**
+     * 按样式查找id（走唯一索引），不存在时返回0
+     */
+    @Query("SELECT COALESCE((SELECT id FROM cell_styles WHERE text_color = :textColor " +
+           "AND background_color = :backgroundColor AND is_bold = :isBold AND is_italic = :isItalic " +
+           "AND text_size = :textSize AND text_alignment = :textAlignment), 0)")
+    long findStyleId(String textColor, String backgroundColor, boolean isBold, boolean isItalic,
+                     float textSize, String textAlignment);
+
+    /**
+     * 获取所有样式（数量通常只有几十个）
+     */
+    @Query("SELECT * FROM cell_styles ORDER BY id")
+    List<CellStyle> getAllStylesSync();
+
+    /**
+     * 获取id大于指定值的样式，用于增量刷新
+     */
+    @Query("SELECT * FROM cell_styles WHERE id > :afterId ORDER BY id")
+    List<CellStyle> getStylesAfterSync(long afterId);
+}
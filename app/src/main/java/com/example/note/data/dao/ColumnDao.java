@@ -96,6 +96,21 @@ public interface ColumnDao {
     @Query("DELETE FROM columns WHERE notebook_id = :notebookId")
     int deleteColumnsByNotebookId(long notebookId);
     
+    /**
+     * 把源笔记本的列定义复制到目标笔记本
+     */
+    @Query("INSERT INTO columns (notebook_id, column_index, name, width, type, sort_order, filter_value, " +
+           "is_visible, is_frozen, created_at, updated_at) " +
+           "SELECT :targetId, column_index, name, width, type, sort_order, filter_value, " +
+           "is_visible, is_frozen, :now, :now FROM columns WHERE notebook_id = :sourceId")
+    long copyColumns(long sourceId, long targetId, long now);
+    
+    /**
+     * 分块删除笔记本的列，每次最多limit列，返回删除数
+     */
+    @Query("DELETE FROM columns WHERE id IN (SELECT id FROM columns WHERE notebook_id = :notebookId LIMIT :limit)")
+    int deleteColumnsChunk(long notebookId, int limit);
+    
     /**
      * 删除指定列
      */
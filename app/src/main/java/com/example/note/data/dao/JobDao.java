@@ -0,0 +1,101 @@
+package com.example.note.data.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import com.example.note.data.entity.Job;
+
+import java.util.List;
+
+/**
+ * 后台任务数据访问对象
+ * 状态只沿PENDING/RUNNING → SUCCEEDED/FAILED/CANCELLED单向变化，更新语句都带状态条件，
+ * 已取消的任务不会被执行线程改回运行或成功。
+ */
+@Dao
+public interface JobDao {
+
+    /**
+     * 插入任务
+     */
+    @Insert
+    long insert(Job job);
+
+    /**
+     * 根据ID获取任务（同步）
+     */
+    @Query("SELECT * FROM jobs WHERE id = :jobId")
+    Job getByIdSync(long jobId);
+
+    /**
+     * 根据ID观察任务的状态和进度
+     */
+    @Query("SELECT * FROM jobs WHERE id = :jobId")
+    LiveData<Job> getById(long jobId);
+
+    /**
+     * 观察未结束的任务，运行中的在前，最近更新的在前
+     */
+    @Query("SELECT * FROM jobs WHERE state IN ('PENDING', 'RUNNING') ORDER BY state DESC, updated_at DESC")
+    LiveData<List<Job>> getActiveJobs();
+
+    /**
+     * 获取未结束的任务（同步）
+     */
+    @Query("SELECT * FROM jobs WHERE state IN ('PENDING', 'RUNNING')")
+    List<Job> getActiveJobsSync();
+
+    /**
+     * 获取去重键对应的未结束任务
+     */
+    @Query("SELECT * FROM jobs WHERE unique_key = :uniqueKey AND state IN ('PENDING', 'RUNNING') LIMIT 1")
+    Job getActiveByKeySync(String uniqueKey);
+
+    /**
+     * 获取任务状态
+     */
+    @Query("SELECT state FROM jobs WHERE id = :jobId")
+    String getStateSync(long jobId);
+
+    /**
+     * 开始（或在进程被杀后恢复）执行，返回0表示任务已结束
+     */
+    @Query("UPDATE jobs SET state = 'RUNNING', attempts = attempts + 1, updated_at = :now " +
+           "WHERE id = :jobId AND state IN ('PENDING', 'RUNNING')")
+    int markRunning(long jobId, long now);
+
+    /**
+     * 保存检查点和进度
+     */
+    @Query("UPDATE jobs SET checkpoint = :checkpoint, progress = :progress, total = :total, updated_at = :now " +
+           "WHERE id = :jobId")
+    int saveCheckpoint(long jobId, String checkpoint, long progress, long total, long now);
+
+    /**
+     * 运行中的任务被停止，等待下次调度继续
+     */
+    @Query("UPDATE jobs SET state = 'PENDING', updated_at = :now WHERE id = :jobId AND state = 'RUNNING'")
+    int markStopped(long jobId, long now);
+
+    /**
+     * 运行中的任务结束（SUCCEEDED或FAILED）
+     */
+    @Query("UPDATE jobs SET state = :state, message = :message, updated_at = :now " +
+           "WHERE id = :jobId AND state = 'RUNNING'")
+    int markFinished(long jobId, String state, String message, long now);
+
+    /**
+     * 取消未结束的任务
+     */
+    @Query("UPDATE jobs SET state = 'CANCELLED', updated_at = :now " +
+           "WHERE id = :jobId AND state IN ('PENDING', 'RUNNING')")
+    int cancel(long jobId, long now);
+
+    /**
+     * 删除早于指定时间结束的任务记录
+     */
+    @Query("DELETE FROM jobs WHERE state IN ('SUCCEEDED', 'FAILED', 'CANCELLED') AND updated_at < :before")
+    int deleteFinishedBefore(long before);
+}
@@ -6,7 +6,9 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.example.note.data.entity.Notebook;
 
@@ -31,7 +33,7 @@ public interface NotebookDao {
     List<Long> insertAll(List<Notebook> notebooks);
     
     /**
-     * 更新笔记本
+     * 更新笔记本（整行写回，会覆盖触发器维护的统计列，修改字段请用updateDetails）
      */
     @Update
     int update(Notebook notebook);
@@ -55,28 +57,30 @@ public interface NotebookDao {
     Notebook getByIdSync(long id);
     
     /**
-     * 获取所有未删除的笔记本（Room层稳定排序：置顶优先，然后按更新时间降序，最后按ID升序兜底）
+     * 获取所有未删除的笔记本（Room层稳定排序：置顶优先，然后按更新时间降序，最后按ID降序兜底，
+     * 与分页列表一致，整个排序由(is_deleted, is_pinned, updated_at)索引倒序扫描得到）
      */
-    @Query("SELECT * FROM notebooks WHERE is_deleted = 0 ORDER BY is_pinned DESC, updated_at DESC, id ASC")
+    @Query("SELECT * FROM notebooks WHERE is_deleted = 0 ORDER BY is_pinned DESC, updated_at DESC, id DESC")
     LiveData<List<Notebook>> getAllNotebooks();
     
     /**
-     * 获取所有未删除的笔记本（同步，Room层稳定排序：置顶优先，然后按更新时间降序，最后按ID升序兜底）
+     * 获取所有未删除的笔记本（同步，排序同getAllNotebooks）
      */
-    @Query("SELECT * FROM notebooks WHERE is_deleted = 0 ORDER BY is_pinned DESC, updated_at DESC, id ASC")
+    @Query("SELECT * FROM notebooks WHERE is_deleted = 0 ORDER BY is_pinned DESC, updated_at DESC, id DESC")
     List<Notebook> getAllNotebooksSync();
     
     /**
-     * 获取回收站中的笔记本（按删除时间倒序）
+     * 分页获取笔记本（查询由NotebookListQuery生成）
      */
-    @Query("SELECT * FROM notebooks WHERE is_deleted = 1 ORDER BY deleted_at DESC")
-    LiveData<List<Notebook>> getDeletedNotebooks();
+    @RawQuery(observedEntities = Notebook.class)
+    List<Notebook> getPage(SupportSQLiteQuery query);
     
     /**
-     * 搜索笔记本（按标题）
+     * 获取回收站中的笔记本（按删除时间倒序，不含正在清除的）
      */
-    @Query("SELECT * FROM notebooks WHERE is_deleted = 0 AND title LIKE '%' || :query || '%' ORDER BY updated_at DESC")
-    LiveData<List<Notebook>> searchNotebooks(String query);
+    @Query("SELECT * FROM notebooks WHERE is_deleted = 1 AND is_purging = 0 AND is_staging = 0 ORDER BY deleted_at DESC")
+    LiveData<List<Notebook>> getDeletedNotebooks();
+    
     
     /**
      * 根据颜色筛选笔记本
@@ -105,7 +109,7 @@ public interface NotebookDao {
     /**
      * 恢复删除的笔记本
      */
-    @Query("UPDATE notebooks SET is_deleted = 0, deleted_at = NULL, updated_at = :updatedAt WHERE id = :id")
+    @Query("UPDATE notebooks SET is_deleted = 0, deleted_at = NULL, updated_at = :updatedAt WHERE id = :id AND is_purging = 0 AND is_staging = 0")
     int restore(long id, long updatedAt);
     
     /**
@@ -121,11 +125,63 @@ public interface NotebookDao {
     int unpin(long id);
     
     /**
-     * 物理删除回收站中的笔记本
+     * 物理删除回收站中的笔记本（级联删除在一个事务里完成，大笔记本请用NotebookPurger）
      */
-    @Query("DELETE FROM notebooks WHERE is_deleted = 1 AND deleted_at < :beforeTime")
+    @Query("DELETE FROM notebooks WHERE is_deleted = 1 AND is_staging = 0 AND deleted_at < :beforeTime")
     int deleteExpiredNotebooks(long beforeTime);
     
+    /**
+     * 标记笔记本为待清除（同时移出列表和回收站），由NotebookPurger分块删除
+     */
+    @Query("UPDATE notebooks SET is_deleted = 1, is_purging = 1, deleted_at = COALESCE(deleted_at, :now) WHERE id = :id")
+    int markPurging(long id, long now);
+    
+    /**
+     * 把回收站中过期的笔记本标记为待清除
+     */
+    @Query("UPDATE notebooks SET is_purging = 1 WHERE is_deleted = 1 AND is_purging = 0 AND is_staging = 0 AND deleted_at < :beforeTime")
+    int markExpiredPurging(long beforeTime);
+    
+    /**
+     * 公开导入完成的暂存笔记本；已被取消或清扫（已标记待清除）时返回0
+     */
+    @Query("UPDATE notebooks SET is_deleted = 0, is_staging = 0, deleted_at = NULL, updated_at = :now " +
+           "WHERE id = :id AND is_staging = 1 AND is_purging = 0")
+    int publishStaged(long id, long now);
+    
+    /**
+     * 获取还在暂存的笔记本ID（暂存笔记本一定带is_deleted，以便走索引）
+     */
+    @Query("SELECT id FROM notebooks WHERE is_deleted = 1 AND is_purging = 0 AND is_staging = 1")
+    List<Long> getStagingIds();
+    
+    /**
+     * 把仍在暂存的笔记本标记为待清除，已公开的不受影响
+     */
+    @Query("UPDATE notebooks SET is_purging = 1 WHERE id = :id AND is_staging = 1")
+    int markStagingPurging(long id);
+    
+    /**
+     * 获取待清除的笔记本ID（待清除的笔记本一定已在回收站中，带上is_deleted以便走索引）
+     */
+    @Query("SELECT id FROM notebooks WHERE is_deleted = 1 AND is_purging = 1")
+    List<Long> getPurgingIds();
+    
+    /**
+     * 删除已清空子表的待清除笔记本
+     */
+    @Query("DELETE FROM notebooks WHERE id = :id AND is_purging = 1")
+    int deletePurged(long id);
+    
+    /**
+     * 复制笔记本本身，返回新笔记本id；统计列从0开始，随后复制单元格时由触发器累加
+     */
+    @Query("INSERT INTO notebooks (title, color, description, created_at, updated_at, is_deleted, is_pinned, " +
+           "is_purging, row_count, col_count, cell_count, non_empty_count, image_count, last_edit_at) " +
+           "SELECT :title, color, description, :now, :now, 0, 0, 0, 0, 0, 0, 0, 0, 0 " +
+           "FROM notebooks WHERE id = :sourceId")
+    long copyNotebook(long sourceId, String title, long now);
+    
     /**
      * 更新笔记本标题
      */
@@ -138,12 +194,24 @@ public interface NotebookDao {
     @Query("UPDATE notebooks SET color = :color, updated_at = :updatedAt WHERE id = :id")
     int updateColor(long id, String color, long updatedAt);
     
+    /**
+     * 更新笔记本的可编辑字段，不写统计列
+     */
+    @Query("UPDATE notebooks SET title = :title, color = :color, description = :description, updated_at = :updatedAt WHERE id = :id")
+    int updateDetails(long id, String title, String color, String description, long updatedAt);
+    
     /**
      * 更新笔记本的更新时间
      */
     @Query("UPDATE notebooks SET updated_at = :updatedAt WHERE id = :id")
     int touch(long id, long updatedAt);
     
+    /**
+     * 保存完成：更新时间戳并记录已写入的编辑日志序号（与保存数据在同一事务内调用）
+     */
+    @Query("UPDATE notebooks SET updated_at = :updatedAt, journal_seq = :journalSeq WHERE id = :id")
+    int markSaved(long id, long updatedAt, long journalSeq);
+    
     /**
      * 获取笔记本总数
      */
@@ -153,7 +221,7 @@ public interface NotebookDao {
     /**
      * 获取回收站笔记本总数
      */
-    @Query("SELECT COUNT(*) FROM notebooks WHERE is_deleted = 1")
+    @Query("SELECT COUNT(*) FROM notebooks WHERE is_deleted = 1 AND is_purging = 0 AND is_staging = 0")
     LiveData<Integer> getDeletedNotebookCount();
     
     /**
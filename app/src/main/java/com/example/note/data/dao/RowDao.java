@@ -61,6 +61,19 @@ public interface RowDao {
     @Query("DELETE FROM rows WHERE notebook_id = :notebookId")
     int deleteRowsByNotebookId(long notebookId);
     
+    /**
+     * 把源笔记本的行高复制到目标笔记本
+     */
+    @Query("INSERT INTO rows (notebook_id, row_index, height_dp, created_at, updated_at) " +
+           "SELECT :targetId, row_index, height_dp, :now, :now FROM rows WHERE notebook_id = :sourceId")
+    long copyRows(long sourceId, long targetId, long now);
+    
+    /**
+     * 分块删除笔记本的行，每次最多limit行，返回删除数
+     */
+    @Query("DELETE FROM rows WHERE id IN (SELECT id FROM rows WHERE notebook_id = :notebookId LIMIT :limit)")
+    int deleteRowsChunk(long notebookId, int limit);
+    
     /**
      * 删除指定笔记本中指定行索引及之后的所有行
      */
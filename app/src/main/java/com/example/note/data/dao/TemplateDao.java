@@ -78,12 +78,6 @@ public interface TemplateDao {
     @Query("SELECT * FROM templates WHERE is_system = 0 ORDER BY created_at DESC")
     LiveData<List<Template>> getUserTemplates();
     
-    /**
-     * 搜索模板（按名称和描述）
-     */
-    @Query("SELECT * FROM templates WHERE name LIKE '%' || :query || '%' OR description LIKE '%' || :query || '%' ORDER BY is_system DESC, created_at DESC")
-    LiveData<List<Template>> searchTemplates(String query);
-    
     /**
      * 根据尺寸筛选模板
      */
@@ -108,6 +102,14 @@ public interface TemplateDao {
     @Query("SELECT COUNT(*) FROM templates WHERE name = :name AND id != :excludeId")
     int countByName(String name, long excludeId);
     
+    /**
+     * 在SQLite内复制模板为用户模板，返回新模板id；description为null时沿用源模板的描述
+     */
+    @Query("INSERT INTO templates (name, description, rows, cols, data, is_system, created_at) " +
+           "SELECT :name, COALESCE(:description, description), rows, cols, data, 0, :now " +
+           "FROM templates WHERE id = :sourceId")
+    long copyTemplate(long sourceId, String name, String description, long now);
+    
     /**
      * 删除用户自定义模板
      */
@@ -11,23 +11,38 @@ import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.example.note.data.dao.CellDao;
+import com.example.note.data.dao.CellStyleDao;
 import com.example.note.data.dao.ColumnDao;
+import com.example.note.data.dao.JobDao;
 import com.example.note.data.dao.NotebookDao;
 import com.example.note.data.dao.RowDao;
 import com.example.note.data.dao.TemplateDao;
 import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.CellStyle;
 import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Job;
 import com.example.note.data.entity.Notebook;
 import com.example.note.data.entity.Row;
 import com.example.note.data.entity.Template;
+import com.example.note.data.search.SearchIndex;
+import com.example.note.data.template.TemplatePayload;
+import com.example.note.util.CellValueUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * 应用数据库
  * Room数据库的主要配置类
  */
 @Database(
-        entities = {Notebook.class, Column.class, Cell.class, Template.class, Row.class},
-        version = 9,
+        entities = {Notebook.class, Column.class, Cell.class, Template.class, Row.class, CellStyle.class, Job.class},
+        version = 21,
         exportSchema = false
 )
 public abstract class AppDatabase extends RoomDatabase {
@@ -41,6 +56,8 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract ColumnDao columnDao();
     public abstract TemplateDao templateDao();
     public abstract RowDao rowDao();
+    public abstract CellStyleDao cellStyleDao();
+    public abstract JobDao jobDao();
     
     /**
      * 获取数据库实例（单例模式）
@@ -56,7 +73,7 @@ public abstract class AppDatabase extends RoomDatabase {
                     )
                     .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING) // 启用WAL模式
                     .addCallback(DATABASE_CALLBACK) // 添加数据库回调
-                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9) // 添加数据库迁移
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12, MIGRATION_12_13, MIGRATION_13_14, MIGRATION_14_15, MIGRATION_15_16, MIGRATION_16_17, MIGRATION_17_18, MIGRATION_18_19, MIGRATION_19_20, MIGRATION_20_21) // 添加数据库迁移
                     .fallbackToDestructiveMigration() // 允许破坏性迁移
                     .build();
                 }
@@ -67,27 +84,21 @@ public abstract class AppDatabase extends RoomDatabase {
     
     /**
      * 数据库回调
-     * 用于在数据库创建时初始化数据
+     * 用于在数据库创建时初始化数据（测试中的内存数据库也使用它）
      */
-    private static final Callback DATABASE_CALLBACK = new Callback() {
+    public static final Callback DATABASE_CALLBACK = new Callback() {
         @Override
         public void onCreate(SupportSQLiteDatabase db) {
             super.onCreate(db);
             
-            // 创建FTS虚拟表用于全文搜索
-            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS cells_fts USING fts4(content=cells, content)");
-            
-            // 创建触发器，自动更新FTS表
-            db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_insert AFTER INSERT ON cells BEGIN " +
-                    "INSERT INTO cells_fts(docid, content) VALUES (new.id, new.content); END;");
+            // 默认单元格样式固定为id 1，新单元格的style_id默认引用它
+            insertDefaultCellStyle(db);
             
-            db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_update AFTER UPDATE ON cells BEGIN " +
-                    "UPDATE cells_fts SET content = new.content WHERE docid = new.id; END;");
-            
-            db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_delete AFTER DELETE ON cells BEGIN " +
-                    "DELETE FROM cells_fts WHERE docid = old.id; END;");
+            // 创建全文搜索索引表和触发器
+            SearchIndex.createSchema(db);
             
-
+            // 创建笔记本统计列的触发器
+            NotebookStats.createTriggers(db);
             
             // 插入系统预置模板
             insertSystemTemplates(db);
@@ -117,9 +128,19 @@ public abstract class AppDatabase extends RoomDatabase {
             
             // 设置临时存储为内存
             db.execSQL("PRAGMA temp_store=MEMORY");
+            
+            // REPLACE冲突删除旧行时也触发删除触发器，保证搜索索引不漏掉被替换的单元格
+            db.execSQL("PRAGMA recursive_triggers=ON");
         }
     };
     
+    private static void insertDefaultCellStyle(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT OR IGNORE INTO cell_styles (id, text_color, background_color, is_bold, is_italic, " +
+                "text_size, text_alignment) VALUES (?, ?, ?, 0, 0, ?, ?)", new Object[]{CellStyle.DEFAULT_ID,
+                CellStyle.DEFAULT_TEXT_COLOR, CellStyle.DEFAULT_BACKGROUND_COLOR, CellStyle.DEFAULT_TEXT_SIZE,
+                CellStyle.DEFAULT_ALIGNMENT});
+    }
+    
     /**
      * 插入系统预置模板
      */
@@ -127,33 +148,34 @@ public abstract class AppDatabase extends RoomDatabase {
         long currentTime = System.currentTimeMillis();
         
         // 空白模板
-        db.execSQL("INSERT INTO templates (name, description, rows, cols, data, is_system, created_at) VALUES " +
-                "('空白表格', '创建一个空白的表格笔记', 10, 5, NULL, 1, " + currentTime + ")");
+        insertSystemTemplate(db, "空白表格", "创建一个空白的表格笔记", 10, 5, currentTime);
         
         // 日程安排模板
-        String scheduleData = "{\"headers\":[\"时间\",\"事项\",\"地点\",\"备注\"],\"rows\":10}";
-        db.execSQL("INSERT INTO templates (name, description, rows, cols, data, is_system, created_at) VALUES " +
-                "('日程安排', '用于记录日程安排的模板', 10, 4, '" + scheduleData + "', 1, " + currentTime + ")");
+        insertSystemTemplate(db, "日程安排", "用于记录日程安排的模板", 10, 4, currentTime,
+                "时间", "事项", "地点", "备注");
         
         // 收支记录模板
-        String expenseData = "{\"headers\":[\"日期\",\"项目\",\"收入\",\"支出\",\"余额\"],\"rows\":15}";
-        db.execSQL("INSERT INTO templates (name, description, rows, cols, data, is_system, created_at) VALUES " +
-                "('收支记录', '用于记录收入和支出的模板', 15, 5, '" + expenseData + "', 1, " + currentTime + ")");
+        insertSystemTemplate(db, "收支记录", "用于记录收入和支出的模板", 15, 5, currentTime,
+                "日期", "项目", "收入", "支出", "余额");
         
         // 房间清单模板
-        String roomData = "{\"headers\":[\"房间号\",\"房型\",\"状态\",\"客人\",\"备注\"],\"rows\":20}";
-        db.execSQL("INSERT INTO templates (name, description, rows, cols, data, is_system, created_at) VALUES " +
-                "('房间清单', '民宿房间信息管理模板', 20, 5, '" + roomData + "', 1, " + currentTime + ")");
+        insertSystemTemplate(db, "房间清单", "民宿房间信息管理模板", 20, 5, currentTime,
+                "房间号", "房型", "状态", "客人", "备注");
         
         // 购物清单模板
-        String shoppingData = "{\"headers\":[\"物品\",\"数量\",\"单价\",\"总价\",\"已购买\"],\"rows\":15}";
-        db.execSQL("INSERT INTO templates (name, description, rows, cols, data, is_system, created_at) VALUES " +
-                "('购物清单', '用于记录购物清单的模板', 15, 5, '" + shoppingData + "', 1, " + currentTime + ")");
+        insertSystemTemplate(db, "购物清单", "用于记录购物清单的模板", 15, 5, currentTime,
+                "物品", "数量", "单价", "总价", "已购买");
         
         // 联系人模板
-        String contactData = "{\"headers\":[\"姓名\",\"电话\",\"邮箱\",\"地址\",\"备注\"],\"rows\":20}";
-        db.execSQL("INSERT INTO templates (name, description, rows, cols, data, is_system, created_at) VALUES " +
-                "('联系人', '用于管理联系人信息的模板', 20, 5, '" + contactData + "', 1, " + currentTime + ")");
+        insertSystemTemplate(db, "联系人", "用于管理联系人信息的模板", 20, 5, currentTime,
+                "姓名", "电话", "邮箱", "地址", "备注");
+    }
+    
+    private static void insertSystemTemplate(SupportSQLiteDatabase db, String name, String description,
+                                             int rows, int cols, long createdAt, String... headers) {
+        db.execSQL("INSERT INTO templates (name, description, rows, cols, data, is_system, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, 1, ?)", new Object[]{name, description, rows, cols,
+                TemplatePayload.ofHeaders(Arrays.asList(headers), rows, cols), createdAt});
     }
     
     /**
@@ -307,4 +329,290 @@ public abstract class AppDatabase extends RoomDatabase {
     };
 
 
-}
\ No newline at end of file
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本10：用二元组分词的search_fts替换cells_fts，同时索引笔记本标题
+            SearchIndex.dropLegacySchema(database);
+            SearchIndex.createSchema(database);
+        }
+    };
+
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本11：笔记本统计列由触发器维护，主页列表不再查询cells
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN row_count INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN col_count INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN cell_count INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN non_empty_count INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN image_count INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN last_edit_at INTEGER NOT NULL DEFAULT 0");
+
+            // 单独的notebook_id索引被唯一索引前缀覆盖，换成取最大列号用的索引
+            database.execSQL("DROP INDEX IF EXISTS index_cells_notebook_id");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_cells_notebook_id_col_index ON cells(notebook_id, col_index)");
+
+            NotebookStats.recompute(database);
+            NotebookStats.createTriggers(database);
+        }
+    };
+
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本12：主页列表按段分页，为置顶分段加时间排序的复合索引
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_notebooks_is_deleted_is_pinned_updated_at " +
+                    "ON notebooks(is_deleted, is_pinned, updated_at)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_notebooks_is_deleted_is_pinned_created_at " +
+                    "ON notebooks(is_deleted, is_pinned, created_at)");
+        }
+    };
+
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本13：永久删除改为标记后由NotebookPurger分块清除
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN is_purging INTEGER NOT NULL DEFAULT 0");
+            // 统计触发器跳过正在清除的笔记本
+            NotebookStats.dropTriggers(database);
+            NotebookStats.createTriggers(database);
+        }
+    };
+
+    static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本14：模板数据改为二进制格式，重建表把data列改为BLOB，旧的JSON表头转换为新格式
+            database.execSQL("CREATE TABLE templates_new (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "name TEXT, " +
+                    "description TEXT, " +
+                    "rows INTEGER NOT NULL, " +
+                    "cols INTEGER NOT NULL, " +
+                    "data BLOB, " +
+                    "is_system INTEGER NOT NULL, " +
+                    "created_at INTEGER NOT NULL)");
+            database.execSQL("INSERT INTO templates_new (id, name, description, rows, cols, data, is_system, created_at) " +
+                    "SELECT id, name, description, rows, cols, NULL, is_system, created_at FROM templates");
+            
+            try (Cursor cursor = database.query("SELECT id, rows, cols, data FROM templates " +
+                    "WHERE data IS NOT NULL AND data != ''")) {
+                while (cursor.moveToNext()) {
+                    byte[] payload = legacyTemplatePayload(cursor.getString(3), cursor.getInt(1), cursor.getInt(2));
+                    database.execSQL("UPDATE templates_new SET data = ? WHERE id = ?",
+                            new Object[]{payload, cursor.getLong(0)});
+                }
+            }
+            
+            database.execSQL("DROP TABLE templates");
+            database.execSQL("ALTER TABLE templates_new RENAME TO templates");
+            database.execSQL("CREATE INDEX index_templates_created_at ON templates(created_at)");
+            database.execSQL("CREATE INDEX index_templates_is_system ON templates(is_system)");
+        }
+    };
+
+    static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本15：单元格样式去重到cell_styles，cells只保存style_id
+            database.execSQL("CREATE TABLE IF NOT EXISTS cell_styles (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "text_color TEXT, " +
+                    "background_color TEXT, " +
+                    "is_bold INTEGER NOT NULL, " +
+                    "is_italic INTEGER NOT NULL, " +
+                    "text_size REAL NOT NULL, " +
+                    "text_alignment TEXT)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " +
+                    "index_cell_styles_text_color_background_color_is_bold_is_italic_text_size_text_alignment " +
+                    "ON cell_styles(text_color, background_color, is_bold, is_italic, text_size, text_alignment)");
+            insertDefaultCellStyle(database);
+            
+            // 与CellStyle构造函数相同的规范化：空值取默认值，颜色和对齐方式转大写
+            String styleColumns = "UPPER(COALESCE(NULLIF(TRIM(text_color), ''), '#000000')) AS text_color, " +
+                    "UPPER(COALESCE(NULLIF(TRIM(background_color), ''), '#FFFFFF')) AS background_color, " +
+                    "is_bold != 0 AS is_bold, is_italic != 0 AS is_italic, " +
+                    "CASE WHEN text_size > 0 THEN text_size ELSE 14.0 END AS text_size, " +
+                    "UPPER(COALESCE(NULLIF(TRIM(text_alignment), ''), 'LEFT')) AS text_alignment";
+            database.execSQL("INSERT OR IGNORE INTO cell_styles (text_color, background_color, is_bold, is_italic, " +
+                    "text_size, text_alignment) SELECT DISTINCT " + styleColumns + " FROM cells");
+            
+            // 重建cells：旧版SQLite不支持DROP COLUMN，保留原id使搜索索引的docid继续有效
+            database.execSQL("CREATE TABLE cells_new (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "notebook_id INTEGER NOT NULL, " +
+                    "row_index INTEGER NOT NULL, " +
+                    "col_index INTEGER NOT NULL, " +
+                    "content TEXT, " +
+                    "style_id INTEGER NOT NULL DEFAULT 1, " +
+                    "image_id TEXT, " +
+                    "created_at INTEGER NOT NULL, " +
+                    "updated_at INTEGER NOT NULL, " +
+                    "FOREIGN KEY(notebook_id) REFERENCES notebooks(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            database.execSQL("INSERT INTO cells_new (id, notebook_id, row_index, col_index, content, style_id, " +
+                    "image_id, created_at, updated_at) " +
+                    "SELECT c.id, c.notebook_id, c.row_index, c.col_index, c.content, s.id, " +
+                    "c.image_id, c.created_at, c.updated_at " +
+                    "FROM (SELECT id, notebook_id, row_index, col_index, content, image_id, created_at, updated_at, " +
+                    styleColumns + " FROM cells) c " +
+                    "JOIN cell_styles s ON s.text_color = c.text_color AND s.background_color = c.background_color " +
+                    "AND s.is_bold = c.is_bold AND s.is_italic = c.is_italic AND s.text_size = c.text_size " +
+                    "AND s.text_alignment = c.text_alignment");
+            
+            // 删除旧表会一并删除其上的搜索和统计触发器，也会丢掉自增序列，先记下
+            long sequence = 0;
+            try (Cursor cursor = database.query("SELECT seq FROM sqlite_sequence WHERE name = 'cells'")) {
+                if (cursor.moveToFirst()) {
+                    sequence = cursor.getLong(0);
+                }
+            }
+            database.execSQL("DROP TABLE cells");
+            database.execSQL("ALTER TABLE cells_new RENAME TO cells");
+            database.execSQL("UPDATE sqlite_sequence SET seq = MAX(seq, ?) WHERE name = 'cells'",
+                    new Object[]{sequence});
+            
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_cells_notebook_id_col_index ON cells(notebook_id, col_index)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_cells_notebook_id_row_index_col_index " +
+                    "ON cells(notebook_id, row_index, col_index)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_cells_updated_at ON cells(updated_at)");
+            SearchIndex.createCellTriggers(database);
+            NotebookStats.createTriggers(database);
+        }
+    };
+
+    static final Migration MIGRATION_15_16 = new Migration(15, 16) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本16：content派生的num_value/date_value列，排序和范围筛选可以走索引
+            database.execSQL("ALTER TABLE cells ADD COLUMN num_value REAL");
+            database.execSQL("ALTER TABLE cells ADD COLUMN date_value INTEGER");
+            // (notebook_id, col_index)是新索引的前缀，统计触发器取最大列号照样可用
+            database.execSQL("DROP INDEX IF EXISTS index_cells_notebook_id_col_index");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_cells_notebook_id_col_index_num_value " +
+                    "ON cells(notebook_id, col_index, num_value)");
+            backfillTypedValues(database);
+        }
+    };
+
+    /**
+     * 按id分页解析已有单元格的内容，写入num_value/date_value（SQL无法复现CellValueUtils的解析规则）
+     * 这两列不在搜索和统计触发器的监听范围内，回填不会产生额外的触发器写入
+     */
+    private static void backfillTypedValues(SupportSQLiteDatabase database) {
+        final int pageSize = 1000;
+        List<Object[]> updates = new ArrayList<>(pageSize);
+        long lastId = 0;
+        int filled = 0;
+        while (true) {
+            int scanned = 0;
+            updates.clear();
+            try (Cursor cursor = database.query("SELECT id, content FROM cells WHERE id > ? " +
+                    "AND content IS NOT NULL AND content != '' ORDER BY id LIMIT " + pageSize, new Object[]{lastId})) {
+                while (cursor.moveToNext()) {
+                    scanned++;
+                    lastId = cursor.getLong(0);
+                    String content = cursor.getString(1);
+                    Double numValue = CellValueUtils.parseNumber(content);
+                    Long dateValue = CellValueUtils.parseDate(content);
+                    if (numValue != null || dateValue != null) {
+                        updates.add(new Object[]{numValue, dateValue, lastId});
+                    }
+                }
+            }
+            for (Object[] args : updates) {
+                database.execSQL("UPDATE cells SET num_value = ?, date_value = ? WHERE id = ?", args);
+            }
+            filled += updates.size();
+            if (scanned < pageSize) {
+                break;
+            }
+        }
+        Log.d("AppDatabase", "Backfilled typed values for " + filled + " cells");
+    }
+
+    static final Migration MIGRATION_16_17 = new Migration(16, 17) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本17：补齐查询计划审计（QueryPlanAuditTest）发现的索引
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_cells_notebook_id_col_index_row_index " +
+                    "ON cells(notebook_id, col_index, row_index)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_cells_image_id ON cells(image_id)");
+            // is_deleted单列索引是下面几个复合索引的前缀
+            database.execSQL("DROP INDEX IF EXISTS index_notebooks_is_deleted");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_notebooks_is_deleted_updated_at " +
+                    "ON notebooks(is_deleted, updated_at)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_notebooks_is_deleted_created_at " +
+                    "ON notebooks(is_deleted, created_at)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_notebooks_is_deleted_is_purging_deleted_at " +
+                    "ON notebooks(is_deleted, is_purging, deleted_at)");
+        }
+    };
+
+    static final Migration MIGRATION_17_18 = new Migration(17, 18) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本18：单元格改用UPSERT写入，搜索队列触发器不再依赖INSERT OR IGNORE
+            SearchIndex.dropCellTriggers(database);
+            SearchIndex.createCellTriggers(database);
+        }
+    };
+
+    static final Migration MIGRATION_18_19 = new Migration(18, 19) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本19：后台任务的检查点和进度，任务由WorkManager调度
+            database.execSQL("CREATE TABLE IF NOT EXISTS jobs (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "type TEXT, " +
+                    "unique_key TEXT, " +
+                    "params TEXT, " +
+                    "checkpoint TEXT, " +
+                    "state TEXT, " +
+                    "progress INTEGER NOT NULL, " +
+                    "total INTEGER NOT NULL, " +
+                    "message TEXT, " +
+                    "attempts INTEGER NOT NULL, " +
+                    "created_at INTEGER NOT NULL, " +
+                    "updated_at INTEGER NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_jobs_state_updated_at ON jobs(state, updated_at)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_jobs_unique_key ON jobs(unique_key)");
+        }
+    };
+
+    static final Migration MIGRATION_19_20 = new Migration(19, 20) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本20：记录保存时已写入的编辑日志序号，崩溃恢复时不重复重放
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN journal_seq INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration MIGRATION_20_21 = new Migration(20, 21) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // 版本21：导入中的暂存笔记本单独标记，不出现在回收站中
+            database.execSQL("ALTER TABLE notebooks ADD COLUMN is_staging INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * 把旧版JSON模板数据（{"headers":[...],"rows":N}）转换为二进制格式，无法解析时只保留行列数
+     */
+    private static byte[] legacyTemplatePayload(String json, int rows, int cols) {
+        List<String> headers = new ArrayList<>();
+        try {
+            JSONObject data = new JSONObject(json);
+            JSONArray names = data.optJSONArray("headers");
+            if (names != null) {
+                for (int i = 0; i < names.length(); i++) {
+                    headers.add(names.optString(i));
+                }
+            }
+            rows = data.optInt("rows", rows);
+        } catch (JSONException e) {
+            Log.w("AppDatabase", "Unreadable template data, keeping size only", e);
+        }
+        return TemplatePayload.ofHeaders(headers, rows, Math.max(cols, headers.size()));
+    }
+}
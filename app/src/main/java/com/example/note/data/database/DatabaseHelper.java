@@ -5,6 +5,11 @@ import android.util.Log;
 
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.example.note.data.model.SearchHit;
+import com.example.note.data.model.SearchPage;
+import com.example.note.data.repository.NotebookPurger;
+import com.example.note.data.search.SearchIndex;
+
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -17,10 +22,16 @@ public class DatabaseHelper {
     private static final String TAG = "DatabaseHelper";
     private static final Executor executor = Executors.newSingleThreadExecutor();
     
+    private static final int MAX_SEARCH_RESULTS = 1000;
+    
     private final AppDatabase database;
+    private final SearchIndex searchIndex;
+    private final NotebookPurger purger;
     
     public DatabaseHelper(Context context) {
         this.database = AppDatabase.getInstance(context);
+        this.searchIndex = SearchIndex.getInstance(context);
+        this.purger = NotebookPurger.getInstance(context);
     }
     
     /**
@@ -39,6 +50,7 @@ public class DatabaseHelper {
                 
                 // 验证触发器是否存在
                 verifyTriggers(db);
+                verifyStatsTriggers(db);
                 
                 // 优化数据库
                 optimizeDatabase(db);
@@ -56,7 +68,7 @@ public class DatabaseHelper {
     private void verifyFtsTable(SupportSQLiteDatabase db) {
         try {
             // 检查FTS表是否存在
-            android.database.Cursor cursor = db.query("SELECT name FROM sqlite_master WHERE type='table' AND name='cells_fts'");
+            android.database.Cursor cursor = db.query("SELECT name FROM sqlite_master WHERE type='table' AND name='search_fts'");
             boolean ftsExists = cursor.moveToFirst();
             cursor.close();
             
@@ -72,26 +84,12 @@ public class DatabaseHelper {
     }
     
     /**
-     * 创建FTS表和相关触发器
+     * 创建FTS表和相关触发器，并标记现有数据待索引
      */
     private void createFtsTable(SupportSQLiteDatabase db) {
         try {
-            // 创建FTS虚拟表
-            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS cells_fts USING fts4(content=cells, content)");
-            
-            // 创建触发器
-            db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_insert AFTER INSERT ON cells BEGIN " +
-                    "INSERT INTO cells_fts(docid, content) VALUES (new.id, new.content); END;");
-            
-            db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_update AFTER UPDATE ON cells BEGIN " +
-                    "UPDATE cells_fts SET content = new.content WHERE docid = new.id; END;");
-            
-            db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_delete AFTER DELETE ON cells BEGIN " +
-                    "DELETE FROM cells_fts WHERE docid = old.id; END;");
-            
-            // 初始化FTS表数据
-            db.execSQL("INSERT INTO cells_fts(docid, content) SELECT id, content FROM cells WHERE content IS NOT NULL AND content != ''");
-            
+            SearchIndex.dropLegacySchema(db);
+            SearchIndex.createSchema(db);
             Log.d(TAG, "FTS table and triggers created successfully");
         } catch (Exception e) {
             Log.e(TAG, "Failed to create FTS table", e);
@@ -104,9 +102,12 @@ public class DatabaseHelper {
     private void verifyTriggers(SupportSQLiteDatabase db) {
         try {
             String[] triggerNames = {
-                "cells_fts_insert",
-                "cells_fts_update", 
-                "cells_fts_delete"
+                "search_cells_ai",
+                "search_cells_au",
+                "search_cells_ad",
+                "search_notebooks_ai",
+                "search_notebooks_au",
+                "search_notebooks_ad"
             };
             
             for (String triggerName : triggerNames) {
@@ -115,11 +116,12 @@ public class DatabaseHelper {
                 cursor.close();
                 
                 if (!exists) {
+                    // 触发器缺失期间的修改没有记录，重新创建时一并全量标记
                     Log.w(TAG, "Trigger not found: " + triggerName);
-                    createMissingTrigger(db, triggerName);
-                } else {
-                    Log.d(TAG, "Trigger verified: " + triggerName);
+                    createFtsTable(db);
+                    return;
                 }
+                Log.d(TAG, "Trigger verified: " + triggerName);
             }
         } catch (Exception e) {
             Log.e(TAG, "Failed to verify triggers", e);
@@ -127,28 +129,32 @@ public class DatabaseHelper {
     }
     
     /**
-     * 创建缺失的触发器
+     * 验证笔记本统计触发器，缺失时重建并全量重算
      */
-    private void createMissingTrigger(SupportSQLiteDatabase db, String triggerName) {
+    private void verifyStatsTriggers(SupportSQLiteDatabase db) {
         try {
-            switch (triggerName) {
-                case "cells_fts_insert":
-                    db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_insert AFTER INSERT ON cells BEGIN " +
-                            "INSERT INTO cells_fts(docid, content) VALUES (new.id, new.content); END;");
-                    break;
-                case "cells_fts_update":
-                    db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_update AFTER UPDATE ON cells BEGIN " +
-                            "UPDATE cells_fts SET content = new.content WHERE docid = new.id; END;");
-                    break;
-                case "cells_fts_delete":
-                    db.execSQL("CREATE TRIGGER IF NOT EXISTS cells_fts_delete AFTER DELETE ON cells BEGIN " +
-                            "DELETE FROM cells_fts WHERE docid = old.id; END;");
-                    break;
-
+            for (String triggerName : NotebookStats.TRIGGER_NAMES) {
+                android.database.Cursor cursor = db.query("SELECT name FROM sqlite_master WHERE type='trigger' AND name=?", new String[]{triggerName});
+                boolean exists = cursor.moveToFirst();
+                cursor.close();
+                
+                if (!exists) {
+                    Log.w(TAG, "Trigger not found: " + triggerName);
+                    db.beginTransaction();
+                    try {
+                        NotebookStats.dropTriggers(db);
+                        NotebookStats.createTriggers(db);
+                        NotebookStats.recompute(db);
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                    return;
+                }
             }
-            Log.d(TAG, "Created missing trigger: " + triggerName);
+            Log.d(TAG, "Stats triggers verified");
         } catch (Exception e) {
-            Log.e(TAG, "Failed to create trigger: " + triggerName, e);
+            Log.e(TAG, "Failed to verify stats triggers", e);
         }
     }
     
@@ -160,11 +166,10 @@ public class DatabaseHelper {
             // 分析表统计信息
             db.execSQL("ANALYZE");
             
-            // 重建FTS索引
-            db.execSQL("INSERT INTO cells_fts(cells_fts) VALUES('rebuild')");
+            // 合并FTS索引段
+            searchIndex.optimize(db);
             
-            // 清理未使用的页面
-            db.execSQL("VACUUM");
+            // 不在启动时整体VACUUM：空闲页由维护任务VACUUM在充电且空闲时回收（首次执行时切换为增量回收模式）
             
             Log.d(TAG, "Database optimization completed");
         } catch (Exception e) {
@@ -173,28 +178,20 @@ public class DatabaseHelper {
     }
     
     /**
-     * 执行全文搜索
+     * 执行全文搜索，返回命中的单元格id
      */
     public void performFullTextSearch(String query, SearchCallback callback) {
         executor.execute(() -> {
             try {
-                SupportSQLiteDatabase db = database.getOpenHelper().getReadableDatabase();
-                
-                // 构建FTS查询
-                String ftsQuery = "SELECT cells.* FROM cells " +
-                        "JOIN cells_fts ON cells.id = cells_fts.docid " +
-                        "WHERE cells_fts MATCH ? " +
-                        "ORDER BY cells.updated_at DESC";
-                
-                android.database.Cursor cursor = db.query(ftsQuery, new String[]{query + "*"});
+                SearchPage page = searchIndex.searchSync(query, 0, null, MAX_SEARCH_RESULTS);
                 
                 // 处理搜索结果
                 java.util.List<Long> cellIds = new java.util.ArrayList<>();
-                while (cursor.moveToNext()) {
-                    long cellId = cursor.getLong(cursor.getColumnIndexOrThrow("id"));
-                    cellIds.add(cellId);
+                for (SearchHit hit : page.hits) {
+                    if (hit.kind == SearchHit.KIND_CELL) {
+                        cellIds.add(hit.cellId);
+                    }
                 }
-                cursor.close();
                 
                 // 回调结果
                 if (callback != null) {
@@ -219,10 +216,13 @@ public class DatabaseHelper {
             try {
                 long thirtyDaysAgo = System.currentTimeMillis() - (30L * 24 * 60 * 60 * 1000);
                 
-                // 清理回收站中30天前删除的笔记本
-                int deletedNotebooks = database.notebookDao().deleteExpiredNotebooks(thirtyDaysAgo);
+                // 清理回收站中30天前删除的笔记本：标记后分块清除
+                int expiredNotebooks = database.notebookDao().markExpiredPurging(thirtyDaysAgo);
+                if (expiredNotebooks > 0) {
+                    purger.resumePending();
+                }
                 
-                Log.d(TAG, "Cleanup completed, deleted " + deletedNotebooks + " expired notebooks");
+                Log.d(TAG, "Cleanup completed, " + expiredNotebooks + " expired notebooks marked for purge");
             } catch (Exception e) {
                 Log.e(TAG, "Failed to cleanup expired data", e);
             }
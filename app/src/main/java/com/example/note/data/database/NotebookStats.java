@@ -0,0 +1,95 @@
+package com.example.note.data.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * 笔记本统计列
+ * notebooks上的行数、列数、单元格数、非空数、图片数和最后编辑时间由cells上的触发器增量维护，
+ * 主页列表随笔记本一起读出，不再查询cells。
+ * 删除或下移的单元格恰好在边界上时才重新取MAX，借助(notebook_id, row_index)和(notebook_id, col_index)索引只需一次查找。
+ * 正在清除的笔记本不再维护，分块删除时既省去更新，也不会让列表随每块删除刷新。
+ */
+public final class NotebookStats {
+
+    static final String[] TRIGGER_NAMES = {"stats_cells_ai", "stats_cells_au", "stats_cells_ad"};
+
+    private static final String NON_EMPTY_NEW =
+            "(new.content IS NOT NULL AND new.content != '' OR new.image_id IS NOT NULL AND new.image_id != '')";
+    private static final String NON_EMPTY_OLD =
+            "(old.content IS NOT NULL AND old.content != '' OR old.image_id IS NOT NULL AND old.image_id != '')";
+    private static final String IMAGE_NEW = "(new.image_id IS NOT NULL AND new.image_id != '')";
+    private static final String IMAGE_OLD = "(old.image_id IS NOT NULL AND old.image_id != '')";
+
+    private static final String MAX_ROW =
+            "(SELECT COALESCE(MAX(row_index), -1) + 1 FROM cells WHERE notebook_id = old.notebook_id)";
+    private static final String MAX_COL =
+            "(SELECT COALESCE(MAX(col_index), -1) + 1 FROM cells WHERE notebook_id = old.notebook_id)";
+
+    // 与DateUtils.now()一致的毫秒时间戳
+    private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    private NotebookStats() {
+    }
+
+    /**
+     * 创建维护统计列的触发器
+     */
+    public static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS stats_cells_ai AFTER INSERT ON cells BEGIN " +
+                "UPDATE notebooks SET " +
+                "row_count = MAX(row_count, new.row_index + 1), " +
+                "col_count = MAX(col_count, new.col_index + 1), " +
+                "cell_count = cell_count + 1, " +
+                "non_empty_count = non_empty_count + " + NON_EMPTY_NEW + ", " +
+                "image_count = image_count + " + IMAGE_NEW + ", " +
+                "last_edit_at = MAX(last_edit_at, new.updated_at) " +
+                "WHERE id = new.notebook_id AND is_purging = 0; END");
+
+        // 移动行列时边界上的单元格往回移才需要重新取MAX，往外移直接扩大
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS stats_cells_au " +
+                "AFTER UPDATE OF row_index, col_index, content, image_id, updated_at ON cells BEGIN " +
+                "UPDATE notebooks SET " +
+                "row_count = CASE WHEN new.row_index < old.row_index AND old.row_index + 1 >= row_count " +
+                "THEN " + MAX_ROW + " ELSE MAX(row_count, new.row_index + 1) END, " +
+                "col_count = CASE WHEN new.col_index < old.col_index AND old.col_index + 1 >= col_count " +
+                "THEN " + MAX_COL + " ELSE MAX(col_count, new.col_index + 1) END, " +
+                "non_empty_count = non_empty_count + " + NON_EMPTY_NEW + " - " + NON_EMPTY_OLD + ", " +
+                "image_count = image_count + " + IMAGE_NEW + " - " + IMAGE_OLD + ", " +
+                "last_edit_at = MAX(last_edit_at, new.updated_at) " +
+                "WHERE id = new.notebook_id AND is_purging = 0; END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS stats_cells_ad AFTER DELETE ON cells BEGIN " +
+                "UPDATE notebooks SET " +
+                "row_count = CASE WHEN old.row_index + 1 >= row_count THEN " + MAX_ROW + " ELSE row_count END, " +
+                "col_count = CASE WHEN old.col_index + 1 >= col_count THEN " + MAX_COL + " ELSE col_count END, " +
+                "cell_count = cell_count - 1, " +
+                "non_empty_count = non_empty_count - " + NON_EMPTY_OLD + ", " +
+                "image_count = image_count - " + IMAGE_OLD + ", " +
+                "last_edit_at = MAX(last_edit_at, " + NOW_MILLIS + ") " +
+                "WHERE id = old.notebook_id AND is_purging = 0; END");
+    }
+
+    /**
+     * 从cells全量重算统计列，用于升级和触发器缺失后的修复
+     */
+    public static void recompute(SupportSQLiteDatabase db) {
+        db.execSQL("UPDATE notebooks SET " +
+                "row_count = (SELECT COALESCE(MAX(row_index), -1) + 1 FROM cells WHERE notebook_id = notebooks.id), " +
+                "col_count = (SELECT COALESCE(MAX(col_index), -1) + 1 FROM cells WHERE notebook_id = notebooks.id), " +
+                "cell_count = (SELECT COUNT(*) FROM cells WHERE notebook_id = notebooks.id), " +
+                "non_empty_count = (SELECT COUNT(*) FROM cells WHERE notebook_id = notebooks.id AND " +
+                "(content IS NOT NULL AND content != '' OR image_id IS NOT NULL AND image_id != '')), " +
+                "image_count = (SELECT COUNT(*) FROM cells WHERE notebook_id = notebooks.id AND " +
+                "image_id IS NOT NULL AND image_id != ''), " +
+                "last_edit_at = COALESCE((SELECT MAX(updated_at) FROM cells WHERE notebook_id = notebooks.id), updated_at)");
+    }
+
+    /**
+     * 删除统计触发器
+     */
+    public static void dropTriggers(SupportSQLiteDatabase db) {
+        for (String name : TRIGGER_NAMES) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + name);
+        }
+    }
+}
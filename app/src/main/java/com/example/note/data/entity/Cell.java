@@ -6,6 +6,7 @@ import androidx.room.ForeignKey;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import com.example.note.data.entity.CellType;
+import com.example.note.util.CellValueUtils;
 
 /**
  * 单元格实体类
@@ -22,9 +23,15 @@ import com.example.note.data.entity.CellType;
         )
     },
     indices = {
-        @Index(value = "notebook_id"),
+        // 按笔记本查找由唯一索引的前缀覆盖；这个索引让统计触发器取最大列号只需一次查找，
+        // 按列的数值范围筛选和数值排序也直接走它
+        @Index(value = {"notebook_id", "col_index", "num_value"}),
+        // 按列读取、删除和移动单元格时按行号顺序走索引，不必扫描整个笔记本
+        @Index(value = {"notebook_id", "col_index", "row_index"}),
         @Index(value = {"notebook_id", "row_index", "col_index"}, unique = true),
-        @Index(value = "updated_at")
+        @Index(value = "updated_at"),
+        // 图片清理按image_id查找；没有图片的单元格为NULL
+        @Index(value = "image_id")
     }
 )
 public class Cell {
@@ -45,26 +52,22 @@ public class Cell {
     @ColumnInfo(name = "content")
     private String content;
     
-    @ColumnInfo(name = "text_color")
-    private String textColor;
+    // 样式引用cell_styles，相同外观的单元格共享同一行
+    @ColumnInfo(name = "style_id", defaultValue = "1")
+    private long styleId;
     
-    @ColumnInfo(name = "background_color")
-    private String backgroundColor;
-    
-    @ColumnInfo(name = "is_bold")
-    private boolean isBold;
+    @ColumnInfo(name = "image_id")
+    private String imageId;
     
-    @ColumnInfo(name = "is_italic")
-    private boolean isItalic;
+    // 由content派生的类型化取值（CellValueUtils），供SQL排序和范围筛选使用；不是数字/日期时为NULL
+    @ColumnInfo(name = "num_value")
+    private Double numValue;
     
-    @ColumnInfo(name = "text_size")
-    private float textSize;
+    @ColumnInfo(name = "date_value")
+    private Long dateValue;
     
-    @ColumnInfo(name = "text_alignment")
-    private String textAlignment;
-    
-    @ColumnInfo(name = "image_id")
-    private String imageId;
+    // content改变后两个取值在读取时才重新解析，加载大量单元格时不逐个解析
+    private transient boolean typedValuesStale;
     
     @ColumnInfo(name = "created_at")
     private long createdAt;
@@ -77,12 +80,7 @@ public class Cell {
         this.createdAt = System.currentTimeMillis();
         this.updatedAt = this.createdAt;
         this.content = "";
-        this.textColor = "#000000";
-        this.backgroundColor = "#FFFFFF";
-        this.isBold = false;
-        this.isItalic = false;
-        this.textSize = 14.0f;
-        this.textAlignment = "LEFT";
+        this.styleId = CellStyle.DEFAULT_ID;
     }
     
     public Cell(long notebookId, int rowIndex, int colIndex) {
@@ -94,7 +92,7 @@ public class Cell {
     
     public Cell(long notebookId, int rowIndex, int colIndex, String content) {
         this(notebookId, rowIndex, colIndex);
-        this.content = content;
+        setTypedContent(content);
     }
     
     // Getter和Setter方法
@@ -137,62 +135,35 @@ public class Cell {
     }
     
     public void setContent(String content) {
-        this.content = content;
-        this.updatedAt = System.currentTimeMillis();
-    }
-    
-    public String getTextColor() {
-        return textColor;
-    }
-    
-    public void setTextColor(String textColor) {
-        this.textColor = textColor;
-        this.updatedAt = System.currentTimeMillis();
-    }
-    
-    public String getBackgroundColor() {
-        return backgroundColor;
-    }
-    
-    public void setBackgroundColor(String backgroundColor) {
-        this.backgroundColor = backgroundColor;
+        setTypedContent(content);
         this.updatedAt = System.currentTimeMillis();
     }
     
-    public boolean isBold() {
-        return isBold;
+    public long getStyleId() {
+        return styleId;
     }
     
-    public void setBold(boolean bold) {
-        isBold = bold;
+    public void setStyleId(long styleId) {
+        this.styleId = styleId;
         this.updatedAt = System.currentTimeMillis();
     }
     
-    public boolean isItalic() {
-        return isItalic;
+    public Double getNumValue() {
+        refreshTypedValues();
+        return numValue;
     }
     
-    public void setItalic(boolean italic) {
-        isItalic = italic;
-        this.updatedAt = System.currentTimeMillis();
+    public void setNumValue(Double numValue) {
+        this.numValue = numValue;
     }
     
-    public float getTextSize() {
-        return textSize;
-    }
-    
-    public void setTextSize(float textSize) {
-        this.textSize = textSize;
-        this.updatedAt = System.currentTimeMillis();
+    public Long getDateValue() {
+        refreshTypedValues();
+        return dateValue;
     }
     
-    public String getTextAlignment() {
-        return textAlignment;
-    }
-    
-    public void setTextAlignment(String textAlignment) {
-        this.textAlignment = textAlignment;
-        this.updatedAt = System.currentTimeMillis();
+    public void setDateValue(Long dateValue) {
+        this.dateValue = dateValue;
     }
     
     public String getImageId() {
@@ -246,7 +217,7 @@ public class Cell {
      * 清空单元格内容
      */
     public void clear() {
-        this.content = "";
+        setTypedContent("");
         this.imageId = null;
         this.updatedAt = System.currentTimeMillis();
     }
@@ -255,12 +226,7 @@ public class Cell {
      * 重置格式为默认值
      */
     public void resetFormat() {
-        this.textColor = "#000000";
-        this.backgroundColor = "#FFFFFF";
-        this.isBold = false;
-        this.isItalic = false;
-        this.textSize = 14.0f;
-        this.textAlignment = "LEFT";
+        this.styleId = CellStyle.DEFAULT_ID;
         this.updatedAt = System.currentTimeMillis();
     }
     
@@ -284,10 +250,26 @@ public class Cell {
      * 设置单元格值（用于适配器）
      */
     public void setValue(String value) {
-        this.content = value;
+        setTypedContent(value);
         touch();
     }
     
+    /**
+     * 设置内容，类型化取值标记为待重新解析
+     */
+    private void setTypedContent(String content) {
+        this.content = content;
+        this.typedValuesStale = true;
+    }
+    
+    private void refreshTypedValues() {
+        if (typedValuesStale) {
+            numValue = CellValueUtils.parseNumber(content);
+            dateValue = CellValueUtils.parseDate(content);
+            typedValuesStale = false;
+        }
+    }
+    
     /**
      * 推断单元格类型
      */
@@ -350,11 +332,7 @@ public class Cell {
                 ", rowIndex=" + rowIndex +
                 ", colIndex=" + colIndex +
                 ", content='" + content + '\'' +
-                ", textColor='" + textColor + '\'' +
-                ", backgroundColor='" + backgroundColor + '\'' +
-                ", isBold=" + isBold +
-                ", isItalic=" + isItalic +
-                ", textSize=" + textSize +
+                ", styleId=" + styleId +
                 ", imageId='" + imageId + '\'' +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
@@ -0,0 +1,164 @@
+package com.example.note.data.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 单元格样式实体类
+ * 对应数据库表：cell_styles
+ * 相同的样式组合只存一行，单元格通过style_id引用；样式行只增不删，id在整个数据库内稳定。
+ * 构造时统一规范化（空值取默认值、颜色和对齐方式转大写），保证相同外观得到同一个id。
+ */
+@Entity(
+    tableName = "cell_styles",
+    indices = {
+        @Index(value = {"text_color", "background_color", "is_bold", "is_italic", "text_size", "text_alignment"},
+               unique = true)
+    }
+)
+public class CellStyle {
+
+    /** 默认样式的id，建库和升级时固定插入 */
+    public static final long DEFAULT_ID = 1;
+
+    public static final String DEFAULT_TEXT_COLOR = "#000000";
+    public static final String DEFAULT_BACKGROUND_COLOR = "#FFFFFF";
+    public static final float DEFAULT_TEXT_SIZE = 14.0f;
+    public static final String DEFAULT_ALIGNMENT = "LEFT";
+
+    public static final CellStyle DEFAULT = new CellStyle(DEFAULT_ID, DEFAULT_TEXT_COLOR, DEFAULT_BACKGROUND_COLOR,
+            false, false, DEFAULT_TEXT_SIZE, DEFAULT_ALIGNMENT);
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    private final long id;
+
+    @ColumnInfo(name = "text_color")
+    private final String textColor;
+
+    @ColumnInfo(name = "background_color")
+    private final String backgroundColor;
+
+    @ColumnInfo(name = "is_bold")
+    private final boolean isBold;
+
+    @ColumnInfo(name = "is_italic")
+    private final boolean isItalic;
+
+    @ColumnInfo(name = "text_size")
+    private final float textSize;
+
+    @ColumnInfo(name = "text_alignment")
+    private final String textAlignment;
+
+    // 构造函数（Room读取时使用，参数名与字段名一致）
+    public CellStyle(long id, String textColor, String backgroundColor, boolean isBold, boolean isItalic,
+                     float textSize, String textAlignment) {
+        this.id = id;
+        this.textColor = normalize(textColor, DEFAULT_TEXT_COLOR);
+        this.backgroundColor = normalize(backgroundColor, DEFAULT_BACKGROUND_COLOR);
+        this.isBold = isBold;
+        this.isItalic = isItalic;
+        this.textSize = textSize > 0 ? textSize : DEFAULT_TEXT_SIZE;
+        this.textAlignment = normalize(textAlignment, DEFAULT_ALIGNMENT);
+    }
+
+    /**
+     * 尚未入库的样式（id为0）
+     */
+    @Ignore
+    public CellStyle(String textColor, String backgroundColor, boolean isBold, boolean isItalic,
+                     float textSize, String textAlignment) {
+        this(0, textColor, backgroundColor, isBold, isItalic, textSize, textAlignment);
+    }
+
+    private static String normalize(String value, String fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? fallback : trimmed.toUpperCase(Locale.ROOT);
+    }
+
+    // Getter方法
+    public long getId() {
+        return id;
+    }
+
+    public String getTextColor() {
+        return textColor;
+    }
+
+    public String getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    public boolean isBold() {
+        return isBold;
+    }
+
+    public boolean isItalic() {
+        return isItalic;
+    }
+
+    public float getTextSize() {
+        return textSize;
+    }
+
+    public String getTextAlignment() {
+        return textAlignment;
+    }
+
+    /**
+     * 带上数据库分配的id
+     */
+    public CellStyle withId(long newId) {
+        return new CellStyle(newId, textColor, backgroundColor, isBold, isItalic, textSize, textAlignment);
+    }
+
+    /**
+     * 与默认外观相同
+     */
+    public boolean isDefault() {
+        return DEFAULT.equals(this);
+    }
+
+    /**
+     * 只比较样式本身，不比较id
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CellStyle)) return false;
+        CellStyle that = (CellStyle) o;
+        return isBold == that.isBold && isItalic == that.isItalic
+                && Float.compare(textSize, that.textSize) == 0
+                && textColor.equals(that.textColor)
+                && backgroundColor.equals(that.backgroundColor)
+                && textAlignment.equals(that.textAlignment);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(textColor, backgroundColor, isBold, isItalic, textSize, textAlignment);
+    }
+
+    @Override
+    public String toString() {
+        return "CellStyle{" +
+                "id=" + id +
+                ", textColor='" + textColor + '\'' +
+                ", backgroundColor='" + backgroundColor + '\'' +
+                ", isBold=" + isBold +
+                ", isItalic=" + isItalic +
+                ", textSize=" + textSize +
+                ", textAlignment='" + textAlignment + '\'' +
+                '}';
+    }
+}
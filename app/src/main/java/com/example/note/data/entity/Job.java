@@ -0,0 +1,193 @@
+package com.example.note.data.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 后台任务实体类
+ * 对应数据库表：jobs
+ * 记录任务的参数、检查点和进度；任务由WorkManager调度，进程被杀后从最后提交的检查点继续。
+ */
+@Entity(
+    tableName = "jobs",
+    indices = {
+        @Index(value = {"state", "updated_at"}),
+        @Index(value = "unique_key")
+    }
+)
+public class Job {
+
+    public static final String STATE_PENDING = "PENDING";
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_SUCCEEDED = "SUCCEEDED";
+    public static final String STATE_FAILED = "FAILED";
+    public static final String STATE_CANCELLED = "CANCELLED";
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    private long id;
+
+    // 任务类型，JobType的名称
+    @ColumnInfo(name = "type")
+    private String type;
+
+    // 去重键：同一个键同时只有一个未结束的任务，可为空
+    @ColumnInfo(name = "unique_key")
+    private String uniqueKey;
+
+    // 参数和检查点，JSON对象
+    @ColumnInfo(name = "params")
+    private String params;
+
+    @ColumnInfo(name = "checkpoint")
+    private String checkpoint;
+
+    @ColumnInfo(name = "state")
+    private String state;
+
+    // 已完成的工作量和总量，总量未知时为0
+    @ColumnInfo(name = "progress")
+    private long progress;
+
+    @ColumnInfo(name = "total")
+    private long total;
+
+    // 失败原因
+    @ColumnInfo(name = "message")
+    private String message;
+
+    // 已开始执行的次数（包括恢复执行）
+    @ColumnInfo(name = "attempts")
+    private int attempts;
+
+    @ColumnInfo(name = "created_at")
+    private long createdAt;
+
+    @ColumnInfo(name = "updated_at")
+    private long updatedAt;
+
+    // 构造函数
+    public Job() {
+        this.state = STATE_PENDING;
+        this.createdAt = System.currentTimeMillis();
+        this.updatedAt = this.createdAt;
+    }
+
+    /**
+     * 已经结束（成功、失败或取消），不会再执行
+     */
+    public boolean isFinished() {
+        return STATE_SUCCEEDED.equals(state) || STATE_FAILED.equals(state) || STATE_CANCELLED.equals(state);
+    }
+
+    /**
+     * 按总量估算的百分比，总量未知时为-1
+     */
+    public int getPercent() {
+        return total > 0 ? (int) Math.min(100, progress * 100 / total) : -1;
+    }
+
+    // Getter和Setter方法
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getUniqueKey() {
+        return uniqueKey;
+    }
+
+    public void setUniqueKey(String uniqueKey) {
+        this.uniqueKey = uniqueKey;
+    }
+
+    public String getParams() {
+        return params;
+    }
+
+    public void setParams(String params) {
+        this.params = params;
+    }
+
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getProgress() {
+        return progress;
+    }
+
+    public void setProgress(long progress) {
+        this.progress = progress;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Job{id=" + id + ", type=" + type + ", state=" + state + ", progress=" + progress + "/" + total + "}";
+    }
+}
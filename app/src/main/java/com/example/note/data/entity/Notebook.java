@@ -14,8 +14,15 @@ import androidx.room.PrimaryKey;
     indices = {
         @Index(value = "created_at"),
         @Index(value = "updated_at"),
-        @Index(value = "is_deleted"),
-        @Index(value = "is_pinned")
+        @Index(value = "is_pinned"),
+        // 主页分页列表：每段（置顶/非置顶）按时间顺序扫描索引
+        @Index(value = {"is_deleted", "is_pinned", "updated_at"}),
+        @Index(value = {"is_deleted", "is_pinned", "created_at"}),
+        // 不分置顶的最近列表和时间范围查询
+        @Index(value = {"is_deleted", "updated_at"}),
+        @Index(value = {"is_deleted", "created_at"}),
+        // 回收站按删除时间排序，过期清理按删除时间取范围
+        @Index(value = {"is_deleted", "is_purging", "deleted_at"})
     }
 )
 public class Notebook {
@@ -51,6 +58,37 @@ public class Notebook {
     @ColumnInfo(name = "pinned_at")
     private Long pinnedAt;
     
+    // 永久删除进行中：子表由NotebookPurger分块删除，删完后才删除本行
+    @ColumnInfo(name = "is_purging", defaultValue = "0")
+    private boolean isPurging;
+    
+    // 导入中的暂存笔记本：不出现在列表和回收站中，导入完成时才公开；进程被杀留下的由NotebookPurger启动时清除
+    @ColumnInfo(name = "is_staging", defaultValue = "0")
+    private boolean isStaging;
+    
+    // 以下统计列由cells上的触发器维护（见NotebookStats），不要在Java侧修改后整行写回
+    @ColumnInfo(name = "row_count", defaultValue = "0")
+    private int rowCount;
+    
+    @ColumnInfo(name = "col_count", defaultValue = "0")
+    private int columnCount;
+    
+    @ColumnInfo(name = "cell_count", defaultValue = "0")
+    private int cellCount;
+    
+    @ColumnInfo(name = "non_empty_count", defaultValue = "0")
+    private int nonEmptyCount;
+    
+    @ColumnInfo(name = "image_count", defaultValue = "0")
+    private int imageCount;
+    
+    @ColumnInfo(name = "last_edit_at", defaultValue = "0")
+    private long lastEditAt;
+    
+    // 已写入数据库的最后一条编辑日志序号，重放时跳过不大于它的记录
+    @ColumnInfo(name = "journal_seq", defaultValue = "0")
+    private long journalSeq;
+    
     // 构造函数
     public Notebook() {
         this.createdAt = System.currentTimeMillis();
@@ -161,6 +199,78 @@ public class Notebook {
         this.pinnedAt = pinnedAt;
     }
     
+    public boolean isPurging() {
+        return isPurging;
+    }
+    
+    public void setPurging(boolean purging) {
+        isPurging = purging;
+    }
+    
+    public boolean isStaging() {
+        return isStaging;
+    }
+    
+    public void setStaging(boolean staging) {
+        isStaging = staging;
+    }
+    
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+    
+    public int getColumnCount() {
+        return columnCount;
+    }
+    
+    public void setColumnCount(int columnCount) {
+        this.columnCount = columnCount;
+    }
+    
+    public int getCellCount() {
+        return cellCount;
+    }
+    
+    public void setCellCount(int cellCount) {
+        this.cellCount = cellCount;
+    }
+    
+    public int getNonEmptyCount() {
+        return nonEmptyCount;
+    }
+    
+    public void setNonEmptyCount(int nonEmptyCount) {
+        this.nonEmptyCount = nonEmptyCount;
+    }
+    
+    public int getImageCount() {
+        return imageCount;
+    }
+    
+    public void setImageCount(int imageCount) {
+        this.imageCount = imageCount;
+    }
+    
+    public long getLastEditAt() {
+        return lastEditAt;
+    }
+    
+    public void setLastEditAt(long lastEditAt) {
+        this.lastEditAt = lastEditAt;
+    }
+    
+    public long getJournalSeq() {
+        return journalSeq;
+    }
+    
+    public void setJournalSeq(long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+    
     /**
      * 软删除
      */
@@ -208,6 +318,8 @@ public class Notebook {
                 ", deletedAt=" + deletedAt +
                 ", isPinned=" + isPinned +
                 ", pinnedAt=" + pinnedAt +
+                ", rowCount=" + rowCount +
+                ", columnCount=" + columnCount +
                 '}';
     }
 }
\ No newline at end of file
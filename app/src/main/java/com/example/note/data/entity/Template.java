@@ -34,8 +34,8 @@ public class Template {
     @ColumnInfo(name = "cols")
     private int cols;
     
-    @ColumnInfo(name = "data")
-    private String data; // JSON格式的模板数据
+    @ColumnInfo(name = "data", typeAffinity = ColumnInfo.BLOB)
+    private byte[] data; // 二进制模板数据，格式见TemplatePayload
     
     @ColumnInfo(name = "is_system")
     private boolean isSystem; // 是否为系统预置模板
@@ -59,7 +59,7 @@ public class Template {
         this.cols = cols;
     }
     
-    public Template(String name, String description, int rows, int cols, String data, boolean isSystem) {
+    public Template(String name, String description, int rows, int cols, byte[] data, boolean isSystem) {
         this(name, description, rows, cols);
         this.data = data;
         this.isSystem = isSystem;
@@ -106,11 +106,11 @@ public class Template {
         this.cols = cols;
     }
     
-    public String getData() {
+    public byte[] getData() {
         return data;
     }
     
-    public void setData(String data) {
+    public void setData(byte[] data) {
         this.data = data;
     }
     
@@ -138,7 +138,7 @@ public class Template {
                 ", description='" + description + '\'' +
                 ", rows=" + rows +
                 ", cols=" + cols +
-                ", data='" + data + '\'' +
+                ", data=" + (data != null ? data.length + " bytes" : "null") +
                 ", isSystem=" + isSystem +
                 ", createdAt=" + createdAt +
                 '}';
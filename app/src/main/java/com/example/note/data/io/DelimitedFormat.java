@@ -0,0 +1,207 @@
+package com.example.note.data.io;
+
+import com.example.note.data.entity.Column;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * CSV/TSV文件格式识别
+ * 只读文件开头的一段样本：按BOM和UTF-8合法性判断编码（不合法时按GBK），
+ * 比较各候选分隔符切出的每行字段数是否一致来确定分隔符，表头和列类型由TableSniffer根据样本各行判断。
+ */
+public final class DelimitedFormat {
+
+    /** 识别格式时读取的字节数 */
+    public static final int SAMPLE_SIZE = 64 * 1024;
+
+    private static final int SAMPLE_ROWS = 200;
+    private static final char[] CANDIDATES = {',', '\t', ';', '|'};
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final Charset charset;
+    private final int bomLength;
+    private final char delimiter;
+    private final boolean header;
+    private final List<String> headerNames;
+    private final List<String> columnTypes;
+
+    private DelimitedFormat(Charset charset, int bomLength, char delimiter, boolean header,
+                            List<String> headerNames, List<String> columnTypes) {
+        this.charset = charset;
+        this.bomLength = bomLength;
+        this.delimiter = delimiter;
+        this.header = header;
+        this.headerNames = headerNames;
+        this.columnTypes = columnTypes;
+    }
+
+    /**
+     * 根据文件开头的样本识别格式
+     * @param sample 样本字节
+     * @param length 样本长度
+     * @param complete 样本是否已包含整个文件（否则最后一行可能不完整，不参与判断）
+     * @param fileName 文件名，扩展名为.tsv/.tab时优先使用制表符，可以为null
+     */
+    public static DelimitedFormat detect(byte[] sample, int length, boolean complete, String fileName) {
+        int bomLength = startsWith(sample, length, UTF8_BOM) ? UTF8_BOM.length : 0;
+        Charset charset = bomLength > 0 || isUtf8(sample, bomLength, length, complete)
+                ? StandardCharsets.UTF_8 : Charset.forName("GBK");
+        String text = new String(sample, bomLength, length - bomLength, charset);
+
+        char delimiter = detectDelimiter(text, complete, fileName);
+        List<String[]> rows = sampleRows(text, delimiter, complete);
+        boolean header = TableSniffer.hasHeader(rows);
+        List<String> headerNames = header && !rows.isEmpty()
+                ? Arrays.asList(rows.get(0)) : new ArrayList<>();
+        List<String> columnTypes = TableSniffer.inferColumnTypes(header ? rows.subList(1, rows.size()) : rows);
+        return new DelimitedFormat(charset, bomLength, delimiter, header, headerNames, columnTypes);
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * 文件开头需要跳过的BOM字节数
+     */
+    public int getBomLength() {
+        return bomLength;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * 第一行是否为表头
+     */
+    public boolean hasHeader() {
+        return header;
+    }
+
+    public List<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    /**
+     * 从样本推断的各列类型（Column.ColumnType的值），样本中没有的列为TEXT
+     */
+    public String getColumnType(int col) {
+        return col < columnTypes.size() ? columnTypes.get(col) : Column.ColumnType.TEXT.getValue();
+    }
+
+    /**
+     * 样本是否为合法的UTF-8；样本被截断时末尾不完整的字符不算错误
+     */
+    static boolean isUtf8(byte[] bytes, int offset, int length, boolean complete) {
+        int end = length;
+        if (!complete) {
+            // 退回到最后一个字符的起始字节之前
+            int i = length - 1;
+            while (i >= offset && i > length - 4 && (bytes[i] & 0xC0) == 0x80) {
+                i--;
+            }
+            if (i >= offset && (bytes[i] & 0x80) != 0) {
+                end = i;
+            }
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            decoder.decode(ByteBuffer.wrap(bytes, offset, end - offset));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 选出让样本各行字段数最一致的分隔符：众数行数多者优先，只切出一列的候选不计
+     */
+    static char detectDelimiter(String text, boolean complete, String fileName) {
+        String lowerName = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+        boolean tabFile = lowerName.endsWith(".tsv") || lowerName.endsWith(".tab");
+        char best = tabFile ? '\t' : ',';
+        int bestScore = 0;
+        for (char candidate : CANDIDATES) {
+            int score = consistency(sampleRows(text, candidate, complete));
+            // 文件扩展名指定的分隔符同分时优先
+            if (score > bestScore || (score == bestScore && score > 0 && candidate == '\t' && tabFile)) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 字段数大于1的众数出现的行数
+     */
+    private static int consistency(List<String[]> rows) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        int best = 0;
+        for (String[] row : rows) {
+            if (row.length > 1) {
+                int count = counts.merge(row.length, 1, Integer::sum);
+                best = Math.max(best, count);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 用给定分隔符解析样本的前若干行；样本不完整时丢掉最后一行
+     */
+    private static List<String[]> sampleRows(String text, char delimiter, boolean complete) {
+        List<String[]> rows = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        DelimitedParser parser = new DelimitedParser(new StringReader(text), delimiter);
+        try {
+            parser.parse(new DelimitedParser.Handler() {
+                @Override
+                public void onField(int row, int col, char[] chars, int start, int length) {
+                    fields.add(new String(chars, start, length));
+                }
+
+                @Override
+                public boolean onRowEnd(int row, int fieldCount) {
+                    rows.add(fields.toArray(new String[0]));
+                    fields.clear();
+                    return rows.size() <= SAMPLE_ROWS;
+                }
+            });
+        } catch (IOException e) {
+            // 样本中的字段过长时只使用已解析的行
+        }
+        if (!complete && rows.size() > 1 && rows.size() <= SAMPLE_ROWS) {
+            rows.remove(rows.size() - 1);
+        }
+        return rows;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
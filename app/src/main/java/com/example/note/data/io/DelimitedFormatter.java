@@ -0,0 +1,66 @@
+package com.example.note.data.io;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * CSV/TSV：按RFC 4180加引号，行尾为CRLF
+ * 开头写UTF-8 BOM，Excel据此按UTF-8打开；DelimitedFormat导入时会跳过它。
+ */
+final class DelimitedFormatter implements TableFormatter {
+
+    private final char delimiter;
+
+    DelimitedFormatter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    @Override
+    public void begin(Writer out, String title, String[] columnNames) throws IOException {
+        out.write('\uFEFF');
+        writeRow(out, columnNames);
+    }
+
+    @Override
+    public void writeRow(Writer out, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(delimiter);
+            }
+            writeField(out, values[i]);
+        }
+        out.write("\r\n");
+    }
+
+    @Override
+    public void end(Writer out) {
+    }
+
+    private void writeField(Writer out, String value) throws IOException {
+        if (!needsQuotes(value)) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                out.write(value, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+
+    private boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == delimiter || ch == '"' || ch == '\n' || ch == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.note.data.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * CSV/TSV流式解析器（RFC 4180）
+ * 从Reader按块读入复用的字符缓冲区，字段内容拷贝到复用的字段缓冲区后回调，不为每个字段创建String，
+ * 由调用方决定是否以及何时转成字符串。内存占用只与缓冲区大小和最长的字段有关，与文件大小无关。
+ * 支持引号包围的字段（其中可以包含分隔符、换行和写成两个引号的引号）以及CRLF/LF/CR换行；
+ * 不规范的引号按Excel的方式宽松处理：未加引号的字段中的引号按普通字符，右引号后的多余字符接在字段后。
+ */
+public final class DelimitedParser {
+
+    /** 单个字段的最大长度，防止缺少右引号时把整个文件读进一个字段 */
+    public static final int MAX_FIELD_LENGTH = 1 << 20;
+    /** 每行最多的字段数 */
+    public static final int MAX_FIELDS = 16384;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 解析回调
+     */
+    public interface Handler {
+        /**
+         * 一个字段，内容为chars[start, start + length)；回调返回后缓冲区会被复用
+         */
+        void onField(int row, int col, char[] chars, int start, int length) throws IOException;
+
+        /**
+         * 一行结束，返回false时停止解析
+         */
+        boolean onRowEnd(int row, int fieldCount) throws IOException;
+    }
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private char[] field = new char[256];
+    private int fieldLength;
+    private long charsRead;
+
+    public DelimitedParser(Reader reader, char delimiter) {
+        this(reader, delimiter, DEFAULT_BUFFER_SIZE);
+    }
+
+    public DelimitedParser(Reader reader, char delimiter, int bufferSize) {
+        if (delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("不支持的分隔符");
+        }
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.buffer = new char[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * 解析到文件末尾或回调要求停止为止
+     * @return 解析的行数
+     */
+    public int parse(Handler handler) throws IOException {
+        int row = 0;
+        while (fill()) {
+            int fieldCount = 0;
+            boolean rowEnded = false;
+            while (!rowEnded) {
+                if (fieldCount >= MAX_FIELDS) {
+                    throw new IOException("第" + (row + 1) + "行的字段超过" + MAX_FIELDS + "个");
+                }
+                fieldLength = 0;
+                int end = readField(row);
+                handler.onField(row, fieldCount, field, 0, fieldLength);
+                fieldCount++;
+                rowEnded = end != delimiter;
+            }
+            if (!handler.onRowEnd(row, fieldCount)) {
+                return row + 1;
+            }
+            row++;
+        }
+        return row;
+    }
+
+    /**
+     * 已读取的字符数（用于估算进度）
+     */
+    public long getCharsRead() {
+        return charsRead;
+    }
+
+    /**
+     * 读一个字段到field，返回结束它的字符：分隔符、'\n'或-1（文件结束）；换行已被消耗
+     */
+    private int readField(int row) throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        if (buffer[position] == '"') {
+            position++;
+            readQuoted(row);
+        }
+        // 未加引号的字段，或右引号之后到分隔符为止的剩余字符
+        while (fill()) {
+            int start = position;
+            while (position < limit) {
+                char ch = buffer[position];
+                if (ch == delimiter || ch == '\n' || ch == '\r') {
+                    break;
+                }
+                position++;
+            }
+            append(start, position, row);
+            if (position < limit) {
+                char ch = buffer[position++];
+                if (ch == '\r') {
+                    // CRLF算一个换行
+                    if (fill() && buffer[position] == '\n') {
+                        position++;
+                    }
+                    return '\n';
+                }
+                return ch;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 读引号内的内容，停在右引号之后
+     */
+    private void readQuoted(int row) throws IOException {
+        while (fill()) {
+            int start = position;
+            while (position < limit && buffer[position] != '"') {
+                position++;
+            }
+            append(start, position, row);
+            if (position == limit) {
+                continue;
+            }
+            // 遇到引号：两个引号表示一个引号字符，否则字段结束
+            position++;
+            if (fill() && buffer[position] == '"') {
+                appendChar('"', row);
+                position++;
+            } else {
+                return;
+            }
+        }
+        // 文件在引号内结束，已读到的内容作为字段
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        position = 0;
+        limit = Math.max(read, 0);
+        if (read > 0) {
+            charsRead += read;
+            return true;
+        }
+        return false;
+    }
+
+    private void append(int start, int end, int row) throws IOException {
+        int length = end - start;
+        if (length == 0) {
+            return;
+        }
+        ensureCapacity(fieldLength + length, row);
+        System.arraycopy(buffer, start, field, fieldLength, length);
+        fieldLength += length;
+    }
+
+    private void appendChar(char ch, int row) throws IOException {
+        ensureCapacity(fieldLength + 1, row);
+        field[fieldLength++] = ch;
+    }
+
+    private void ensureCapacity(int capacity, int row) throws IOException {
+        if (capacity > MAX_FIELD_LENGTH) {
+            throw new IOException("第" + (row + 1) + "行的字段过长，可能缺少右引号");
+        }
+        if (capacity > field.length) {
+            char[] grown = new char[Math.min(Math.max(field.length * 2, capacity), MAX_FIELD_LENGTH)];
+            System.arraycopy(field, 0, grown, 0, fieldLength);
+            field = grown;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.note.data.io;
+
+/**
+ * 支持的导出格式：文本格式经TableFormatter写出，XLSX由XlsxWriter写出
+ */
+public enum ExportFormat {
+    CSV("CSV", "csv", "text/csv"),
+    TSV("TSV", "tsv", "text/tab-separated-values"),
+    MARKDOWN("Markdown", "md", "text/markdown"),
+    HTML("HTML", "html", "text/html"),
+    XLSX("Excel", "xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+    private final String label;
+    private final String extension;
+    private final String mimeType;
+
+    ExportFormat(String label, String extension, String mimeType) {
+        this.label = label;
+        this.extension = extension;
+        this.mimeType = mimeType;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * 文本格式的写法；XLSX不是文本格式，抛出UnsupportedOperationException
+     */
+    public TableFormatter newFormatter() {
+        switch (this) {
+            case CSV:
+                return new DelimitedFormatter(',');
+            case TSV:
+                return new DelimitedFormatter('\t');
+            case MARKDOWN:
+                return new MarkdownFormatter();
+            case HTML:
+                return new HtmlFormatter();
+            default:
+                throw new UnsupportedOperationException(this + "不是文本格式");
+        }
+    }
+}
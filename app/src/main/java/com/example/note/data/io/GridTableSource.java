@@ -0,0 +1,54 @@
+package com.example.note.data.io;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 内存中的表格：单元格文本按行优先顺序存放在一个数组中（null代表空白）
+ * 用于导出当前筛选/排序后的视图，只保存对已有字符串的引用。
+ */
+public final class GridTableSource implements TableSource {
+
+    private final List<String> columnNames;
+    private final String[] cells;
+    private final int rowCount;
+    private int row;
+
+    /**
+     * @param cells 长度为rowCount × 列数
+     */
+    public GridTableSource(List<String> columnNames, String[] cells, int rowCount) {
+        if (cells.length != rowCount * columnNames.size()) {
+            throw new IllegalArgumentException("单元格数与行列数不符");
+        }
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.cells = cells;
+        this.rowCount = rowCount;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public boolean nextRow(String[] values) {
+        if (row >= rowCount) {
+            return false;
+        }
+        int cols = values.length;
+        System.arraycopy(cells, row * cols, values, 0, cols);
+        for (int col = 0; col < cols; col++) {
+            if (values[col] == null) {
+                values[col] = "";
+            }
+        }
+        row++;
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.note.data.io;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 独立的HTML文档，内容为一个表格；文本按HTML转义，换行写成&lt;br&gt;
+ */
+final class HtmlFormatter implements TableFormatter {
+
+    @Override
+    public void begin(Writer out, String title, String[] columnNames) throws IOException {
+        out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>");
+        writeText(out, title != null ? title : "");
+        out.write("</title>\n<style>table{border-collapse:collapse}th,td{border:1px solid #ccc;"
+                + "padding:4px 8px;vertical-align:top}th{background:#f5f5f5}</style>\n</head>\n<body>\n"
+                + "<table>\n<thead>\n<tr>");
+        for (String name : columnNames) {
+            out.write("<th>");
+            writeText(out, name);
+            out.write("</th>");
+        }
+        out.write("</tr>\n</thead>\n<tbody>\n");
+    }
+
+    @Override
+    public void writeRow(Writer out, String[] values) throws IOException {
+        out.write("<tr>");
+        for (String value : values) {
+            out.write("<td>");
+            writeText(out, value);
+            out.write("</td>");
+        }
+        out.write("</tr>\n");
+    }
+
+    @Override
+    public void end(Writer out) throws IOException {
+        out.write("</tbody>\n</table>\n</body>\n</html>\n");
+    }
+
+    private static void writeText(Writer out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                case '"':
+                    out.write("&quot;");
+                    break;
+                case '\r':
+                    if (i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    out.write("<br>");
+                    break;
+                case '\n':
+                    out.write("<br>");
+                    break;
+                default:
+                    out.write(ch);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.note.data.io;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Markdown（GFM）表格：列名作为表头，单元格中的竖线和反斜杠转义，换行写成&lt;br&gt;
+ */
+final class MarkdownFormatter implements TableFormatter {
+
+    @Override
+    public void begin(Writer out, String title, String[] columnNames) throws IOException {
+        writeRow(out, columnNames);
+        out.write('|');
+        for (int i = 0; i < columnNames.length; i++) {
+            out.write(" --- |");
+        }
+        out.write('\n');
+    }
+
+    @Override
+    public void writeRow(Writer out, String[] values) throws IOException {
+        out.write('|');
+        for (String value : values) {
+            out.write(' ');
+            writeCell(out, value);
+            out.write(" |");
+        }
+        out.write('\n');
+    }
+
+    @Override
+    public void end(Writer out) {
+    }
+
+    private static void writeCell(Writer out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '|':
+                case '\\':
+                    out.write('\\');
+                    out.write(ch);
+                    break;
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '\r':
+                    if (i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    out.write("<br>");
+                    break;
+                case '\n':
+                    out.write("<br>");
+                    break;
+                default:
+                    out.write(ch);
+                    break;
+            }
+        }
+    }
+}
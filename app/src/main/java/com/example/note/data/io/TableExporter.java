@@ -0,0 +1,50 @@
+package com.example.note.data.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * 把TableSource逐行交给TableFormatter写出
+ * 整个过程只复用一个行数组，内存与表格大小无关；每写出PROGRESS_CELLS个单元格报告一次进度并检查是否停止。
+ */
+public final class TableExporter {
+
+    /** 每报告一次进度写出的单元格数 */
+    static final int PROGRESS_CELLS = 20_000;
+
+    /**
+     * 进度回调，返回false时停止导出
+     */
+    public interface Progress {
+        boolean onRows(int rows);
+    }
+
+    private TableExporter() {
+    }
+
+    /**
+     * @return 写出的数据行数（不含列名行）；被Progress停止时为已写出的行数
+     */
+    public static int export(TableSource source, TableFormatter formatter, String title, Writer out,
+                             Progress progress) throws IOException {
+        List<String> names = source.getColumnNames();
+        String[] values = new String[names.size()];
+        formatter.begin(out, title, names.toArray(new String[0]));
+        int rows = 0;
+        int cells = 0;
+        while (source.nextRow(values)) {
+            formatter.writeRow(out, values);
+            rows++;
+            cells += Math.max(1, values.length);
+            if (cells >= PROGRESS_CELLS) {
+                cells = 0;
+                if (progress != null && !progress.onRows(rows)) {
+                    return rows;
+                }
+            }
+        }
+        formatter.end(out);
+        return rows;
+    }
+}
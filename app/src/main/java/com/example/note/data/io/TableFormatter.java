@@ -0,0 +1,17 @@
+package com.example.note.data.io;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 导出格式的写法：开头（含列名）、逐行写出、结尾
+ * 每次只处理一行，不保留已写出的内容。
+ */
+public interface TableFormatter {
+
+    void begin(Writer out, String title, String[] columnNames) throws IOException;
+
+    void writeRow(Writer out, String[] values) throws IOException;
+
+    void end(Writer out) throws IOException;
+}
@@ -0,0 +1,117 @@
+package com.example.note.data.io;
+
+import com.example.note.data.entity.Column;
+import com.example.note.util.CellValueUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 根据导入文件开头的若干行判断是否有表头，并推断各列的类型
+ * CSV/TSV和XLSX导入共用，输入是已转成文本的单元格值，每行一个数组。
+ */
+public final class TableSniffer {
+
+    private TableSniffer() {
+    }
+
+    /**
+     * 首行的每列与其余各行比较并投票（与Python csv.Sniffer相同的思路）：
+     * 其余各行是数字或日期而首行不是，或者其余各行长度一致而首行不同，都倾向于首行是表头
+     */
+    public static boolean hasHeader(List<String[]> rows) {
+        if (rows.size() < 2) {
+            return false;
+        }
+        String[] first = rows.get(0);
+        int votes = 0;
+        for (int col = 0; col < first.length; col++) {
+            String name = first[col].trim();
+            if (name.isEmpty()) {
+                // 表头一般不会留空
+                votes--;
+                continue;
+            }
+            String bodyType = null;
+            int bodyLength = -1;
+            boolean sameLength = true;
+            boolean sameType = true;
+            for (int i = 1; i < rows.size(); i++) {
+                String[] row = rows.get(i);
+                String value = col < row.length ? row[col].trim() : "";
+                if (value.isEmpty()) {
+                    continue;
+                }
+                String type = typeOf(value);
+                if (bodyType == null) {
+                    bodyType = type;
+                } else if (!bodyType.equals(type)) {
+                    sameType = false;
+                }
+                if (bodyLength < 0) {
+                    bodyLength = value.length();
+                } else if (bodyLength != value.length()) {
+                    sameLength = false;
+                }
+            }
+            if (bodyType == null) {
+                continue;
+            }
+            if (sameType && !Column.ColumnType.TEXT.getValue().equals(bodyType)) {
+                votes += bodyType.equals(typeOf(name)) ? -1 : 1;
+            } else if (sameLength) {
+                votes += bodyLength == name.length() ? -1 : 1;
+            }
+        }
+        return votes > 0;
+    }
+
+    /**
+     * 每列非空值都能解析为同一类型时取该类型，否则为TEXT
+     */
+    public static List<String> inferColumnTypes(List<String[]> rows) {
+        List<String> types = new ArrayList<>();
+        for (String[] row : rows) {
+            for (int col = 0; col < row.length; col++) {
+                String value = row[col].trim();
+                while (types.size() <= col) {
+                    types.add(null);
+                }
+                if (value.isEmpty()) {
+                    continue;
+                }
+                String type = typeOf(value);
+                String current = types.get(col);
+                if (current == null) {
+                    types.set(col, type);
+                } else if (!current.equals(type)) {
+                    types.set(col, Column.ColumnType.TEXT.getValue());
+                }
+            }
+        }
+        for (int col = 0; col < types.size(); col++) {
+            if (types.get(col) == null) {
+                types.set(col, Column.ColumnType.TEXT.getValue());
+            }
+        }
+        return types;
+    }
+
+    /**
+     * 单个值的类型；与num_value/date_value使用同一套解析规则，布尔值只认文字形式
+     */
+    public static String typeOf(String value) {
+        if (CellValueUtils.parseDate(value) != null) {
+            return Column.ColumnType.DATE.getValue();
+        }
+        if (CellValueUtils.parseNumber(value) != null) {
+            return Column.ColumnType.NUMBER.getValue();
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        if (lower.equals("true") || lower.equals("false") || lower.equals("是") || lower.equals("否")) {
+            return Column.ColumnType.BOOLEAN.getValue();
+        }
+        return Column.ColumnType.TEXT.getValue();
+    }
+}
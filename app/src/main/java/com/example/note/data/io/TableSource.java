@@ -0,0 +1,31 @@
+package com.example.note.data.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 导出的数据来源：按显示顺序逐行读出单元格文本，实现方只需要持有当前一行
+ */
+public interface TableSource extends Closeable {
+
+    /**
+     * 列名，决定每行的列数
+     */
+    List<String> getColumnNames();
+
+    /**
+     * 总行数，只用于显示进度；未知时返回-1
+     */
+    int getRowCount();
+
+    /**
+     * 把下一行读入values（长度为列数，缺少的单元格为""）
+     * @return 没有更多行时返回false
+     */
+    boolean nextRow(String[] values) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,740 @@
+package com.example.note.data.io;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * XLSX工作簿流式读取器
+ * 用ZipInputStream顺序读取压缩包，XmlPullParser逐个事件解析，不在内存中建立工作簿或工作表的对象模型。
+ * 共享字符串表的文本连续存放在一个char数组中，只保存每项的起始位置；工作表逐个单元格回调，
+ * 内存占用与工作表的行数无关。压缩包只能顺序读取，工作表排在共享字符串或样式之前时会重新打开文件再读一遍。
+ * 只识别基本样式：粗体、斜体、RGB字体颜色、纯色填充和水平对齐，主题色和条件格式不处理。
+ */
+public final class XlsxReader {
+
+    private static final String WORKBOOK = "xl/workbook.xml";
+    private static final String WORKBOOK_RELS = "xl/_rels/workbook.xml.rels";
+
+    /** Excel内置的日期时间格式编号 */
+    private static final int[][] BUILTIN_DATE_FORMATS = {{14, 22}, {27, 36}, {45, 47}, {50, 58}};
+
+    /**
+     * 打开文件的输入流，每次调用返回一个新的流
+     */
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * 工作表回调
+     */
+    public interface SheetHandler {
+        /**
+         * 一个单元格（按行优先的顺序），值已按单元格类型转成文本：数字保持Excel保存的数值，
+         * 日期格式的数字转成yyyy-MM-dd（带时间时追加HH:mm），布尔值为true/false；没有值且格式看不出来的单元格不回调
+         * @param styleIndex 单元格格式序号，用getCellFormat查询
+         * @return false时停止读取
+         */
+        boolean onCell(int row, int col, String value, int styleIndex) throws IOException;
+    }
+
+    /**
+     * 单元格格式（styles.xml中cellXfs的一项）
+     */
+    public static final class CellFormat {
+        public static final CellFormat DEFAULT = new CellFormat(false, false, null, null, null, false);
+
+        public final boolean bold;
+        public final boolean italic;
+        /** #RRGGBB，未设置时为null */
+        public final String textColor;
+        /** #RRGGBB，未设置时为null */
+        public final String backgroundColor;
+        /** LEFT、CENTER、RIGHT，未设置时为null */
+        public final String alignment;
+        final boolean date;
+
+        CellFormat(boolean bold, boolean italic, String textColor, String backgroundColor, String alignment,
+                   boolean date) {
+            this.bold = bold;
+            this.italic = italic;
+            this.textColor = textColor;
+            this.backgroundColor = backgroundColor;
+            this.alignment = alignment;
+            this.date = date;
+        }
+
+        /**
+         * 除数字格式外与默认外观相同
+         */
+        public boolean isPlain() {
+            return !bold && !italic && textColor == null && backgroundColor == null && alignment == null;
+        }
+    }
+
+    private final StreamOpener opener;
+    private final List<String> sheetNames = new ArrayList<>();
+    private final List<String> sheetPaths = new ArrayList<>();
+    private String sharedStringsPath;
+    private String stylesPath;
+    private boolean date1904;
+
+    private SharedStrings sharedStrings;
+    private List<CellFormat> cellFormats;
+
+    /**
+     * 读取工作簿目录（工作表名称和位置）
+     */
+    public XlsxReader(StreamOpener opener) throws IOException {
+        this.opener = opener;
+        readWorkbook();
+        if (sheetPaths.isEmpty()) {
+            throw new IOException("文件中没有工作表");
+        }
+    }
+
+    public List<String> getSheetNames() {
+        return Collections.unmodifiableList(sheetNames);
+    }
+
+    /**
+     * 单元格格式，readSheet开始回调后可用
+     */
+    public CellFormat getCellFormat(int styleIndex) {
+        if (cellFormats == null || styleIndex < 0 || styleIndex >= cellFormats.size()) {
+            return CellFormat.DEFAULT;
+        }
+        return cellFormats.get(styleIndex);
+    }
+
+    /**
+     * 读取一个工作表，先载入它依赖的共享字符串和样式
+     */
+    public void readSheet(int index, SheetHandler handler) throws IOException {
+        String sheetPath = sheetPaths.get(index);
+        boolean sheetDone = false;
+        try (ZipInputStream zip = new ZipInputStream(opener.open())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = normalizeEntryName(entry.getName());
+                if (name.equals(sharedStringsPath) && sharedStrings == null) {
+                    sharedStrings = readSharedStrings(zip);
+                } else if (name.equals(stylesPath) && cellFormats == null) {
+                    cellFormats = readStyles(zip);
+                } else if (name.equals(sheetPath) && prerequisitesLoaded()) {
+                    ensureLoaded();
+                    readSheetXml(zip, handler);
+                    sheetDone = true;
+                    break;
+                }
+            }
+        }
+        if (sheetDone) {
+            return;
+        }
+        ensureLoaded();
+        // 工作表排在依赖的部分之前，再读一遍
+        try (ZipInputStream zip = new ZipInputStream(opener.open())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (normalizeEntryName(entry.getName()).equals(sheetPath)) {
+                    readSheetXml(zip, handler);
+                    return;
+                }
+            }
+        }
+        throw new IOException("找不到工作表: " + sheetNames.get(index));
+    }
+
+    /**
+     * 没有共享字符串或样式部分时使用空表
+     */
+    private void ensureLoaded() {
+        if (sharedStrings == null) {
+            sharedStrings = new SharedStrings(0);
+        }
+        if (cellFormats == null) {
+            cellFormats = new ArrayList<>();
+        }
+    }
+
+    private boolean prerequisitesLoaded() {
+        return (sharedStringsPath == null || sharedStrings != null) && (stylesPath == null || cellFormats != null);
+    }
+
+    // ==================== 工作簿目录 ====================
+
+    private void readWorkbook() throws IOException {
+        List<String> relationIds = new ArrayList<>();
+        Map<String, String> targets = new HashMap<>();
+        boolean workbookRead = false;
+        boolean relsRead = false;
+        try (ZipInputStream zip = new ZipInputStream(opener.open())) {
+            ZipEntry entry;
+            while ((!workbookRead || !relsRead) && (entry = zip.getNextEntry()) != null) {
+                String name = normalizeEntryName(entry.getName());
+                if (name.equals(WORKBOOK)) {
+                    XmlPullParser parser = newParser(zip);
+                    for (int event = next(parser); event != XmlPullParser.END_DOCUMENT; event = next(parser)) {
+                        if (event != XmlPullParser.START_TAG) {
+                            continue;
+                        }
+                        String tag = localName(parser.getName());
+                        if (tag.equals("sheet")) {
+                            sheetNames.add(attribute(parser, "name"));
+                            relationIds.add(attribute(parser, "id"));
+                        } else if (tag.equals("workbookPr")) {
+                            date1904 = isTrue(attribute(parser, "date1904"));
+                        }
+                    }
+                    workbookRead = true;
+                } else if (name.equals(WORKBOOK_RELS)) {
+                    XmlPullParser parser = newParser(zip);
+                    for (int event = next(parser); event != XmlPullParser.END_DOCUMENT; event = next(parser)) {
+                        if (event != XmlPullParser.START_TAG || !localName(parser.getName()).equals("Relationship")) {
+                            continue;
+                        }
+                        String type = attribute(parser, "Type");
+                        String target = resolveTarget(attribute(parser, "Target"));
+                        if (type == null || target == null) {
+                            continue;
+                        }
+                        if (type.endsWith("/sharedStrings")) {
+                            sharedStringsPath = target;
+                        } else if (type.endsWith("/styles")) {
+                            stylesPath = target;
+                        }
+                        targets.put(attribute(parser, "Id"), target);
+                    }
+                    relsRead = true;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // ZipInputStream遇到无法识别的条目名时抛出
+            throw new IOException("不是有效的XLSX文件", e);
+        }
+        if (!workbookRead) {
+            throw new IOException("不是有效的XLSX文件");
+        }
+        for (int i = 0; i < relationIds.size(); i++) {
+            String target = targets.get(relationIds.get(i));
+            // 没有关系文件时按惯例的位置
+            sheetPaths.add(target != null ? target : "xl/worksheets/sheet" + (i + 1) + ".xml");
+        }
+    }
+
+    /**
+     * 关系文件中的Target相对于xl/目录，以/开头时相对于压缩包根目录
+     */
+    private static String resolveTarget(String target) {
+        if (target == null) {
+            return null;
+        }
+        if (target.startsWith("/")) {
+            return target.substring(1);
+        }
+        String path = "xl/" + target;
+        while (path.contains("/../")) {
+            int up = path.indexOf("/../");
+            int parent = path.lastIndexOf('/', up - 1);
+            path = path.substring(0, parent + 1) + path.substring(up + 4);
+        }
+        return path;
+    }
+
+    private static String normalizeEntryName(String name) {
+        String normalized = name.replace('\\', '/');
+        return normalized.startsWith("/") ? normalized.substring(1) : normalized;
+    }
+
+    // ==================== 共享字符串 ====================
+
+    private static SharedStrings readSharedStrings(InputStream in) throws IOException {
+        XmlPullParser parser = newParser(in);
+        SharedStrings strings = null;
+        // 注音（rPh）中的文本不属于单元格内容
+        int phoneticDepth = 0;
+        boolean inText = false;
+        int[] range = new int[2];
+        for (int event = next(parser); event != XmlPullParser.END_DOCUMENT; event = next(parser)) {
+            if (event == XmlPullParser.START_TAG) {
+                String tag = localName(parser.getName());
+                if (tag.equals("sst")) {
+                    strings = new SharedStrings(parseInt(attribute(parser, "uniqueCount"), 0));
+                } else if (tag.equals("si")) {
+                    if (strings == null) {
+                        strings = new SharedStrings(0);
+                    }
+                    strings.begin();
+                } else if (tag.equals("rPh")) {
+                    phoneticDepth++;
+                } else if (tag.equals("t")) {
+                    inText = phoneticDepth == 0;
+                }
+            } else if (event == XmlPullParser.END_TAG) {
+                String tag = localName(parser.getName());
+                if (tag.equals("rPh")) {
+                    phoneticDepth--;
+                } else if (tag.equals("t")) {
+                    inText = false;
+                }
+            } else if (event == XmlPullParser.TEXT && inText && strings != null) {
+                char[] chars = parser.getTextCharacters(range);
+                strings.append(chars, range[0], range[1]);
+            }
+        }
+        return strings != null ? strings : new SharedStrings(0);
+    }
+
+    /**
+     * 共享字符串表：所有文本连续存放，按序号取出时才创建String
+     */
+    static final class SharedStrings {
+        private char[] chars;
+        private int length;
+        private int[] offsets;
+        private int count;
+
+        SharedStrings(int expectedCount) {
+            offsets = new int[Math.max(expectedCount, 16) + 1];
+            chars = new char[Math.max(expectedCount, 16) * 8];
+        }
+
+        void begin() {
+            if (count + 1 >= offsets.length) {
+                int[] grown = new int[offsets.length * 2];
+                System.arraycopy(offsets, 0, grown, 0, count + 1);
+                offsets = grown;
+            }
+            count++;
+            offsets[count] = length;
+        }
+
+        void append(char[] source, int start, int len) {
+            if (length + len > chars.length) {
+                char[] grown = new char[Math.max(chars.length * 2, length + len)];
+                System.arraycopy(chars, 0, grown, 0, length);
+                chars = grown;
+            }
+            System.arraycopy(source, start, chars, length, len);
+            length += len;
+            offsets[count] = length;
+        }
+
+        int size() {
+            return count;
+        }
+
+        String get(int index) {
+            if (index < 0 || index >= count) {
+                return "";
+            }
+            return new String(chars, offsets[index], offsets[index + 1] - offsets[index]);
+        }
+    }
+
+    // ==================== 样式 ====================
+
+    private static List<CellFormat> readStyles(InputStream in) throws IOException {
+        XmlPullParser parser = newParser(in);
+        Map<Integer, String> numberFormats = new HashMap<>();
+        List<boolean[]> fontFlags = new ArrayList<>();
+        List<String> fontColors = new ArrayList<>();
+        List<String> fills = new ArrayList<>();
+        List<CellFormat> formats = new ArrayList<>();
+        // 当前所在的列表：fonts、fills、cellXfs等，dxfs中的字体和填充不计
+        String section = "";
+        boolean[] font = null;
+        String fontColor = null;
+        String fill = null;
+        boolean solidFill = false;
+        int[] xf = null;
+        String alignment = null;
+        for (int event = next(parser); event != XmlPullParser.END_DOCUMENT; event = next(parser)) {
+            if (event == XmlPullParser.START_TAG) {
+                String tag = localName(parser.getName());
+                switch (tag) {
+                    case "fonts":
+                    case "fills":
+                    case "cellXfs":
+                    case "cellStyleXfs":
+                    case "dxfs":
+                        section = tag;
+                        break;
+                    case "numFmt":
+                        numberFormats.put(parseInt(attribute(parser, "numFmtId"), -1),
+                                attribute(parser, "formatCode"));
+                        break;
+                    case "font":
+                        font = new boolean[2];
+                        fontColor = null;
+                        break;
+                    case "b":
+                    case "i":
+                        if (font != null) {
+                            String val = attribute(parser, "val");
+                            font[tag.equals("b") ? 0 : 1] = val == null || isTrue(val);
+                        }
+                        break;
+                    case "color":
+                        if (font != null) {
+                            fontColor = rgbColor(attribute(parser, "rgb"));
+                        }
+                        break;
+                    case "fill":
+                        fill = null;
+                        solidFill = false;
+                        break;
+                    case "patternFill":
+                        solidFill = "solid".equals(attribute(parser, "patternType"));
+                        break;
+                    case "fgColor":
+                        if (solidFill) {
+                            fill = rgbColor(attribute(parser, "rgb"));
+                        }
+                        break;
+                    case "xf":
+                        if (section.equals("cellXfs")) {
+                            xf = new int[]{
+                                    parseInt(attribute(parser, "numFmtId"), 0),
+                                    parseInt(attribute(parser, "fontId"), 0),
+                                    parseInt(attribute(parser, "fillId"), 0)};
+                            alignment = null;
+                        }
+                        break;
+                    case "alignment":
+                        if (xf != null) {
+                            alignment = alignment(attribute(parser, "horizontal"));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XmlPullParser.END_TAG) {
+                String tag = localName(parser.getName());
+                if (tag.equals(section)) {
+                    section = "";
+                } else if (tag.equals("font") && font != null) {
+                    if (section.equals("fonts")) {
+                        fontFlags.add(font);
+                        fontColors.add(fontColor);
+                    }
+                    font = null;
+                } else if (tag.equals("fill")) {
+                    if (section.equals("fills")) {
+                        fills.add(fill);
+                    }
+                } else if (tag.equals("xf") && xf != null) {
+                    boolean[] flags = xf[1] < fontFlags.size() ? fontFlags.get(xf[1]) : new boolean[2];
+                    String color = xf[1] < fontColors.size() ? fontColors.get(xf[1]) : null;
+                    String background = xf[2] < fills.size() ? fills.get(xf[2]) : null;
+                    formats.add(new CellFormat(flags[0], flags[1], isDefaultTextColor(color) ? null : color,
+                            background, alignment, isDateFormat(xf[0], numberFormats.get(xf[0]))));
+                    xf = null;
+                }
+            }
+        }
+        return formats;
+    }
+
+    /**
+     * 数字格式是否显示为日期或时间：内置编号，或自定义格式中去掉引号、方括号和转义后含有年月日时分秒
+     */
+    static boolean isDateFormat(int id, String code) {
+        for (int[] range : BUILTIN_DATE_FORMATS) {
+            if (id >= range[0] && id <= range[1]) {
+                return true;
+            }
+        }
+        if (code == null) {
+            return false;
+        }
+        boolean quoted = false;
+        boolean bracket = false;
+        for (int i = 0; i < code.length(); i++) {
+            char ch = code.charAt(i);
+            if (quoted) {
+                quoted = ch != '"';
+            } else if (bracket) {
+                bracket = ch != ']';
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == '[') {
+                bracket = true;
+            } else if (ch == '\\' || ch == '_' || ch == '*') {
+                // 下一个字符按字面输出
+                i++;
+            } else if (ch == ';') {
+                // 只看正数部分
+                return false;
+            } else if ("yYdDhHsS".indexOf(ch) >= 0 || ch == 'm' || ch == 'M') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String rgbColor(String argb) {
+        if (argb == null) {
+            return null;
+        }
+        if (argb.length() == 8) {
+            return "#" + argb.substring(2).toUpperCase(Locale.ROOT);
+        }
+        if (argb.length() == 6) {
+            return "#" + argb.toUpperCase(Locale.ROOT);
+        }
+        return null;
+    }
+
+    private static boolean isDefaultTextColor(String color) {
+        return color == null || color.equals("#000000");
+    }
+
+    private static String alignment(String horizontal) {
+        if (horizontal == null) {
+            return null;
+        }
+        switch (horizontal) {
+            case "center":
+            case "centerContinuous":
+                return "CENTER";
+            case "right":
+                return "RIGHT";
+            case "left":
+                return "LEFT";
+            default:
+                return null;
+        }
+    }
+
+    // ==================== 工作表 ====================
+
+    private void readSheetXml(InputStream in, SheetHandler handler) throws IOException {
+        XmlPullParser parser = newParser(in);
+        StringBuilder text = new StringBuilder();
+        int row = -1;
+        int col = -1;
+        int styleIndex = 0;
+        String type = null;
+        boolean inCell = false;
+        boolean inValue = false;
+        boolean inInline = false;
+        // 注音中的文本不属于内容
+        int phoneticDepth = 0;
+        boolean hasValue = false;
+        int[] range = new int[2];
+        for (int event = next(parser); event != XmlPullParser.END_DOCUMENT; event = next(parser)) {
+            if (event == XmlPullParser.START_TAG) {
+                String tag = localName(parser.getName());
+                if (tag.equals("row")) {
+                    int r = parseInt(attribute(parser, "r"), 0);
+                    row = r > 0 ? r - 1 : row + 1;
+                    col = -1;
+                } else if (tag.equals("c")) {
+                    int reference = parseColumn(attribute(parser, "r"));
+                    col = reference >= 0 ? reference : col + 1;
+                    styleIndex = parseInt(attribute(parser, "s"), 0);
+                    type = attribute(parser, "t");
+                    text.setLength(0);
+                    hasValue = false;
+                    inCell = true;
+                } else if (inCell && tag.equals("v")) {
+                    inValue = true;
+                    hasValue = true;
+                } else if (inCell && tag.equals("is")) {
+                    inInline = true;
+                    hasValue = true;
+                } else if (tag.equals("rPh")) {
+                    phoneticDepth++;
+                }
+            } else if (event == XmlPullParser.END_TAG) {
+                String tag = localName(parser.getName());
+                if (tag.equals("v")) {
+                    inValue = false;
+                } else if (tag.equals("is")) {
+                    inInline = false;
+                } else if (tag.equals("rPh")) {
+                    phoneticDepth--;
+                } else if (tag.equals("c") && inCell) {
+                    inCell = false;
+                    String value = hasValue ? cellValue(type, text, styleIndex) : "";
+                    // 没有值的单元格只在格式看得出来时保留，例如只有填充色的表头；只有数字格式的空白单元格跳过
+                    if ((!value.isEmpty() || !getCellFormat(styleIndex).isPlain())
+                            && !handler.onCell(row, col, value, styleIndex)) {
+                        return;
+                    }
+                }
+            } else if (event == XmlPullParser.TEXT && (inValue || (inInline && phoneticDepth == 0))) {
+                char[] chars = parser.getTextCharacters(range);
+                text.append(chars, range[0], range[1]);
+            }
+        }
+    }
+
+    /**
+     * 按单元格类型把值转成文本
+     */
+    private String cellValue(String type, StringBuilder text, int styleIndex) {
+        if (type == null || type.equals("n")) {
+            return numberValue(text, getCellFormat(styleIndex).date);
+        }
+        switch (type) {
+            case "s":
+                return sharedStrings.get(parseInt(text, -1));
+            case "b":
+                return text.length() == 1 && text.charAt(0) == '1' ? "true" : "false";
+            case "d":
+                // ISO 8601，只保留日期部分
+                return text.length() >= 10 ? text.substring(0, 10) : text.toString();
+            default:
+                // str（公式结果）、inlineStr、e（错误值）
+                return text.toString();
+        }
+    }
+
+    /**
+     * 数值单元格：日期格式转成日期文本，其他保留数值，超出15位有效数字的部分按Excel的显示舍入
+     */
+    private String numberValue(StringBuilder text, boolean dateFormat) {
+        String raw = text.toString().trim();
+        if (raw.isEmpty()) {
+            return raw;
+        }
+        double value;
+        try {
+            value = Double.parseDouble(raw);
+        } catch (NumberFormatException e) {
+            return raw;
+        }
+        if (dateFormat && value >= 0 && value < 2958466) {
+            return dateValue(value);
+        }
+        if (raw.length() > 15 || raw.indexOf('E') >= 0 || raw.indexOf('e') >= 0) {
+            return new BigDecimal(raw).round(new MathContext(15)).stripTrailingZeros().toPlainString();
+        }
+        return raw;
+    }
+
+    /**
+     * Excel日期序号转成yyyy-MM-dd，有时间部分时追加HH:mm（或HH:mm:ss），小于1时只有时间
+     */
+    String dateValue(double serial) {
+        long days = (long) Math.floor(serial);
+        long seconds = Math.round((serial - days) * 86400);
+        if (seconds >= 86400) {
+            days++;
+            seconds -= 86400;
+        }
+        String time = seconds == 0 ? "" : seconds % 60 == 0
+                ? String.format(Locale.ROOT, "%02d:%02d", seconds / 3600, seconds / 60 % 60)
+                : String.format(Locale.ROOT, "%02d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        if (days == 0 && !date1904) {
+            return time.isEmpty() ? "00:00" : time;
+        }
+        long epochDay;
+        if (date1904) {
+            epochDay = days - 24107;
+        } else {
+            // 1900日期系统把1900-02-29（序号60）当作存在，之前的序号少算一天
+            epochDay = days < 61 ? days - 25568 : days - 25569;
+        }
+        String date = LocalDate.ofEpochDay(epochDay).toString();
+        return time.isEmpty() ? date : date + " " + time;
+    }
+
+    /**
+     * 单元格引用（如"AB12"）中的列号，从0开始；没有引用时返回-1
+     */
+    static int parseColumn(String reference) {
+        if (reference == null) {
+            return -1;
+        }
+        int col = 0;
+        int i = 0;
+        while (i < reference.length()) {
+            char ch = reference.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                col = col * 26 + (ch - 'A' + 1);
+            } else if (ch >= 'a' && ch <= 'z') {
+                col = col * 26 + (ch - 'a' + 1);
+            } else {
+                break;
+            }
+            i++;
+        }
+        return i > 0 ? col - 1 : -1;
+    }
+
+    // ==================== XML工具 ====================
+
+    private static XmlPullParser newParser(InputStream in) throws IOException {
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(in, null);
+            return parser;
+        } catch (XmlPullParserException e) {
+            throw new IOException("XML格式错误", e);
+        }
+    }
+
+    private static int next(XmlPullParser parser) throws IOException {
+        try {
+            return parser.next();
+        } catch (XmlPullParserException e) {
+            throw new IOException("XML格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 去掉名称空间前缀，解析器是否处理名称空间都能匹配
+     */
+    private static String localName(String name) {
+        int colon = name.indexOf(':');
+        return colon >= 0 ? name.substring(colon + 1) : name;
+    }
+
+    private static String attribute(XmlPullParser parser, String localName) {
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            if (localName(parser.getAttributeName(i)).equals(localName)) {
+                return parser.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isTrue(String value) {
+        return "1".equals(value) || "true".equals(value);
+    }
+
+    private static int parseInt(CharSequence text, int defaultValue) {
+        if (text == null || text.length() == 0) {
+            return defaultValue;
+        }
+        int value = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch < '0' || ch > '9' || value > (Integer.MAX_VALUE - 9) / 10) {
+                return defaultValue;
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+}
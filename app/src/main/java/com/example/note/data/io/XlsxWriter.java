@@ -0,0 +1,566 @@
+package com.example.note.data.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 流式写出只有一个工作表的XLSX文件
+ * 单元格逐行直接写进工作表XML（文本用inlineStr，不建共享字符串表），内存只与样式的种类数有关；
+ * 样式在写单元格时登记去重，工作表写完后再写styles.xml。
+ * 调用顺序：startSheet → (startRow → write* → endRow)* → finish。
+ */
+public final class XlsxWriter implements Closeable {
+
+    /** 数字格式：常规、日期（yyyy-mm-dd）、百分比 */
+    public static final int FORMAT_GENERAL = 0;
+    public static final int FORMAT_DATE = 1;
+    public static final int FORMAT_PERCENT = 2;
+
+    /** Excel单元格文本的长度上限 */
+    static final int MAX_TEXT_LENGTH = 32767;
+
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String NS_PKG_REL = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String XML_DECL = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private static final int DATE_FORMAT_ID = 164;
+    private static final int PERCENT_FORMAT_ID = 10;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipOutputStream zip;
+    private final Writer out;
+
+    // 样式表：字体、填充、单元格格式，都按内容去重
+    private final Map<String, Integer> fontIndex = new HashMap<>();
+    private final List<String> fonts = new ArrayList<>();
+    private final Map<String, Integer> fillIndex = new HashMap<>();
+    private final List<String> fills = new ArrayList<>();
+    private final Map<String, Integer> xfIndex = new HashMap<>();
+    private final List<String> xfs = new ArrayList<>();
+
+    private String[] columnRefs = new String[0];
+    private boolean sheetStarted;
+    private boolean finished;
+    private int currentRow = -1;
+    private int lastRow = -1;
+
+    public XlsxWriter(OutputStream stream) {
+        zip = new ZipOutputStream(stream, StandardCharsets.UTF_8);
+        // 各部分共用一个缓冲写出器，切换条目前先flush；关闭写出器不关闭压缩流
+        out = new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(zip) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                zip.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+            }
+        }, StandardCharsets.UTF_8), BUFFER_SIZE);
+        // 0号格式为默认，1号为加粗的表头
+        style(false, false, null, null, null, FORMAT_GENERAL);
+        style(true, false, null, null, null, FORMAT_GENERAL);
+    }
+
+    /**
+     * 写出包结构并开始工作表，第一行为列名
+     * @param columnWidths 各列宽度（字符数），null或不大于0时用默认宽度
+     * @param frozenColumns 冻结左侧的列数；表头行总是冻结
+     */
+    public void startSheet(String sheetName, List<String> columnNames, float[] columnWidths,
+                           int frozenColumns) throws IOException {
+        if (sheetStarted) {
+            throw new IllegalStateException("工作表已开始");
+        }
+        sheetStarted = true;
+        writePackageParts(sheetName(sheetName));
+
+        int cols = columnNames.size();
+        columnRefs = new String[cols];
+        for (int col = 0; col < cols; col++) {
+            columnRefs[col] = columnName(col);
+        }
+        frozenColumns = Math.max(0, Math.min(frozenColumns, cols));
+
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        out.write(XML_DECL);
+        out.write("<worksheet xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\">");
+        out.write("<sheetViews><sheetView workbookViewId=\"0\">");
+        if (frozenColumns > 0) {
+            out.write("<pane xSplit=\"" + frozenColumns + "\" ySplit=\"1\" topLeftCell=\""
+                    + columnName(frozenColumns) + "2\" activePane=\"bottomRight\" state=\"frozen\"/>");
+            out.write("<selection pane=\"topRight\"/><selection pane=\"bottomLeft\"/>"
+                    + "<selection pane=\"bottomRight\"/>");
+        } else {
+            out.write("<pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/>");
+            out.write("<selection pane=\"bottomLeft\"/>");
+        }
+        out.write("</sheetView></sheetViews>");
+        out.write("<sheetFormatPr defaultRowHeight=\"15\"/>");
+        if (cols > 0) {
+            out.write("<cols>");
+            for (int col = 0; col < cols; col++) {
+                float width = columnWidths != null && col < columnWidths.length ? columnWidths[col] : 0;
+                if (width > 0) {
+                    out.write("<col min=\"" + (col + 1) + "\" max=\"" + (col + 1) + "\" width=\""
+                            + formatNumber(Math.round(width * 100) / 100.0) + "\" customWidth=\"1\"/>");
+                } else {
+                    out.write("<col min=\"" + (col + 1) + "\" max=\"" + (col + 1) + "\" width=\"15\"/>");
+                }
+            }
+            out.write("</cols>");
+        }
+        out.write("<sheetData>");
+        if (cols > 0) {
+            out.write("<row r=\"1\">");
+            for (int col = 0; col < cols; col++) {
+                writeInlineString(columnRefs[col] + "1", columnNames.get(col), 1);
+            }
+            out.write("</row>");
+        }
+    }
+
+    /**
+     * 登记一种单元格样式，返回其序号；相同的组合只登记一次
+     * @param textColor 文字颜色"#RRGGBB"，null为默认
+     * @param backgroundColor 背景色"#RRGGBB"，null为无填充
+     * @param alignment LEFT/CENTER/RIGHT，null为默认
+     * @param numberFormat FORMAT_*之一
+     */
+    public int style(boolean bold, boolean italic, String textColor, String backgroundColor,
+                     String alignment, int numberFormat) {
+        String color = argb(textColor);
+        String background = argb(backgroundColor);
+        String horizontal = horizontal(alignment);
+        int font = fontIndex(bold, italic, color);
+        int fill = fillIndex(background);
+        int numFmtId = numberFormat == FORMAT_DATE ? DATE_FORMAT_ID
+                : numberFormat == FORMAT_PERCENT ? PERCENT_FORMAT_ID : 0;
+        String key = font + "|" + fill + "|" + numFmtId + "|" + horizontal;
+        Integer index = xfIndex.get(key);
+        if (index == null) {
+            StringBuilder xf = new StringBuilder("<xf numFmtId=\"").append(numFmtId)
+                    .append("\" fontId=\"").append(font)
+                    .append("\" fillId=\"").append(fill)
+                    .append("\" borderId=\"0\" xfId=\"0\"");
+            if (numFmtId != 0) {
+                xf.append(" applyNumberFormat=\"1\"");
+            }
+            if (font != 0) {
+                xf.append(" applyFont=\"1\"");
+            }
+            if (fill != 0) {
+                xf.append(" applyFill=\"1\"");
+            }
+            if (horizontal != null) {
+                xf.append(" applyAlignment=\"1\"><alignment horizontal=\"").append(horizontal).append("\"/></xf>");
+            } else {
+                xf.append("/>");
+            }
+            index = xfs.size();
+            xfs.add(xf.toString());
+            xfIndex.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * 开始一个数据行，行号从0开始且必须递增（写在表头下面）
+     */
+    public void startRow(int row) throws IOException {
+        if (!sheetStarted || currentRow >= 0) {
+            throw new IllegalStateException("行未结束或工作表未开始");
+        }
+        if (row <= lastRow) {
+            throw new IllegalArgumentException("行号必须递增: " + row);
+        }
+        currentRow = row;
+        out.write("<row r=\"");
+        out.write(Integer.toString(row + 2));
+        out.write("\">");
+    }
+
+    public void endRow() throws IOException {
+        if (currentRow < 0) {
+            throw new IllegalStateException("没有开始的行");
+        }
+        out.write("</row>");
+        lastRow = currentRow;
+        currentRow = -1;
+    }
+
+    public void writeString(int col, String text, int style) throws IOException {
+        writeInlineString(reference(col), text, style);
+    }
+
+    public void writeNumber(int col, double value, int style) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeString(col, Double.toString(value), style);
+            return;
+        }
+        out.write("<c r=\"");
+        out.write(reference(col));
+        writeStyleAttribute(style);
+        out.write("\"><v>");
+        out.write(formatNumber(value));
+        out.write("</v></c>");
+    }
+
+    /**
+     * 日期写成1900日期系统的序号；Excel不能表示的日期（1900年之前）写成文本
+     */
+    public void writeDate(int col, long epochDay, int style) throws IOException {
+        double serial = dateSerial(epochDay);
+        if (serial < 0) {
+            writeString(col, LocalDate.ofEpochDay(epochDay).toString(), style);
+        } else {
+            writeNumber(col, serial, style);
+        }
+    }
+
+    public void writeBoolean(int col, boolean value, int style) throws IOException {
+        out.write("<c r=\"");
+        out.write(reference(col));
+        writeStyleAttribute(style);
+        out.write(value ? "\" t=\"b\"><v>1</v></c>" : "\" t=\"b\"><v>0</v></c>");
+    }
+
+    /**
+     * 结束工作表，写出styles.xml并完成压缩包
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (!sheetStarted) {
+            startSheet(null, new ArrayList<>(), null, 0);
+        }
+        if (currentRow >= 0) {
+            endRow();
+        }
+        finished = true;
+        out.write("</sheetData></worksheet>");
+        closeEntry();
+        writeStyles();
+        zip.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    // ==================== 包结构 ====================
+
+    private void writePackageParts(String sheetName) throws IOException {
+        writeEntry("[Content_Types].xml", XML_DECL
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>"
+                + "</Types>");
+        writeEntry("_rels/.rels", XML_DECL
+                + "<Relationships xmlns=\"" + NS_PKG_REL + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writeEntry("xl/workbook.xml", XML_DECL
+                + "<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\">"
+                + "<bookViews><workbookView/></bookViews>"
+                + "<sheets><sheet name=\"" + escape(sheetName, true) + "\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+                + "</workbook>");
+        writeEntry("xl/_rels/workbook.xml.rels", XML_DECL
+                + "<Relationships xmlns=\"" + NS_PKG_REL + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                + "<Relationship Id=\"rId2\" Type=\"" + NS_REL + "/styles\" Target=\"styles.xml\"/>"
+                + "</Relationships>");
+    }
+
+    private void writeStyles() throws IOException {
+        zip.putNextEntry(new ZipEntry("xl/styles.xml"));
+        out.write(XML_DECL);
+        out.write("<styleSheet xmlns=\"" + NS_MAIN + "\">");
+        out.write("<numFmts count=\"1\"><numFmt numFmtId=\"" + DATE_FORMAT_ID + "\" formatCode=\"yyyy-mm-dd\"/></numFmts>");
+        writeList("fonts", fonts);
+        out.write("<fills count=\"" + (fills.size() + 2) + "\">"
+                + "<fill><patternFill patternType=\"none\"/></fill>"
+                + "<fill><patternFill patternType=\"gray125\"/></fill>");
+        for (String fill : fills) {
+            out.write(fill);
+        }
+        out.write("</fills>");
+        out.write("<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>");
+        out.write("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+        writeList("cellXfs", xfs);
+        out.write("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+        out.write("</styleSheet>");
+        closeEntry();
+    }
+
+    private void writeList(String tag, List<String> items) throws IOException {
+        out.write("<" + tag + " count=\"" + items.size() + "\">");
+        for (String item : items) {
+            out.write(item);
+        }
+        out.write("</" + tag + ">");
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        closeEntry();
+    }
+
+    private void closeEntry() throws IOException {
+        out.flush();
+        zip.closeEntry();
+    }
+
+    // ==================== 样式 ====================
+
+    private int fontIndex(boolean bold, boolean italic, String color) {
+        String key = bold + "|" + italic + "|" + color;
+        Integer index = fontIndex.get(key);
+        if (index == null) {
+            StringBuilder font = new StringBuilder("<font>");
+            if (bold) {
+                font.append("<b/>");
+            }
+            if (italic) {
+                font.append("<i/>");
+            }
+            font.append("<sz val=\"11\"/>");
+            if (color != null) {
+                font.append("<color rgb=\"").append(color).append("\"/>");
+            }
+            font.append("<name val=\"Calibri\"/><family val=\"2\"/></font>");
+            index = fonts.size();
+            fonts.add(font.toString());
+            fontIndex.put(key, index);
+        }
+        return index;
+    }
+
+    private int fillIndex(String color) {
+        if (color == null) {
+            return 0;
+        }
+        Integer index = fillIndex.get(color);
+        if (index == null) {
+            // 0和1号是规范要求的none与gray125
+            index = fills.size() + 2;
+            fills.add("<fill><patternFill patternType=\"solid\"><fgColor rgb=\"" + color
+                    + "\"/><bgColor indexed=\"64\"/></patternFill></fill>");
+            fillIndex.put(color, index);
+        }
+        return index;
+    }
+
+    /**
+     * "#RRGGBB"或"#AARRGGBB"转成不透明的ARGB，无法识别时返回null
+     */
+    private static String argb(String color) {
+        if (color == null || !color.startsWith("#")) {
+            return null;
+        }
+        String hex = color.substring(1).toUpperCase(Locale.ROOT);
+        if (hex.length() == 8) {
+            hex = hex.substring(2);
+        }
+        if (hex.length() != 6) {
+            return null;
+        }
+        for (int i = 0; i < hex.length(); i++) {
+            if (Character.digit(hex.charAt(i), 16) < 0) {
+                return null;
+            }
+        }
+        return "FF" + hex;
+    }
+
+    private static String horizontal(String alignment) {
+        if (alignment == null) {
+            return null;
+        }
+        switch (alignment) {
+            case "LEFT":
+                return "left";
+            case "CENTER":
+                return "center";
+            case "RIGHT":
+                return "right";
+            default:
+                return null;
+        }
+    }
+
+    // ==================== 单元格 ====================
+
+    private void writeInlineString(String reference, String text, int style) throws IOException {
+        out.write("<c r=\"");
+        out.write(reference);
+        writeStyleAttribute(style);
+        out.write("\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        String value = text == null ? "" : text;
+        if (value.length() > MAX_TEXT_LENGTH) {
+            int end = MAX_TEXT_LENGTH;
+            if (Character.isHighSurrogate(value.charAt(end - 1))) {
+                end--;
+            }
+            value = value.substring(0, end);
+        }
+        out.write(escape(value, false));
+        out.write("</t></is></c>");
+    }
+
+    private void writeStyleAttribute(int style) throws IOException {
+        if (style != 0) {
+            if (style < 0 || style >= xfs.size()) {
+                throw new IllegalArgumentException("未登记的样式: " + style);
+            }
+            out.write("\" s=\"");
+            out.write(Integer.toString(style));
+        }
+    }
+
+    private String reference(int col) {
+        if (currentRow < 0) {
+            throw new IllegalStateException("没有开始的行");
+        }
+        String name = col < columnRefs.length ? columnRefs[col] : columnName(col);
+        return name + (currentRow + 2);
+    }
+
+    /**
+     * 列号（从0开始）转成列名，如0→A、27→AB
+     */
+    static String columnName(int col) {
+        StringBuilder name = new StringBuilder();
+        for (int n = col + 1; n > 0; n = (n - 1) / 26) {
+            name.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return name.toString();
+    }
+
+    /**
+     * 纪元日转成1900日期系统的序号（含Excel虚构的1900-02-29），1900年之前返回-1
+     */
+    static double dateSerial(long epochDay) {
+        // 1900-03-01之后序号比纪元日多25569，之前因虚构的2月29日少一天
+        if (epochDay >= -25508) {
+            return epochDay + 25569;
+        }
+        if (epochDay >= -25567) {
+            return epochDay + 25568;
+        }
+        return -1;
+    }
+
+    /**
+     * 整数不带小数点，其余用最短的往返表示
+     */
+    static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * 工作表名称：去掉Excel不允许的字符，最长31个字符，为空时用Sheet1
+     */
+    static String sheetName(String name) {
+        StringBuilder sb = new StringBuilder();
+        if (name != null) {
+            for (int i = 0; i < name.length() && sb.length() < 31; i++) {
+                char ch = name.charAt(i);
+                if ("[]:*?/\\".indexOf(ch) < 0 && ch >= 0x20) {
+                    sb.append(ch);
+                }
+            }
+        }
+        if (sb.length() > 0 && Character.isHighSurrogate(sb.charAt(sb.length() - 1))) {
+            sb.setLength(sb.length() - 1);
+        }
+        String result = sb.toString().trim();
+        // 首尾不能是单引号
+        while (result.startsWith("'")) {
+            result = result.substring(1);
+        }
+        while (result.endsWith("'")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result.isEmpty() ? "Sheet1" : result;
+    }
+
+    /**
+     * XML转义，并去掉XML 1.0不允许的控制字符和落单的代理字符（Excel遇到会拒绝打开）
+     */
+    static String escape(String text, boolean attribute) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            String replacement;
+            switch (ch) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = attribute ? "&quot;" : null;
+                    break;
+                case '\r':
+                    // 保留回车，避免XML解析时被规范化成换行
+                    replacement = "&#13;";
+                    break;
+                default:
+                    replacement = isValidXmlChar(text, i) ? null : "";
+                    break;
+            }
+            if (replacement != null) {
+                if (sb == null) {
+                    sb = new StringBuilder(text.length() + 16).append(text, 0, i);
+                }
+                sb.append(replacement);
+            } else if (sb != null) {
+                sb.append(ch);
+            }
+        }
+        return sb == null ? text : sb.toString();
+    }
+
+    private static boolean isValidXmlChar(String text, int i) {
+        char ch = text.charAt(i);
+        if (ch < 0x20) {
+            return ch == '\t' || ch == '\n';
+        }
+        if (Character.isHighSurrogate(ch)) {
+            return i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1));
+        }
+        if (Character.isLowSurrogate(ch)) {
+            return i > 0 && Character.isHighSurrogate(text.charAt(i - 1));
+        }
+        return ch != 0xFFFE && ch != 0xFFFF;
+    }
+}
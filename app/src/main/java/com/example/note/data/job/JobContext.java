@@ -0,0 +1,167 @@
+package com.example.note.data.job;
+
+import android.util.Log;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Job;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 任务执行时的上下文：参数、检查点、分块提交和让出点
+ * 在commit中记录的检查点随这块的写入一起提交，事务回滚时检查点也不变。
+ */
+public final class JobContext {
+
+    private static final String TAG = "JobContext";
+
+    // 块之间的间隔，让其他写操作拿到写锁
+    private static final long YIELD_MS = 50;
+
+    private final AppDatabase database;
+    private final Job job;
+    private final BooleanSupplier stopped;
+    private final JSONObject params;
+
+    // 已提交的检查点和进度
+    private JSONObject checkpoint;
+    private long progress;
+    private long total;
+
+    // commit进行中时记录、随事务提交的检查点
+    private boolean inCommit;
+    private boolean hasPending;
+    private JSONObject pendingCheckpoint;
+    private long pendingProgress;
+    private long pendingTotal;
+
+    JobContext(AppDatabase database, Job job, BooleanSupplier stopped) {
+        this.database = database;
+        this.job = job;
+        this.stopped = stopped;
+        this.params = parse(job.getParams());
+        this.checkpoint = parse(job.getCheckpoint());
+        this.progress = job.getProgress();
+        this.total = job.getTotal();
+    }
+
+    public long getJobId() {
+        return job.getId();
+    }
+
+    public JSONObject getParams() {
+        return params;
+    }
+
+    /**
+     * 最后提交的检查点，第一次执行时为空对象
+     */
+    public JSONObject getCheckpoint() {
+        return checkpoint;
+    }
+
+    public long getProgress() {
+        return progress;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * 在一个事务中执行一块工作；块内用checkpoint记录的检查点在同一事务中保存
+     */
+    public <T> T commit(Callable<T> chunk) {
+        if (inCommit) {
+            throw new IllegalStateException("commit不能嵌套");
+        }
+        inCommit = true;
+        hasPending = false;
+        try {
+            T result = database.runInTransaction(() -> {
+                T value = chunk.call();
+                if (hasPending) {
+                    save(pendingCheckpoint, pendingProgress, pendingTotal);
+                }
+                return value;
+            });
+            if (hasPending) {
+                checkpoint = pendingCheckpoint;
+                progress = pendingProgress;
+                total = pendingTotal;
+            }
+            return result;
+        } finally {
+            inCommit = false;
+            hasPending = false;
+        }
+    }
+
+    /**
+     * 记录检查点和进度：在commit中随事务提交，否则立即保存
+     * @param total 总工作量，未知时为0
+     */
+    public void checkpoint(JSONObject checkpoint, long progress, long total) {
+        JSONObject value = checkpoint != null ? checkpoint : new JSONObject();
+        if (inCommit) {
+            hasPending = true;
+            pendingCheckpoint = value;
+            pendingProgress = progress;
+            pendingTotal = total;
+            return;
+        }
+        save(value, progress, total);
+        this.checkpoint = value;
+        this.progress = progress;
+        this.total = total;
+    }
+
+    /**
+     * 让出点：块之间调用，短暂休眠让其他写操作拿到写锁；任务被取消或被停止时抛出JobStoppedException
+     */
+    public void yieldPoint() throws JobStoppedException {
+        throwIfStopped();
+        try {
+            Thread.sleep(YIELD_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobStoppedException();
+        }
+        throwIfStopped();
+    }
+
+    /**
+     * 任务是否已被取消或被系统停止
+     */
+    public boolean isStopped() {
+        return stopped.getAsBoolean()
+                || Job.STATE_CANCELLED.equals(database.jobDao().getStateSync(job.getId()));
+    }
+
+    private void throwIfStopped() throws JobStoppedException {
+        if (isStopped()) {
+            throw new JobStoppedException();
+        }
+    }
+
+    private void save(JSONObject checkpoint, long progress, long total) {
+        database.jobDao().saveCheckpoint(job.getId(), checkpoint.toString(), progress, total,
+                System.currentTimeMillis());
+    }
+
+    private static JSONObject parse(String json) {
+        if (json == null || json.isEmpty()) {
+            return new JSONObject();
+        }
+        try {
+            return new JSONObject(json);
+        } catch (JSONException e) {
+            Log.w(TAG, "Unreadable job data: " + json, e);
+            return new JSONObject();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.note.data.job;
+
+/**
+ * 一类后台任务的执行逻辑
+ * 任务分块执行：每块用JobContext.commit提交，检查点与这块的写入在同一个事务里；
+ * 块之间调用JobContext.yieldPoint让出写锁并响应停止。再次执行时从getCheckpoint()继续。
+ */
+public interface JobHandler {
+
+    /**
+     * 执行（或继续执行）任务，正常返回表示全部完成
+     * @throws JobStoppedException 任务被取消或被系统停止，已提交的检查点保留
+     */
+    void run(JobContext context) throws Exception;
+}
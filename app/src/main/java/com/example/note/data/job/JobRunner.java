@@ -0,0 +1,93 @@
+package com.example.note.data.job;
+
+import android.util.Log;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Job;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 执行一次任务并维护jobs表中的状态
+ * 与WorkManager无关，JobWorker和测试都通过这里执行任务。
+ */
+public final class JobRunner {
+
+    private static final String TAG = "JobRunner";
+
+    /**
+     * 一次执行的结果
+     */
+    public enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        CANCELLED,
+        // 被系统停止，检查点已保存，等待再次调度
+        STOPPED
+    }
+
+    private JobRunner() {
+    }
+
+    /**
+     * 执行或继续执行任务；进程被杀后残留的RUNNING状态按未完成处理
+     * @param handler 任务类型对应的执行逻辑，null表示无法识别的类型
+     * @param stopped 系统是否要求停止（如WorkManager的约束不再满足）
+     */
+    public static Outcome run(AppDatabase database, long jobId, JobHandler handler, BooleanSupplier stopped) {
+        Job job = database.jobDao().getByIdSync(jobId);
+        if (job == null) {
+            Log.w(TAG, "Job " + jobId + " no longer exists");
+            return Outcome.CANCELLED;
+        }
+        if (job.isFinished()) {
+            return outcomeOf(job.getState());
+        }
+        if (database.jobDao().markRunning(jobId, System.currentTimeMillis()) == 0) {
+            // 刚刚被取消
+            return outcomeOf(database.jobDao().getStateSync(jobId));
+        }
+        if (handler == null) {
+            Log.e(TAG, "Unknown job type " + job.getType());
+            database.jobDao().markFinished(jobId, Job.STATE_FAILED, "未知的任务类型: " + job.getType(),
+                    System.currentTimeMillis());
+            return Outcome.FAILED;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            handler.run(new JobContext(database, job, stopped));
+            if (database.jobDao().markFinished(jobId, Job.STATE_SUCCEEDED, null, System.currentTimeMillis()) == 0) {
+                return outcomeOf(database.jobDao().getStateSync(jobId));
+            }
+            Log.d(TAG, job.getType() + " job " + jobId + " completed in " + (System.currentTimeMillis() - start) + "ms");
+            return Outcome.SUCCEEDED;
+        } catch (JobStoppedException e) {
+            if (Job.STATE_CANCELLED.equals(database.jobDao().getStateSync(jobId))) {
+                Log.d(TAG, job.getType() + " job " + jobId + " cancelled");
+                return Outcome.CANCELLED;
+            }
+            database.jobDao().markStopped(jobId, System.currentTimeMillis());
+            Log.d(TAG, job.getType() + " job " + jobId + " stopped after " + (System.currentTimeMillis() - start) + "ms");
+            return Outcome.STOPPED;
+        } catch (Exception e) {
+            Log.e(TAG, job.getType() + " job " + jobId + " failed", e);
+            database.jobDao().markFinished(jobId, Job.STATE_FAILED, String.valueOf(e.getMessage()),
+                    System.currentTimeMillis());
+            return outcomeOf(database.jobDao().getStateSync(jobId));
+        }
+    }
+
+    private static Outcome outcomeOf(String state) {
+        if (Job.STATE_SUCCEEDED.equals(state)) {
+            return Outcome.SUCCEEDED;
+        }
+        if (Job.STATE_FAILED.equals(state)) {
+            return Outcome.FAILED;
+        }
+        if (Job.STATE_CANCELLED.equals(state) || state == null) {
+            return Outcome.CANCELLED;
+        }
+        return Outcome.STOPPED;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.note.data.job;
+
+/**
+ * 任务在让出点发现自己被取消或被系统停止
+ */
+public class JobStoppedException extends Exception {
+
+    public JobStoppedException() {
+        super("任务已停止");
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.note.data.job;
+
+/**
+ * 后台任务类型
+ * 维护类任务只在充电且设备空闲时执行，被打断后等条件再次满足时继续。
+ */
+public enum JobType {
+    // 分块删除已标记的笔记本
+    PURGE(false),
+    // 从文件导入新笔记本
+    IMPORT(false),
+    // 增量回收空闲页
+    VACUUM(true),
+    // 补齐搜索索引、合并索引段并更新查询统计
+    REINDEX(true);
+
+    private final boolean maintenance;
+
+    JobType(boolean maintenance) {
+        this.maintenance = maintenance;
+    }
+
+    public boolean isMaintenance() {
+        return maintenance;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.note.data.job;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.note.data.repository.JobRepository;
+
+/**
+ * WorkManager工作者：执行jobs表中的一个任务
+ * 被系统停止时返回retry，由WorkManager在约束再次满足时重新调度，任务从检查点继续。
+ */
+public class JobWorker extends Worker {
+
+    public static final String KEY_JOB_ID = "job_id";
+
+    public JobWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        long jobId = getInputData().getLong(KEY_JOB_ID, 0);
+        JobRunner.Outcome outcome = JobRepository.getInstance(getApplicationContext()).runSync(jobId, this::isStopped);
+        switch (outcome) {
+            case STOPPED:
+                return Result.retry();
+            case FAILED:
+                return Result.failure();
+            default:
+                return Result.success();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.note.data.job;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.search.SearchIndex;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * 搜索索引维护（维护类任务）
+ * 参数rebuild为true时先清空索引并把全部文档放入待索引队列；然后分批处理队列，
+ * 最后合并FTS索引段并更新查询统计。待索引队列保存在数据库中，被打断后从剩余的队列继续。
+ */
+public class ReindexJob implements JobHandler {
+
+    public static final String PARAM_REBUILD = "rebuild";
+
+    private static final String STAGE = "stage";
+    private static final int STAGE_MARK = 0;
+    private static final int STAGE_DRAIN = 1;
+    private static final int STAGE_OPTIMIZE = 2;
+    private static final int STAGE_DONE = 3;
+
+    private final AppDatabase database;
+    private final SearchIndex searchIndex;
+
+    public ReindexJob(AppDatabase database, SearchIndex searchIndex) {
+        this.database = database;
+        this.searchIndex = searchIndex;
+    }
+
+    @Override
+    public void run(JobContext context) throws Exception {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        int stage = context.getCheckpoint().optInt(STAGE, STAGE_MARK);
+        if (stage == STAGE_MARK) {
+            boolean rebuild = context.getParams().optBoolean(PARAM_REBUILD, false);
+            context.commit(() -> {
+                if (rebuild) {
+                    SearchIndex.markAllDirty(db);
+                }
+                context.checkpoint(stage(STAGE_DRAIN), 0, queryInt(db, "SELECT COUNT(*) FROM search_dirty"));
+                return null;
+            });
+            stage = STAGE_DRAIN;
+        }
+        if (stage == STAGE_DRAIN) {
+            long done = context.getProgress();
+            int count;
+            while ((count = searchIndex.drainBatchSync()) > 0) {
+                done += count;
+                context.checkpoint(stage(STAGE_DRAIN), done, Math.max(context.getTotal(), done));
+                context.yieldPoint();
+            }
+            context.checkpoint(stage(STAGE_OPTIMIZE), done, Math.max(context.getTotal(), done));
+            stage = STAGE_OPTIMIZE;
+        }
+        if (stage == STAGE_OPTIMIZE) {
+            searchIndex.optimize(db);
+            db.execSQL("ANALYZE");
+            context.checkpoint(stage(STAGE_DONE), context.getProgress(), context.getTotal());
+        }
+    }
+
+    private static JSONObject stage(int stage) throws JSONException {
+        return new JSONObject().put(STAGE, stage);
+    }
+
+    private static int queryInt(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.note.data.job;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.note.data.database.AppDatabase;
+
+/**
+ * 回收空闲页（维护类任务）
+ * 数据库还不是增量回收模式时先整体VACUUM一次切换过去（只在这里做，充电且空闲时执行），
+ * 之后每步只增量回收VACUUM_PAGES页，步与步之间是让出点。空闲页数本身就是进度，被打断后重新统计即可继续。
+ */
+public class VacuumJob implements JobHandler {
+
+    private static final String TAG = "VacuumJob";
+
+    // 每次增量回收的页数
+    private static final int VACUUM_PAGES = 256;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final AppDatabase database;
+
+    public VacuumJob(AppDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public void run(JobContext context) throws Exception {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        if (!isIncremental(db)) {
+            long start = System.currentTimeMillis();
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            context.checkpoint(null, 1, 1);
+            Log.d(TAG, "Switched to incremental auto_vacuum in " + (System.currentTimeMillis() - start) + "ms");
+            return;
+        }
+        int total = queryInt(db, "PRAGMA freelist_count");
+        int freed = 0;
+        int freePages;
+        while ((freePages = queryInt(db, "PRAGMA freelist_count")) > 0) {
+            releasePages(db, VACUUM_PAGES);
+            freed += Math.min(freePages, VACUUM_PAGES);
+            context.checkpoint(null, freed, Math.max(total, freed));
+            if (freePages <= VACUUM_PAGES) {
+                break;
+            }
+            context.yieldPoint();
+        }
+        if (freed > 0) {
+            Log.d(TAG, "Released " + freed + " free pages");
+        }
+    }
+
+    /**
+     * 数据库是否已是增量回收模式
+     */
+    public static boolean isIncremental(SupportSQLiteDatabase db) {
+        return queryInt(db, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL;
+    }
+
+    /**
+     * 增量回收最多pages个空闲页，不是增量回收模式时什么也不做
+     */
+    public static void releasePages(SupportSQLiteDatabase db, int pages) {
+        try (Cursor cursor = db.query("PRAGMA incremental_vacuum(" + pages + ")")) {
+            while (cursor.moveToNext()) {
+                // 每步释放一页，读完游标才执行完
+            }
+        }
+    }
+
+    private static int queryInt(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+}
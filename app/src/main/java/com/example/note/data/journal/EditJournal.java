@@ -0,0 +1,468 @@
+package com.example.note.data.journal;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 编辑日志（预写日志）
+ * 每个打开的笔记本对应一个追加写文件，内存中尚未写入数据库的编辑先记入日志，
+ * 批量fsync（组提交）；数据库保存成功后截断日志，进程被杀后下次打开时重放。
+ *
+ * 文件格式：[MAGIC][VERSION] 之后是若干条 [len][crc32][payload] 记录，
+ * 校验失败或不完整的尾部记录在打开时被截掉。
+ */
+public class EditJournal {
+
+    private static final String TAG = "EditJournal";
+    private static final String JOURNAL_DIR = "journal";
+    private static final int MAGIC = 0x4A524E4C; // "JRNL"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    // 组提交窗口：窗口内的多条记录合并为一次写入和一次fsync
+    private static final long GROUP_COMMIT_DELAY_MS = 20;
+
+    // 记录类型
+    public static final byte TYPE_SET_CELL = 1;
+    public static final byte TYPE_INSERT_ROW = 2;
+    public static final byte TYPE_DELETE_ROW = 3;
+    public static final byte TYPE_INSERT_COLUMN = 4;
+    public static final byte TYPE_DELETE_COLUMN = 5;
+
+    /**
+     * 日志记录
+     */
+    public static final class Entry {
+        public final long seq;
+        public final byte type;
+        public final int row;
+        public final int col;
+        public final String value; // SET_CELL为单元格内容，INSERT_COLUMN为列名
+
+        Entry(long seq, byte type, int row, int col, String value) {
+            this.seq = seq;
+            this.type = type;
+            this.row = row;
+            this.col = col;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 重放目标，由持有表格模型的一方实现
+     */
+    public interface Applier {
+        void setCell(int row, int col, String value);
+        void insertRow(int row);
+        void deleteRow(int row);
+        void insertColumn(int col, String name);
+        void deleteColumn(int col);
+    }
+
+    private final File file;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final List<Entry> recovered;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    // 以下字段由this保护
+    private long lastSeq;
+    private final List<byte[]> pending = new ArrayList<>();
+    private final List<Long> pendingSeqs = new ArrayList<>();
+    private boolean flushScheduled = false;
+
+    // 已落盘但尚未被数据库保存覆盖的记录（只在executor线程访问），截断时用于重写剩余记录
+    private final List<Long> durableSeqs = new ArrayList<>();
+    private final List<byte[]> durableFrames = new ArrayList<>();
+
+    private EditJournal(File file) throws IOException {
+        this.file = file;
+        this.recovered = Collections.unmodifiableList(recover());
+        this.lastSeq = recovered.isEmpty() ? 0 : recovered.get(recovered.size() - 1).seq;
+    }
+
+    /**
+     * 打开日志文件，同步完成校验与恢复
+     */
+    public static EditJournal open(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        return new EditJournal(file);
+    }
+
+    /**
+     * 笔记本对应的日志文件
+     */
+    public static File fileFor(File filesDir, long notebookId) {
+        return new File(new File(filesDir, JOURNAL_DIR), notebookId + ".journal");
+    }
+
+    /**
+     * 上次未被数据库保存覆盖的记录（按写入顺序），打开后需由调用方重放
+     */
+    public List<Entry> getRecoveredEntries() {
+        return recovered;
+    }
+    
+    /**
+     * 恢复的记录中序号大于savedSeq的部分；数据库保存已提交但日志未来得及截断时，前面的记录已包含在数据库中
+     */
+    public List<Entry> getRecoveredEntriesAfter(long savedSeq) {
+        int from = 0;
+        while (from < recovered.size() && recovered.get(from).seq <= savedSeq) {
+            from++;
+        }
+        return recovered.subList(from, recovered.size());
+    }
+
+    /**
+     * 按顺序把记录重放到目标模型
+     */
+    public static void replay(List<Entry> entries, Applier applier) {
+        for (Entry entry : entries) {
+            switch (entry.type) {
+                case TYPE_SET_CELL:
+                    applier.setCell(entry.row, entry.col, entry.value);
+                    break;
+                case TYPE_INSERT_ROW:
+                    applier.insertRow(entry.row);
+                    break;
+                case TYPE_DELETE_ROW:
+                    applier.deleteRow(entry.row);
+                    break;
+                case TYPE_INSERT_COLUMN:
+                    applier.insertColumn(entry.col, entry.value);
+                    break;
+                case TYPE_DELETE_COLUMN:
+                    applier.deleteColumn(entry.col);
+                    break;
+                default:
+                    Log.w(TAG, "Unknown journal record type: " + entry.type);
+                    break;
+            }
+        }
+    }
+
+    // ==================== 追加记录 ====================
+
+    public long appendSetCell(int row, int col, String value) {
+        return append(TYPE_SET_CELL, row, col, value);
+    }
+
+    public long appendInsertRow(int row) {
+        return append(TYPE_INSERT_ROW, row, -1, null);
+    }
+
+    public long appendDeleteRow(int row) {
+        return append(TYPE_DELETE_ROW, row, -1, null);
+    }
+
+    public long appendInsertColumn(int col, String name) {
+        return append(TYPE_INSERT_COLUMN, -1, col, name);
+    }
+
+    public long appendDeleteColumn(int col) {
+        return append(TYPE_DELETE_COLUMN, -1, col, null);
+    }
+
+    /**
+     * 追加一条记录，返回其序号；记录在组提交窗口结束后统一落盘
+     */
+    private synchronized long append(byte type, int row, int col, String value) {
+        long seq = ++lastSeq;
+        pending.add(encodeFrame(seq, type, row, col, value));
+        pendingSeqs.add(seq);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(this::flushPending, GROUP_COMMIT_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+        return seq;
+    }
+
+    /**
+     * 当前最后一条记录的序号；保存开始前取得，保存成功后传给 {@link #truncate(long)}
+     */
+    public synchronized long mark() {
+        return lastSeq;
+    }
+
+    /**
+     * 序号至少从afterSeq之后开始分配；日志截断后重新打开时用数据库中已保存的序号续上，
+     * 保证新记录不会被当作已保存而在重放时跳过
+     */
+    public synchronized void advanceTo(long afterSeq) {
+        lastSeq = Math.max(lastSeq, afterSeq);
+    }
+    
+    /**
+     * 阻塞直到已追加的记录全部落盘
+     */
+    public void sync() throws IOException {
+        try {
+            executor.submit(this::flushPending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while syncing journal", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to sync journal", e.getCause());
+        }
+    }
+
+    /**
+     * 数据库已保存到序号upToSeq为止的全部编辑，丢弃这些记录
+     */
+    public void truncate(long upToSeq) {
+        executor.execute(() -> {
+            flushPending();
+            truncateDurable(upToSeq);
+        });
+    }
+
+    /**
+     * 落盘剩余记录并释放文件句柄，不阻塞调用线程
+     */
+    public void close() {
+        executor.execute(() -> {
+            flushPending();
+            closeChannel();
+        });
+        executor.shutdown();
+    }
+
+    // ==================== 磁盘读写（executor线程） ====================
+
+    private void flushPending() {
+        List<byte[]> batch;
+        List<Long> seqs;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            seqs = new ArrayList<>(pendingSeqs);
+            pending.clear();
+            pendingSeqs.clear();
+        }
+
+        try {
+            ensureChannel();
+            int total = 0;
+            for (byte[] frame : batch) {
+                total += frame.length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(total);
+            for (byte[] frame : batch) {
+                buffer.put(frame);
+            }
+            buffer.flip();
+            channel.position(channel.size());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // 一批记录只做一次fsync
+            channel.force(false);
+
+            for (int i = 0; i < batch.size(); i++) {
+                durableSeqs.add(seqs.get(i));
+                durableFrames.add(batch.get(i));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to flush journal", e);
+            // 写入失败时放回队列，下一次落盘重试
+            synchronized (this) {
+                pending.addAll(0, batch);
+                pendingSeqs.addAll(0, seqs);
+            }
+            throw new IllegalStateException("Journal flush failed", e);
+        }
+    }
+
+    private void truncateDurable(long upToSeq) {
+        int keepFrom = 0;
+        while (keepFrom < durableSeqs.size() && durableSeqs.get(keepFrom) <= upToSeq) {
+            keepFrom++;
+        }
+        if (keepFrom == 0) {
+            return;
+        }
+
+        try {
+            if (keepFrom == durableSeqs.size()) {
+                // 常见情况：保存覆盖了全部记录，直接截断到文件头
+                ensureChannel();
+                channel.truncate(HEADER_SIZE);
+                channel.force(false);
+            } else {
+                // 保存期间又有新记录：重写剩余记录后原子替换
+                File tmp = new File(file.getPath() + ".tmp");
+                try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+                    out.setLength(0);
+                    out.writeInt(MAGIC);
+                    out.writeByte(VERSION);
+                    for (int i = keepFrom; i < durableFrames.size(); i++) {
+                        out.write(durableFrames.get(i));
+                    }
+                    out.getFD().sync();
+                }
+                closeChannel();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Failed to replace journal file");
+                }
+            }
+            durableSeqs.subList(0, keepFrom).clear();
+            durableFrames.subList(0, keepFrom).clear();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to truncate journal", e);
+        }
+    }
+
+    private void ensureChannel() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            return;
+        }
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        if (channel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).put(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(false);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            if (raf != null) {
+                raf.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close journal", e);
+        }
+        raf = null;
+        channel = null;
+    }
+
+    /**
+     * 读取全部完整记录，截掉被中断写入的尾部
+     */
+    private List<Entry> recover() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!file.exists()) {
+            return entries;
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "rw")) {
+            long length = in.length();
+            if (length < HEADER_SIZE || in.readInt() != MAGIC || in.readByte() != VERSION) {
+                Log.w(TAG, "Discarding journal with invalid header: " + file.getName());
+                in.setLength(0);
+                return entries;
+            }
+
+            long pos = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            while (pos + FRAME_HEADER_SIZE <= length) {
+                in.seek(pos);
+                int len = in.readInt();
+                int checksum = in.readInt();
+                if (len <= 0 || len > MAX_RECORD_SIZE || pos + FRAME_HEADER_SIZE + len > length) {
+                    break;
+                }
+                byte[] payload = new byte[len];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload, 0, len);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                Entry entry = decodePayload(payload);
+                entries.add(entry);
+                durableSeqs.add(entry.seq);
+                durableFrames.add(frame(payload));
+                pos += FRAME_HEADER_SIZE + len;
+            }
+
+            if (pos != length) {
+                Log.w(TAG, "Truncating torn journal tail at " + pos + " of " + length);
+                in.setLength(pos);
+                in.getFD().sync();
+            }
+        }
+        if (!entries.isEmpty()) {
+            Log.i(TAG, "Recovered " + entries.size() + " journal records from " + file.getName());
+        }
+        return entries;
+    }
+
+    // ==================== 编解码 ====================
+
+    private static byte[] encodeFrame(long seq, byte type, int row, int col, String value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(seq);
+            out.writeByte(type);
+            out.writeInt(row);
+            out.writeInt(col);
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+            out.flush();
+            return frame(bytes.toByteArray());
+        } catch (IOException e) {
+            // ByteArrayOutputStream不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    private static Entry decodePayload(byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        long seq = in.getLong();
+        byte type = in.get();
+        int row = in.getInt();
+        int col = in.getInt();
+        int len = in.getInt();
+        String value = null;
+        if (len >= 0) {
+            value = new String(payload, in.position(), len, StandardCharsets.UTF_8);
+        }
+        return new Entry(seq, type, row, col, value);
+    }
+}
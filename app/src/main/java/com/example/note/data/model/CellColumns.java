@@ -0,0 +1,52 @@
+package com.example.note.data.model;
+
+import com.example.note.data.entity.Cell;
+
+import java.util.List;
+
+/**
+ * 按列存放的单元格原始值（行优先顺序）
+ * 游标读取和快照文件都先落到这里，再由NotebookLoader并行构建Cell对象
+ */
+public final class CellColumns {
+    public int count;
+    public final long[] id;
+    public final int[] row;
+    public final int[] col;
+    public final String[] content;
+    public final long[] styleId;
+    public final String[] imageId;
+    public final long[] createdAt;
+    public final long[] updatedAt;
+
+    public CellColumns(int capacity) {
+        id = new long[capacity];
+        row = new int[capacity];
+        col = new int[capacity];
+        content = new String[capacity];
+        styleId = new long[capacity];
+        imageId = new String[capacity];
+        createdAt = new long[capacity];
+        updatedAt = new long[capacity];
+    }
+
+    /**
+     * 从Cell列表构建（保存成功后写快照时使用）
+     */
+    public static CellColumns fromCells(List<Cell> cells) {
+        CellColumns columns = new CellColumns(cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            Cell cell = cells.get(i);
+            columns.id[i] = cell.getId();
+            columns.row[i] = cell.getRowIndex();
+            columns.col[i] = cell.getColIndex();
+            columns.content[i] = cell.getContent();
+            columns.styleId[i] = cell.getStyleId();
+            columns.imageId[i] = cell.getImageId();
+            columns.createdAt[i] = cell.getCreatedAt();
+            columns.updatedAt[i] = cell.getUpdatedAt();
+        }
+        columns.count = cells.size();
+        return columns;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.note.data.model;
+
+import com.example.note.data.entity.Cell;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量替换的结果
+ * oldCells按笔记本保存被替换单元格的原始内容（行列号和旧值），用于生成撤销记录；
+ * operationId标识这一次替换，跨多个笔记本的替换只生成一条以它为键的撤销记录
+ */
+public final class ReplaceResult {
+    public final String operationId;
+    public final int scannedCells;         // 检查过的候选单元格数
+    public final int replacedCells;        // 实际写入的单元格数
+    public final int skippedCells;         // 扫描后被并发修改而跳过的单元格数
+    public final boolean cancelled;        // 被取消时已提交的批次仍然有效
+    public final Map<Long, List<Cell>> oldCells;
+
+    public ReplaceResult(String operationId, int scannedCells, int replacedCells, int skippedCells, boolean cancelled,
+                         Map<Long, List<Cell>> oldCells) {
+        this.operationId = operationId;
+        this.scannedCells = scannedCells;
+        this.replacedCells = replacedCells;
+        this.skippedCells = skippedCells;
+        this.cancelled = cancelled;
+        this.oldCells = oldCells;
+    }
+}
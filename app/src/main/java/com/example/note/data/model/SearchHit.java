@@ -0,0 +1,32 @@
+package com.example.note.data.model;
+
+/**
+ * 全局搜索的一条结果：笔记本标题命中或单元格内容命中
+ */
+public final class SearchHit {
+    public static final int KIND_TITLE = 0;
+    public static final int KIND_CELL = 1;
+
+    public final int kind;
+    public final long notebookId;
+    public final String notebookTitle;
+    public final long cellId;              // 标题命中时为-1
+    public final int rowIndex;             // 标题命中时为-1
+    public final int colIndex;             // 标题命中时为-1
+    public final String snippet;           // 命中位置附近的原文片段
+    public final int matchStart;           // 命中关键词在snippet中的区间，未定位到时为-1
+    public final int matchEnd;
+
+    public SearchHit(int kind, long notebookId, String notebookTitle, long cellId, int rowIndex, int colIndex,
+                     String snippet, int matchStart, int matchEnd) {
+        this.kind = kind;
+        this.notebookId = notebookId;
+        this.notebookTitle = notebookTitle;
+        this.cellId = cellId;
+        this.rowIndex = rowIndex;
+        this.colIndex = colIndex;
+        this.snippet = snippet;
+        this.matchStart = matchStart;
+        this.matchEnd = matchEnd;
+    }
+}
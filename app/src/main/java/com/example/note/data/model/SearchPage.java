@@ -0,0 +1,35 @@
+package com.example.note.data.model;
+
+import java.util.List;
+
+/**
+ * 全局搜索的一页结果
+ * 排序：按全文索引的相关度得分倒序（标题命中加权），得分相同时按文档id倒序；
+ * 翻页用上一页最后一条的排序键（keyset），不使用OFFSET；键中带着第一页的语料统计和候选范围，各页按同样的标准排名。
+ */
+public final class SearchPage {
+    public final List<SearchHit> hits;
+    public final Key next;                 // 没有更多结果时为null
+
+    public SearchPage(List<SearchHit> hits, Key next) {
+        this.hits = hits;
+        this.next = next;
+    }
+
+    /**
+     * 翻页位置：结果严格排在此键之后
+     */
+    public static final class Key {
+        public final double score;
+        public final long docId;
+        public final byte[] corpus;        // 第一页的matchinfo，后续页按其中的总文档数、平均长度和短语文档数计分
+        public final long floorDocId;      // 参与排名的单元格docid下限
+
+        public Key(double score, long docId, byte[] corpus, long floorDocId) {
+            this.score = score;
+            this.docId = docId;
+            this.corpus = corpus;
+            this.floorDocId = floorDocId;
+        }
+    }
+}
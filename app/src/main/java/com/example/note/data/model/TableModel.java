@@ -0,0 +1,50 @@
+package com.example.note.data.model;
+
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.entity.Row;
+
+import java.util.List;
+
+/**
+ * 一次性加载完成的表格模型
+ * 由NotebookLoader在后台线程构建，NoteViewModel直接拿来填充源数据缓存
+ */
+public final class TableModel {
+    public final Notebook notebook;
+    public final List<Column> columns;     // 按column_index排序
+    public final List<Row> rows;           // 自定义行高，按row_index排序
+    public final List<Cell> frozenCells;   // 冻结列单元格
+    public final List<Cell> scrollableCells; // 可滚动列单元格
+    public final int rowCount;
+    public final int columnCount;
+    public final boolean fromSnapshot;     // 单元格是否来自快照缓存
+
+    // 加载耗时（毫秒），用于打开耗时统计
+    public final long queryMillis;
+    public final long decodeMillis;
+
+    public TableModel(Notebook notebook, List<Column> columns, List<Row> rows,
+                      List<Cell> frozenCells, List<Cell> scrollableCells,
+                      int rowCount, int columnCount, boolean fromSnapshot,
+                      long queryMillis, long decodeMillis) {
+        this.notebook = notebook;
+        this.columns = columns;
+        this.rows = rows;
+        this.frozenCells = frozenCells;
+        this.scrollableCells = scrollableCells;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.fromSnapshot = fromSnapshot;
+        this.queryMillis = queryMillis;
+        this.decodeMillis = decodeMillis;
+    }
+
+    /**
+     * 单元格总数
+     */
+    public int getCellCount() {
+        return frozenCells.size() + scrollableCells.size();
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.note.data.repository;
+
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.template.TemplatePayload;
+import com.example.note.util.CellValueUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * 导入文件时按行优先的顺序把单元格写入新笔记本
+ * 逐个绑定到预编译的插入语句，不构造Cell对象；每写入CHUNK_CELLS个单元格，在行边界提交一次事务，
+ * 内存和单个事务的大小都与文件行数无关。流式写入时只写有内容或有格式的单元格，行列范围取到最后一个有内容的单元格；
+ * 收尾时分块删除范围之外只有格式的单元格，再由CellDao.insertEmptyGridRows按行分段补齐范围内的空白单元格，
+ * 与新建笔记本一样保持网格完整（编辑只修改已有的单元格）。
+ * 每块提交前把写到的行和范围交给监听器，与这块在同一事务中保存；从头重读文件并用resume恢复后，已写入的行被跳过。
+ */
+class CellBulkWriter implements Closeable {
+
+    /** 每个事务写入的单元格数 */
+    static final int CHUNK_CELLS = 20_000;
+
+    // 写入状态的键：之前的行都已写入的行号、有内容的行列范围、是否有范围之外的格式单元格、已补齐空白的行数
+    static final String STATE_ROW = "row";
+    private static final String STATE_ROWS = "rows";
+    private static final String STATE_COLS = "cols";
+    private static final String STATE_STYLED = "styled";
+    private static final String STATE_FILLED = "filled";
+
+    interface ChunkListener {
+        /**
+         * 每个事务提交前在同一事务中调用，state可交给resume继续写入
+         */
+        default void beforeCommit(JSONObject state) throws JSONException {
+        }
+
+        /**
+         * 每个事务提交后调用，返回false时停止导入
+         */
+        boolean onChunkCommitted(int rows);
+    }
+
+    private final AppDatabase database;
+    private final long notebookId;
+    private final long now;
+    private final ChunkListener listener;
+    private final SupportSQLiteStatement insertCell;
+
+    private boolean inTransaction;
+    private int chunkCells;
+    // 当前行号和当前行中下一个可写的列，-1表示还没有写入任何行
+    private int row = -1;
+    private int nextCol;
+    // 有内容的行列范围（列数还包括表头的宽度）
+    private int rows;
+    private int cols;
+    // 写入过超出上面范围、只有格式的空白单元格，收尾时需要删除
+    private boolean styledOutside;
+    // resumeRow之前的行在上次执行中已写入，重读时跳过
+    private int resumeRow;
+    private int skipped;
+    // 收尾时已补齐空白单元格的行数
+    private int filledRows;
+
+    CellBulkWriter(AppDatabase database, long notebookId, long now, ChunkListener listener) {
+        this.database = database;
+        this.notebookId = notebookId;
+        this.now = now;
+        this.listener = listener;
+        insertCell = database.compileStatement("INSERT INTO cells (notebook_id, row_index, col_index, content, " +
+                "num_value, date_value, style_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    }
+
+    /**
+     * 从beforeCommit保存的状态继续：之前的行不再写入，范围从状态中恢复
+     */
+    void resume(JSONObject state) {
+        resumeRow = state.optInt(STATE_ROW, 0);
+        row = resumeRow - 1;
+        rows = state.optInt(STATE_ROWS, 0);
+        cols = Math.max(cols, state.optInt(STATE_COLS, 0));
+        styledOutside = state.optBoolean(STATE_STYLED, false);
+        filledRows = state.optInt(STATE_FILLED, 0);
+    }
+
+    /**
+     * 预先设置列数（例如表头的列数）
+     */
+    void setColumnCount(int count) {
+        cols = Math.max(cols, count);
+    }
+
+    /**
+     * 写入一个单元格，必须按行优先的顺序调用；默认格式的空白单元格不写入
+     * @return false表示已被取消，调用方应停止
+     */
+    boolean write(int targetRow, int col, String content, long styleId) throws IOException {
+        if (targetRow < resumeRow) {
+            // 跳过已写入的部分时也定期响应停止
+            return ++skipped % CHUNK_CELLS != 0 || listener == null || listener.onChunkCommitted(resumeRow);
+        }
+        if (targetRow < row || (targetRow == row && col < nextCol)) {
+            throw new IOException("单元格没有按行排列：第" + (targetRow + 1) + "行第" + (col + 1) + "列");
+        }
+        if (targetRow > row) {
+            if (chunkCells >= CHUNK_CELLS) {
+                commit(targetRow);
+                if (listener != null && !listener.onChunkCommitted(targetRow)) {
+                    return false;
+                }
+            }
+            row = targetRow;
+        }
+        nextCol = col + 1;
+        boolean empty = content == null || content.isEmpty();
+        if (empty && styleId == CellStyle.DEFAULT_ID) {
+            return true;
+        }
+        insertCell(col, empty ? "" : content, styleId);
+        if (!empty) {
+            rows = row + 1;
+            cols = Math.max(cols, col + 1);
+        } else if (row >= rows || col >= cols) {
+            // 后面出现内容时可能又落回范围内，收尾时才知道是否要删除
+            styledOutside = true;
+        }
+        return true;
+    }
+
+    /**
+     * 去掉范围之外的格式单元格，补齐范围内的空白单元格，写入列定义，并在最后一个事务中执行收尾操作
+     * @param names 列名，缺少或为空时使用“列N”
+     * @param columnType 每列的类型（Column.ColumnType的值）
+     * @return false表示在删除或补齐单元格时被停止，最后一个事务没有执行
+     */
+    boolean finish(List<String> names, IntFunction<String> columnType, Runnable inFinalTransaction)
+            throws IOException {
+        // 所有行都已写入，继续时只需重新删除和补齐
+        int end = Math.max(row + 1, resumeRow);
+        if (styledOutside && !trim(end)) {
+            return false;
+        }
+        if (!backfill(end)) {
+            return false;
+        }
+        begin();
+        try (SupportSQLiteStatement insertColumn = database.compileStatement("INSERT INTO columns (notebook_id, " +
+                "column_index, name, width, type, is_visible, is_frozen, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, 1, 0, ?, ?)")) {
+            for (int col = 0; col < cols; col++) {
+                String name = col < names.size() && names.get(col) != null ? names.get(col).trim() : "";
+                insertColumn.bindLong(1, notebookId);
+                insertColumn.bindLong(2, col);
+                insertColumn.bindString(3, name.isEmpty() ? "列" + (col + 1) : name);
+                insertColumn.bindDouble(4, TemplatePayload.DEFAULT_COLUMN_WIDTH);
+                insertColumn.bindString(5, columnType.apply(col));
+                insertColumn.bindLong(6, now);
+                insertColumn.bindLong(7, now);
+                insertColumn.executeInsert();
+            }
+        }
+        if (inFinalTransaction != null) {
+            inFinalTransaction.run();
+        }
+        commit();
+        return true;
+    }
+
+    /**
+     * 有内容的行数，末尾只有格式的行不计
+     */
+    int getRows() {
+        return rows;
+    }
+
+    int getCols() {
+        return cols;
+    }
+
+    /**
+     * 分块删除末尾只有格式的行和列（例如整行或整列设置了填充色），每块一个事务
+     * @return false表示被停止
+     */
+    private boolean trim(int end) throws IOException {
+        commit(end);
+        int deleted;
+        do {
+            begin();
+            deleted = database.cellDao().deleteCellsOutsideChunk(notebookId, rows, cols, CHUNK_CELLS);
+            commit(end);
+            if (listener != null && !listener.onChunkCommitted(rows)) {
+                return false;
+            }
+        } while (deleted >= CHUNK_CELLS);
+        return true;
+    }
+
+    /**
+     * 按行分段补齐范围内的空白单元格，每段约CHUNK_CELLS个单元格、一个事务；只有表头时补一行，与加载后显示的行数一致
+     * @return false表示被停止
+     */
+    private boolean backfill(int end) throws IOException {
+        int fillRows = rows > 0 || cols == 0 ? rows : 1;
+        int rowsPerChunk = Math.max(1, CHUNK_CELLS / Math.max(1, cols));
+        commit(end);
+        while (filledRows < fillRows) {
+            int to = Math.min(fillRows, filledRows + rowsPerChunk);
+            begin();
+            database.cellDao().insertEmptyGridRows(notebookId, filledRows, to, cols, now);
+            filledRows = to;
+            commit(end);
+            if (listener != null && !listener.onChunkCommitted(rows)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insertCell(int col, String content, long styleId) {
+        begin();
+        insertCell.bindLong(1, notebookId);
+        insertCell.bindLong(2, row);
+        insertCell.bindLong(3, col);
+        insertCell.bindString(4, content);
+        Double numValue = content.isEmpty() ? null : CellValueUtils.parseNumber(content);
+        Long dateValue = content.isEmpty() ? null : CellValueUtils.parseDate(content);
+        if (numValue != null) {
+            insertCell.bindDouble(5, numValue);
+        } else {
+            insertCell.bindNull(5);
+        }
+        if (dateValue != null) {
+            insertCell.bindLong(6, dateValue);
+        } else {
+            insertCell.bindNull(6);
+        }
+        insertCell.bindLong(7, styleId);
+        insertCell.bindLong(8, now);
+        insertCell.bindLong(9, now);
+        insertCell.executeInsert();
+        chunkCells++;
+    }
+
+    private void begin() {
+        if (!inTransaction) {
+            database.beginTransaction();
+            inTransaction = true;
+        }
+    }
+
+    /**
+     * 提交当前事务，提交前记下nextRow之前的行都已写入
+     */
+    private void commit(int nextRow) throws IOException {
+        if (inTransaction && listener != null) {
+            try {
+                listener.beforeCommit(new JSONObject()
+                        .put(STATE_ROW, nextRow)
+                        .put(STATE_ROWS, rows)
+                        .put(STATE_COLS, cols)
+                        .put(STATE_STYLED, styledOutside)
+                        .put(STATE_FILLED, filledRows));
+            } catch (JSONException e) {
+                throw new IOException("无法记录导入进度", e);
+            }
+        }
+        commit();
+    }
+
+    private void commit() {
+        if (inTransaction) {
+            database.setTransactionSuccessful();
+            database.endTransaction();
+            inTransaction = false;
+        }
+        chunkCells = 0;
+    }
+
+    /**
+     * 出错或取消时回滚尚未提交的事务；已提交的部分由调用方清除
+     */
+    @Override
+    public void close() throws IOException {
+        if (inTransaction) {
+            database.endTransaction();
+            inTransaction = false;
+        }
+        insertCell.close();
+    }
+}
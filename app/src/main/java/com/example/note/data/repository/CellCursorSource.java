@@ -0,0 +1,115 @@
+package com.example.note.data.repository;
+
+import android.database.Cursor;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Column;
+import com.example.note.data.io.TableSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按行优先的顺序从cells表读出一个笔记本
+ * 按(row_index, col_index)键集分页，每页一个短查询，走(notebook_id, row_index, col_index)唯一索引；
+ * 同时只持有一页游标，不构造Cell对象。没有单元格的行输出为空行。
+ */
+class CellCursorSource implements TableSource {
+
+    /** 每页读取的单元格数 */
+    static final int PAGE_CELLS = 5_000;
+
+    private static final String PAGE_QUERY = "SELECT row_index, col_index, content FROM cells " +
+            "WHERE notebook_id = ? AND (row_index > ? OR (row_index = ? AND col_index > ?)) " +
+            "ORDER BY row_index, col_index LIMIT " + PAGE_CELLS;
+
+    private final AppDatabase database;
+    private final long notebookId;
+    private final List<String> columnNames = new ArrayList<>();
+    private final int rowCount;
+
+    private Cursor cursor;
+    private boolean exhausted;
+    // 上一个读出的单元格，下一页从它之后开始
+    private int lastRow = -1;
+    private int lastCol = Integer.MAX_VALUE;
+    // 下一个要输出的行
+    private int row;
+
+    CellCursorSource(AppDatabase database, long notebookId) {
+        this.database = database;
+        this.notebookId = notebookId;
+        for (Column column : database.columnDao().getColumnsByNotebookIdSync(notebookId)) {
+            columnNames.add(column.getName() != null ? column.getName() : "");
+        }
+        try (Cursor max = database.query("SELECT COALESCE(MAX(row_index) + 1, 0) FROM cells WHERE notebook_id = ?",
+                new Object[]{notebookId})) {
+            rowCount = max.moveToFirst() ? max.getInt(0) : 0;
+        }
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public boolean nextRow(String[] values) {
+        if (row >= rowCount) {
+            return false;
+        }
+        Arrays.fill(values, "");
+        while (hasCell() && cursor.getInt(0) == row) {
+            int col = cursor.getInt(1);
+            if (col < values.length && !cursor.isNull(2)) {
+                values[col] = cursor.getString(2);
+            }
+            lastRow = row;
+            lastCol = col;
+            cursor.moveToNext();
+        }
+        row++;
+        return true;
+    }
+
+    /**
+     * 游标是否停在一个未读的单元格上，当前页读完时查询下一页
+     */
+    private boolean hasCell() {
+        if (cursor != null && !cursor.isAfterLast()) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        if (cursor != null) {
+            boolean full = cursor.getCount() == PAGE_CELLS;
+            cursor.close();
+            cursor = null;
+            if (!full) {
+                exhausted = true;
+                return false;
+            }
+        }
+        cursor = database.query(PAGE_QUERY, new Object[]{notebookId, lastRow, lastRow, lastCol});
+        if (!cursor.moveToFirst()) {
+            exhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
+}
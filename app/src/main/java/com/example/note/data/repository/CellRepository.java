@@ -4,14 +4,19 @@ import android.content.Context;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
 
+import com.example.note.data.cache.NotebookSnapshotCache;
 import com.example.note.data.dao.CellDao;
 import com.example.note.data.database.AppDatabase;
 import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Column;
+import com.example.note.data.model.CellColumns;
 import com.example.note.util.DateUtils;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -27,10 +32,16 @@ public class CellRepository {
     private final CellDao cellDao;
     private final AppDatabase database;
     private final Executor executor;
+    private final NotebookSnapshotCache snapshotCache;
+    private final CellStyleRepository styleRepository;
+    private final CellUpserter upserter;
     
     private CellRepository(Context context) {
         database = AppDatabase.getInstance(context);
         cellDao = database.cellDao();
+        snapshotCache = NotebookSnapshotCache.getInstance(context);
+        styleRepository = CellStyleRepository.getInstance(context);
+        upserter = new CellUpserter(database);
         executor = Executors.newFixedThreadPool(4);
     }
     
@@ -83,16 +94,6 @@ public class CellRepository {
         return cellDao.getCellsByRange(notebookId, startRow, endRow, startCol, endCol);
     }
     
-    /**
-     * 搜索单元格内容
-     */
-    public LiveData<List<Cell>> searchCells(long notebookId, String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return new MutableLiveData<>();
-        }
-        return cellDao.searchCells(notebookId, query.trim());
-    }
-    
     /**
      * 获取包含图片的单元格
      */
@@ -108,26 +109,43 @@ public class CellRepository {
     }
     
     /**
-     * 根据列筛选和排序获取单元格
-     */
-    public LiveData<List<Cell>> getCellsByColumnWithFilter(long notebookId, int colIndex, 
-                                                          String filterType, String filterValue, 
-                                                          double minValue, double maxValue, String sortOrder) {
-        return cellDao.getCellsByColumnWithFilter(notebookId, colIndex, filterType, filterValue, minValue, maxValue, sortOrder);
-    }
-    
-    /**
-     * 获取指定列的所有单元格并排序
+     * 按数值范围（num_value）或日期范围（date_value，minValue/maxValue为距1970-01-01的天数）筛选一列，
+     * 数值范围在(notebook_id, col_index, num_value)索引上做范围扫描，结果按筛选的取值排序。
+     * 表格视图的筛选和Excel风格排序由RowQuery完成
+     * @param filterType number_range或date_range
      */
-    public LiveData<List<Cell>> getCellsByColumnSorted(long notebookId, int colIndex, String sortOrder) {
-        return cellDao.getCellsByColumnSorted(notebookId, colIndex, sortOrder);
+    public LiveData<List<Cell>> getCellsByColumnInRange(long notebookId, int colIndex, String filterType,
+                                                        double minValue, double maxValue, boolean descending) {
+        if ("date_range".equals(filterType)) {
+            long minDay = (long) Math.ceil(minValue);
+            long maxDay = (long) Math.floor(maxValue);
+            return descending
+                    ? cellDao.getCellsByColumnInDateRangeDesc(notebookId, colIndex, minDay, maxDay)
+                    : cellDao.getCellsByColumnInDateRange(notebookId, colIndex, minDay, maxDay);
+        }
+        return descending
+                ? cellDao.getCellsByColumnInNumberRangeDesc(notebookId, colIndex, minValue, maxValue)
+                : cellDao.getCellsByColumnInNumberRange(notebookId, colIndex, minValue, maxValue);
     }
     
     /**
-     * 获取所有单元格并按指定列排序
+     * 在后台线程用SQL执行行查询（筛选+排序），回调按显示顺序排列的原始行号
+     * @param rowCount 网格的总行数
      */
-    public LiveData<List<Cell>> getAllCellsSortedByColumn(long notebookId, int sortColIndex, String sortOrder) {
-        return cellDao.getAllCellsSortedByColumn(notebookId, sortColIndex, sortOrder);
+    public void queryRowOrder(long notebookId, RowQuery query, int rowCount, RepositoryCallback<List<Integer>> callback) {
+        executor.execute(() -> {
+            try {
+                List<Integer> rows = cellDao.getRowOrder(query.toSql(notebookId, rowCount));
+                if (callback != null) {
+                    callback.onSuccess(rows);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to query row order", e);
+                if (callback != null) {
+                    callback.onError(e);
+                }
+            }
+        });
     }
     
     /**
@@ -190,6 +208,7 @@ public class CellRepository {
             try {
                 cell.touch();
                 long id = cellDao.insert(cell);
+                snapshotCache.invalidate(cell.getNotebookId());
                 
                 if (callback != null) {
                     callback.onSuccess(id);
@@ -212,11 +231,16 @@ public class CellRepository {
         executor.execute(() -> {
             try {
                 long now = DateUtils.now();
+                Set<Long> notebookIds = new HashSet<>();
                 for (Cell cell : cells) {
+                    notebookIds.add(cell.getNotebookId());
                     cell.setUpdatedAt(now);
                 }
                 
                 cellDao.insertAll(cells);
+                for (long notebookId : notebookIds) {
+                    snapshotCache.invalidate(notebookId);
+                }
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -233,35 +257,68 @@ public class CellRepository {
     }
     
     /**
-     * 替换指定笔记本的所有单元格（先删除再插入，避免SQLite兼容性问题）
+     * 保存笔记本的列和全部单元格（先删除再插入，避免SQLite兼容性问题）
+     * 列、单元格和已写入的编辑日志序号在同一事务内提交，崩溃恢复时据此跳过已保存的日志记录
+     * @param columns 列定义，为空时不改动数据库中的列
+     * @param cells 单元格，为空时不改动数据库中的单元格
+     * @param journalSeq 本次保存覆盖到的编辑日志序号
      */
-    public void replaceAllCells(long notebookId, List<Cell> cells, RepositoryCallback<Void> callback) {
+    public void saveGrid(long notebookId, List<Column> columns, List<Cell> cells, long journalSeq,
+                         RepositoryCallback<Void> callback) {
         executor.execute(() -> {
             try {
+                long now = DateUtils.now();
                 database.runInTransaction(() -> {
-                    // 先删除该笔记本的所有单元格
-                    cellDao.deleteCellsByNotebookId(notebookId);
+                    if (!columns.isEmpty()) {
+                        // 整体替换列，删除的列不会残留在数据库中
+                        for (Column column : columns) {
+                            column.setNotebookId(notebookId);
+                            if (column.getCreatedAt() == 0) {
+                                column.setCreatedAt(now);
+                            }
+                            column.setUpdatedAt(now);
+                        }
+                        database.columnDao().deleteColumnsByNotebookId(notebookId);
+                        List<Long> columnIds = database.columnDao().insertAll(columns);
+                        for (int i = 0; i < columnIds.size(); i++) {
+                            columns.get(i).setId(columnIds.get(i));
+                        }
+                    }
                     
-                    // 清理id并设置时间戳，避免主键冲突
-                    long now = DateUtils.now();
-                    for (Cell cell : cells) {
-                        cell.setId(0); // 让Room走自增主键
-                        cell.setUpdatedAt(now);
-                        if (cell.getCreatedAt() == 0) {
-                            cell.setCreatedAt(now);
+                    if (!cells.isEmpty()) {
+                        // 先删除该笔记本的所有单元格
+                        cellDao.deleteCellsByNotebookId(notebookId);
+                        
+                        // 清理id并设置时间戳，避免主键冲突
+                        for (Cell cell : cells) {
+                            cell.setId(0); // 让Room走自增主键
+                            cell.setUpdatedAt(now);
+                            if (cell.getCreatedAt() == 0) {
+                                cell.setCreatedAt(now);
+                            }
+                        }
+                        
+                        // 重新插入所有单元格
+                        List<Long> ids = cellDao.insertAll(cells);
+                        for (int i = 0; i < ids.size(); i++) {
+                            cells.get(i).setId(ids.get(i));
                         }
                     }
                     
-                    // 重新插入所有单元格
-                    cellDao.insertAll(cells);
+                    // 同一事务内更新笔记本时间戳（快照以此判断是否过期）和已写入的日志序号
+                    database.notebookDao().markSaved(notebookId, now, journalSeq);
                 });
                 
+                if (!cells.isEmpty()) {
+                    snapshotCache.writeAsync(notebookId, now, CellColumns.fromCells(cells));
+                }
+                
                 if (callback != null) {
                     callback.onSuccess(null);
                 }
-                Log.d(TAG, "Replaced all cells for notebook " + notebookId + ": " + cells.size() + " cells");
+                Log.d(TAG, "Saved notebook " + notebookId + ": " + columns.size() + " columns, " + cells.size() + " cells");
             } catch (Exception e) {
-                Log.e(TAG, "Failed to replace all cells", e);
+                Log.e(TAG, "Failed to save notebook grid", e);
                 if (callback != null) {
                     callback.onError(e);
                 }
@@ -276,8 +333,9 @@ public class CellRepository {
         executor.execute(() -> {
             try {
                 long now = DateUtils.now();
-                // 使用复合键UPSERT，避免查询和条件判断
-                cellDao.upsertCellContent(notebookId, row, col, content, now, now);
+                // 按复合键只写内容相关的列，不删除重建整行
+                upserter.upsertContent(notebookId, row, col, content, now);
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -302,6 +360,7 @@ public class CellRepository {
                 int result = 0;
                 if (cell != null) {
                     result = cellDao.updateImage(cell.getId(), imageId, DateUtils.now());
+                    snapshotCache.invalidate(notebookId);
                 }
                 
                 if (result > 0) {
@@ -339,21 +398,23 @@ public class CellRepository {
     }
     
     /**
-     * 更新单元格格式
+     * 更新单元格格式，回调返回样式id
      */
     public void updateCellFormat(long notebookId, int row, int col, String textColor, String backgroundColor, 
-                                boolean isBold, boolean isItalic, float textSize, String textAlignment, RepositoryCallback<Void> callback) {
+                                boolean isBold, boolean isItalic, float textSize, String textAlignment, RepositoryCallback<Long> callback) {
         executor.execute(() -> {
             try {
                 long now = DateUtils.now();
-                // 使用复合键UPSERT，避免查询和条件判断
-                cellDao.upsertCellFormat(notebookId, row, col, textColor, backgroundColor, 
-                                       isBold, isItalic, textSize, textAlignment, now, now);
+                long styleId = styleRepository.internSync(new CellStyle(textColor, backgroundColor,
+                        isBold, isItalic, textSize, textAlignment));
+                // 按复合键只写样式列，不删除重建整行
+                upserter.upsertStyle(notebookId, row, col, styleId, now);
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
-                    callback.onSuccess(null);
+                    callback.onSuccess(styleId);
                 }
-                Log.d(TAG, "Cell format upserted: (" + row + ", " + col + ")");
+                Log.d(TAG, "Cell format upserted: (" + row + ", " + col + ") style " + styleId);
             } catch (Exception e) {
                 Log.e(TAG, "Failed to upsert cell format", e);
                 if (callback != null) {
@@ -372,6 +433,7 @@ public class CellRepository {
                 Cell cell = cellDao.getCellByPositionSync(notebookId, row, col);
                 if (cell != null) {
                     int result = cellDao.clearCell(cell.getId(), DateUtils.now());
+                    snapshotCache.invalidate(notebookId);
                     
                     if (callback != null) {
                         callback.onSuccess(null);
@@ -401,6 +463,7 @@ public class CellRepository {
                 Cell cell = cellDao.getCellByPositionSync(notebookId, row, col);
                 if (cell != null) {
                     int result = cellDao.delete(cell);
+                    snapshotCache.invalidate(notebookId);
                     
                     if (callback != null) {
                         callback.onSuccess(null);
@@ -432,6 +495,7 @@ public class CellRepository {
                 
                 // 调整后续行的索引
                 cellDao.adjustRowIndexAfterDelete(notebookId, row, DateUtils.now());
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -458,6 +522,7 @@ public class CellRepository {
                 
                 // 调整后续列的索引
                 cellDao.adjustColumnIndexAfterDelete(notebookId, col, DateUtils.now());
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -481,6 +546,7 @@ public class CellRepository {
             try {
                 // 调整后续行的索引
                 cellDao.insertRow(notebookId, row, DateUtils.now());
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -504,6 +570,7 @@ public class CellRepository {
             try {
                 // 调整后续列的索引
                 cellDao.insertColumn(notebookId, col, DateUtils.now());
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -526,6 +593,7 @@ public class CellRepository {
         executor.execute(() -> {
             try {
                 cellDao.moveRow(notebookId, fromRow, toRow, DateUtils.now());
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -548,6 +616,7 @@ public class CellRepository {
         executor.execute(() -> {
             try {
                 cellDao.moveColumn(notebookId, fromCol, toCol, DateUtils.now());
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -570,6 +639,7 @@ public class CellRepository {
         executor.execute(() -> {
             try {
                 int result = cellDao.deleteCellsByNotebookId(notebookId);
+                snapshotCache.invalidate(notebookId);
                 
                 if (callback != null) {
                     callback.onSuccess(null);
@@ -0,0 +1,129 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.note.data.dao.CellStyleDao;
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.CellStyle;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单元格样式仓库类
+ * 维护cell_styles在内存中的双向映射（id→样式、样式→id），单元格只保存style_id，
+ * 界面按id取样式。样式表只增不删，加载一次后仅在遇到未知id时增量刷新。
+ * 同步方法会访问数据库，必须在后台线程调用；get()只读内存，可在主线程调用。
+ * 访问数据库时不持有本对象的锁，避免与持有写事务的线程互相等待。
+ */
+public class CellStyleRepository {
+
+    private static final String TAG = "CellStyleRepository";
+    private static volatile CellStyleRepository INSTANCE;
+
+    private final AppDatabase database;
+    private final CellStyleDao cellStyleDao;
+    private final Map<Long, CellStyle> stylesById = new HashMap<>();
+    private final Map<CellStyle, Long> idsByStyle = new HashMap<>();
+    // 已从数据库顺序载入到的最大id；单个插入的样式不推进它，避免跳过其他线程刚提交的样式
+    private long maxLoadedId;
+
+    private CellStyleRepository(Context context) {
+        database = AppDatabase.getInstance(context);
+        cellStyleDao = database.cellStyleDao();
+        put(CellStyle.DEFAULT);
+        maxLoadedId = CellStyle.DEFAULT_ID;
+    }
+
+    /**
+     * 获取仓库实例（单例模式）
+     */
+    public static CellStyleRepository getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (CellStyleRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new CellStyleRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 按id获取样式，未加载或不存在时返回默认样式
+     */
+    public synchronized CellStyle get(long styleId) {
+        CellStyle style = stylesById.get(styleId);
+        return style != null ? style : CellStyle.DEFAULT;
+    }
+
+    /**
+     * 确保id不超过maxStyleId的样式都已在内存中（加载笔记本时调用，不能在写事务中调用）
+     */
+    public void ensureLoadedSync(long maxStyleId) {
+        long afterId;
+        synchronized (this) {
+            if (maxStyleId <= maxLoadedId) {
+                return;
+            }
+            afterId = maxLoadedId;
+        }
+        List<CellStyle> styles = cellStyleDao.getStylesAfterSync(afterId);
+        synchronized (this) {
+            for (CellStyle style : styles) {
+                put(style);
+                maxLoadedId = Math.max(maxLoadedId, style.getId());
+            }
+            Log.d(TAG, "Loaded " + styles.size() + " cell styles, " + stylesById.size() + " in memory");
+        }
+    }
+
+    /**
+     * 获取样式的id，不存在时插入新行
+     * 在事务中插入的样式可能随事务回滚，不放入内存，提交后由ensureLoadedSync载入。
+     */
+    public long internSync(CellStyle style) {
+        Long cached = cachedId(style);
+        if (cached != null) {
+            return cached;
+        }
+        if (database.inTransaction()) {
+            return findOrInsert(style);
+        }
+        // 先载入其他路径已提交的样式，多数情况下不必再访问数据库
+        ensureLoadedSync(Long.MAX_VALUE);
+        cached = cachedId(style);
+        if (cached != null) {
+            return cached;
+        }
+        long id = findOrInsert(style);
+        synchronized (this) {
+            put(style.withId(id));
+        }
+        return id;
+    }
+
+    private synchronized Long cachedId(CellStyle style) {
+        return idsByStyle.get(style);
+    }
+
+    private long findOrInsert(CellStyle style) {
+        long id = cellStyleDao.insertStyle(style);
+        if (id <= 0) {
+            // 已有相同样式（并发插入或尚未载入内存）
+            id = cellStyleDao.findStyleId(style.getTextColor(), style.getBackgroundColor(), style.isBold(),
+                    style.isItalic(), style.getTextSize(), style.getTextAlignment());
+            if (id <= 0) {
+                throw new IllegalStateException("无法保存单元格样式: " + style);
+            }
+        }
+        return id;
+    }
+
+    private void put(CellStyle style) {
+        stylesById.put(style.getId(), style);
+        idsByStyle.put(style, style.getId());
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.note.data.repository;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.util.CellValueUtils;
+
+import java.io.IOException;
+
+/**
+ * 按(notebook_id, row_index, col_index)写入单元格的部分字段
+ * SQLite 3.24起（Android 11及以上）用INSERT ... ON CONFLICT DO UPDATE只更新要改的列；更早的版本在同一事务中
+ * 先UPDATE，没有这一行再INSERT。两种方式都不会像INSERT OR REPLACE那样删除旧行再插入，
+ * 行的索引项和删除/插入触发器不受影响；值没有变化时不写入，也不更新updated_at。
+ * 注意：冲突后转为UPDATE时AUTOINCREMENT序号仍会前进，新单元格的id可能不连续。
+ */
+public class CellUpserter {
+
+    private static final String TAG = "CellUpserter";
+
+    private static final String CONTENT_UPSERT =
+            "INSERT INTO cells (notebook_id, row_index, col_index, content, num_value, date_value, " +
+            "updated_at, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(notebook_id, row_index, col_index) DO UPDATE SET content = excluded.content, " +
+            "num_value = excluded.num_value, date_value = excluded.date_value, updated_at = excluded.updated_at " +
+            "WHERE cells.content IS NOT excluded.content";
+    private static final String CONTENT_UPDATE =
+            "UPDATE cells SET content = ?, num_value = ?, date_value = ?, updated_at = ? " +
+            "WHERE notebook_id = ? AND row_index = ? AND col_index = ? AND content IS NOT ?";
+    // 行已存在且内容相同时UPDATE影响0行，这里忽略唯一约束冲突
+    private static final String CONTENT_INSERT =
+            "INSERT OR IGNORE INTO cells (notebook_id, row_index, col_index, content, num_value, date_value, " +
+            "updated_at, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String STYLE_UPSERT =
+            "INSERT INTO cells (notebook_id, row_index, col_index, content, style_id, updated_at, created_at) " +
+            "VALUES (?, ?, ?, '', ?, ?, ?) " +
+            "ON CONFLICT(notebook_id, row_index, col_index) DO UPDATE SET style_id = excluded.style_id, " +
+            "updated_at = excluded.updated_at WHERE cells.style_id != excluded.style_id";
+    private static final String STYLE_UPDATE =
+            "UPDATE cells SET style_id = ?, updated_at = ? " +
+            "WHERE notebook_id = ? AND row_index = ? AND col_index = ? AND style_id != ?";
+    private static final String STYLE_INSERT =
+            "INSERT OR IGNORE INTO cells (notebook_id, row_index, col_index, content, style_id, updated_at, created_at) " +
+            "VALUES (?, ?, ?, '', ?, ?, ?)";
+
+    private final AppDatabase database;
+    // 首次写入时在后台线程检测，null表示尚未检测
+    private volatile Boolean nativeUpsert;
+
+    public CellUpserter(AppDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * 指定是否使用原生UPSERT（测试两种写法时使用）
+     */
+    CellUpserter(AppDatabase database, boolean nativeUpsert) {
+        this.database = database;
+        this.nativeUpsert = nativeUpsert;
+    }
+
+    /**
+     * 写入单元格内容及其解析出的数值/日期，不改变样式、图片和创建时间
+     */
+    public void upsertContent(long notebookId, int row, int col, String content, long now) throws IOException {
+        String text = content != null ? content : "";
+        Double number = CellValueUtils.parseNumber(text);
+        Long day = CellValueUtils.parseDate(text);
+        boolean upsert = usesNativeUpsert();
+        // 写入放在事务中，Room在事务结束时通知LiveData和搜索索引
+        database.beginTransaction();
+        try {
+            if (upsert) {
+                try (SupportSQLiteStatement statement = database.compileStatement(CONTENT_UPSERT)) {
+                    bindContentInsert(statement, notebookId, row, col, text, number, day, now);
+                    statement.executeInsert();
+                }
+            } else {
+                int updated;
+                try (SupportSQLiteStatement update = database.compileStatement(CONTENT_UPDATE)) {
+                    update.bindString(1, text);
+                    bindNullable(update, 2, number);
+                    bindNullable(update, 3, day);
+                    update.bindLong(4, now);
+                    update.bindLong(5, notebookId);
+                    update.bindLong(6, row);
+                    update.bindLong(7, col);
+                    update.bindString(8, text);
+                    updated = update.executeUpdateDelete();
+                }
+                if (updated == 0) {
+                    try (SupportSQLiteStatement insert = database.compileStatement(CONTENT_INSERT)) {
+                        bindContentInsert(insert, notebookId, row, col, text, number, day, now);
+                        insert.executeInsert();
+                    }
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * 设置单元格的样式id，不存在时创建空单元格
+     */
+    public void upsertStyle(long notebookId, int row, int col, long styleId, long now) throws IOException {
+        boolean upsert = usesNativeUpsert();
+        database.beginTransaction();
+        try {
+            if (upsert) {
+                try (SupportSQLiteStatement statement = database.compileStatement(STYLE_UPSERT)) {
+                    bindStyleInsert(statement, notebookId, row, col, styleId, now);
+                    statement.executeInsert();
+                }
+            } else {
+                int updated;
+                try (SupportSQLiteStatement update = database.compileStatement(STYLE_UPDATE)) {
+                    update.bindLong(1, styleId);
+                    update.bindLong(2, now);
+                    update.bindLong(3, notebookId);
+                    update.bindLong(4, row);
+                    update.bindLong(5, col);
+                    update.bindLong(6, styleId);
+                    updated = update.executeUpdateDelete();
+                }
+                if (updated == 0) {
+                    try (SupportSQLiteStatement insert = database.compileStatement(STYLE_INSERT)) {
+                        bindStyleInsert(insert, notebookId, row, col, styleId, now);
+                        insert.executeInsert();
+                    }
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private boolean usesNativeUpsert() {
+        Boolean supported = nativeUpsert;
+        if (supported == null) {
+            supported = supportsUpsert(database.getOpenHelper().getWritableDatabase());
+            nativeUpsert = supported;
+            Log.d(TAG, "Native upsert " + (supported ? "enabled" : "unavailable, using update then insert"));
+        }
+        return supported;
+    }
+
+    /**
+     * 当前SQLite是否支持UPSERT语法（3.24.0及以上）
+     */
+    static boolean supportsUpsert(SupportSQLiteDatabase db) {
+        try (Cursor cursor = db.query("SELECT sqlite_version()")) {
+            return cursor.moveToFirst() && isAtLeast(cursor.getString(0), 3, 24);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to get SQLite version", e);
+            return false;
+        }
+    }
+
+    /**
+     * 版本号（如"3.22.0"）是否不低于major.minor，无法解析时返回false
+     */
+    static boolean isAtLeast(String version, int major, int minor) {
+        if (version == null) {
+            return false;
+        }
+        String[] parts = version.trim().split("\\.");
+        if (parts.length < 2) {
+            return false;
+        }
+        try {
+            int actualMajor = Integer.parseInt(parts[0]);
+            int actualMinor = Integer.parseInt(parts[1]);
+            return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void bindContentInsert(SupportSQLiteStatement statement, long notebookId, int row, int col,
+                                          String content, Double number, Long day, long now) {
+        statement.bindLong(1, notebookId);
+        statement.bindLong(2, row);
+        statement.bindLong(3, col);
+        statement.bindString(4, content);
+        bindNullable(statement, 5, number);
+        bindNullable(statement, 6, day);
+        statement.bindLong(7, now);
+        statement.bindLong(8, now);
+    }
+
+    private static void bindStyleInsert(SupportSQLiteStatement statement, long notebookId, int row, int col,
+                                        long styleId, long now) {
+        statement.bindLong(1, notebookId);
+        statement.bindLong(2, row);
+        statement.bindLong(3, col);
+        statement.bindLong(4, styleId);
+        statement.bindLong(5, now);
+        statement.bindLong(6, now);
+    }
+
+    private static void bindNullable(SupportSQLiteStatement statement, int index, Double value) {
+        if (value != null) {
+            statement.bindDouble(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    private static void bindNullable(SupportSQLiteStatement statement, int index, Long value) {
+        if (value != null) {
+            statement.bindLong(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+}
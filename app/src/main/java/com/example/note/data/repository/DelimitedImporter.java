@@ -0,0 +1,80 @@
+package com.example.note.data.repository;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.io.DelimitedFormat;
+import com.example.note.data.io.DelimitedParser;
+
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把解析出的CSV/TSV字段直接写入笔记本
+ * 每个字段在交给CellBulkWriter绑定时才转成String（空字段不分配）；表头行只用作列名。
+ */
+class DelimitedImporter implements DelimitedParser.Handler, Closeable {
+
+    private final DelimitedFormat format;
+    private final CellBulkWriter writer;
+    private final List<String> headerNames = new ArrayList<>();
+    private boolean stopped;
+
+    DelimitedImporter(AppDatabase database, DelimitedFormat format, long notebookId, long now,
+                      CellBulkWriter.ChunkListener listener) {
+        this.format = format;
+        this.writer = new CellBulkWriter(database, notebookId, now, listener);
+    }
+
+    @Override
+    public void onField(int row, int col, char[] chars, int start, int length) throws IOException {
+        if (format.hasHeader() && row == 0) {
+            headerNames.add(new String(chars, start, length));
+            return;
+        }
+        if (!stopped) {
+            int dataRow = format.hasHeader() ? row - 1 : row;
+            stopped = !writer.write(dataRow, col, length == 0 ? "" : new String(chars, start, length),
+                    CellStyle.DEFAULT_ID);
+        }
+    }
+
+    @Override
+    public boolean onRowEnd(int row, int fieldCount) {
+        if (format.hasHeader() && row == 0) {
+            writer.setColumnCount(fieldCount);
+        }
+        return !stopped;
+    }
+
+    /**
+     * 从上次提交的写入状态继续，已写入的行在解析时跳过
+     */
+    void resume(JSONObject state) {
+        writer.resume(state);
+    }
+
+    /**
+     * 写入列定义，并在最后一个事务中执行收尾操作
+     * @return false表示被停止，最后一个事务没有执行
+     */
+    boolean finish(Runnable inFinalTransaction) throws IOException {
+        return writer.finish(headerNames, format::getColumnType, inFinalTransaction);
+    }
+
+    int getRows() {
+        return writer.getRows();
+    }
+
+    int getCols() {
+        return writer.getCols();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
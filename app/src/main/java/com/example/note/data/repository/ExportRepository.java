@@ -0,0 +1,233 @@
+package com.example.note.data.repository;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.io.ExportFormat;
+import com.example.note.data.io.TableExporter;
+import com.example.note.data.io.TableSource;
+import com.example.note.data.io.XlsxWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 文件导出仓库
+ * 从TableSource逐行读出、经格式写法写到用户选择的文档（SAF URI），中间只有一个缓冲区和一行数据，
+ * 内存与表格大小无关。XLSX直接从cells表分页写出带类型和样式的工作表。失败或取消时删除写了一半的文档。
+ */
+public class ExportRepository {
+
+    private static final String TAG = "ExportRepository";
+    private static volatile ExportRepository INSTANCE;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ContentResolver contentResolver;
+    private final AppDatabase database;
+    private final CellStyleRepository styleRepository;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    private ExportRepository(Context context) {
+        contentResolver = context.getContentResolver();
+        database = AppDatabase.getInstance(context);
+        styleRepository = CellStyleRepository.getInstance(context);
+        // 单线程：同时只进行一个导出
+        executor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * 获取Repository实例（单例模式）
+     */
+    public static ExportRepository getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ExportRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ExportRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 按原始行序导出数据库中的整个笔记本，调用前应先保存未保存的修改
+     * @param task 取消句柄；取消后删除目标文档，回调onError(CancellationException)
+     * @param callback 成功时返回导出的数据行数
+     */
+    public void exportNotebook(long notebookId, ExportFormat format, Uri uri, ExportTask task,
+                               ProgressListener listener, RepositoryCallback<Integer> callback) {
+        executor.execute(() -> {
+            try {
+                Notebook notebook = database.notebookDao().getByIdSync(notebookId);
+                String title = notebook != null ? notebook.getTitle() : null;
+                int rows;
+                if (format == ExportFormat.XLSX) {
+                    rows = exportXlsxSync(notebookId, title, uri, task, listener);
+                } else {
+                    try (TableSource source = new CellCursorSource(database, notebookId)) {
+                        rows = exportSync(source, title, format, uri, task, listener);
+                    }
+                }
+                mainHandler.post(() -> callback.onSuccess(rows));
+            } catch (Exception e) {
+                if (!(e instanceof CancellationException)) {
+                    Log.e(TAG, "Failed to export notebook " + notebookId, e);
+                }
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 导出任意数据来源（例如当前筛选/排序后的视图），只支持文本格式
+     */
+    public void exportTable(TableSource source, String title, ExportFormat format, Uri uri, ExportTask task,
+                            ProgressListener listener, RepositoryCallback<Integer> callback) {
+        executor.execute(() -> {
+            try (TableSource s = source) {
+                int rows = exportSync(s, title, format, uri, task, listener);
+                mainHandler.post(() -> callback.onSuccess(rows));
+            } catch (Exception e) {
+                if (!(e instanceof CancellationException)) {
+                    Log.e(TAG, "Failed to export to " + uri, e);
+                }
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    // ==================== 同步实现（后台线程） ====================
+
+    int exportSync(TableSource source, String title, ExportFormat format, Uri uri, ExportTask task,
+                   ProgressListener listener) throws IOException {
+        if (format == ExportFormat.XLSX) {
+            throw new IllegalArgumentException("XLSX只能导出整个笔记本");
+        }
+        long start = System.currentTimeMillis();
+        ExportTask handle = task != null ? task : new ExportTask();
+        int total = source.getRowCount();
+        boolean done = false;
+        try (OutputStream stream = openOutputStream(uri);
+             Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            int rows = TableExporter.export(source, format.newFormatter(), title, out, written -> {
+                if (listener != null) {
+                    int percent = total > 0 ? Math.min(99, (int) (written * 100L / total)) : -1;
+                    mainHandler.post(() -> listener.onProgress(written, percent));
+                }
+                return !handle.isCancelled();
+            });
+            if (handle.isCancelled()) {
+                throw new CancellationException("已取消导出");
+            }
+            out.flush();
+            done = true;
+            Log.d(TAG, "Exported " + rows + " rows as " + format + " in " + (System.currentTimeMillis() - start) + "ms");
+            return rows;
+        } finally {
+            if (!done) {
+                deleteDocument(uri);
+            }
+        }
+    }
+
+    int exportXlsxSync(long notebookId, String title, Uri uri, ExportTask task,
+                       ProgressListener listener) throws IOException {
+        long start = System.currentTimeMillis();
+        ExportTask handle = task != null ? task : new ExportTask();
+        XlsxExporter exporter = new XlsxExporter(database, styleRepository, notebookId);
+        int total = exporter.getRowCount();
+        boolean done = false;
+        try (XlsxWriter writer = new XlsxWriter(new BufferedOutputStream(openOutputStream(uri), BUFFER_SIZE))) {
+            int rows = exporter.export(writer, title, written -> {
+                if (listener != null) {
+                    int percent = total > 0 ? Math.min(99, (int) (written * 100L / total)) : -1;
+                    mainHandler.post(() -> listener.onProgress(written, percent));
+                }
+                return !handle.isCancelled();
+            });
+            if (handle.isCancelled()) {
+                throw new CancellationException("已取消导出");
+            }
+            writer.finish();
+            done = true;
+            Log.d(TAG, "Exported " + rows + " rows as XLSX in " + (System.currentTimeMillis() - start) + "ms");
+            return rows;
+        } finally {
+            if (!done) {
+                deleteDocument(uri);
+            }
+        }
+    }
+
+    private OutputStream openOutputStream(Uri uri) throws IOException {
+        // wt：覆盖已有文档时截断旧内容
+        OutputStream out = contentResolver.openOutputStream(uri, "wt");
+        if (out == null) {
+            throw new IOException("无法写入文件");
+        }
+        return out;
+    }
+
+    /**
+     * 删除导出失败的文档
+     */
+    private void deleteDocument(Uri uri) {
+        try {
+            DocumentsContract.deleteDocument(contentResolver, uri);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to delete incomplete export " + uri, e);
+        }
+    }
+
+    /**
+     * 导出进度
+     */
+    public interface ProgressListener {
+        /**
+         * @param rows 已写出的行数
+         * @param percent 按总行数估算的百分比，总行数未知时为-1
+         */
+        void onProgress(int rows, int percent);
+    }
+
+    /**
+     * 导出任务句柄
+     */
+    public static final class ExportTask {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 回调接口
+     */
+    public interface RepositoryCallback<T> {
+        void onSuccess(T result);
+        void onError(Exception error);
+    }
+}
@@ -0,0 +1,528 @@
+package com.example.note.data.repository;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Job;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.io.DelimitedFormat;
+import com.example.note.data.io.DelimitedParser;
+import com.example.note.data.io.XlsxReader;
+import com.example.note.data.job.JobContext;
+import com.example.note.data.job.JobHandler;
+import com.example.note.data.job.JobStoppedException;
+import com.example.note.data.job.JobType;
+import com.example.note.util.ColorUtils;
+import com.example.note.util.DateUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 文件导入仓库
+ * 支持CSV/TSV和XLSX。导入以IMPORT任务执行：从内容URI（已取得持久读取权限）流式读取文件，边解析边写入新笔记本，
+ * 每块一个事务，写到的行作为检查点随这块提交；被系统停止或进程被杀后从头重读文件，跳过已写入的行继续。
+ * 导入过程中笔记本是暂存状态，列表和回收站中都看不到写了一半的数据；全部写完后在最后一个事务中公开。
+ * 暂存笔记本属于任务：失败或取消时交给NotebookPurger清除，没有未结束任务持有的由NotebookPurger清扫。
+ */
+public class ImportRepository implements JobHandler {
+
+    private static final String TAG = "ImportRepository";
+    public static final String XLSX_MIME_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    private static volatile ImportRepository INSTANCE;
+
+    private static final String PARAM_URI = "uri";
+    // XLSX工作表序号，CSV/TSV文件为-1
+    private static final String PARAM_SHEET = "sheet";
+    private static final String NOTEBOOK_ID = "notebookId";
+
+    private final Context context;
+    private final ContentResolver contentResolver;
+    private final AppDatabase database;
+    private final NotebookPurger purger;
+    private final CellStyleRepository styleRepository;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    private ImportRepository(Context context) {
+        this.context = context;
+        contentResolver = context.getContentResolver();
+        database = AppDatabase.getInstance(context);
+        purger = NotebookPurger.getInstance(context);
+        styleRepository = CellStyleRepository.getInstance(context);
+        executor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * 获取Repository实例（单例模式）
+     */
+    public static ImportRepository getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ImportRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ImportRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 添加导入CSV/TSV文件的任务，标题取文件名；分隔符、编码和表头自动识别
+     * @param callback 返回任务id，用observe观察进度，成功后用getNotebookId取得新笔记本
+     */
+    public void importDelimited(Uri uri, RepositoryCallback<Long> callback) {
+        enqueue(uri, -1, callback);
+    }
+
+    /**
+     * 文件是否为XLSX工作簿（按MIME类型或扩展名判断）
+     */
+    public boolean isXlsx(Uri uri) {
+        String type = contentResolver.getType(uri);
+        if (XLSX_MIME_TYPE.equals(type)) {
+            return true;
+        }
+        String name = queryDisplayName(uri);
+        return name != null && name.toLowerCase(Locale.ROOT).endsWith(".xlsx");
+    }
+
+    /**
+     * 读取XLSX工作簿中的工作表名称
+     */
+    public void listSheets(Uri uri, RepositoryCallback<List<String>> callback) {
+        executor.execute(() -> {
+            try {
+                List<String> names = new XlsxReader(() -> openInputStream(uri)).getSheetNames();
+                mainHandler.post(() -> callback.onSuccess(names));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to read sheets of " + uri, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 添加导入XLSX工作簿中一个工作表的任务，标题取文件名（多个工作表时加上工作表名）
+     * @param sheetIndex 工作表序号，与listSheets返回的顺序一致
+     */
+    public void importXlsx(Uri uri, int sheetIndex, RepositoryCallback<Long> callback) {
+        enqueue(uri, sheetIndex, callback);
+    }
+
+    /**
+     * 观察导入任务的状态和进度
+     */
+    public LiveData<Job> observe(long jobId) {
+        return JobRepository.getInstance(context).observe(jobId);
+    }
+
+    /**
+     * 取消导入：执行中的任务在下一块提交后停止并清除暂存笔记本，没在执行的任务留下的暂存笔记本在这里清扫
+     */
+    public void cancel(long jobId) {
+        executor.execute(() -> {
+            try {
+                JobRepository.getInstance(context).cancelSync(jobId);
+                purger.resumePending();
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to cancel import " + jobId, e);
+            }
+        });
+    }
+
+    /**
+     * 导入任务写入的笔记本id，还没有创建时返回0；任务成功后即为新笔记本
+     */
+    public static long getNotebookId(Job job) {
+        return parseCheckpoint(job).optLong(NOTEBOOK_ID, 0);
+    }
+
+    /**
+     * 导入任务已提交的行数
+     */
+    public static int getImportedRows(Job job) {
+        return parseCheckpoint(job).optInt(CellBulkWriter.STATE_ROW, 0);
+    }
+
+    // ==================== 同步实现（后台线程） ====================
+
+    /**
+     * IMPORT任务：沿用检查点中的暂存笔记本（第一次执行时创建），从头读取文件并跳过已写入的行
+     */
+    @Override
+    public void run(JobContext job) throws Exception {
+        Uri uri = Uri.parse(job.getParams().getString(PARAM_URI));
+        int sheetIndex = job.getParams().optInt(PARAM_SHEET, -1);
+        boolean succeeded = false;
+        boolean stopped = false;
+        try {
+            if (sheetIndex >= 0) {
+                importXlsx(job, uri, sheetIndex);
+            } else {
+                importDelimited(job, uri);
+            }
+            succeeded = true;
+        } catch (JobStoppedException e) {
+            // 被系统停止时保留暂存笔记本和读取权限，再次调度时继续；被取消时与失败一样清除
+            stopped = !Job.STATE_CANCELLED.equals(database.jobDao().getStateSync(job.getJobId()));
+            throw e;
+        } finally {
+            if (!stopped) {
+                if (!succeeded) {
+                    discard(job.getCheckpoint().optLong(NOTEBOOK_ID, 0));
+                }
+                releasePermission(uri);
+            }
+        }
+    }
+
+    private void importDelimited(JobContext job, Uri uri) throws Exception {
+        long start = System.currentTimeMillis();
+        String fileName = queryDisplayName(uri);
+        long totalBytes = querySize(uri);
+        try (CountingInputStream counting = new CountingInputStream(openInputStream(uri))) {
+            BufferedInputStream in = new BufferedInputStream(counting, DelimitedFormat.SAMPLE_SIZE);
+            DelimitedFormat format = detectFormat(in, fileName);
+            Log.d(TAG, "Detected " + format.getCharset() + ", delimiter 0x"
+                    + Integer.toHexString(format.getDelimiter()) + ", header " + format.hasHeader());
+
+            long now = DateUtils.now();
+            long notebookId = stagingNotebook(job, () -> titleFor(fileName), now);
+            Reader reader = new InputStreamReader(in, format.getCharset());
+            JobListener listener = new JobListener(job, notebookId, counting::getCount, totalBytes);
+            try (DelimitedImporter importer = new DelimitedImporter(database, format, notebookId, now, listener)) {
+                importer.resume(job.getCheckpoint());
+                new DelimitedParser(reader, format.getDelimiter()).parse(importer);
+                listener.throwIfStopped();
+                if (importer.getRows() == 0 && importer.getCols() == 0) {
+                    throw new IOException("文件中没有数据");
+                }
+                if (!importer.finish(() -> publish(notebookId))) {
+                    throw new JobStoppedException();
+                }
+                Log.d(TAG, "Imported " + importer.getRows() + "x" + importer.getCols() + " into notebook "
+                        + notebookId + " in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        }
+    }
+
+    private void importXlsx(JobContext job, Uri uri, int sheetIndex) throws Exception {
+        long start = System.currentTimeMillis();
+        String fileName = queryDisplayName(uri);
+        long totalBytes = querySize(uri);
+        // 进度按最近一次打开的流（即正在读取工作表的那一遍）已读的压缩字节估算
+        AtomicReference<CountingInputStream> current = new AtomicReference<>();
+        XlsxReader reader = new XlsxReader(() -> {
+            CountingInputStream in = new CountingInputStream(openInputStream(uri));
+            current.set(in);
+            return in;
+        });
+        List<String> sheetNames = reader.getSheetNames();
+        if (sheetIndex >= sheetNames.size()) {
+            throw new IllegalArgumentException("工作表不存在");
+        }
+
+        long now = DateUtils.now();
+        long notebookId = stagingNotebook(job, () -> titleFor(sheetNames.size() > 1 && fileName != null
+                ? stripExtension(fileName) + " - " + sheetNames.get(sheetIndex) : fileName), now);
+        LongSupplier bytesRead = () -> {
+            CountingInputStream in = current.get();
+            return in != null ? in.getCount() : 0;
+        };
+        JobListener listener = new JobListener(job, notebookId, bytesRead, totalBytes);
+        try (XlsxImporter importer = new XlsxImporter(database, styleRepository, reader, notebookId, now,
+                listener)) {
+            importer.resume(job.getCheckpoint());
+            reader.readSheet(sheetIndex, importer);
+            listener.throwIfStopped();
+            if (importer.isEmpty()) {
+                throw new IOException("工作表中没有数据");
+            }
+            if (!importer.finish(() -> publish(notebookId))) {
+                throw new JobStoppedException();
+            }
+            Log.d(TAG, "Imported sheet " + sheetNames.get(sheetIndex) + ": " + importer.getRows() + "x"
+                    + importer.getCols() + " into notebook " + notebookId + " in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * 取得文件的持久读取权限并添加任务；提供方不支持持久权限时只能在本次授权有效期内执行
+     */
+    private void enqueue(Uri uri, int sheetIndex, RepositoryCallback<Long> callback) {
+        executor.execute(() -> {
+            try {
+                try {
+                    contentResolver.takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                } catch (SecurityException e) {
+                    Log.w(TAG, "No persistable permission for " + uri, e);
+                }
+                JSONObject params = new JSONObject().put(PARAM_URI, uri.toString()).put(PARAM_SHEET, sheetIndex);
+                long jobId = JobRepository.getInstance(context).enqueueSync(JobType.IMPORT, null, params);
+                mainHandler.post(() -> callback.onSuccess(jobId));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to enqueue import of " + uri, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 读取文件开头的样本识别格式，然后把流退回到样本之前并跳过BOM
+     */
+    private static DelimitedFormat detectFormat(BufferedInputStream in, String fileName) throws IOException {
+        byte[] sample = new byte[DelimitedFormat.SAMPLE_SIZE];
+        in.mark(sample.length);
+        int length = 0;
+        int read = 0;
+        while (length < sample.length && (read = in.read(sample, length, sample.length - length)) != -1) {
+            length += read;
+        }
+        in.reset();
+        DelimitedFormat format = DelimitedFormat.detect(sample, length, read == -1, fileName);
+        long skipped = 0;
+        while (skipped < format.getBomLength()) {
+            skipped += in.skip(format.getBomLength() - skipped);
+        }
+        return format;
+    }
+
+    /**
+     * 插入暂存笔记本，导入完成前不出现在列表和回收站中
+     */
+    private long insertStagingNotebook(String title, long now) {
+        Notebook notebook = new Notebook(title, ColorUtils.getRandomNotebookColor());
+        notebook.setStaging(true);
+        notebook.setDeleted(true);
+        notebook.setDeletedAt(now);
+        return database.notebookDao().insert(notebook);
+    }
+
+    /**
+     * 沿用检查点中的暂存笔记本；第一次执行时创建，并在同一事务中记入检查点
+     */
+    private long stagingNotebook(JobContext job, Supplier<String> title, long now) {
+        long notebookId = job.getCheckpoint().optLong(NOTEBOOK_ID, 0);
+        if (notebookId != 0) {
+            return notebookId;
+        }
+        return job.commit(() -> {
+            long created = insertStagingNotebook(title.get(), now);
+            job.checkpoint(new JSONObject().put(NOTEBOOK_ID, created), 0, 0);
+            return created;
+        });
+    }
+
+    /**
+     * 在最后一个事务中公开暂存笔记本；已被清扫时放弃本次导入
+     */
+    private void publish(long notebookId) {
+        if (database.notebookDao().publishStaged(notebookId, DateUtils.now()) == 0) {
+            throw new IllegalStateException("导入的笔记本已被清除");
+        }
+    }
+
+    /**
+     * 清除导入失败或取消的暂存笔记本，已公开的不受影响
+     */
+    private void discard(long notebookId) {
+        if (notebookId == 0) {
+            return;
+        }
+        try {
+            if (database.notebookDao().markStagingPurging(notebookId) > 0) {
+                purger.purge(notebookId);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to discard imported notebook " + notebookId, e);
+        }
+    }
+
+    /**
+     * 任务结束后不再读取文件，交还持久读取权限
+     */
+    private void releasePermission(Uri uri) {
+        try {
+            contentResolver.releasePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            // 没有取得过持久权限
+        }
+    }
+
+    private static JSONObject parseCheckpoint(Job job) {
+        if (job == null || job.getCheckpoint() == null || job.getCheckpoint().isEmpty()) {
+            return new JSONObject();
+        }
+        try {
+            return new JSONObject(job.getCheckpoint());
+        } catch (JSONException e) {
+            Log.w(TAG, "Unreadable import checkpoint: " + job.getCheckpoint(), e);
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * 文件名去掉扩展名作为标题，重名时依次编号
+     */
+    private String titleFor(String fileName) {
+        String base = fileName != null ? stripExtension(fileName).trim() : "";
+        if (base.isEmpty()) {
+            base = "导入的表格";
+        }
+        String candidate = base;
+        for (int i = 2; database.notebookDao().countByTitle(candidate, 0) > 0; i++) {
+            candidate = base + " " + i;
+        }
+        return candidate;
+    }
+
+    private static String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private InputStream openInputStream(Uri uri) throws IOException {
+        InputStream in = contentResolver.openInputStream(uri);
+        if (in == null) {
+            throw new IOException("无法打开文件");
+        }
+        return in;
+    }
+
+    private String queryDisplayName(Uri uri) {
+        try (Cursor cursor = contentResolver.query(uri, new String[]{OpenableColumns.DISPLAY_NAME},
+                null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getString(0);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to query display name: " + uri, e);
+        }
+        return uri.getLastPathSegment();
+    }
+
+    /**
+     * 文件字节数，未知时返回-1
+     */
+    private long querySize(Uri uri) {
+        try (Cursor cursor = contentResolver.query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to query size: " + uri, e);
+        }
+        return -1;
+    }
+
+    /**
+     * 统计已读取的字节数，用于计算进度
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * 把写入状态连同暂存笔记本id记为检查点，进度按已读字节估算；任务被取消或被停止时让写入停下
+     */
+    private static final class JobListener implements CellBulkWriter.ChunkListener {
+        private final JobContext job;
+        private final long notebookId;
+        private final LongSupplier bytesRead;
+        private final long totalBytes;
+        private boolean stopped;
+
+        JobListener(JobContext job, long notebookId, LongSupplier bytesRead, long totalBytes) {
+            this.job = job;
+            this.notebookId = notebookId;
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+        }
+
+        @Override
+        public void beforeCommit(JSONObject state) throws JSONException {
+            // 不在JobContext.commit中，保存语句直接进入写入这块的事务
+            job.checkpoint(state.put(NOTEBOOK_ID, notebookId), bytesRead.getAsLong(), Math.max(totalBytes, 0));
+        }
+
+        @Override
+        public boolean onChunkCommitted(int rows) {
+            stopped = job.isStopped();
+            return !stopped;
+        }
+
+        void throwIfStopped() throws JobStoppedException {
+            if (stopped) {
+                throw new JobStoppedException();
+            }
+        }
+    }
+
+    /**
+     * 回调接口
+     */
+    public interface RepositoryCallback<T> {
+        void onSuccess(T result);
+        void onError(Exception error);
+    }
+}
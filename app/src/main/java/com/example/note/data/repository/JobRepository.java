@@ -0,0 +1,251 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Job;
+import com.example.note.data.job.JobHandler;
+import com.example.note.data.job.JobRunner;
+import com.example.note.data.job.JobType;
+import com.example.note.data.job.JobWorker;
+import com.example.note.data.job.ReindexJob;
+import com.example.note.data.job.VacuumJob;
+import com.example.note.data.search.SearchIndex;
+
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 后台任务仓库
+ * 任务记录在jobs表中，由WorkManager以唯一工作（job-<id>）调度，活动或进程结束后照常执行；
+ * 进度通过jobs表的LiveData观察。维护类任务要求充电且设备空闲。
+ */
+public class JobRepository {
+
+    private static final String TAG = "JobRepository";
+    private static volatile JobRepository INSTANCE;
+
+    private static final String WORK_NAME_PREFIX = "job-";
+    private static final String WORK_TAG = "job";
+    // 被停止或失败后重试的间隔
+    private static final long BACKOFF_SECONDS = 30;
+    // 已结束的任务记录保留时间
+    private static final long KEEP_FINISHED_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private final Context context;
+    private final AppDatabase database;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    private JobRepository(Context context) {
+        this.context = context;
+        database = AppDatabase.getInstance(context);
+        executor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+        // 补调度未结束的任务，并安排一次维护
+        resumePending();
+        scheduleMaintenance();
+    }
+
+    /**
+     * 获取Repository实例（单例模式）
+     */
+    public static JobRepository getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (JobRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new JobRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 添加任务并调度，回调返回任务id
+     * @param uniqueKey 去重键：已有同键的未结束任务时不再添加，返回已有任务的id；null表示不去重
+     */
+    public void enqueue(JobType type, String uniqueKey, JSONObject params, RepositoryCallback<Long> callback) {
+        executor.execute(() -> {
+            try {
+                long jobId = enqueueSync(type, uniqueKey, params);
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onSuccess(jobId));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to enqueue " + type + " job", e);
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onError(e));
+                }
+            }
+        });
+    }
+
+    /**
+     * 观察任务的状态和进度
+     */
+    public LiveData<Job> observe(long jobId) {
+        return database.jobDao().getById(jobId);
+    }
+
+    /**
+     * 观察所有未结束的任务
+     */
+    public LiveData<List<Job>> observeActive() {
+        return database.jobDao().getActiveJobs();
+    }
+
+    /**
+     * 取消任务：未开始的不再执行，执行中的在下一个让出点停止，已提交的块保留
+     */
+    public void cancel(long jobId) {
+        executor.execute(() -> {
+            try {
+                cancelSync(jobId);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to cancel job " + jobId, e);
+            }
+        });
+    }
+
+    /**
+     * 重新调度所有未结束的任务（WorkManager中已有的保持不变），并清理过期的任务记录
+     */
+    public void resumePending() {
+        executor.execute(() -> {
+            try {
+                database.jobDao().deleteFinishedBefore(System.currentTimeMillis() - KEEP_FINISHED_MS);
+                List<Job> jobs = database.jobDao().getActiveJobsSync();
+                if (!jobs.isEmpty()) {
+                    Log.d(TAG, "Resuming " + jobs.size() + " jobs");
+                }
+                for (Job job : jobs) {
+                    schedule(job);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to resume jobs", e);
+            }
+        });
+    }
+
+    /**
+     * 安排维护：补齐搜索索引、更新统计、回收空闲页；已在排队的不重复添加
+     */
+    public void scheduleMaintenance() {
+        enqueue(JobType.REINDEX, JobType.REINDEX.name(), null, null);
+        enqueue(JobType.VACUUM, JobType.VACUUM.name(), null, null);
+    }
+
+    // ==================== 同步实现（后台线程） ====================
+
+    public long enqueueSync(JobType type, String uniqueKey, JSONObject params) {
+        Job job = database.runInTransaction(() -> {
+            if (uniqueKey != null) {
+                Job existing = database.jobDao().getActiveByKeySync(uniqueKey);
+                if (existing != null) {
+                    return existing;
+                }
+            }
+            Job created = new Job();
+            created.setType(type.name());
+            created.setUniqueKey(uniqueKey);
+            created.setParams(params != null ? params.toString() : null);
+            created.setId(database.jobDao().insert(created));
+            return created;
+        });
+        schedule(job);
+        return job.getId();
+    }
+
+    /**
+     * 取消任务，返回是否确实取消了未结束的任务
+     */
+    public boolean cancelSync(long jobId) {
+        if (database.jobDao().cancel(jobId, System.currentTimeMillis()) == 0) {
+            return false;
+        }
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME_PREFIX + jobId);
+        Log.d(TAG, "Cancelled job " + jobId);
+        return true;
+    }
+
+    /**
+     * 执行任务（由JobWorker调用）
+     */
+    public JobRunner.Outcome runSync(long jobId, BooleanSupplier stopped) {
+        Job job = database.jobDao().getByIdSync(jobId);
+        JobHandler handler = job != null ? handlerFor(job.getType()) : null;
+        return JobRunner.run(database, jobId, handler, stopped);
+    }
+
+    private JobHandler handlerFor(String type) {
+        JobType jobType;
+        try {
+            jobType = JobType.valueOf(type);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+        switch (jobType) {
+            case PURGE:
+                return NotebookPurger.getInstance(context);
+            case IMPORT:
+                return ImportRepository.getInstance(context);
+            case VACUUM:
+                return new VacuumJob(database);
+            case REINDEX:
+                return new ReindexJob(database, SearchIndex.getInstance(context));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 以唯一工作调度任务，已在排队或执行的保持不变
+     */
+    private void schedule(Job job) {
+        JobType type = null;
+        try {
+            type = JobType.valueOf(job.getType());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            // 无法识别的类型照常调度，执行时标记为失败
+        }
+        OneTimeWorkRequest.Builder request = new OneTimeWorkRequest.Builder(JobWorker.class)
+                .setInputData(new Data.Builder().putLong(JobWorker.KEY_JOB_ID, job.getId()).build())
+                .addTag(WORK_TAG);
+        if (type != null && type.isMaintenance()) {
+            // 空闲模式的工作不能设置退避策略，被打断后等下次空闲
+            request.setConstraints(new Constraints.Builder()
+                    .setRequiresCharging(true)
+                    .setRequiresDeviceIdle(true)
+                    .build());
+        } else {
+            request.setBackoffCriteria(BackoffPolicy.LINEAR, BACKOFF_SECONDS, TimeUnit.SECONDS);
+        }
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME_PREFIX + job.getId(),
+                ExistingWorkPolicy.KEEP, request.build());
+    }
+
+    /**
+     * 回调接口
+     */
+    public interface RepositoryCallback<T> {
+        void onSuccess(T result);
+        void onError(Exception error);
+    }
+}
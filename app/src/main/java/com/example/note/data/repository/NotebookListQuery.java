@@ -0,0 +1,73 @@
+package com.example.note.data.repository;
+
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.example.note.data.entity.Notebook;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 主页笔记本列表的分页查询
+ * 置顶和非置顶分两段查询，每段按(排序键, id)同方向排序，翻页用上一页最后一条的排序键（keyset），不使用OFFSET。
+ * 按更新/创建时间排序时走(is_deleted, is_pinned, 时间)索引，每页只读取需要的行。
+ */
+public final class NotebookListQuery {
+
+    public enum SortKey {
+        UPDATED("updated_at"),
+        CREATED("created_at"),
+        // 标题不区分大小写排序，没有索引可用，每页在SQLite内排序
+        TITLE("IFNULL(title, '') COLLATE NOCASE");
+
+        final String expression;
+
+        SortKey(String expression) {
+            this.expression = expression;
+        }
+
+        Object valueOf(Notebook notebook) {
+            switch (this) {
+                case CREATED:
+                    return notebook.getCreatedAt();
+                case TITLE:
+                    return notebook.getTitle() != null ? notebook.getTitle() : "";
+                default:
+                    return notebook.getUpdatedAt();
+            }
+        }
+    }
+
+    private NotebookListQuery() {
+    }
+
+    /**
+     * 一段（置顶或非置顶）中排在after之后的一页
+     * @param after 上一页最后一条，null表示从该段开头查询
+     */
+    public static SupportSQLiteQuery page(SortKey key, boolean ascending, boolean pinned,
+                                          @Nullable Notebook after, int limit) {
+        String k = key.expression;
+        String dir = ascending ? "ASC" : "DESC";
+        List<Object> args = new ArrayList<>(5);
+        StringBuilder sql = new StringBuilder("SELECT * FROM notebooks WHERE is_deleted = 0 AND is_pinned = ?");
+        args.add(pinned ? 1 : 0);
+        if (after != null) {
+            Object value = key.valueOf(after);
+            // 先用排序键单独限定范围以便使用索引，再排除键相同且id不在其后的行
+            sql.append(ascending
+                    ? " AND " + k + " >= ? AND (" + k + " > ? OR id > ?)"
+                    : " AND " + k + " <= ? AND (" + k + " < ? OR id < ?)");
+            args.add(value);
+            args.add(value);
+            args.add(after.getId());
+        }
+        sql.append(" ORDER BY ").append(k).append(' ').append(dir)
+                .append(", id ").append(dir)
+                .append(" LIMIT ?");
+        args.add(limit);
+        return new SimpleSQLiteQuery(sql.toString(), args.toArray());
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.example.note.data.cache.NotebookSnapshotCache;
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.entity.Row;
+import com.example.note.data.model.CellColumns;
+import com.example.note.data.model.TableModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 笔记本加载器
+ * 在一个读事务中一次读出笔记本、列、行高和单元格，按列区间并行构建Cell对象，
+ * 返回可直接使用的TableModel，替代逐级observe LiveData的加载链。
+ * 单元格优先从快照缓存读取（updated_at一致时），未命中再查数据库并回写快照。
+ */
+public class NotebookLoader {
+
+    private static final String TAG = "NotebookLoader";
+    private static volatile NotebookLoader INSTANCE;
+
+    // 单元格少于此数量时不值得切分到多个线程
+    private static final int PARALLEL_THRESHOLD = 2000;
+
+    private static final String CELLS_QUERY =
+            "SELECT id, row_index, col_index, content, style_id, image_id, created_at, updated_at " +
+            "FROM cells WHERE notebook_id = ? ORDER BY row_index, col_index";
+
+    private final AppDatabase database;
+    private final NotebookSnapshotCache snapshotCache;
+    private final CellStyleRepository styleRepository;
+    private final ExecutorService loadExecutor;
+    private final ExecutorService decodeExecutor;
+    private final int decodeParallelism;
+    private final Handler mainHandler;
+
+    private NotebookLoader(Context context) {
+        database = AppDatabase.getInstance(context);
+        snapshotCache = NotebookSnapshotCache.getInstance(context);
+        styleRepository = CellStyleRepository.getInstance(context);
+        loadExecutor = Executors.newSingleThreadExecutor();
+        decodeParallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        decodeExecutor = Executors.newFixedThreadPool(decodeParallelism);
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * 获取Loader实例（单例模式）
+     */
+    public static NotebookLoader getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (NotebookLoader.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new NotebookLoader(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 异步加载笔记本，结果投递到主线程
+     */
+    public void load(long notebookId, RepositoryCallback<TableModel> callback) {
+        loadExecutor.execute(() -> {
+            try {
+                TableModel model = loadSync(notebookId);
+                mainHandler.post(() -> callback.onSuccess(model));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to load notebook " + notebookId, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 同步加载笔记本，必须在后台线程调用；笔记本不存在时返回null
+     */
+    public TableModel loadSync(long notebookId) throws Exception {
+        long start = SystemClock.elapsedRealtime();
+
+        // 第一阶段：单个读事务内完成全部查询，单元格只拷贝原始列值
+        Trace.beginSection("NotebookLoader.query");
+        RawSnapshot raw;
+        try {
+            raw = database.runInTransaction(() -> {
+                Notebook notebook = database.notebookDao().getByIdSync(notebookId);
+                if (notebook == null) {
+                    return null;
+                }
+                RawSnapshot snapshot = new RawSnapshot();
+                snapshot.notebook = notebook;
+                snapshot.columns = database.columnDao().getColumnsByNotebookIdSync(notebookId);
+                snapshot.rows = database.rowDao().getRowsByNotebookIdSync(notebookId);
+                // 事务内校验快照时间戳，保证与列、行高读到的是同一版本
+                snapshot.cells = snapshotCache.read(notebookId, notebook.getUpdatedAt());
+                snapshot.fromSnapshot = snapshot.cells != null;
+                if (!snapshot.fromSnapshot) {
+                    snapshot.generation = snapshotCache.generation(notebookId);
+                    snapshot.cells = readCells(notebookId);
+                }
+                return snapshot;
+            });
+        } finally {
+            Trace.endSection();
+        }
+        if (raw == null) {
+            return null;
+        }
+        // 单元格引用的样式在显示前载入内存，界面按id取样式时不再访问数据库
+        long maxStyleId = 0;
+        for (int i = 0; i < raw.cells.count; i++) {
+            maxStyleId = Math.max(maxStyleId, raw.cells.styleId[i]);
+        }
+        styleRepository.ensureLoadedSync(maxStyleId);
+        long queryMillis = SystemClock.elapsedRealtime() - start;
+        if (!raw.fromSnapshot) {
+            snapshotCache.writeAsync(notebookId, raw.notebook.getUpdatedAt(), raw.cells, raw.generation);
+        }
+
+        // 第二阶段：按列区间并行构建Cell对象
+        long decodeStart = SystemClock.elapsedRealtime();
+        Trace.beginSection("NotebookLoader.decode");
+        TableModel model;
+        try {
+            model = buildModel(notebookId, raw, queryMillis, decodeStart);
+        } finally {
+            Trace.endSection();
+        }
+
+        Log.d(TAG, "Loaded notebook " + notebookId + ": " + model.getCellCount() + " cells"
+                + (model.fromSnapshot ? " from snapshot" : "") + ", query "
+                + model.queryMillis + "ms, decode " + model.decodeMillis + "ms");
+        return model;
+    }
+
+    /**
+     * 校验预取的模型是否仍然有效：笔记本updated_at与快照失效代数都未变化时，
+     * 重新读取列和行高（体积很小）并按最新的冻结状态拆分单元格；否则返回null。
+     * 必须在后台线程调用。
+     * @param generation 预取前获取的快照失效代数
+     */
+    public TableModel revalidateSync(TableModel cached, int generation) {
+        long start = SystemClock.elapsedRealtime();
+        long notebookId = cached.notebook.getId();
+        RawSnapshot raw = database.runInTransaction(() -> {
+            Notebook notebook = database.notebookDao().getByIdSync(notebookId);
+            if (notebook == null || notebook.getUpdatedAt() != cached.notebook.getUpdatedAt()
+                    || snapshotCache.generation(notebookId) != generation) {
+                return null;
+            }
+            RawSnapshot snapshot = new RawSnapshot();
+            snapshot.notebook = notebook;
+            snapshot.columns = database.columnDao().getColumnsByNotebookIdSync(notebookId);
+            snapshot.rows = database.rowDao().getRowsByNotebookIdSync(notebookId);
+            return snapshot;
+        });
+        if (raw == null) {
+            return null;
+        }
+
+        // 两个列表各自是行优先顺序，归并回整表顺序
+        List<Cell> frozen = cached.frozenCells;
+        List<Cell> scrollable = cached.scrollableCells;
+        List<Cell> cells = new ArrayList<>(frozen.size() + scrollable.size());
+        int maxRow = -1;
+        int maxCol = -1;
+        int i = 0;
+        int j = 0;
+        while (i < frozen.size() || j < scrollable.size()) {
+            Cell next;
+            if (j >= scrollable.size() || (i < frozen.size() && comparePosition(frozen.get(i), scrollable.get(j)) < 0)) {
+                next = frozen.get(i++);
+            } else {
+                next = scrollable.get(j++);
+            }
+            maxRow = Math.max(maxRow, next.getRowIndex());
+            maxCol = Math.max(maxCol, next.getColIndex());
+            cells.add(next);
+        }
+
+        List<Column> columns = raw.columns != null ? raw.columns : new ArrayList<>();
+        return assemble(raw.notebook, columns, raw.rows, cells, maxRow, maxCol, cached.fromSnapshot,
+                SystemClock.elapsedRealtime() - start, 0);
+    }
+
+    private static int comparePosition(Cell a, Cell b) {
+        if (a.getRowIndex() != b.getRowIndex()) {
+            return Integer.compare(a.getRowIndex(), b.getRowIndex());
+        }
+        return Integer.compare(a.getColIndex(), b.getColIndex());
+    }
+
+    /**
+     * 遍历游标，把单元格各列拷贝到原始数组（SQLite连接不能跨线程读，这一步只能串行）
+     */
+    private CellColumns readCells(long notebookId) {
+        try (Cursor cursor = database.query(CELLS_QUERY, new Object[]{notebookId})) {
+            CellColumns cells = new CellColumns(cursor.getCount());
+            int i = 0;
+            while (cursor.moveToNext()) {
+                cells.id[i] = cursor.getLong(0);
+                cells.row[i] = cursor.getInt(1);
+                cells.col[i] = cursor.getInt(2);
+                cells.content[i] = cursor.getString(3);
+                cells.styleId[i] = cursor.getLong(4);
+                cells.imageId[i] = cursor.isNull(5) ? null : cursor.getString(5);
+                cells.createdAt[i] = cursor.getLong(6);
+                cells.updatedAt[i] = cursor.getLong(7);
+                i++;
+            }
+            cells.count = i;
+            return cells;
+        }
+    }
+
+    private TableModel buildModel(long notebookId, RawSnapshot raw, long queryMillis, long decodeStart) throws Exception {
+        CellColumns rawCells = raw.cells;
+        List<Column> columns = raw.columns != null ? raw.columns : new ArrayList<>();
+
+        int maxRow = -1;
+        int maxCol = -1;
+        for (int i = 0; i < rawCells.count; i++) {
+            maxRow = Math.max(maxRow, rawCells.row[i]);
+            maxCol = Math.max(maxCol, rawCells.col[i]);
+        }
+
+        // 各线程只写自己列区间内的下标，互不重叠
+        Cell[] decoded = new Cell[rawCells.count];
+        int colSpan = maxCol + 1;
+        int tasks = rawCells.count < PARALLEL_THRESHOLD ? 1 : Math.min(decodeParallelism + 1, Math.max(1, colSpan));
+        if (tasks <= 1) {
+            decodeRange(notebookId, rawCells, decoded, 0, Integer.MAX_VALUE);
+        } else {
+            int perTask = (colSpan + tasks - 1) / tasks;
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 1; t < tasks; t++) {
+                int fromCol = t * perTask;
+                int toCol = Math.min(colSpan, fromCol + perTask);
+                if (fromCol >= toCol) {
+                    break;
+                }
+                futures.add(decodeExecutor.submit(() -> decodeRange(notebookId, rawCells, decoded, fromCol, toCol)));
+            }
+            // 第一个区间在当前线程执行
+            decodeRange(notebookId, rawCells, decoded, 0, perTask);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        long decodeMillis = SystemClock.elapsedRealtime() - decodeStart;
+        return assemble(raw.notebook, columns, raw.rows, Arrays.asList(decoded), maxRow, maxCol,
+                raw.fromSnapshot, queryMillis, decodeMillis);
+    }
+
+    /**
+     * 按冻结状态拆分单元格并计算行列数，cells须为行优先顺序
+     */
+    private static TableModel assemble(Notebook notebook, List<Column> columns, List<Row> rows, List<Cell> cells,
+                                       int maxRow, int maxCol, boolean fromSnapshot,
+                                       long queryMillis, long decodeMillis) {
+        // 按冻结状态拆分，保持行优先顺序
+        List<Cell> frozenCells = new ArrayList<>();
+        List<Cell> scrollableCells = new ArrayList<>(cells.size());
+        for (Cell cell : cells) {
+            int colIndex = cell.getColIndex();
+            if (colIndex < columns.size() && columns.get(colIndex).isFrozen()) {
+                frozenCells.add(cell);
+            } else {
+                scrollableCells.add(cell);
+            }
+        }
+
+        // 行列数计算与原加载路径保持一致
+        int rowCount;
+        int colCount;
+        if (maxRow >= 0 && maxCol >= 0) {
+            rowCount = maxRow + 1;
+            colCount = !columns.isEmpty() ? columns.size() : maxCol + 1;
+        } else if (!columns.isEmpty()) {
+            colCount = columns.size();
+            rowCount = 1;
+        } else {
+            rowCount = 0;
+            colCount = 0;
+        }
+
+        return new TableModel(notebook, columns, rows != null ? rows : new ArrayList<>(),
+                frozenCells, scrollableCells, rowCount, colCount, fromSnapshot, queryMillis, decodeMillis);
+    }
+
+    /**
+     * 构建列索引在[fromCol, toCol)内的单元格
+     */
+    private static void decodeRange(long notebookId, CellColumns raw, Cell[] out, int fromCol, int toCol) {
+        for (int i = 0; i < raw.count; i++) {
+            int col = raw.col[i];
+            if (col < fromCol || col >= toCol) {
+                continue;
+            }
+            Cell cell = new Cell(notebookId, raw.row[i], col, raw.content[i] != null ? raw.content[i] : "");
+            cell.setId(raw.id[i]);
+            cell.setStyleId(raw.styleId[i]);
+            cell.setImageId(raw.imageId[i]);
+            cell.setCreatedAt(raw.createdAt[i]);
+            // setter会刷新updated_at，最后再写回数据库中的值
+            cell.setUpdatedAt(raw.updatedAt[i]);
+            out[i] = cell;
+        }
+    }
+
+    /**
+     * 事务内读出的原始数据
+     */
+    private static final class RawSnapshot {
+        Notebook notebook;
+        List<Column> columns;
+        List<Row> rows;
+        CellColumns cells;
+        boolean fromSnapshot;
+        int generation;
+    }
+
+    /**
+     * 回调接口
+     */
+    public interface RepositoryCallback<T> {
+        void onSuccess(T result);
+        void onError(Exception error);
+    }
+}
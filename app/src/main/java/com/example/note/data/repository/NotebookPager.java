@@ -0,0 +1,200 @@
+package com.example.note.data.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.room.InvalidationTracker;
+
+import com.example.note.data.dao.NotebookDao;
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Notebook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分页加载的主页笔记本列表
+ * 随列表滚动按页追加；notebooks表变化时（仅在有观察者时）重新查询已加载的范围，
+ * 其余时间只在重新变为活跃时刷新一次。查询都在单独的后台线程上顺序执行。
+ */
+public class NotebookPager extends LiveData<List<Notebook>> {
+
+    private static final String TAG = "NotebookPager";
+
+    private final AppDatabase database;
+    private final NotebookDao notebookDao;
+    private final int pageSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 排序变化时递增，丢弃旧排序下的结果
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("notebooks") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            reload();
+        }
+    };
+
+    private volatile NotebookListQuery.SortKey sortKey = NotebookListQuery.SortKey.UPDATED;
+    private volatile boolean ascending;
+    private volatile boolean endReached;
+    private volatile boolean started;
+
+    // 仅在主线程访问：避免滚动时重复排队追加
+    private boolean appendPending;
+
+    // 仅在executor上访问
+    private List<Notebook> loaded = Collections.emptyList();
+
+    NotebookPager(AppDatabase database, int pageSize) {
+        this.database = database;
+        this.notebookDao = database.notebookDao();
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * 设置排序，从第一页重新加载
+     */
+    public void setOrder(NotebookListQuery.SortKey sortKey, boolean ascending) {
+        if (started && this.sortKey == sortKey && this.ascending == ascending) {
+            return;
+        }
+        this.sortKey = sortKey;
+        this.ascending = ascending;
+        int gen = generation.incrementAndGet();
+        started = true;
+        executor.execute(() -> {
+            loaded = Collections.emptyList();
+            load(gen, pageSize);
+        });
+    }
+
+    /**
+     * 列表滚动到距已加载末尾不足一页时追加下一页
+     */
+    public void onVisibleRange(int lastVisiblePosition) {
+        List<Notebook> current = getValue();
+        int size = current != null ? current.size() : 0;
+        if (appendPending || endReached || lastVisiblePosition < size - pageSize / 2) {
+            return;
+        }
+        appendPending = true;
+        int gen = generation.get();
+        executor.execute(() -> append(gen));
+    }
+
+    /**
+     * 停止后台线程（ViewModel销毁时调用）
+     */
+    public void close() {
+        database.getInvalidationTracker().removeObserver(observer);
+        executor.shutdownNow();
+    }
+
+    @Override
+    protected void onActive() {
+        database.getInvalidationTracker().addObserver(observer);
+        // 不活跃期间的修改没有跟踪，重新查询一次
+        if (started) {
+            reload();
+        } else {
+            setOrder(sortKey, ascending);
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        database.getInvalidationTracker().removeObserver(observer);
+    }
+
+    private void reload() {
+        int gen = generation.get();
+        executor.execute(() -> load(gen, Math.max(loaded.size(), pageSize)));
+    }
+
+    /**
+     * 从头重新查询count条（executor线程）
+     */
+    private void load(int gen, int count) {
+        if (generation.get() != gen) {
+            return;
+        }
+        try {
+            List<Notebook> result = fetch(null, count);
+            loaded = result;
+            publish(gen, result, false);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load notebooks", e);
+        }
+    }
+
+    /**
+     * 追加下一页（executor线程）
+     */
+    private void append(int gen) {
+        if (generation.get() != gen) {
+            publish(gen, null, true);
+            return;
+        }
+        try {
+            Notebook last = loaded.isEmpty() ? null : loaded.get(loaded.size() - 1);
+            List<Notebook> page = fetch(last, pageSize);
+            List<Notebook> result = new ArrayList<>(loaded.size() + page.size());
+            result.addAll(loaded);
+            result.addAll(page);
+            loaded = Collections.unmodifiableList(result);
+            publish(gen, loaded, true);
+            Log.d(TAG, "Appended " + page.size() + " notebooks, " + loaded.size() + " loaded");
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to append notebooks", e);
+            publish(gen, null, true);
+        }
+    }
+
+    /**
+     * 查询排在after之后的limit条，置顶段查完接着查非置顶段（executor线程）
+     */
+    private List<Notebook> fetch(Notebook after, int limit) {
+        NotebookListQuery.SortKey key = sortKey;
+        boolean asc = ascending;
+        List<Notebook> result = new ArrayList<>(limit);
+        boolean pinned = after == null || after.isPinned();
+        Notebook from = after;
+        boolean end = false;
+        while (result.size() < limit) {
+            int want = limit - result.size();
+            List<Notebook> page = notebookDao.getPage(NotebookListQuery.page(key, asc, pinned, from, want));
+            result.addAll(page);
+            if (page.size() < want) {
+                if (!pinned) {
+                    end = true;
+                    break;
+                }
+                pinned = false;
+                from = null;
+            }
+        }
+        endReached = end;
+        return Collections.unmodifiableList(result);
+    }
+
+    private void publish(int gen, List<Notebook> result, boolean appended) {
+        mainHandler.post(() -> {
+            if (appended) {
+                appendPending = false;
+            }
+            if (result != null && generation.get() == gen) {
+                setValue(result);
+            }
+        });
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Job;
+import com.example.note.data.job.JobContext;
+import com.example.note.data.job.JobHandler;
+import com.example.note.data.job.JobType;
+import com.example.note.data.job.VacuumJob;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 笔记本清除器
+ * 永久删除只把笔记本标记为待清除（is_purging），由这里以PURGE任务分块删除单元格、行和列，
+ * 每块一个短事务并提交检查点，块之间让出写锁；子表删空后再删除笔记本本身。
+ * 数据库已是增量回收模式时每块之后增量回收有限的空闲页，切换模式的整体VACUUM只由维护任务执行。
+ * 任务由WorkManager调度，进程被杀后从检查点继续；标记也保存在数据库中，启动时为遗漏的笔记本补排任务。
+ * 没有未结束的导入任务持有的暂存笔记本（任务已取消或已失败但没来得及清除）也在补排时标记清除。
+ */
+public class NotebookPurger implements JobHandler {
+
+    private static final String TAG = "NotebookPurger";
+    private static volatile NotebookPurger INSTANCE;
+
+    // 每个事务最多删除的行数
+    static final int CHUNK_SIZE = 2000;
+    // 每块删除后最多增量回收的空闲页数
+    private static final int VACUUM_PAGES = 64;
+
+    private static final String PARAM_NOTEBOOK_ID = "notebookId";
+    private static final String STAGE = "stage";
+    // 依次删除单元格、行、列，最后删除笔记本
+    private static final int STAGE_CELLS = 0;
+    private static final int STAGE_ROWS = 1;
+    private static final int STAGE_COLUMNS = 2;
+    private static final int STAGE_NOTEBOOK = 3;
+    private static final int STAGE_DONE = 4;
+
+    private final Context context;
+    private final AppDatabase database;
+    // 排队用的低优先级线程，删除本身在任务中执行
+    private final ExecutorService executor;
+
+    private NotebookPurger(Context context) {
+        this(context, AppDatabase.getInstance(context));
+        // 为上次未完成的清除补排任务
+        resumePending();
+    }
+
+    /**
+     * 使用指定的数据库，不补排任务（用于内存数据库测试）
+     */
+    NotebookPurger(Context context, AppDatabase database) {
+        this.context = context;
+        this.database = database;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 获取清除器实例（单例模式）
+     */
+    public static NotebookPurger getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (NotebookPurger.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new NotebookPurger(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 清除已标记的笔记本；同一笔记本已有未结束的任务时不重复添加
+     */
+    public void purge(long notebookId) {
+        executor.execute(() -> {
+            try {
+                enqueueSync(notebookId);
+            } catch (Exception e) {
+                // 标记还在，下次启动时重试
+                Log.e(TAG, "Failed to schedule purge of notebook " + notebookId, e);
+            }
+        });
+    }
+
+    /**
+     * 标记没有导入任务持有的暂存笔记本，然后为所有已标记的笔记本排队
+     */
+    public void resumePending() {
+        executor.execute(() -> {
+            try {
+                int orphans = markOrphanedStaging();
+                if (orphans > 0) {
+                    Log.d(TAG, "Discarding " + orphans + " abandoned imports");
+                }
+                List<Long> ids = database.notebookDao().getPurgingIds();
+                if (!ids.isEmpty()) {
+                    Log.d(TAG, "Resuming purge of " + ids.size() + " notebooks");
+                }
+                for (long id : ids) {
+                    enqueueSync(id);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to resume purges", e);
+            }
+        });
+    }
+
+    /**
+     * 先取暂存笔记本再取任务：之后才创建的暂存笔记本不在列表中，导入任务创建暂存笔记本时在同一事务中记下它
+     */
+    private int markOrphanedStaging() {
+        List<Long> staging = database.notebookDao().getStagingIds();
+        if (staging.isEmpty()) {
+            return 0;
+        }
+        Set<Long> owned = new HashSet<>();
+        for (Job job : database.jobDao().getActiveJobsSync()) {
+            if (JobType.IMPORT.name().equals(job.getType())) {
+                owned.add(ImportRepository.getNotebookId(job));
+            }
+        }
+        int count = 0;
+        for (long id : staging) {
+            if (!owned.contains(id)) {
+                count += database.notebookDao().markStagingPurging(id);
+            }
+        }
+        return count;
+    }
+
+    private void enqueueSync(long notebookId) throws JSONException {
+        JobRepository.getInstance(context).enqueueSync(JobType.PURGE, "purge:" + notebookId,
+                new JSONObject().put(PARAM_NOTEBOOK_ID, notebookId));
+    }
+
+    /**
+     * PURGE任务：从检查点的阶段继续分块删除，删除的行数累计为进度
+     */
+    @Override
+    public void run(JobContext job) throws Exception {
+        long notebookId = job.getParams().getLong(PARAM_NOTEBOOK_ID);
+        int stage = job.getCheckpoint().optInt(STAGE, STAGE_CELLS);
+        long start = System.currentTimeMillis();
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        boolean incremental = VacuumJob.isIncremental(db);
+        while (stage < STAGE_NOTEBOOK) {
+            int current = stage;
+            ChunkDelete chunk = current == STAGE_CELLS
+                    ? () -> database.cellDao().deleteCellsChunk(notebookId, CHUNK_SIZE)
+                    : current == STAGE_ROWS
+                    ? () -> database.rowDao().deleteRowsChunk(notebookId, CHUNK_SIZE)
+                    : () -> database.columnDao().deleteColumnsChunk(notebookId, CHUNK_SIZE);
+            int deleted = job.commit(() -> {
+                int count = chunk.deleteChunk();
+                job.checkpoint(stage(count < CHUNK_SIZE ? current + 1 : current), job.getProgress() + count, 0);
+                return count;
+            });
+            if (deleted < CHUNK_SIZE) {
+                stage = current + 1;
+            }
+            if (incremental) {
+                VacuumJob.releasePages(db, VACUUM_PAGES);
+            }
+            job.yieldPoint();
+        }
+        if (stage == STAGE_NOTEBOOK) {
+            job.commit(() -> {
+                database.notebookDao().deletePurged(notebookId);
+                job.checkpoint(stage(STAGE_DONE), job.getProgress(), 0);
+                return null;
+            });
+            Log.d(TAG, "Purged notebook " + notebookId + ": " + job.getProgress() + " rows deleted in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+        scheduleVacuum();
+    }
+
+    /**
+     * 剩下的空闲页（或还没切换到增量回收模式时的整体VACUUM）在下次充电且空闲时处理
+     */
+    void scheduleVacuum() throws JSONException {
+        JobRepository.getInstance(context).enqueueSync(JobType.VACUUM, JobType.VACUUM.name(), null);
+    }
+
+    private static JSONObject stage(int stage) throws JSONException {
+        return new JSONObject().put(STAGE, stage);
+    }
+
+    private interface ChunkDelete {
+        int deleteChunk();
+    }
+}
@@ -7,14 +7,18 @@ import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
-import androidx.lifecycle.MutableLiveData;
 
+import com.example.note.data.cache.NotebookSnapshotCache;
 import com.example.note.data.dao.NotebookDao;
 import com.example.note.data.database.AppDatabase;
 import com.example.note.data.entity.Notebook;
+import com.example.note.data.entity.Template;
+import com.example.note.data.search.SearchIndex;
+import com.example.note.data.template.TemplatePayload;
 import com.example.note.util.ColorUtils;
 import com.example.note.util.DateUtils;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -28,9 +32,13 @@ public class NotebookRepository {
     private static final String TAG = "NotebookRepository";
     private static volatile NotebookRepository INSTANCE;
     
+    private final AppDatabase database;
     private final NotebookDao notebookDao;
     private final Executor executor;
     private final Handler mainHandler;
+    private final NotebookSnapshotCache snapshotCache;
+    private final NotebookPurger purger;
+    private final CellStyleRepository styleRepository;
     
     // LiveData缓存
     private final LiveData<List<Notebook>> allNotebooks;
@@ -38,10 +46,14 @@ public class NotebookRepository {
     private final LiveData<Integer> notebookCount;
     
     private NotebookRepository(Context context) {
-        AppDatabase database = AppDatabase.getInstance(context);
+        database = AppDatabase.getInstance(context);
         notebookDao = database.notebookDao();
         executor = Executors.newFixedThreadPool(4);
         mainHandler = new Handler(Looper.getMainLooper());
+        snapshotCache = NotebookSnapshotCache.getInstance(context);
+        // 创建时会继续上次未完成的清除
+        purger = NotebookPurger.getInstance(context);
+        styleRepository = CellStyleRepository.getInstance(context);
         
         // 初始化LiveData
         allNotebooks = notebookDao.getAllNotebooks();
@@ -70,6 +82,20 @@ public class NotebookRepository {
         return allNotebooks;
     }
     
+    /**
+     * 创建主页用的分页列表，调用方负责在不再使用时close()
+     */
+    public NotebookPager createPager(int pageSize) {
+        return new NotebookPager(database, pageSize);
+    }
+    
+    /**
+     * 同步获取所有未删除的笔记本（后台线程调用）
+     */
+    public List<Notebook> getAllNotebooksSync() {
+        return notebookDao.getAllNotebooksSync();
+    }
+    
     /**
      * 获取回收站中的笔记本
      */
@@ -91,16 +117,6 @@ public class NotebookRepository {
         return notebookDao.getById(id);
     }
     
-    /**
-     * 搜索笔记本
-     */
-    public LiveData<List<Notebook>> searchNotebooks(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return allNotebooks;
-        }
-        return notebookDao.searchNotebooks(query.trim());
-    }
-    
     /**
      * 将成功回调投递到主线程
      */
@@ -183,6 +199,106 @@ public class NotebookRepository {
         });
     }
     
+    /**
+     * 复制笔记本
+     * 笔记本、列、行和单元格都用INSERT…SELECT在一个事务内完成，数据不经过Java对象；
+     * 统计列由触发器累加，搜索索引直接复用源单元格的索引词
+     */
+    public void duplicateNotebook(long sourceId, RepositoryCallback<Long> callback) {
+        executor.execute(() -> {
+            try {
+                Notebook source = notebookDao.getByIdSync(sourceId);
+                if (source == null || source.isDeleted()) {
+                    deliverError(callback, new IllegalArgumentException("笔记本不存在"));
+                    return;
+                }
+                
+                long start = System.currentTimeMillis();
+                long id = database.runInTransaction(() -> {
+                    long now = DateUtils.now();
+                    long newId = notebookDao.copyNotebook(sourceId, copyTitle(source.getTitle()), now);
+                    database.columnDao().copyColumns(sourceId, newId, now);
+                    database.rowDao().copyRows(sourceId, newId, now);
+                    database.cellDao().copyCells(sourceId, newId, now);
+                    SearchIndex.copyCellTerms(database.getOpenHelper().getWritableDatabase(), sourceId, newId);
+                    return newId;
+                });
+                
+                deliverSuccess(callback, id);
+                Log.d(TAG, "Notebook duplicated: " + sourceId + " -> " + id + " in "
+                        + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to duplicate notebook: " + sourceId, e);
+                deliverError(callback, e);
+            }
+        });
+    }
+    
+    /**
+     * 副本标题：“标题 副本”，已存在时依次编号
+     */
+    private String copyTitle(String title) {
+        String base = (title != null ? title : "") + " 副本";
+        String candidate = base;
+        for (int i = 2; notebookDao.countByTitle(candidate, 0) > 0; i++) {
+            candidate = base + " " + i;
+        }
+        return candidate;
+    }
+    
+    /**
+     * 用模板创建笔记本
+     * 模板数据边解码边写入列和种子单元格，其余空白单元格在SQLite内按行列号生成，都与笔记本在同一事务中写入
+     */
+    public void createNotebookFromTemplate(String title, String color, Template template,
+                                           RepositoryCallback<Long> callback) {
+        executor.execute(() -> {
+            try {
+                if (title == null || title.trim().isEmpty()) {
+                    deliverError(callback, new IllegalArgumentException("标题不能为空"));
+                    return;
+                }
+                if (notebookDao.countByTitle(title.trim(), 0) > 0) {
+                    deliverError(callback, new IllegalArgumentException("标题已存在"));
+                    return;
+                }
+                
+                long start = System.currentTimeMillis();
+                long id = database.runInTransaction(() -> {
+                    long now = DateUtils.now();
+                    Notebook notebook = new Notebook();
+                    notebook.setTitle(title.trim());
+                    notebook.setColor(color != null ? color : ColorUtils.getDefaultNotebookColor());
+                    long newId = notebookDao.insert(notebook);
+                    
+                    try (TemplateInstantiator instantiator = new TemplateInstantiator(
+                            database.getOpenHelper().getWritableDatabase(), styleRepository, newId, now)) {
+                        if (TemplatePayload.isPayload(template.getData())) {
+                            TemplatePayload.read(template.getData(), instantiator);
+                        } else {
+                            // 没有模板数据时只按行列数生成
+                            instantiator.onGrid(template.getRows(), template.getCols());
+                        }
+                        instantiator.finishColumns();
+                        database.cellDao().insertEmptyGrid(newId, instantiator.getRows(), instantiator.getCols(), now);
+                        Log.d(TAG, "Template " + template.getId() + " applied: " + instantiator.getRows() + "x"
+                                + instantiator.getCols() + ", " + instantiator.getCellCount() + " seed cells");
+                    } catch (IOException e) {
+                        throw new IllegalStateException("模板数据已损坏", e);
+                    }
+                    return newId;
+                });
+                
+                deliverSuccess(callback, id);
+                Log.d(TAG, "Notebook created from template " + template.getId() + ": " + id + " in "
+                        + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to create notebook from template: " + title, e);
+                deliverError(callback, e);
+            }
+        });
+    }
+    
     /**
      * 更新笔记本
      */
@@ -190,7 +306,9 @@ public class NotebookRepository {
         executor.execute(() -> {
             try {
                 notebook.touch();
-                int result = notebookDao.update(notebook);
+                // 不整行写回，避免用过期的统计列覆盖触发器的结果
+                int result = notebookDao.updateDetails(notebook.getId(), notebook.getTitle(),
+                        notebook.getColor(), notebook.getDescription(), notebook.getUpdatedAt());
                 
                 if (result > 0) {
                     if (callback != null) {
@@ -376,24 +494,20 @@ public class NotebookRepository {
     
     /**
      * 永久删除笔记本
+     * 只做标记，单元格等子表由NotebookPurger在后台分块删除，不会长时间占用写锁
      */
     public void permanentlyDeleteNotebook(long id, RepositoryCallback<Void> callback) {
         executor.execute(() -> {
             try {
-                Notebook notebook = notebookDao.getByIdSync(id);
-                if (notebook != null) {
-                    int result = notebookDao.delete(notebook);
-                    
-                    if (result > 0) {
-                        if (callback != null) {
-                            callback.onSuccess(null);
-                        }
-                        Log.d(TAG, "Notebook permanently deleted: " + id);
-                    } else {
-                        if (callback != null) {
-                            callback.onError(new RuntimeException("删除失败"));
-                        }
+                int result = notebookDao.markPurging(id, DateUtils.now());
+                
+                if (result > 0) {
+                    snapshotCache.invalidate(id);
+                    purger.purge(id);
+                    if (callback != null) {
+                        callback.onSuccess(null);
                     }
+                    Log.d(TAG, "Notebook marked for purge: " + id);
                 } else {
                     if (callback != null) {
                         callback.onError(new RuntimeException("笔记本不存在"));
@@ -409,19 +523,22 @@ public class NotebookRepository {
     }
     
     /**
-     * 清理过期的删除笔记本
+     * 清理过期的删除笔记本（标记后由NotebookPurger在后台清除）
      */
     public void cleanupExpiredNotebooks(RepositoryCallback<Integer> callback) {
         executor.execute(() -> {
             try {
                 long thirtyDaysAgo = DateUtils.now() - (30L * 24 * 60 * 60 * 1000);
-                int result = notebookDao.deleteExpiredNotebooks(thirtyDaysAgo);
+                int result = notebookDao.markExpiredPurging(thirtyDaysAgo);
+                if (result > 0) {
+                    purger.resumePending();
+                }
                 
                 if (callback != null) {
                     callback.onSuccess(result);
                 }
                 
-                Log.d(TAG, "Cleaned up " + result + " expired notebooks");
+                Log.d(TAG, "Marked " + result + " expired notebooks for purge");
             } catch (Exception e) {
                 Log.e(TAG, "Failed to cleanup expired notebooks", e);
                 if (callback != null) {
@@ -0,0 +1,381 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.note.data.cache.NotebookSnapshotCache;
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.model.ReplaceResult;
+import com.example.note.data.search.FindReplaceSpec;
+import com.example.note.util.DateUtils;
+import com.example.note.util.UuidUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 批量查找替换仓库
+ * 按笔记本逐个处理：用(row_index, col_index)键集分页读取候选单元格，
+ * 在Java侧计算替换结果，每页在一个事务中写回。写入时校验旧值，扫描后被并发修改的单元格跳过。
+ * 撤销和重做同样按页校验：只改写仍保持替换结果（或旧值）的单元格。
+ */
+public class ReplaceRepository {
+
+    private static final String TAG = "ReplaceRepository";
+    private static volatile ReplaceRepository INSTANCE;
+
+    // 每页读取和每个写事务处理的单元格数
+    static final int CHUNK_SIZE = 500;
+
+    private final AppDatabase database;
+    private final NotebookSnapshotCache snapshotCache;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    private ReplaceRepository(Context context) {
+        this(context, AppDatabase.getInstance(context));
+    }
+
+    /**
+     * 使用指定的数据库（测试中的内存数据库）
+     */
+    ReplaceRepository(Context context, AppDatabase database) {
+        this.database = database;
+        snapshotCache = NotebookSnapshotCache.getInstance(context);
+        // 单线程：批量替换、撤销和重做按提交顺序执行
+        executor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * 获取Repository实例（单例模式）
+     */
+    public static ReplaceRepository getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ReplaceRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ReplaceRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 在范围内替换所有匹配，进度和结果投递到主线程
+     * @param task 取消句柄；取消后已提交的批次保留，结果中cancelled为true
+     */
+    public void replaceAll(FindReplaceSpec spec, FindReplaceSpec.Scope scope, ReplaceTask task,
+                           ProgressListener listener, RepositoryCallback<ReplaceResult> callback) {
+        executor.execute(() -> {
+            try {
+                ReplaceResult result = replaceAllSync(spec, scope, task, listener == null ? null
+                        : (scanned, replaced) -> mainHandler.post(() -> listener.onProgress(scanned, replaced)));
+                Log.d(TAG, "Replaced " + result.replacedCells + "/" + result.scannedCells + " cells"
+                        + (result.cancelled ? " (cancelled)" : ""));
+                mainHandler.post(() -> callback.onSuccess(result));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to replace", e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 撤销一次批量替换：把每个笔记本中被替换的单元格写回旧值。
+     * 只有内容仍等于替换结果的单元格才写回，替换后又被编辑过的单元格保持不变
+     * @param oldCells 所有受影响笔记本的旧值，按单元格的notebookId分组
+     */
+    public void restoreContents(String operationId, FindReplaceSpec spec, List<Cell> oldCells,
+                                RepositoryCallback<Integer> callback) {
+        executor.execute(() -> {
+            try {
+                int written = replayGuarded(spec, oldCells, true);
+                Log.d(TAG, "Undo replace " + operationId + ": " + written + "/" + oldCells.size() + " cells");
+                mainHandler.post(() -> callback.onSuccess(written));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to undo replace " + operationId, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 重做一次批量替换：对仍是旧值的单元格重新执行替换
+     */
+    public void reapply(String operationId, FindReplaceSpec spec, List<Cell> oldCells,
+                        RepositoryCallback<Integer> callback) {
+        executor.execute(() -> {
+            try {
+                int written = replayGuarded(spec, oldCells, false);
+                Log.d(TAG, "Redo replace " + operationId + ": " + written + "/" + oldCells.size() + " cells");
+                mainHandler.post(() -> callback.onSuccess(written));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to redo replace " + operationId, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    // ==================== 同步实现（后台线程） ====================
+
+    /**
+     * 同步执行替换，每页写入后在当前线程回调listener
+     */
+    ReplaceResult replaceAllSync(FindReplaceSpec spec, FindReplaceSpec.Scope scope, ReplaceTask task,
+                                 ProgressListener listener) throws IOException {
+        List<Long> notebookIds = new ArrayList<>();
+        if (scope.isAllNotebooks()) {
+            for (Notebook notebook : database.notebookDao().getAllNotebooksSync()) {
+                notebookIds.add(notebook.getId());
+            }
+        } else {
+            notebookIds.add(scope.notebookId);
+        }
+
+        String like = spec.likePattern();
+        String sql = buildScanQuery(scope, like != null);
+        Map<Long, List<Cell>> oldCells = new LinkedHashMap<>();
+        int scanned = 0;
+        int replaced = 0;
+        int skipped = 0;
+
+        for (long notebookId : notebookIds) {
+            int lastRow = -1;
+            int lastCol = Integer.MAX_VALUE;
+            List<Cell> notebookOld = new ArrayList<>();
+            while (!task.isCancelled()) {
+                List<Cell> page = readPage(sql, notebookId, scope, like, lastRow, lastCol);
+                if (page.isEmpty()) {
+                    break;
+                }
+                Cell last = page.get(page.size() - 1);
+                lastRow = last.getRowIndex();
+                lastCol = last.getColIndex();
+                scanned += page.size();
+
+                List<Cell> changes = new ArrayList<>();
+                List<Cell> originals = new ArrayList<>();
+                for (Cell cell : page) {
+                    String result = spec.apply(cell.getContent());
+                    if (result != null) {
+                        originals.add(cell);
+                        changes.add(new Cell(notebookId, cell.getRowIndex(), cell.getColIndex(), result));
+                    }
+                }
+                if (!changes.isEmpty()) {
+                    List<Cell> written = writeGuarded(notebookId, originals, changes);
+                    if (!written.isEmpty()) {
+                        // 每批提交后立即失效快照，替换进行中打开笔记本也不会读到旧快照
+                        snapshotCache.invalidate(notebookId);
+                    }
+                    notebookOld.addAll(written);
+                    replaced += written.size();
+                    skipped += changes.size() - written.size();
+                }
+
+                if (listener != null) {
+                    listener.onProgress(scanned, replaced);
+                }
+                if (page.size() < CHUNK_SIZE) {
+                    break;
+                }
+            }
+            if (!notebookOld.isEmpty()) {
+                oldCells.put(notebookId, notebookOld);
+            }
+            if (task.isCancelled()) {
+                break;
+            }
+        }
+        return new ReplaceResult(UuidUtils.generateUuid(), scanned, replaced, skipped, task.isCancelled(), oldCells);
+    }
+
+    /**
+     * 扫描语句：按(row_index, col_index)键集翻页，走(notebook_id, row_index, col_index)唯一索引
+     */
+    private static String buildScanQuery(FindReplaceSpec.Scope scope, boolean withLike) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT row_index, col_index, content FROM cells WHERE notebook_id = ? " +
+                "AND (row_index > ? OR (row_index = ? AND col_index > ?)) " +
+                "AND content IS NOT NULL AND content != ''");
+        if (scope.startRow >= 0) {
+            sql.append(" AND row_index BETWEEN ? AND ?");
+        }
+        if (scope.startCol >= 0) {
+            sql.append(" AND col_index BETWEEN ? AND ?");
+        }
+        if (withLike) {
+            sql.append(" AND content LIKE ? ESCAPE '\\'");
+        }
+        return sql.append(" ORDER BY row_index, col_index LIMIT ").append(CHUNK_SIZE).toString();
+    }
+
+    private List<Cell> readPage(String sql, long notebookId, FindReplaceSpec.Scope scope, String like,
+                                int lastRow, int lastCol) {
+        List<Object> args = new ArrayList<>();
+        args.add(notebookId);
+        args.add(lastRow);
+        args.add(lastRow);
+        args.add(lastCol);
+        if (scope.startRow >= 0) {
+            args.add(scope.startRow);
+            args.add(scope.endRow);
+        }
+        if (scope.startCol >= 0) {
+            args.add(scope.startCol);
+            args.add(scope.endCol);
+        }
+        if (like != null) {
+            args.add(like);
+        }
+
+        List<Cell> page = new ArrayList<>(CHUNK_SIZE);
+        try (Cursor cursor = database.query(sql, args.toArray())) {
+            while (cursor.moveToNext()) {
+                page.add(new Cell(notebookId, cursor.getInt(0), cursor.getInt(1), cursor.getString(2)));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * 在一个事务中写入一页替换结果，只有内容仍等于originals中的期望值才写；返回写入位置的期望值
+     */
+    private List<Cell> writeGuarded(long notebookId, List<Cell> originals, List<Cell> changes) throws IOException {
+        long now = DateUtils.now();
+        List<Cell> written = new ArrayList<>(changes.size());
+        database.beginTransaction();
+        try (SupportSQLiteStatement update = database.compileStatement(
+                "UPDATE cells SET content = ?, num_value = ?, date_value = ?, updated_at = ? " +
+                "WHERE notebook_id = ? AND row_index = ? AND col_index = ? AND content = ?")) {
+            for (int i = 0; i < changes.size(); i++) {
+                Cell original = originals.get(i);
+                Cell change = changes.get(i);
+                update.bindString(1, change.getContent());
+                bindTypedValues(update, 2, change);
+                update.bindLong(4, now);
+                update.bindLong(5, notebookId);
+                update.bindLong(6, original.getRowIndex());
+                update.bindLong(7, original.getColIndex());
+                update.bindString(8, original.getContent());
+                if (update.executeUpdateDelete() > 0) {
+                    written.add(original);
+                }
+            }
+            if (!written.isEmpty()) {
+                // 同一事务内更新笔记本时间戳，预取结果和列表排序随之失效
+                database.notebookDao().touch(notebookId, now);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return written;
+    }
+
+    /**
+     * 按笔记本分批撤销或重做替换，返回写入的单元格数。
+     * 撤销时期望值为旧值替换后的结果，重做时期望值为旧值，内容不等于期望值的单元格跳过
+     */
+    int replayGuarded(FindReplaceSpec spec, List<Cell> oldCells, boolean undo) throws IOException {
+        Map<Long, List<Cell>> byNotebook = new LinkedHashMap<>();
+        for (Cell cell : oldCells) {
+            List<Cell> cells = byNotebook.get(cell.getNotebookId());
+            if (cells == null) {
+                cells = new ArrayList<>();
+                byNotebook.put(cell.getNotebookId(), cells);
+            }
+            cells.add(cell);
+        }
+
+        int total = 0;
+        for (Map.Entry<Long, List<Cell>> entry : byNotebook.entrySet()) {
+            long notebookId = entry.getKey();
+            List<Cell> cells = entry.getValue();
+            int written = 0;
+            for (int start = 0; start < cells.size(); start += CHUNK_SIZE) {
+                List<Cell> expected = new ArrayList<>();
+                List<Cell> targets = new ArrayList<>();
+                for (Cell old : cells.subList(start, Math.min(cells.size(), start + CHUNK_SIZE))) {
+                    String replaced = spec.apply(old.getContent());
+                    if (replaced == null) {
+                        continue;
+                    }
+                    Cell result = new Cell(notebookId, old.getRowIndex(), old.getColIndex(), replaced);
+                    Cell original = new Cell(notebookId, old.getRowIndex(), old.getColIndex(), old.getContent());
+                    expected.add(undo ? result : original);
+                    targets.add(undo ? original : result);
+                }
+                if (!targets.isEmpty()) {
+                    written += writeGuarded(notebookId, expected, targets).size();
+                }
+            }
+            if (written > 0) {
+                snapshotCache.invalidate(notebookId);
+            }
+            total += written;
+        }
+        return total;
+    }
+
+    /**
+     * 绑定单元格的num_value和date_value（index和index + 1）
+     */
+    private static void bindTypedValues(SupportSQLiteStatement statement, int index, Cell cell) {
+        Double numValue = cell.getNumValue();
+        Long dateValue = cell.getDateValue();
+        if (numValue != null) {
+            statement.bindDouble(index, numValue);
+        } else {
+            statement.bindNull(index);
+        }
+        if (dateValue != null) {
+            statement.bindLong(index + 1, dateValue);
+        } else {
+            statement.bindNull(index + 1);
+        }
+    }
+
+    /**
+     * 替换进度
+     */
+    public interface ProgressListener {
+        void onProgress(int scannedCells, int replacedCells);
+    }
+
+    /**
+     * 替换任务句柄
+     */
+    public static final class ReplaceTask {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 回调接口
+     */
+    public interface RepositoryCallback<T> {
+        void onSuccess(T result);
+        void onError(Exception error);
+    }
+}
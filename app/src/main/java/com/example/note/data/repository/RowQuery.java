@@ -0,0 +1,476 @@
+package com.example.note.data.repository;
+
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.example.note.util.CellValueUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 表格视图的行查询：若干列筛选条件（各列之间为"且"）加排序键，求出可见的原始行号及其显示顺序
+ * 同一个查询既可以编译成一条SQL交给SQLite执行（cells表上的索引），也可以在已加载的网格上求值，
+ * 两种方式的结果完全一致：空值排最后，升序时数字在文本前、降序时文本在数字前，文本按ASCII不区分大小写比较，
+ * 值相同的行保持原始行序。由estimateInMemoryNanos估算在主线程上求值的耗时，行数多时改走SQL。
+ */
+public final class RowQuery {
+
+    /**
+     * 在主线程上求值的耗时上限，超过时交给SQLite在后台线程执行（约半帧）
+     */
+    static final long IN_MEMORY_BUDGET_NANOS = 8_000_000L;
+
+    // 中端设备上单次操作的大致耗时（纳秒）：判断一个单元格、取一行的排序键、排序中的一次比较
+    private static final long FILTER_NANOS_PER_CELL = 150;
+    private static final long SORT_KEY_NANOS_PER_CELL = 1000;
+    private static final long COMPARE_NANOS = 200;
+
+    /**
+     * SQLite 3.32之前单条语句最多999个参数（minSdk 26为3.18）
+     */
+    private static final int MAX_SQL_ARGS = 999;
+
+    private static final String BLANK_CHARS = "char(32, 9, 10, 13)";
+
+    /**
+     * 单元格取值来源，用于在内存中求值
+     */
+    public interface CellSource {
+        /**
+         * @return 单元格内容，单元格不存在时返回null
+         */
+        @Nullable
+        String contentAt(int row, int col);
+    }
+
+    /**
+     * 单列筛选条件
+     */
+    public static final class Filter {
+
+        enum Kind { VALUE_IN, CONTAINS, NUMBER_BETWEEN, DATE_BETWEEN }
+
+        final int column;
+        final Kind kind;
+        final Set<String> values;
+        final String text;
+        final double min;
+        final double max;
+
+        private Filter(int column, Kind kind, Set<String> values, String text, double min, double max) {
+            this.column = column;
+            this.kind = kind;
+            this.values = values;
+            this.text = text;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * 内容等于其中任一值；空字符串代表空白或不存在的单元格
+         */
+        public static Filter valueIn(int column, Collection<String> values) {
+            return new Filter(column, Kind.VALUE_IN,
+                    Collections.unmodifiableSet(new LinkedHashSet<>(values)), null, 0, 0);
+        }
+
+        /**
+         * 内容等于value（布尔列筛选）
+         */
+        public static Filter equalTo(int column, String value) {
+            return valueIn(column, Collections.singleton(value != null ? value : ""));
+        }
+
+        /**
+         * 内容包含text，ASCII字母不区分大小写（与SQL的LIKE一致）
+         */
+        public static Filter contains(int column, String text) {
+            return new Filter(column, Kind.CONTAINS, null, text, 0, 0);
+        }
+
+        /**
+         * 数值在[min, max]内，按num_value比较
+         */
+        public static Filter numberBetween(int column, double min, double max) {
+            return new Filter(column, Kind.NUMBER_BETWEEN, null, null, min, max);
+        }
+
+        /**
+         * 日期在[minDay, maxDay]内（距1970-01-01的天数），按date_value比较
+         */
+        public static Filter dateBetween(int column, long minDay, long maxDay) {
+            return new Filter(column, Kind.DATE_BETWEEN, null, null, minDay, maxDay);
+        }
+
+        /**
+         * 不存在的单元格是否满足条件；满足时SQL只能排除不满足的行，需要从全部行出发
+         */
+        boolean matchesMissing() {
+            return kind == Kind.VALUE_IN && values.contains("");
+        }
+
+        boolean matches(@Nullable String content) {
+            switch (kind) {
+                case VALUE_IN:
+                    return values.contains(content != null ? content : "");
+                case CONTAINS:
+                    return content != null && containsIgnoreAsciiCase(content, text);
+                case NUMBER_BETWEEN: {
+                    Double value = CellValueUtils.parseNumber(content);
+                    return value != null && value >= min && value <= max;
+                }
+                default: {
+                    Long day = CellValueUtils.parseDate(content);
+                    return day != null && day >= min && day <= max;
+                }
+            }
+        }
+
+        int argCount() {
+            switch (kind) {
+                case VALUE_IN:
+                    return 2 + values.size();
+                default:
+                    return kind == Kind.CONTAINS ? 3 : 4;
+            }
+        }
+
+        /**
+         * 编译为该列上的一个子查询：正向条件返回满足的行，matchesMissing时返回不满足的行
+         */
+        void appendSql(StringBuilder sql, List<Object> args, long notebookId) {
+            sql.append("SELECT row_index FROM cells WHERE notebook_id = ? AND col_index = ?");
+            args.add(notebookId);
+            args.add(column);
+            switch (kind) {
+                case VALUE_IN:
+                    boolean negate = matchesMissing();
+                    sql.append(negate ? " AND content NOT IN (" : " AND content IN (");
+                    boolean first = true;
+                    for (String value : values) {
+                        sql.append(first ? "?" : ", ?");
+                        args.add(value);
+                        first = false;
+                    }
+                    sql.append(')');
+                    break;
+                case CONTAINS:
+                    sql.append(" AND content LIKE ? ESCAPE '\\'");
+                    args.add("%" + escapeLike(text) + "%");
+                    break;
+                case NUMBER_BETWEEN:
+                    sql.append(" AND num_value BETWEEN ? AND ?");
+                    args.add(min);
+                    args.add(max);
+                    break;
+                default:
+                    sql.append(" AND date_value BETWEEN ? AND ?");
+                    args.add((long) min);
+                    args.add((long) max);
+                    break;
+            }
+        }
+    }
+
+    private final List<Filter> filters;
+    private final int[] sortColumns;
+    private final boolean[] sortDescending;
+
+    private RowQuery(List<Filter> filters, List<int[]> sortKeys) {
+        this.filters = filters;
+        this.sortColumns = new int[sortKeys.size()];
+        this.sortDescending = new boolean[sortKeys.size()];
+        for (int i = 0; i < sortKeys.size(); i++) {
+            sortColumns[i] = sortKeys.get(i)[0];
+            sortDescending[i] = sortKeys.get(i)[1] != 0;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private final List<Filter> filters = new ArrayList<>();
+        private final List<int[]> sortKeys = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder where(Filter filter) {
+            // 空的包含条件不筛选任何行
+            if (filter.kind != Filter.Kind.CONTAINS || (filter.text != null && !filter.text.isEmpty())) {
+                filters.add(filter);
+            }
+            return this;
+        }
+
+        public Builder orderBy(int column, boolean descending) {
+            sortKeys.add(new int[]{column, descending ? 1 : 0});
+            return this;
+        }
+
+        public RowQuery build() {
+            return new RowQuery(new ArrayList<>(filters), new ArrayList<>(sortKeys));
+        }
+    }
+
+    /**
+     * 没有筛选和排序时所有行按原始顺序显示，不需要求值
+     */
+    public boolean isEmpty() {
+        return filters.isEmpty() && sortColumns.length == 0;
+    }
+
+    /**
+     * 估算在内存中对rowCount行求值的耗时（纳秒）：逐行判断筛选条件、取排序键，再做n·log n次比较
+     */
+    public long estimateInMemoryNanos(long rowCount) {
+        if (rowCount <= 1) {
+            return 0;
+        }
+        long perRow = filters.size() * FILTER_NANOS_PER_CELL + sortColumns.length * SORT_KEY_NANOS_PER_CELL;
+        long sort = sortColumns.length == 0 ? 0
+                : (long) (rowCount * (Math.log(rowCount) / Math.log(2)) * COMPARE_NANOS);
+        return rowCount * perRow + sort;
+    }
+
+    /**
+     * 是否应交给SQLite执行：内存求值会超出主线程预算，且参数个数在SQLite限制内
+     * @param rowCount 笔记本的行数统计（notebooks.row_count）
+     */
+    public boolean prefersSql(long rowCount) {
+        if (isEmpty() || estimateInMemoryNanos(rowCount) <= IN_MEMORY_BUDGET_NANOS) {
+            return false;
+        }
+        int args = 1 + sortColumns.length * 2;
+        for (Filter filter : filters) {
+            args += filter.argCount();
+        }
+        return args <= MAX_SQL_ARGS;
+    }
+
+    /**
+     * 编译为一条返回原始行号（按显示顺序）的查询
+     * 每个筛选条件是(notebook_id, col_index, ...)索引上的一个子查询，用INTERSECT/EXCEPT组合；
+     * 只有排除型条件时从0..rowCount-1全部行出发。排序列按(notebook_id, row_index, col_index)唯一索引逐行连接。
+     * @param rowCount 网格的总行数（包括没有单元格的行），至少为1
+     */
+    public SupportSQLiteQuery toSql(long notebookId, int rowCount) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder matched = new StringBuilder();
+        boolean hasPositive = false;
+        for (Filter filter : filters) {
+            if (!filter.matchesMissing()) {
+                if (hasPositive) {
+                    matched.append(" INTERSECT ");
+                }
+                filter.appendSql(matched, args, notebookId);
+                hasPositive = true;
+            }
+        }
+
+        StringBuilder sql = new StringBuilder("WITH RECURSIVE ");
+        List<Object> allArgs = new ArrayList<>(args.size() + 8);
+        if (!hasPositive) {
+            sql.append("all_rows(row_index) AS (SELECT 0 UNION ALL SELECT row_index + 1 FROM all_rows ")
+                    .append("WHERE row_index + 1 < ?), ");
+            allArgs.add(rowCount);
+            matched.append("SELECT row_index FROM all_rows");
+        }
+        for (Filter filter : filters) {
+            if (filter.matchesMissing()) {
+                matched.append(" EXCEPT ");
+                filter.appendSql(matched, args, notebookId);
+            }
+        }
+        sql.append("matched(row_index) AS (").append(matched).append(") SELECT m.row_index FROM matched m");
+        allArgs.addAll(args);
+
+        StringBuilder order = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < sortColumns.length; i++) {
+            String k = "k" + i;
+            sql.append(" LEFT JOIN cells ").append(k).append(" ON ").append(k).append(".notebook_id = ? AND ")
+                    .append(k).append(".row_index = m.row_index AND ").append(k).append(".col_index = ?");
+            allArgs.add(notebookId);
+            allArgs.add(sortColumns[i]);
+            appendExcelOrder(order, k, sortDescending[i]);
+        }
+        sql.append(order).append("m.row_index ASC");
+        return new SimpleSQLiteQuery(sql.toString(), allArgs.toArray());
+    }
+
+    /**
+     * 某一排序键的ORDER BY片段：分组（数字/文本/空）、数值、文本
+     */
+    private static void appendExcelOrder(StringBuilder order, String k, boolean descending) {
+        String trimmed = "TRIM(" + k + ".content, " + BLANK_CHARS + ")";
+        String dir = descending ? " DESC, " : " ASC, ";
+        order.append("CASE WHEN ").append(k).append(".content IS NULL OR ").append(trimmed).append(" = '' THEN 2 ")
+                .append("WHEN ").append(k).append(".num_value IS NOT NULL THEN ").append(descending ? 1 : 0)
+                .append(" ELSE ").append(descending ? 0 : 1).append(" END ASC, ")
+                .append(k).append(".num_value").append(dir)
+                .append("CASE WHEN ").append(k).append(".num_value IS NULL THEN NULLIF(").append(trimmed)
+                .append(", '') END COLLATE NOCASE").append(dir);
+    }
+
+    /**
+     * 在内存中求值，结果与toSql在同一数据上的查询结果相同
+     * @param rowCount 网格的总行数
+     * @return 按显示顺序排列的原始行号
+     */
+    public List<Integer> evaluate(CellSource source, int rowCount) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            boolean visible = true;
+            for (Filter filter : filters) {
+                if (!filter.matches(source.contentAt(row, filter.column))) {
+                    visible = false;
+                    break;
+                }
+            }
+            if (visible) {
+                rows.add(row);
+            }
+        }
+        if (sortColumns.length == 0) {
+            return rows;
+        }
+
+        // 每行的排序键只计算一次
+        int n = rows.size();
+        SortKey[][] keys = new SortKey[sortColumns.length][rowCount];
+        for (int i = 0; i < sortColumns.length; i++) {
+            for (int j = 0; j < n; j++) {
+                int row = rows.get(j);
+                keys[i][row] = new SortKey(source.contentAt(row, sortColumns[i]), sortDescending[i]);
+            }
+        }
+        rows.sort((r1, r2) -> {
+            for (int i = 0; i < sortColumns.length; i++) {
+                int c = keys[i][r1].compareTo(keys[i][r2], sortDescending[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Integer.compare(r1, r2);
+        });
+        return rows;
+    }
+
+    /**
+     * 单元格的排序键，规则与appendExcelOrder一致
+     */
+    private static final class SortKey {
+        final int group;
+        final double number;
+        final String text;
+
+        SortKey(@Nullable String content, boolean descending) {
+            String trimmed = content != null ? trimBlank(content) : "";
+            Double value = content != null ? CellValueUtils.parseNumber(content) : null;
+            if (trimmed.isEmpty()) {
+                group = 2;
+                number = 0;
+                text = null;
+            } else if (value != null) {
+                group = descending ? 1 : 0;
+                number = value;
+                text = null;
+            } else {
+                group = descending ? 0 : 1;
+                number = 0;
+                text = trimmed;
+            }
+        }
+
+        int compareTo(SortKey other, boolean descending) {
+            if (group != other.group) {
+                return group < other.group ? -1 : 1;
+            }
+            int c;
+            if (group == 2) {
+                c = 0;
+            } else if (text == null) {
+                c = number < other.number ? -1 : (number > other.number ? 1 : 0);
+            } else {
+                c = compareNoCase(text, other.text);
+            }
+            return descending ? -c : c;
+        }
+    }
+
+    /**
+     * 去掉首尾的空格、制表符和换行（与SQL中的TRIM(content, char(32, 9, 10, 13))一致）
+     */
+    static String trimBlank(String s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && isBlank(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && isBlank(s.charAt(end - 1))) {
+            end--;
+        }
+        return s.substring(start, end);
+    }
+
+    private static boolean isBlank(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+    }
+
+    /**
+     * 与SQLite的NOCASE排序规则一致：只折叠ASCII字母，其余按码点比较（即UTF-8字节序）
+     */
+    static int compareNoCase(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = foldAscii(a.codePointAt(i));
+            int cb = foldAscii(b.codePointAt(j));
+            if (ca != cb) {
+                return ca < cb ? -1 : 1;
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    static boolean containsIgnoreAsciiCase(String content, String text) {
+        int limit = content.length() - text.length();
+        for (int start = 0; start <= limit; start++) {
+            int k = 0;
+            while (k < text.length()
+                    && foldAscii(content.charAt(start + k)) == foldAscii(text.charAt(k))) {
+                k++;
+            }
+            if (k == text.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int foldAscii(int ch) {
+        return ch >= 'A' && ch <= 'Z' ? ch + ('a' - 'A') : ch;
+    }
+
+    private static String escapeLike(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 4);
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '%' || ch == '_' || ch == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(ch);
+        }
+        return escaped.toString();
+    }
+}
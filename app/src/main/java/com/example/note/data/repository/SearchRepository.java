@@ -0,0 +1,100 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.note.data.model.SearchPage;
+import com.example.note.data.search.SearchIndex;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 搜索仓库类
+ * 跨笔记本全文搜索，结果分页投递到主线程
+ */
+public class SearchRepository {
+
+    private static final String TAG = "SearchRepository";
+    private static volatile SearchRepository INSTANCE;
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final SearchIndex searchIndex;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+    private Future<?> currentSearch;
+
+    private SearchRepository(Context context) {
+        searchIndex = SearchIndex.getInstance(context);
+        executor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * 获取Repository实例（单例模式）
+     */
+    public static SearchRepository getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SearchRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SearchRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 搜索所有笔记本
+     * @param after 上一页的SearchPage.next，第一页传null
+     */
+    public void search(String query, SearchPage.Key after, int limit, RepositoryCallback<SearchPage> callback) {
+        search(query, 0, after, limit, callback);
+    }
+
+    /**
+     * 搜索指定笔记本（notebookId<=0表示全部）；新的搜索会取消尚未开始的旧搜索
+     */
+    public synchronized void search(String query, long notebookId, SearchPage.Key after, int limit,
+                                    RepositoryCallback<SearchPage> callback) {
+        if (currentSearch != null && after == null) {
+            currentSearch.cancel(false);
+        }
+        currentSearch = executor.submit(() -> {
+            try {
+                SearchPage page = searchIndex.searchSync(query, notebookId, after, limit);
+                mainHandler.post(() -> callback.onSuccess(page));
+            } catch (Exception e) {
+                Log.e(TAG, "Search failed: " + query, e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 重建搜索索引
+     */
+    public void rebuildIndex(RepositoryCallback<Void> callback) {
+        executor.execute(() -> {
+            try {
+                searchIndex.rebuildSync();
+                mainHandler.post(() -> callback.onSuccess(null));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to rebuild search index", e);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * 回调接口
+     */
+    public interface RepositoryCallback<T> {
+        void onSuccess(T result);
+        void onError(Exception error);
+    }
+}
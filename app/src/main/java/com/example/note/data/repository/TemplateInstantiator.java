@@ -0,0 +1,144 @@
+package com.example.note.data.repository;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.template.TemplatePayload;
+import com.example.note.util.CellValueUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 把模板数据直接写入新笔记本
+ * 解码回调逐条绑定到预编译的插入语句，不构造Column/Cell对象；必须在调用方的事务中使用。
+ * 模板没有定义的列用默认列名补齐，剩余的空白单元格由CellDao.insertEmptyGrid生成。
+ * 模板中的样式按首次出现换成cell_styles的id（解码时每个样式只构造一次，按对象缓存即可）。
+ */
+class TemplateInstantiator implements TemplatePayload.Visitor, Closeable {
+
+    private final long notebookId;
+    private final long now;
+    private final SupportSQLiteStatement insertColumn;
+    private final SupportSQLiteStatement insertCell;
+    private final CellStyleRepository styleRepository;
+    private final Map<TemplatePayload.Style, Long> styleIds = new IdentityHashMap<>();
+    private final BitSet definedColumns = new BitSet();
+
+    private int rows;
+    private int cols;
+    private int cellCount;
+
+    TemplateInstantiator(SupportSQLiteDatabase db, CellStyleRepository styleRepository, long notebookId, long now) {
+        this.styleRepository = styleRepository;
+        this.notebookId = notebookId;
+        this.now = now;
+        insertColumn = db.compileStatement("INSERT OR REPLACE INTO columns (notebook_id, column_index, name, width, " +
+                "type, is_visible, is_frozen, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        insertCell = db.compileStatement("INSERT OR REPLACE INTO cells (notebook_id, row_index, col_index, content, " +
+                "num_value, date_value, style_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    }
+
+    @Override
+    public void onGrid(int rows, int cols) {
+        this.rows = Math.max(rows, 0);
+        this.cols = Math.max(cols, 0);
+    }
+
+    @Override
+    public void onColumn(int index, String name, float width, String type, boolean visible, boolean frozen) {
+        insertColumn(index, name, width, type, visible, frozen);
+        definedColumns.set(index);
+        cols = Math.max(cols, index + 1);
+    }
+
+    @Override
+    public void onCell(int row, int col, String content, TemplatePayload.Style style) {
+        insertCell.bindLong(1, notebookId);
+        insertCell.bindLong(2, row);
+        insertCell.bindLong(3, col);
+        bindNullable(insertCell, 4, content);
+        Double numValue = CellValueUtils.parseNumber(content);
+        Long dateValue = CellValueUtils.parseDate(content);
+        if (numValue != null) {
+            insertCell.bindDouble(5, numValue);
+        } else {
+            insertCell.bindNull(5);
+        }
+        if (dateValue != null) {
+            insertCell.bindLong(6, dateValue);
+        } else {
+            insertCell.bindNull(6);
+        }
+        insertCell.bindLong(7, styleId(style));
+        insertCell.bindLong(8, now);
+        insertCell.bindLong(9, now);
+        insertCell.executeInsert();
+        cellCount++;
+        rows = Math.max(rows, row + 1);
+        cols = Math.max(cols, col + 1);
+    }
+
+    /**
+     * 补齐模板没有定义的列
+     */
+    void finishColumns() {
+        for (int i = definedColumns.nextClearBit(0); i < cols; i = definedColumns.nextClearBit(i + 1)) {
+            insertColumn(i, "列" + (i + 1), TemplatePayload.DEFAULT_COLUMN_WIDTH,
+                    TemplatePayload.DEFAULT_COLUMN_TYPE, true, false);
+        }
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getCols() {
+        return cols;
+    }
+
+    int getCellCount() {
+        return cellCount;
+    }
+
+    private long styleId(TemplatePayload.Style style) {
+        Long id = styleIds.get(style);
+        if (id == null) {
+            id = styleRepository.internSync(new CellStyle(style.textColor, style.backgroundColor,
+                    style.bold, style.italic, style.textSize, style.alignment));
+            styleIds.put(style, id);
+        }
+        return id;
+    }
+
+    private void insertColumn(int index, String name, float width, String type, boolean visible, boolean frozen) {
+        insertColumn.bindLong(1, notebookId);
+        insertColumn.bindLong(2, index);
+        bindNullable(insertColumn, 3, name);
+        insertColumn.bindDouble(4, width);
+        bindNullable(insertColumn, 5, type);
+        insertColumn.bindLong(6, visible ? 1 : 0);
+        insertColumn.bindLong(7, frozen ? 1 : 0);
+        insertColumn.bindLong(8, now);
+        insertColumn.bindLong(9, now);
+        insertColumn.executeInsert();
+    }
+
+    private static void bindNullable(SupportSQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        insertColumn.close();
+        insertCell.close();
+    }
+}
@@ -1,17 +1,25 @@
 package com.example.note.data.repository;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
 
 import com.example.note.data.dao.TemplateDao;
 import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Notebook;
 import com.example.note.data.entity.Template;
+import com.example.note.data.template.TemplatePayload;
 import com.example.note.util.DateUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -24,6 +32,7 @@ public class TemplateRepository {
     private static final String TAG = "TemplateRepository";
     private static volatile TemplateRepository INSTANCE;
     
+    private final AppDatabase database;
     private final TemplateDao templateDao;
     private final Executor executor;
     
@@ -34,7 +43,7 @@ public class TemplateRepository {
     private final LiveData<Integer> templateCount;
     
     private TemplateRepository(Context context) {
-        AppDatabase database = AppDatabase.getInstance(context);
+        database = AppDatabase.getInstance(context);
         templateDao = database.templateDao();
         executor = Executors.newFixedThreadPool(4);
         
@@ -94,16 +103,6 @@ public class TemplateRepository {
         return templateDao.getById(id);
     }
     
-    /**
-     * 搜索模板
-     */
-    public LiveData<List<Template>> searchTemplates(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return allTemplates;
-        }
-        return templateDao.searchTemplates(query.trim());
-    }
-    
     /**
      * 根据尺寸获取模板
      */
@@ -135,7 +134,7 @@ public class TemplateRepository {
     /**
      * 创建新模板
      */
-    public void createTemplate(String name, String description, int rows, int cols, String data, RepositoryCallback<Long> callback) {
+    public void createTemplate(String name, String description, int rows, int cols, byte[] data, RepositoryCallback<Long> callback) {
         executor.execute(() -> {
             try {
                 // 验证参数
@@ -167,7 +166,7 @@ public class TemplateRepository {
                 template.setDescription(description != null ? description.trim() : "");
                 template.setRows(rows);
                 template.setCols(cols);
-                template.setData(data != null ? data : "");
+                template.setData(data);
                 template.setSystem(false); // 用户创建的模板
                 template.setCreatedAt(DateUtils.now());
                 
@@ -187,6 +186,116 @@ public class TemplateRepository {
         });
     }
     
+    /**
+     * 把笔记本保存为模板
+     * 列定义和有内容或非默认样式的单元格在一个读事务中用游标逐条编码，不构造Cell列表
+     */
+    public void saveNotebookAsTemplate(long notebookId, String name, String description,
+                                       RepositoryCallback<Long> callback) {
+        executor.execute(() -> {
+            try {
+                if (name == null || name.trim().isEmpty()) {
+                    if (callback != null) {
+                        callback.onError(new IllegalArgumentException("模板名称不能为空"));
+                    }
+                    return;
+                }
+                if (templateDao.countByName(name.trim(), 0) > 0) {
+                    if (callback != null) {
+                        callback.onError(new IllegalArgumentException("模板名称已存在"));
+                    }
+                    return;
+                }
+                
+                Template template = database.runInTransaction(() -> encodeNotebook(notebookId));
+                if (template == null) {
+                    if (callback != null) {
+                        callback.onError(new IllegalArgumentException("笔记本不存在"));
+                    }
+                    return;
+                }
+                template.setName(name.trim());
+                template.setDescription(description != null ? description.trim() : "");
+                template.setSystem(false);
+                template.setCreatedAt(DateUtils.now());
+                
+                long id = templateDao.insert(template);
+                
+                if (callback != null) {
+                    callback.onSuccess(id);
+                }
+                
+                Log.d(TAG, "Notebook " + notebookId + " saved as template " + id + ", "
+                        + template.getData().length + " bytes");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to save notebook as template: " + notebookId, e);
+                if (callback != null) {
+                    callback.onError(e);
+                }
+            }
+        });
+    }
+    
+    /**
+     * 编码笔记本的列和单元格，笔记本不存在时返回null（须在事务中调用）
+     */
+    private Template encodeNotebook(long notebookId) {
+        Notebook notebook = database.notebookDao().getByIdSync(notebookId);
+        if (notebook == null) {
+            return null;
+        }
+        List<Column> columns = database.columnDao().getColumnsByNotebookIdSync(notebookId);
+        int rows = notebook.getRowCount();
+        int cols = Math.max(columns.size(), notebook.getColumnCount());
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int seedCells = 0;
+        // 样式按style_id只构造一次
+        Map<Long, TemplatePayload.Style> styles = new HashMap<>();
+        try (TemplatePayload.Writer writer = new TemplatePayload.Writer(bytes, rows, cols);
+             Cursor cursor = database.getOpenHelper().getReadableDatabase().query(
+                     "SELECT c.row_index, c.col_index, c.content, c.style_id, s.text_color, s.background_color, " +
+                     "s.is_bold, s.is_italic, s.text_size, s.text_alignment " +
+                     "FROM cells c LEFT JOIN cell_styles s ON s.id = c.style_id " +
+                     "WHERE c.notebook_id = ? ORDER BY c.row_index, c.col_index",
+                     new Object[]{notebookId})) {
+            for (Column column : columns) {
+                writer.column(column.getColumnIndex(), column.getName(), column.getWidth(), column.getType(),
+                        column.isVisible(), column.isFrozen());
+            }
+            while (cursor.moveToNext()) {
+                String content = cursor.isNull(2) ? null : cursor.getString(2);
+                long styleId = cursor.getLong(3);
+                // 空白且为默认样式的单元格不保存，创建时由空白网格补齐
+                if ((content == null || content.isEmpty()) && styleId == CellStyle.DEFAULT_ID) {
+                    continue;
+                }
+                TemplatePayload.Style style = styles.get(styleId);
+                if (style == null) {
+                    style = cursor.isNull(4) ? TemplatePayload.Style.DEFAULT : new TemplatePayload.Style(
+                            cursor.getString(4),
+                            cursor.getString(5),
+                            cursor.getInt(6) != 0,
+                            cursor.getInt(7) != 0,
+                            cursor.getFloat(8),
+                            cursor.getString(9));
+                    styles.put(styleId, style);
+                }
+                writer.cell(cursor.getInt(0), cursor.getInt(1), content, style);
+                seedCells++;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        Log.d(TAG, "Encoded notebook " + notebookId + ": " + rows + "x" + cols + ", " + seedCells + " seed cells");
+        
+        Template template = new Template();
+        template.setRows(rows);
+        template.setCols(cols);
+        template.setData(bytes.toByteArray());
+        return template;
+    }
+    
     /**
      * 更新模板
      */
@@ -375,14 +484,6 @@ public class TemplateRepository {
     public void copyTemplate(long sourceId, String newName, String newDescription, RepositoryCallback<Long> callback) {
         executor.execute(() -> {
             try {
-                Template sourceTemplate = templateDao.getByIdSync(sourceId);
-                if (sourceTemplate == null) {
-                    if (callback != null) {
-                        callback.onError(new IllegalArgumentException("源模板不存在"));
-                    }
-                    return;
-                }
-                
                 // 验证新名称
                 if (newName == null || newName.trim().isEmpty()) {
                     if (callback != null) {
@@ -399,17 +500,15 @@ public class TemplateRepository {
                     return;
                 }
                 
-                // 创建新模板
-                Template newTemplate = new Template();
-                newTemplate.setName(newName.trim());
-                newTemplate.setDescription(newDescription != null ? newDescription.trim() : sourceTemplate.getDescription());
-                newTemplate.setRows(sourceTemplate.getRows());
-                newTemplate.setCols(sourceTemplate.getCols());
-                newTemplate.setData(sourceTemplate.getData());
-                newTemplate.setSystem(false); // 复制的模板都是用户模板
-                newTemplate.setCreatedAt(DateUtils.now());
-                
-                long id = templateDao.insert(newTemplate);
+                // 在SQLite内复制，模板数据不经过Java对象；复制的模板都是用户模板
+                long id = templateDao.copyTemplate(sourceId, newName.trim(),
+                        newDescription != null ? newDescription.trim() : null, DateUtils.now());
+                if (id <= 0) {
+                    if (callback != null) {
+                        callback.onError(new IllegalArgumentException("源模板不存在"));
+                    }
+                    return;
+                }
                 
                 if (callback != null) {
                     callback.onSuccess(id);
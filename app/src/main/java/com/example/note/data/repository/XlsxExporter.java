@@ -0,0 +1,166 @@
+package com.example.note.data.repository;
+
+import android.database.Cursor;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Column;
+import com.example.note.data.io.TableExporter;
+import com.example.note.data.io.XlsxWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把笔记本的单元格写成XLSX工作表
+ * 与CellCursorSource一样按(row_index, col_index)键集分页读cells表，但只输出有内容或有样式的单元格；
+ * 数字列和日期列用num_value、date_value写成数值单元格，布尔列写成逻辑值，其余写成文本。
+ * cell_styles的id按需换成工作簿里的样式序号，相同外观只登记一次。
+ */
+class XlsxExporter {
+
+    /** 每页读取的单元格数 */
+    static final int PAGE_CELLS = 5_000;
+
+    /** 每写出这么多单元格报告一次进度 */
+    static final int PROGRESS_CELLS = 20_000;
+
+    private static final String PAGE_QUERY = "SELECT row_index, col_index, content, style_id, num_value, date_value " +
+            "FROM cells WHERE notebook_id = ? AND (row_index > ? OR (row_index = ? AND col_index > ?)) " +
+            "ORDER BY row_index, col_index LIMIT " + PAGE_CELLS;
+
+    /** 列宽从dp换算成Excel字符数的系数（默认字体一个字符约7像素） */
+    private static final float DP_PER_CHAR = 7f;
+
+    private final AppDatabase database;
+    private final CellStyleRepository styleRepository;
+    private final long notebookId;
+    private final List<Column> columns;
+    private final int rowCount;
+    // (style_id, 数字格式) → 工作簿中的样式序号
+    private final Map<Long, Integer> styleIndexes = new HashMap<>();
+
+    XlsxExporter(AppDatabase database, CellStyleRepository styleRepository, long notebookId) {
+        this.database = database;
+        this.styleRepository = styleRepository;
+        this.notebookId = notebookId;
+        this.columns = database.columnDao().getColumnsByNotebookIdSync(notebookId);
+        try (Cursor max = database.query("SELECT COALESCE(MAX(row_index) + 1, 0) FROM cells WHERE notebook_id = ?",
+                new Object[]{notebookId})) {
+            rowCount = max.moveToFirst() ? max.getInt(0) : 0;
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 写出整个工作表（不调用finish）
+     * @param progress 每写出PROGRESS_CELLS个单元格调用一次，返回false时停止
+     * @return 写到的数据行数
+     */
+    int export(XlsxWriter writer, String sheetName, TableExporter.Progress progress) throws IOException {
+        int cols = columns.size();
+        List<String> names = new ArrayList<>(cols);
+        float[] widths = new float[cols];
+        String[] types = new String[cols];
+        int frozen = 0;
+        for (int col = 0; col < cols; col++) {
+            Column column = columns.get(col);
+            names.add(column.getName() != null ? column.getName() : "");
+            widths[col] = column.getWidth() / DP_PER_CHAR;
+            types[col] = column.getType();
+            if (column.isFrozen()) {
+                // 冻结窗格只能冻结左侧连续的列，冻结到最右一个冻结列为止
+                frozen = col + 1;
+            }
+        }
+        writer.startSheet(sheetName, names, widths, frozen);
+
+        int lastRow = -1;
+        int lastCol = Integer.MAX_VALUE;
+        int openRow = -1;
+        int written = 0;
+        while (true) {
+            int count;
+            try (Cursor cursor = database.query(PAGE_QUERY, new Object[]{notebookId, lastRow, lastRow, lastCol})) {
+                count = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    int row = cursor.getInt(0);
+                    int col = cursor.getInt(1);
+                    lastRow = row;
+                    lastCol = col;
+                    if (col >= cols) {
+                        continue;
+                    }
+                    String content = cursor.isNull(2) ? "" : cursor.getString(2);
+                    long styleId = cursor.isNull(3) ? CellStyle.DEFAULT_ID : cursor.getLong(3);
+                    if (content.isEmpty() && styleId == CellStyle.DEFAULT_ID) {
+                        continue;
+                    }
+                    if (row != openRow) {
+                        if (openRow >= 0) {
+                            writer.endRow();
+                        }
+                        writer.startRow(row);
+                        openRow = row;
+                    }
+                    writeCell(writer, col, types[col], content, styleId,
+                            cursor.isNull(4) ? null : cursor.getDouble(4),
+                            cursor.isNull(5) ? null : cursor.getLong(5));
+                    if (++written % PROGRESS_CELLS == 0
+                            && progress != null && !progress.onRows(row + 1)) {
+                        if (openRow >= 0) {
+                            writer.endRow();
+                        }
+                        return row + 1;
+                    }
+                }
+            }
+            if (count < PAGE_CELLS) {
+                break;
+            }
+        }
+        if (openRow >= 0) {
+            writer.endRow();
+        }
+        return rowCount;
+    }
+
+    private void writeCell(XlsxWriter writer, int col, String type, String content, long styleId,
+                           Double numValue, Long dateValue) throws IOException {
+        if (Column.ColumnType.NUMBER.getValue().equals(type) && numValue != null) {
+            int format = content.trim().endsWith("%") ? XlsxWriter.FORMAT_PERCENT : XlsxWriter.FORMAT_GENERAL;
+            writer.writeNumber(col, numValue, styleIndex(writer, styleId, format));
+        } else if (Column.ColumnType.DATE.getValue().equals(type) && dateValue != null) {
+            writer.writeDate(col, dateValue, styleIndex(writer, styleId, XlsxWriter.FORMAT_DATE));
+        } else if (Column.ColumnType.BOOLEAN.getValue().equals(type)
+                && ("true".equalsIgnoreCase(content) || "false".equalsIgnoreCase(content))) {
+            writer.writeBoolean(col, "true".equalsIgnoreCase(content),
+                    styleIndex(writer, styleId, XlsxWriter.FORMAT_GENERAL));
+        } else {
+            writer.writeString(col, content, styleIndex(writer, styleId, XlsxWriter.FORMAT_GENERAL));
+        }
+    }
+
+    private int styleIndex(XlsxWriter writer, long styleId, int format) {
+        long key = styleId * 3 + format;
+        Integer index = styleIndexes.get(key);
+        if (index == null) {
+            styleRepository.ensureLoadedSync(styleId);
+            CellStyle style = styleRepository.get(styleId);
+            index = writer.style(style.isBold(), style.isItalic(),
+                    CellStyle.DEFAULT_TEXT_COLOR.equalsIgnoreCase(style.getTextColor()) ? null : style.getTextColor(),
+                    CellStyle.DEFAULT_BACKGROUND_COLOR.equalsIgnoreCase(style.getBackgroundColor())
+                            ? null : style.getBackgroundColor(),
+                    CellStyle.DEFAULT_ALIGNMENT.equals(style.getTextAlignment()) ? null : style.getTextAlignment(),
+                    format);
+            styleIndexes.put(key, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.note.data.repository;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Column;
+import com.example.note.data.io.TableSniffer;
+import com.example.note.data.io.XlsxReader;
+
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把XLSX工作表的单元格写入笔记本
+ * 先缓存前SAMPLE_ROWS行判断表头和列类型（表头行只用作列名），之后的单元格直接交给CellBulkWriter。
+ * 单元格格式按序号换成cell_styles的id，每个格式只入库一次。
+ */
+class XlsxImporter implements XlsxReader.SheetHandler, Closeable {
+
+    private static final int SAMPLE_ROWS = 100;
+
+    private final XlsxReader reader;
+    private final CellStyleRepository styleRepository;
+    private final CellBulkWriter writer;
+    private final Map<Integer, Long> styleIds = new HashMap<>();
+
+    // 样本阶段缓存的单元格，按出现顺序
+    private List<SampleCell> sample = new ArrayList<>();
+    private List<String> headerNames = new ArrayList<>();
+    private List<String> columnTypes = new ArrayList<>();
+    // 数据行相对工作表行号的偏移（有表头时跳过表头及其之前的行）
+    private int rowOffset;
+
+    XlsxImporter(AppDatabase database, CellStyleRepository styleRepository, XlsxReader reader,
+                 long notebookId, long now, CellBulkWriter.ChunkListener listener) {
+        this.reader = reader;
+        this.styleRepository = styleRepository;
+        this.writer = new CellBulkWriter(database, notebookId, now, listener);
+    }
+
+    @Override
+    public boolean onCell(int row, int col, String value, int styleIndex) throws IOException {
+        if (sample != null) {
+            if (row < SAMPLE_ROWS) {
+                sample.add(new SampleCell(row, col, value, styleIndex));
+                return true;
+            }
+            if (!flushSample()) {
+                return false;
+            }
+        }
+        return write(row, col, value, styleIndex);
+    }
+
+    /**
+     * 从上次提交的写入状态继续，已写入的行在读取时跳过（样本照常缓存，表头和列类型的判断不变）
+     */
+    void resume(JSONObject state) {
+        writer.resume(state);
+    }
+
+    /**
+     * 写入列定义，并在最后一个事务中执行收尾操作
+     * @return false表示被停止，最后一个事务没有执行
+     */
+    boolean finish(Runnable inFinalTransaction) throws IOException {
+        if (sample != null && !flushSample()) {
+            return false;
+        }
+        return writer.finish(headerNames, col -> col < columnTypes.size()
+                ? columnTypes.get(col) : Column.ColumnType.TEXT.getValue(), inFinalTransaction);
+    }
+
+    /**
+     * 工作表中没有任何有内容的单元格（只有格式的空白单元格不算）
+     */
+    boolean isEmpty() {
+        if (sample != null) {
+            for (SampleCell cell : sample) {
+                if (!cell.value.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return getRows() == 0 && getCols() == 0;
+    }
+
+    int getRows() {
+        return writer.getRows();
+    }
+
+    int getCols() {
+        return writer.getCols();
+    }
+
+    /**
+     * 根据样本判断表头和列类型，然后写入样本中的单元格
+     */
+    private boolean flushSample() throws IOException {
+        List<SampleCell> cells = sample;
+        sample = null;
+        List<String[]> rows = new ArrayList<>();
+        List<Integer> rowNumbers = new ArrayList<>();
+        for (SampleCell cell : cells) {
+            if (rowNumbers.isEmpty() || rowNumbers.get(rowNumbers.size() - 1) != cell.row) {
+                rowNumbers.add(cell.row);
+                rows.add(new String[0]);
+            }
+            String[] values = rows.get(rows.size() - 1);
+            if (cell.col >= values.length) {
+                values = Arrays.copyOf(values, cell.col + 1);
+                Arrays.fill(values, rows.get(rows.size() - 1).length, values.length, "");
+                rows.set(rows.size() - 1, values);
+            }
+            values[cell.col] = cell.value;
+        }
+        boolean header = TableSniffer.hasHeader(rows);
+        if (header) {
+            headerNames = Arrays.asList(rows.get(0));
+            rowOffset = rowNumbers.get(0) + 1;
+            writer.setColumnCount(headerNames.size());
+        }
+        columnTypes = TableSniffer.inferColumnTypes(header ? rows.subList(1, rows.size()) : rows);
+        for (SampleCell cell : cells) {
+            if (!write(cell.row, cell.col, cell.value, cell.styleIndex)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean write(int row, int col, String value, int styleIndex) throws IOException {
+        if (row < rowOffset) {
+            return true;
+        }
+        return writer.write(row - rowOffset, col, value, styleId(styleIndex));
+    }
+
+    private long styleId(int styleIndex) {
+        Long id = styleIds.get(styleIndex);
+        if (id == null) {
+            XlsxReader.CellFormat format = reader.getCellFormat(styleIndex);
+            id = format.isPlain() ? CellStyle.DEFAULT_ID : styleRepository.internSync(new CellStyle(
+                    format.textColor, format.backgroundColor, format.bold, format.italic,
+                    CellStyle.DEFAULT_TEXT_SIZE, format.alignment));
+            styleIds.put(styleIndex, id);
+        }
+        return id;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static final class SampleCell {
+        final int row;
+        final int col;
+        final String value;
+        final int styleIndex;
+
+        SampleCell(int row, int col, String value, int styleIndex) {
+            this.row = row;
+            this.col = col;
+            this.value = value;
+            this.styleIndex = styleIndex;
+        }
+    }
+}
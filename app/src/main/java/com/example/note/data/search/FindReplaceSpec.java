@@ -0,0 +1,145 @@
+package com.example.note.data.search;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 查找替换条件
+ * 三种模式：区分大小写的字面量、忽略大小写的字面量、正则表达式（替换串可用$1引用分组）
+ */
+public final class FindReplaceSpec {
+
+    public static final int MODE_LITERAL = 0;
+    public static final int MODE_IGNORE_CASE = 1;
+    public static final int MODE_REGEX = 2;
+
+    public final int mode;
+    public final String find;
+    public final String replacement;
+
+    private final Pattern pattern;
+    private final String quotedReplacement;
+
+    /**
+     * @throws IllegalArgumentException 查找内容为空或正则表达式无效
+     */
+    public FindReplaceSpec(int mode, String find, String replacement) {
+        if (find == null || find.isEmpty()) {
+            throw new IllegalArgumentException("Find text is empty");
+        }
+        this.mode = mode;
+        this.find = find;
+        this.replacement = replacement != null ? replacement : "";
+        switch (mode) {
+            case MODE_LITERAL:
+                pattern = Pattern.compile(Pattern.quote(find));
+                quotedReplacement = Matcher.quoteReplacement(this.replacement);
+                break;
+            case MODE_IGNORE_CASE:
+                pattern = Pattern.compile(Pattern.quote(find), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                quotedReplacement = Matcher.quoteReplacement(this.replacement);
+                break;
+            case MODE_REGEX:
+                // PatternSyntaxException是IllegalArgumentException的子类
+                pattern = Pattern.compile(find);
+                quotedReplacement = this.replacement;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    /**
+     * 替换文本中的所有匹配；没有匹配或替换后不变时返回null
+     */
+    public String apply(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            return null;
+        }
+        String result = matcher.replaceAll(quotedReplacement);
+        return result.equals(text) ? null : result;
+    }
+
+    /**
+     * 用于SQL预筛选的LIKE模式（转义字符为\），无法预筛选时返回null
+     * SQLite的LIKE只对ASCII忽略大小写，所以它匹配的集合总是字面量模式的超集；
+     * 忽略大小写模式只在查找内容为纯ASCII时才能使用。
+     */
+    public String likePattern() {
+        if (mode == MODE_REGEX) {
+            return null;
+        }
+        if (mode == MODE_IGNORE_CASE) {
+            for (int i = 0; i < find.length(); i++) {
+                if (find.charAt(i) >= 0x80) {
+                    return null;
+                }
+            }
+        }
+        StringBuilder like = new StringBuilder(find.length() + 4).append('%');
+        for (int i = 0; i < find.length(); i++) {
+            char c = find.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                like.append('\\');
+            }
+            like.append(c);
+        }
+        return like.append('%').toString();
+    }
+
+    /**
+     * 序列化（写入撤销记录）
+     */
+    public String encode() {
+        return mode + "\u0000" + find + "\u0000" + replacement;
+    }
+
+    public static FindReplaceSpec decode(String encoded) {
+        String[] parts = encoded.split("\u0000", 3);
+        return new FindReplaceSpec(Integer.parseInt(parts[0]), parts[1], parts.length > 2 ? parts[2] : "");
+    }
+
+    /**
+     * 替换范围：选区、列、笔记本或全部笔记本；行列号均为原始（未排序）位置
+     */
+    public static final class Scope {
+        public final long notebookId;      // <=0表示全部笔记本
+        public final int startRow;         // 选区，-1表示不限
+        public final int endRow;
+        public final int startCol;         // 列范围，-1表示不限
+        public final int endCol;
+
+        private Scope(long notebookId, int startRow, int endRow, int startCol, int endCol) {
+            this.notebookId = notebookId;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.startCol = startCol;
+            this.endCol = endCol;
+        }
+
+        public static Scope allNotebooks() {
+            return new Scope(0, -1, -1, -1, -1);
+        }
+
+        public static Scope notebook(long notebookId) {
+            return new Scope(notebookId, -1, -1, -1, -1);
+        }
+
+        public static Scope column(long notebookId, int colIndex) {
+            return new Scope(notebookId, -1, -1, colIndex, colIndex);
+        }
+
+        public static Scope selection(long notebookId, int startRow, int startCol, int endRow, int endCol) {
+            return new Scope(notebookId, Math.min(startRow, endRow), Math.max(startRow, endRow),
+                    Math.min(startCol, endCol), Math.max(startCol, endCol));
+        }
+
+        public boolean isAllNotebooks() {
+            return notebookId <= 0;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.note.data.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 离线拼音表
+ * 数据来自assets/pinyin.txt：每行为不带声调的拼音和该读音下的汉字，多音字出现在多行中。
+ */
+public final class PinyinTable {
+
+    public static final String ASSET_NAME = "pinyin.txt";
+
+    // 拼音表加载失败时使用，只做字面匹配
+    public static final PinyinTable EMPTY = new PinyinTable(new HashMap<>());
+
+    private final Map<Character, String[]> readings;
+
+    private PinyinTable(Map<Character, String[]> readings) {
+        this.readings = readings;
+    }
+
+    public static PinyinTable parse(Reader reader) throws IOException {
+        Map<Character, String[]> readings = new HashMap<>(4096);
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            if (space <= 0) {
+                continue;
+            }
+            String syllable = line.substring(0, space).intern();
+            for (int i = space + 1; i < line.length(); i++) {
+                char c = line.charAt(i);
+                String[] existing = readings.get(c);
+                if (existing == null) {
+                    readings.put(c, new String[]{syllable});
+                } else {
+                    String[] grown = new String[existing.length + 1];
+                    System.arraycopy(existing, 0, grown, 0, existing.length);
+                    grown[existing.length] = syllable;
+                    readings.put(c, grown);
+                }
+            }
+        }
+        return new PinyinTable(readings);
+    }
+
+    /**
+     * 汉字的全部读音（按表中顺序）；不在表中时返回null
+     */
+    public String[] readings(char c) {
+        return readings.get(c);
+    }
+
+    public int size() {
+        return readings.size();
+    }
+}
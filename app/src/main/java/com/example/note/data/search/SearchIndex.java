@@ -0,0 +1,546 @@
+package com.example.note.data.search;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.model.SearchHit;
+import com.example.note.data.model.SearchPage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全文搜索索引
+ * search_fts（FTS4）保存单元格内容和笔记本标题的二元组索引词，docid为单元格id，标题用负的笔记本id。
+ * 触发器只把变化的文档记入search_dirty，由这里在后台分批重新分词写入，
+ * 因为分词在Java侧完成，SQL触发器无法直接生成索引词。
+ */
+public class SearchIndex {
+
+    private static final String TAG = "SearchIndex";
+    private static volatile SearchIndex INSTANCE;
+
+    static final int KIND_NOTEBOOK = 0;
+    static final int KIND_CELL = 1;
+
+    // 每个事务处理的脏文档数，避免长时间占用写锁
+    private static final int BATCH_SIZE = 256;
+    // 数据变化后延迟多久开始后台索引，连续编辑时合并为一次
+    private static final long DRAIN_DELAY_MS = 2000;
+    // 摘要在命中位置前后保留的字符数
+    private static final int SNIPPET_BEFORE = 12;
+    private static final int SNIPPET_AFTER = 30;
+
+    // BM25参数；标题命中的得分乘以权重，和内容命中放在同一个排名里
+    static final double BM25_K1 = 1.2;
+    static final double BM25_B = 0.75;
+    static final double TITLE_WEIGHT = 2.0;
+    // matchinfo格式：短语数、列数、总文档数、平均长度、本文档长度、每个短语的命中统计
+    private static final String MATCHINFO_FORMAT = "pcnalx";
+
+    // 参与排名的单元格数上限：单字查询是前缀匹配，可能命中大部分单元格，只在docid最大（最近写入）的这些里排名
+    static final int MAX_CANDIDATES = 2000;
+
+    // docid在[?, ?]内的命中文档及其matchinfo，只取未删除（且在指定笔记本中）的，按docid倒序取前?个
+    private static final String RANK_QUERY =
+            "SELECT search_fts.docid, matchinfo(search_fts, '" + MATCHINFO_FORMAT + "') FROM search_fts " +
+            "LEFT JOIN cells c ON search_fts.docid > 0 AND c.id = search_fts.docid " +
+            "JOIN notebooks n ON n.id = (CASE WHEN search_fts.docid < 0 THEN -search_fts.docid ELSE c.notebook_id END) " +
+            "WHERE search_fts.terms MATCH ? AND n.is_deleted = 0 AND (? <= 0 OR n.id = ?) " +
+            "AND search_fts.docid BETWEEN ? AND ? ORDER BY search_fts.docid DESC LIMIT ?";
+
+    private final AppDatabase database;
+    private final ScheduledExecutorService executor;
+    // 串行化索引写入；与调度用的this分开，避免数据变化回调被长时间的索引阻塞
+    private final Object drainLock = new Object();
+    private ScheduledFuture<?> pendingDrain;
+
+    private SearchIndex(Context context) {
+        this(AppDatabase.getInstance(context));
+        // cells或notebooks表提交变更后安排一次后台索引
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("cells", "notebooks") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                scheduleDrain();
+            }
+        });
+        scheduleDrain();
+    }
+
+    /**
+     * 使用指定的数据库，不监听数据变化，由调用方drainSync（测试中的内存数据库）
+     */
+    SearchIndex(AppDatabase database) {
+        this.database = database;
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * 获取索引实例（单例模式）
+     */
+    public static SearchIndex getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SearchIndex.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SearchIndex(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // ==================== 表结构 ====================
+
+    /**
+     * 创建索引表、脏文档队列和触发器，并把现有数据全部标记为待索引
+     */
+    public static void createSchema(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS search_fts USING fts4(terms, tokenize=simple)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS search_dirty (" +
+                "kind INTEGER NOT NULL, doc_id INTEGER NOT NULL, PRIMARY KEY(kind, doc_id)) WITHOUT ROWID");
+
+        createCellTriggers(db);
+
+        // 笔记本标题：软删除和恢复也会改变是否可搜索
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS search_notebooks_ai AFTER INSERT ON notebooks BEGIN " +
+                "INSERT OR IGNORE INTO search_dirty(kind, doc_id) VALUES (0, new.id); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS search_notebooks_au AFTER UPDATE OF title, is_deleted ON notebooks " +
+                "WHEN old.title IS NOT new.title OR old.is_deleted != new.is_deleted BEGIN " +
+                "INSERT OR IGNORE INTO search_dirty(kind, doc_id) VALUES (0, new.id); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS search_notebooks_ad AFTER DELETE ON notebooks BEGIN " +
+                "INSERT OR IGNORE INTO search_dirty(kind, doc_id) VALUES (0, old.id); END");
+
+        db.execSQL("INSERT OR IGNORE INTO search_dirty(kind, doc_id) " +
+                "SELECT 1, id FROM cells WHERE content IS NOT NULL AND content != ''");
+        db.execSQL("INSERT OR IGNORE INTO search_dirty(kind, doc_id) " +
+                "SELECT 0, id FROM notebooks WHERE is_deleted = 0");
+    }
+
+    /**
+     * 创建cells上的索引队列触发器（重建cells表后单独调用，已索引的内容保持不变）
+     * 用NOT EXISTS跳过已在队列中的文档而不是INSERT OR IGNORE：UPSERT转为更新时，
+     * 外层语句的冲突处理会覆盖触发器内的OR IGNORE，重复入队会使整条写入失败
+     */
+    public static void createCellTriggers(SupportSQLiteDatabase db) {
+        // 单元格：插入、内容变化、删除都记入队列；更新时新旧id都记，索引时以当前行为准
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS search_cells_ai AFTER INSERT ON cells " +
+                "WHEN new.content IS NOT NULL AND new.content != '' BEGIN " +
+                enqueueCell("new.id") + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS search_cells_au AFTER UPDATE OF id, content ON cells " +
+                "WHEN old.content IS NOT new.content OR old.id != new.id BEGIN " +
+                enqueueCell("old.id") + "; " +
+                enqueueCell("new.id") + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS search_cells_ad AFTER DELETE ON cells BEGIN " +
+                enqueueCell("old.id") + "; END");
+    }
+
+    /**
+     * 删除cells上的索引队列触发器，用于升级触发器定义
+     */
+    public static void dropCellTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS search_cells_ai");
+        db.execSQL("DROP TRIGGER IF EXISTS search_cells_au");
+        db.execSQL("DROP TRIGGER IF EXISTS search_cells_ad");
+    }
+
+    private static String enqueueCell(String id) {
+        return "INSERT INTO search_dirty(kind, doc_id) SELECT 1, " + id + " WHERE NOT EXISTS " +
+                "(SELECT 1 FROM search_dirty WHERE kind = 1 AND doc_id = " + id + ")";
+    }
+
+    /**
+     * 删除旧版fts4(cells_fts)表及其触发器
+     */
+    public static void dropLegacySchema(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS cells_fts_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS cells_fts_update");
+        db.execSQL("DROP TRIGGER IF EXISTS cells_fts_delete");
+        db.execSQL("DROP TABLE IF EXISTS cells_fts");
+    }
+
+    // ==================== 索引维护 ====================
+
+    /**
+     * 延迟安排一次后台索引，已有待执行的则不重复安排
+     */
+    public synchronized void scheduleDrain() {
+        if (pendingDrain != null && !pendingDrain.isDone()) {
+            return;
+        }
+        pendingDrain = executor.schedule(() -> {
+            try {
+                int count = drainSync();
+                if (count > 0) {
+                    Log.d(TAG, "Indexed " + count + " documents");
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to update search index", e);
+            }
+        }, DRAIN_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 处理全部脏文档，返回处理数量；必须在后台线程调用
+     */
+    public int drainSync() {
+        synchronized (drainLock) {
+            int total = 0;
+            while (true) {
+                int count = database.runInTransaction(this::drainBatch);
+                if (count == 0) {
+                    return total;
+                }
+                total += count;
+            }
+        }
+    }
+
+    private int drainBatch() {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        List<long[]> batch = new ArrayList<>();
+        try (Cursor cursor = db.query("SELECT kind, doc_id FROM search_dirty LIMIT " + BATCH_SIZE)) {
+            while (cursor.moveToNext()) {
+                batch.add(new long[]{cursor.getInt(0), cursor.getLong(1)});
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try (SupportSQLiteStatement delete = db.compileStatement("DELETE FROM search_fts WHERE docid = ?");
+             SupportSQLiteStatement insert = db.compileStatement("INSERT INTO search_fts(docid, terms) VALUES (?, ?)");
+             SupportSQLiteStatement done = db.compileStatement("DELETE FROM search_dirty WHERE kind = ? AND doc_id = ?")) {
+            for (long[] item : batch) {
+                int kind = (int) item[0];
+                long id = item[1];
+                long docId = kind == KIND_CELL ? id : -id;
+                String text = kind == KIND_CELL
+                        ? queryText(db, "SELECT content FROM cells WHERE id = ?", id)
+                        : queryText(db, "SELECT title FROM notebooks WHERE id = ? AND is_deleted = 0", id);
+
+                delete.bindLong(1, docId);
+                delete.executeUpdateDelete();
+                String terms = SearchTokenizer.indexTerms(text);
+                if (!terms.isEmpty()) {
+                    insert.bindLong(1, docId);
+                    insert.bindString(2, terms);
+                    insert.executeInsert();
+                }
+                done.bindLong(1, kind);
+                done.bindLong(2, id);
+                done.executeUpdateDelete();
+            }
+        } catch (java.io.IOException e) {
+            throw new RuntimeException(e);
+        }
+        return batch.size();
+    }
+
+    private static String queryText(SupportSQLiteDatabase db, String sql, long id) {
+        try (Cursor cursor = db.query(sql, new Object[]{id})) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    /**
+     * 处理一批脏文档（一个事务），返回处理数量，0表示队列已空；必须在后台线程调用，不能在事务中调用
+     */
+    public int drainBatchSync() {
+        synchronized (drainLock) {
+            return database.runInTransaction(this::drainBatch);
+        }
+    }
+
+    /**
+     * 清空并重建整个索引；必须在后台线程调用
+     */
+    public void rebuildSync() {
+        synchronized (drainLock) {
+            database.runInTransaction(() -> markAllDirty(database.getOpenHelper().getWritableDatabase()));
+            drainSync();
+        }
+    }
+
+    /**
+     * 清空索引，把全部单元格和笔记本标题放入待索引队列；须在事务中调用
+     */
+    public static void markAllDirty(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM search_fts");
+        db.execSQL("INSERT OR IGNORE INTO search_dirty(kind, doc_id) " +
+                "SELECT 1, id FROM cells WHERE content IS NOT NULL AND content != ''");
+        db.execSQL("INSERT OR IGNORE INTO search_dirty(kind, doc_id) " +
+                "SELECT 0, id FROM notebooks WHERE is_deleted = 0");
+    }
+
+    /**
+     * 复制笔记本后直接复用源单元格的索引词，省去对副本重新分词；须在复制单元格的同一事务中调用。
+     * 源单元格还在队列中（索引词已过期）的不复制，对应的副本留在队列中照常索引
+     * @return 复制的索引条数
+     */
+    public static int copyCellTerms(SupportSQLiteDatabase db, long sourceNotebookId, long targetNotebookId) {
+        try (SupportSQLiteStatement copy = db.compileStatement("INSERT INTO search_fts(docid, terms) " +
+                "SELECT n.id, f.terms FROM cells n " +
+                "JOIN cells o ON o.notebook_id = ? AND o.row_index = n.row_index AND o.col_index = n.col_index " +
+                "JOIN search_fts f ON f.docid = o.id " +
+                "WHERE n.notebook_id = ? AND NOT EXISTS " +
+                "(SELECT 1 FROM search_dirty d WHERE d.kind = 1 AND d.doc_id = o.id)");
+             SupportSQLiteStatement done = db.compileStatement("DELETE FROM search_dirty WHERE kind = 1 AND doc_id IN " +
+                "(SELECT c.id FROM cells c JOIN search_fts f ON f.docid = c.id WHERE c.notebook_id = ?)")) {
+            copy.bindLong(1, sourceNotebookId);
+            copy.bindLong(2, targetNotebookId);
+            int copied = copy.executeUpdateDelete();
+            done.bindLong(1, targetNotebookId);
+            done.executeUpdateDelete();
+            return copied;
+        } catch (java.io.IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 合并FTS段，减小索引体积
+     */
+    public void optimize(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO search_fts(search_fts) VALUES('optimize')");
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 搜索一页结果；必须在后台线程调用
+     * 按matchinfo计算的BM25得分排序（标题命中加权），得分相同时按文档id倒序。
+     * 第一页先处理积压的脏文档，保证结果包含刚保存的修改，并在翻页键中冻结语料统计和候选单元格的范围：
+     * 后续页按同样的统计计分，期间索引的变化不会让未修改的文档换位而被跳过或重复
+     * @param notebookId 限定笔记本，<=0表示全部笔记本
+     * @param after 上一页返回的next，第一页传null
+     */
+    public SearchPage searchSync(String query, long notebookId, SearchPage.Key after, int limit) {
+        String match = SearchTokenizer.matchQuery(query);
+        if (match == null || limit <= 0) {
+            return new SearchPage(new ArrayList<>(), null);
+        }
+        if (after == null) {
+            drainSync();
+        }
+
+        // 排名要看全部候选文档的得分，这里只读docid和matchinfo，原文只对当前页读取
+        List<Ranked> ranked = new ArrayList<>();
+        byte[] corpus = after != null ? after.corpus : null;
+        long floorDocId = after != null ? after.floorDocId : 1;
+        // 标题（负docid）数量与笔记本数相同，不设上限
+        List<RankedRow> rows = queryRanked(match, notebookId, Long.MIN_VALUE, -1, -1);
+        // 单元格：第一页取最近的MAX_CANDIDATES个并记下下限，后续页沿用同一下限
+        List<RankedRow> cells = queryRanked(match, notebookId, floorDocId, Long.MAX_VALUE,
+                after == null ? MAX_CANDIDATES : -1);
+        if (after == null && cells.size() == MAX_CANDIDATES) {
+            floorDocId = cells.get(cells.size() - 1).docId;
+        }
+        rows.addAll(cells);
+        for (RankedRow row : rows) {
+            if (corpus == null) {
+                corpus = row.matchinfo;
+            }
+            Ranked item = new Ranked(row.docId, score(row.matchinfo, corpus, row.docId < 0));
+            if (after == null || item.isAfter(after)) {
+                ranked.add(item);
+            }
+        }
+        ranked.sort(Ranked.ORDER);
+
+        boolean hasMore = ranked.size() > limit;
+        List<Ranked> page = hasMore ? ranked.subList(0, limit) : ranked;
+        List<String> runs = SearchTokenizer.queryRuns(query);
+        List<SearchHit> hits = new ArrayList<>(page.size());
+        for (Ranked item : page) {
+            SearchHit hit = loadHit(item.docId, runs);
+            if (hit != null) {
+                hits.add(hit);
+            }
+        }
+        SearchPage.Key next = null;
+        if (hasMore) {
+            Ranked last = page.get(page.size() - 1);
+            next = new SearchPage.Key(last.score, last.docId, corpus, floorDocId);
+        }
+        return new SearchPage(hits, next);
+    }
+
+    /**
+     * 读取docid在[fromDocId, toDocId]内的命中文档，按docid倒序，limit为-1时不限数量
+     */
+    private List<RankedRow> queryRanked(String match, long notebookId, long fromDocId, long toDocId, int limit) {
+        List<RankedRow> rows = new ArrayList<>();
+        try (Cursor cursor = database.query(RANK_QUERY,
+                new Object[]{match, notebookId, notebookId, fromDocId, toDocId, limit})) {
+            while (cursor.moveToNext()) {
+                rows.add(new RankedRow(cursor.getLong(0), cursor.getBlob(1)));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 读取一个命中文档的原文并生成结果，文档已不存在时返回null
+     */
+    private SearchHit loadHit(long docId, List<String> runs) {
+        if (docId < 0) {
+            try (Cursor cursor = database.query("SELECT id, title FROM notebooks WHERE id = ?", new Object[]{-docId})) {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+                String title = cursor.getString(1);
+                return buildHit(KIND_NOTEBOOK, cursor.getLong(0), title, -1, -1, -1,
+                        title != null ? title : "", runs);
+            }
+        }
+        try (Cursor cursor = database.query("SELECT n.id, n.title, c.id, c.row_index, c.col_index, c.content " +
+                "FROM cells c JOIN notebooks n ON n.id = c.notebook_id WHERE c.id = ?", new Object[]{docId})) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            String text = cursor.getString(5);
+            return buildHit(KIND_CELL, cursor.getLong(0), cursor.getString(1), cursor.getLong(2),
+                    cursor.getInt(3), cursor.getInt(4), text != null ? text : "", runs);
+        }
+    }
+
+    /**
+     * 由matchinfo('pcnalx')计算BM25得分：对每个短语按命中次数、包含它的文档数和文档长度累加
+     * @param title 是否为标题文档，标题得分乘以TITLE_WEIGHT
+     */
+    static double score(byte[] matchinfo, boolean title) {
+        return score(matchinfo, matchinfo, title);
+    }
+
+    /**
+     * 同上，总文档数、平均长度和包含各短语的文档数取自corpus（同一查询在另一时刻的matchinfo）
+     */
+    static double score(byte[] matchinfo, byte[] corpus, boolean title) {
+        IntBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        IntBuffer stats = corpus.length == matchinfo.length
+                ? ByteBuffer.wrap(corpus).order(ByteOrder.nativeOrder()).asIntBuffer() : info;
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        long docs = stats.get(2) & 0xFFFFFFFFL;
+        int avgAt = 3;
+        int lengthAt = avgAt + columns;
+        int hitsAt = lengthAt + columns;
+
+        double score = 0;
+        for (int col = 0; col < columns; col++) {
+            double avgLength = Math.max(1, stats.get(avgAt + col) & 0xFFFFFFFFL);
+            double length = info.get(lengthAt + col) & 0xFFFFFFFFL;
+            double norm = BM25_K1 * (1 - BM25_B + BM25_B * length / avgLength);
+            for (int phrase = 0; phrase < phrases; phrase++) {
+                int at = hitsAt + 3 * (phrase * columns + col);
+                long hitsHere = info.get(at) & 0xFFFFFFFFL;
+                long docsWithHit = stats.get(at + 2) & 0xFFFFFFFFL;
+                if (hitsHere == 0) {
+                    continue;
+                }
+                // 常见词的idf可能为负，取一个很小的正数，命中次数仍能拉开差距
+                double idf = Math.max(1e-6, Math.log((docs - docsWithHit + 0.5) / (docsWithHit + 0.5)));
+                score += idf * hitsHere * (BM25_K1 + 1) / (hitsHere + norm);
+            }
+        }
+        return title ? score * TITLE_WEIGHT : score;
+    }
+
+    /**
+     * 命中文档的排序键
+     */
+    private static final class Ranked {
+        static final Comparator<Ranked> ORDER = (a, b) -> {
+            if (a.score != b.score) {
+                return Double.compare(b.score, a.score);
+            }
+            return Long.compare(b.docId, a.docId);
+        };
+
+        final long docId;
+        final double score;
+
+        Ranked(long docId, double score) {
+            this.docId = docId;
+            this.score = score;
+        }
+
+        /**
+         * 是否严格排在翻页位置之后；得分按翻页键中冻结的语料统计重新计算，未修改的文档得分不变，可以精确比较
+         */
+        boolean isAfter(SearchPage.Key key) {
+            return score < key.score || (score == key.score && docId < key.docId);
+        }
+    }
+
+    /**
+     * 查询出的一个候选文档
+     */
+    private static final class RankedRow {
+        final long docId;
+        final byte[] matchinfo;
+
+        RankedRow(long docId, byte[] matchinfo) {
+            this.docId = docId;
+            this.matchinfo = matchinfo;
+        }
+    }
+
+    /**
+     * 截取命中位置附近的原文作为摘要，并给出关键词在摘要中的区间
+     */
+    static SearchHit buildHit(int kind, long notebookId, String title, long cellId, int row, int col,
+                              String text, List<String> runs) {
+        String folded = SearchTokenizer.fold(text);
+        int matchAt = -1;
+        int matchLength = 0;
+        // 优先定位最长的一段关键词
+        for (String run : runs) {
+            int index = folded.indexOf(run);
+            if (index >= 0 && run.length() > matchLength) {
+                matchAt = index;
+                matchLength = run.length();
+            }
+        }
+
+        int start = 0;
+        int end = text.length();
+        if (matchAt >= 0) {
+            start = Math.max(0, matchAt - SNIPPET_BEFORE);
+            end = Math.min(text.length(), matchAt + matchLength + SNIPPET_AFTER);
+        } else {
+            end = Math.min(text.length(), SNIPPET_BEFORE + SNIPPET_AFTER);
+        }
+        // 不切断代理对
+        if (start > 0 && Character.isLowSurrogate(text.charAt(start))) {
+            start--;
+        }
+        if (end < text.length() && Character.isLowSurrogate(text.charAt(end))) {
+            end++;
+        }
+
+        String prefix = start > 0 ? "…" : "";
+        String snippet = prefix + text.substring(start, end).replace('\n', ' ') + (end < text.length() ? "…" : "");
+        int matchStart = matchAt >= 0 ? prefix.length() + matchAt - start : -1;
+        int matchEnd = matchAt >= 0 ? matchStart + matchLength : -1;
+
+        int kindOut = kind == KIND_NOTEBOOK ? SearchHit.KIND_TITLE : SearchHit.KIND_CELL;
+        return new SearchHit(kindOut, notebookId, title, cellId, row, col, snippet, matchStart, matchEnd);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.note.data.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 搜索分词
+ * 系统SQLite没有FTS5和trigram分词器，这里在Java侧把文本切成二元组（bigram）写入FTS4，
+ * 查询时把关键词切成同样的二元组做短语匹配，从而支持中文等无空格文本的任意子串搜索。
+ *
+ * 规则：文本按非字母数字字符切成若干段，每段输出相邻两字符组成的二元组，
+ * 段尾再输出最后一个字符（单字查询用前缀匹配可以覆盖所有位置）。
+ * 全角ASCII折叠为半角并转小写，逐字符一一对应，方便按原文位置生成摘要。
+ */
+public final class SearchTokenizer {
+
+    // 查询最多取的段数和每段最大长度，避免超长MATCH表达式
+    private static final int MAX_QUERY_RUNS = 8;
+    private static final int MAX_RUN_LENGTH = 32;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 折叠单个字符：全角ASCII转半角，转小写；不改变字符数
+     */
+    static char fold(char c) {
+        if (c >= '！' && c <= '～') {
+            c = (char) (c - 0xFEE0);
+        } else if (c == '　') {
+            c = ' ';
+        }
+        if (c < 0x80) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c;
+        }
+        return Character.isSurrogate(c) ? c : Character.toLowerCase(c);
+    }
+
+    /**
+     * 折叠整段文本，结果与原文长度相同
+     */
+    public static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 生成写入FTS表的索引词，空文本返回空串
+     */
+    public static String indexTerms(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length() * 3);
+        for (String run : runs(fold(text))) {
+            int[] cps = run.codePoints().toArray();
+            for (int i = 0; i + 1 < cps.length; i++) {
+                out.appendCodePoint(cps[i]).appendCodePoint(cps[i + 1]).append(' ');
+            }
+            out.appendCodePoint(cps[cps.length - 1]).append(' ');
+        }
+        return out.toString().trim();
+    }
+
+    /**
+     * 把用户输入转成FTS4 MATCH表达式；没有可搜索字符时返回null
+     * 每段生成一个二元组短语（单字用前缀匹配），各段之间为AND
+     */
+    public static String matchQuery(String query) {
+        List<String> runs = queryRuns(query);
+        if (runs.isEmpty()) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder();
+        for (String run : runs) {
+            int[] cps = run.codePoints().toArray();
+            if (out.length() > 0) {
+                out.append(' ');
+            }
+            if (cps.length == 1) {
+                out.appendCodePoint(cps[0]).append('*');
+                continue;
+            }
+            out.append('"');
+            for (int i = 0; i + 1 < cps.length; i++) {
+                if (i > 0) {
+                    out.append(' ');
+                }
+                out.appendCodePoint(cps[i]).appendCodePoint(cps[i + 1]);
+            }
+            out.append('"');
+        }
+        return out.toString();
+    }
+
+    /**
+     * 折叠后的查询分段（用于生成摘要时定位）
+     */
+    public static List<String> queryRuns(String query) {
+        List<String> result = new ArrayList<>();
+        if (query == null) {
+            return result;
+        }
+        for (String run : runs(fold(query))) {
+            if (result.size() == MAX_QUERY_RUNS) {
+                break;
+            }
+            if (run.codePointCount(0, run.length()) > MAX_RUN_LENGTH) {
+                run = run.substring(0, run.offsetByCodePoints(0, MAX_RUN_LENGTH));
+            }
+            result.add(run);
+        }
+        return result;
+    }
+
+    /**
+     * 按非字母数字字符切段
+     */
+    private static List<String> runs(String folded) {
+        List<String> runs = new ArrayList<>();
+        int start = -1;
+        int i = 0;
+        while (i < folded.length()) {
+            int cp = folded.codePointAt(i);
+            boolean token = Character.isLetterOrDigit(cp);
+            if (token && start < 0) {
+                start = i;
+            } else if (!token && start >= 0) {
+                runs.add(folded.substring(start, i));
+                start = -1;
+            }
+            i += Character.charCount(cp);
+        }
+        if (start >= 0) {
+            runs.add(folded.substring(start));
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,581 @@
+package com.example.note.data.search;
+
+import com.example.note.data.entity.Notebook;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 笔记本标题索引
+ * 标题折叠后按单字和二元组建倒排表，并预先算好每个字的拼音。支持子串、全拼、首字母、
+ * 全拼与首字母混合、以及按二元组Dice相似度的容错匹配，结果按匹配质量加更新时间排序。
+ * 非线程安全，由调用方在同一个后台线程上使用。
+ */
+public class TitleIndex {
+
+    // 匹配质量得分，同一标题取最高的一项
+    static final int SCORE_EXACT = 1000;
+    static final int SCORE_PINYIN_FULL = 800;
+    static final int SCORE_PINYIN_MIXED = 750;
+    static final int SCORE_PINYIN_INITIALS = 700;
+    static final int SCORE_FUZZY = 500;        // 乘以相似度
+    static final int BONUS_PREFIX = 150;       // 从标题开头匹配
+    static final int BONUS_RECENCY = 100;      // 刚更新时的加分，按半衰期衰减
+
+    private static final double FUZZY_THRESHOLD = 0.5;
+    private static final long RECENCY_HALF_LIFE_MS = 30L * 24 * 60 * 60 * 1000;
+    // 删除的条目超过这个数且超过一半时重建倒排表
+    private static final int COMPACT_THRESHOLD = 1024;
+    // 单字的键，高16位不会出现在二元组中
+    private static final int UNIGRAM = 0xFFFF0000;
+
+    private static final int MODE_FULL = 0;
+    private static final int MODE_INITIALS = 1;
+    private static final int MODE_ANY = 2;
+
+    private final PinyinTable pinyin;
+    private final Map<Long, Entry> byId = new HashMap<>();
+    // 下标即倒排表中的编号，删除或改名后置null，压缩时重排
+    private final List<Entry> slots = new ArrayList<>();
+    private final Map<Integer, IntList> postings = new HashMap<>();
+    private int deadSlots;
+    private int generation;
+
+    // 拼音匹配的备忘表，按轮次标记失败的(字位置, 查询位置)
+    private int[] memo = new int[256];
+    private int memoStamp;
+
+    // 查询时复用的缓冲区，按编号索引；每次查询后只清理命中的位置
+    private float[] scores = new float[0];
+    private int[] counts = new int[0];
+    private final IntList matched = new IntList();
+    private final IntList touched = new IntList();
+    // 上一次查询逐个检查过的标题数（倒排表候选、通过首字母掩码的拼音候选、拼音容错比较）
+    private int lastProbes;
+
+    public TitleIndex(PinyinTable pinyin) {
+        this.pinyin = pinyin;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * 索引中的笔记本，不存在时返回null
+     */
+    public Notebook get(long notebookId) {
+        Entry entry = byId.get(notebookId);
+        return entry != null ? entry.notebook : null;
+    }
+
+    /**
+     * 用最新的笔记本列表更新索引：标题未变的只替换对象，新增或改名的重新计算，不在列表中的删除
+     * @return 重新计算的条目数
+     */
+    public int update(List<Notebook> notebooks) {
+        int gen = ++generation;
+        int rebuilt = 0;
+        for (Notebook notebook : notebooks) {
+            String title = notebook.getTitle() != null ? notebook.getTitle() : "";
+            Entry entry = byId.get(notebook.getId());
+            if (entry != null && entry.title.equals(title)) {
+                entry.notebook = notebook;
+                entry.seen = gen;
+                continue;
+            }
+            if (entry != null) {
+                removeSlot(entry);
+            }
+            entry = new Entry(notebook, title, pinyin);
+            entry.seen = gen;
+            addSlot(entry);
+            byId.put(notebook.getId(), entry);
+            rebuilt++;
+        }
+        Iterator<Entry> it = byId.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.seen != gen) {
+                removeSlot(entry);
+                it.remove();
+            }
+        }
+        if (deadSlots > COMPACT_THRESHOLD && deadSlots > slots.size() / 2) {
+            compact();
+        }
+        return rebuilt;
+    }
+
+    /**
+     * 按匹配质量和更新时间排序返回匹配的笔记本
+     * @param now 当前时间，用于计算更新时间加分
+     */
+    public List<Notebook> search(String query, long now) {
+        String q = query != null ? SearchTokenizer.fold(query).trim() : "";
+        if (q.isEmpty() || byId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (scores.length < slots.size()) {
+            scores = new float[slots.size()];
+            counts = new int[slots.size()];
+        }
+        matched.size = 0;
+        lastProbes = 0;
+
+        scoreLiteral(q);
+        String letters = pinyinQuery(q);
+        if (letters != null) {
+            scorePinyin(letters);
+            scorePinyinFuzzy(letters);
+        } else {
+            String spelled = spell(q);
+            if (spelled != null) {
+                scorePinyinFuzzy(spelled);
+            }
+        }
+
+        Entry[] hits = new Entry[matched.size];
+        for (int i = 0; i < matched.size; i++) {
+            int slot = matched.values[i];
+            Entry entry = slots.get(slot);
+            long age = Math.max(0, now - entry.notebook.getUpdatedAt());
+            entry.rank = scores[slot] + (float) (BONUS_RECENCY * Math.pow(0.5, (double) age / RECENCY_HALF_LIFE_MS));
+            scores[slot] = 0;
+            hits[i] = entry;
+        }
+        Arrays.sort(hits, (a, b) -> {
+            if (a.rank != b.rank) {
+                return Float.compare(b.rank, a.rank);
+            }
+            if (a.notebook.getUpdatedAt() != b.notebook.getUpdatedAt()) {
+                return Long.compare(b.notebook.getUpdatedAt(), a.notebook.getUpdatedAt());
+            }
+            return Long.compare(a.notebook.getId(), b.notebook.getId());
+        });
+        List<Notebook> result = new ArrayList<>(hits.length);
+        for (Entry entry : hits) {
+            result.add(entry.notebook);
+        }
+        return result;
+    }
+
+    /**
+     * 上一次查询逐个检查过的标题数，用于测试查询代价
+     */
+    int getLastProbes() {
+        return lastProbes;
+    }
+
+    // ==================== 字面匹配 ====================
+
+    /**
+     * 子串和容错匹配：倒排表统计每个标题命中的查询二元组数，全部命中时校验子串，否则按Dice相似度计分
+     */
+    private void scoreLiteral(String q) {
+        int[] grams = literalGrams(q);
+        boolean fuzzy = grams.length >= 2 && (grams[0] & UNIGRAM) != UNIGRAM;
+        touched.size = 0;
+        for (int gram : grams) {
+            IntList posting = postings.get(gram);
+            if (posting == null) {
+                continue;
+            }
+            for (int i = 0; i < posting.size; i++) {
+                int slot = posting.values[i];
+                if (slots.get(slot) != null && counts[slot]++ == 0) {
+                    touched.add(slot);
+                }
+            }
+        }
+        lastProbes += touched.size;
+        for (int t = 0; t < touched.size; t++) {
+            int slot = touched.values[t];
+            Entry entry = slots.get(slot);
+            float score = 0;
+            if (counts[slot] == grams.length) {
+                int index = entry.folded.indexOf(q);
+                if (index >= 0) {
+                    score = SCORE_EXACT + (index == entry.firstVisible ? BONUS_PREFIX : 0);
+                }
+            }
+            if (score == 0 && fuzzy) {
+                double dice = 2.0 * counts[slot] / (grams.length + entry.bigramCount);
+                if (dice >= FUZZY_THRESHOLD) {
+                    score = (float) (SCORE_FUZZY * dice);
+                }
+            }
+            counts[slot] = 0;
+            raise(slot, score);
+        }
+    }
+
+    // ==================== 拼音匹配 ====================
+
+    /**
+     * 查询去掉空格后全是ASCII字母才按拼音匹配，否则返回null
+     */
+    private static String pinyinQuery(String q) {
+        StringBuilder letters = new StringBuilder(q.length());
+        for (int i = 0; i < q.length(); i++) {
+            char c = q.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                letters.append(c);
+            } else if (c != ' ') {
+                return null;
+            }
+        }
+        return letters.length() > 0 ? letters.toString() : null;
+    }
+
+    private void scorePinyin(String q) {
+        int firstBit = 1 << (q.charAt(0) - 'a');
+        for (int slot = 0; slot < slots.size(); slot++) {
+            Entry entry = slots.get(slot);
+            if (entry != null && entry.hasHan && (entry.initialMask & firstBit) != 0) {
+                lastProbes++;
+                raise(slot, matchPinyin(entry, q));
+            }
+        }
+    }
+
+    /**
+     * 拼音容错：查询（汉字先转成首选读音）与标题首选读音拼接串比较二元组，
+     * 覆盖拼音打错和输入法选错同音字；只给还没有匹配的标题计分
+     */
+    private void scorePinyinFuzzy(String spelled) {
+        if (spelled.length() < 4) {
+            return;
+        }
+        int[] queryGrams = sortedBigrams(spelled);
+        for (int slot = 0; slot < slots.size(); slot++) {
+            Entry entry = slots.get(slot);
+            if (entry == null || !entry.hasHan || scores[slot] > 0) {
+                continue;
+            }
+            lastProbes++;
+            int common = 0;
+            for (int gram : queryGrams) {
+                if (Arrays.binarySearch(entry.pinyinGrams, gram) >= 0) {
+                    common++;
+                }
+            }
+            double dice = 2.0 * common / (queryGrams.length + entry.pinyinGrams.length);
+            if (dice >= FUZZY_THRESHOLD) {
+                raise(slot, (float) (SCORE_FUZZY * dice));
+            }
+        }
+    }
+
+    /**
+     * 查询的首选读音拼接串：汉字转拼音，英文字母保留，其他字符丢弃；不含汉字时返回null
+     */
+    private String spell(String q) {
+        StringBuilder spelled = new StringBuilder(q.length() * 3);
+        boolean han = false;
+        for (int i = 0; i < q.length(); i++) {
+            char c = q.charAt(i);
+            String[] r = c >= 0x80 ? pinyin.readings(c) : null;
+            if (r != null) {
+                spelled.append(r[0]);
+                han = true;
+            } else if (c >= 'a' && c <= 'z') {
+                spelled.append(c);
+            }
+        }
+        return han ? spelled.toString() : null;
+    }
+
+    /**
+     * 从每个可能的起点尝试全拼、首字母、混合三种方式，返回最高得分，不匹配返回0
+     */
+    float matchPinyin(Entry entry, String q) {
+        int n = entry.readings.length;
+        int m = q.length();
+        if (memo.length < (n + 1) * (m + 1)) {
+            memo = new int[Math.max(memo.length * 2, (n + 1) * (m + 1))];
+            memoStamp = 0;
+        }
+        char first = q.charAt(0);
+        float best = 0;
+        for (int start = 0; start < n; start++) {
+            if (!canStart(entry, start, first)) {
+                continue;
+            }
+            float prefix = start == entry.firstVisible ? BONUS_PREFIX : 0;
+            if (best >= SCORE_PINYIN_FULL + prefix) {
+                continue;
+            }
+            // 大多数标题不匹配，先用最宽松的方式探测，匹配上再区分全拼和首字母
+            nextStamp();
+            if (!matchFrom(entry, q, start, 0, MODE_ANY)) {
+                continue;
+            }
+            int base = SCORE_PINYIN_MIXED;
+            nextStamp();
+            if (matchFrom(entry, q, start, 0, MODE_FULL)) {
+                base = SCORE_PINYIN_FULL;
+            } else {
+                nextStamp();
+                if (matchFrom(entry, q, start, 0, MODE_INITIALS)) {
+                    base = SCORE_PINYIN_INITIALS;
+                }
+            }
+            best = Math.max(best, base + prefix);
+        }
+        return best;
+    }
+
+    private void nextStamp() {
+        if (++memoStamp == Integer.MAX_VALUE) {
+            Arrays.fill(memo, 0);
+            memoStamp = 1;
+        }
+    }
+
+    private static boolean canStart(Entry entry, int i, char first) {
+        String[] readings = entry.readings[i];
+        if (readings == null) {
+            return entry.folded.charAt(i) == first;
+        }
+        for (String syllable : readings) {
+            if (syllable.charAt(0) == first) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从标题第i个字、查询第j个字母开始能否把查询匹配完
+     * 每个汉字可以消耗整个音节（最后一个字允许只打音节前缀）或声母（zh/ch/sh可打一个或两个字母），
+     * 标题中的英文字母按原样匹配，连续匹配中间的空格跳过。
+     */
+    private boolean matchFrom(Entry entry, String q, int i, int j, int mode) {
+        int m = q.length();
+        if (j == m) {
+            return true;
+        }
+        if (i == entry.readings.length) {
+            return false;
+        }
+        int key = i * (m + 1) + j;
+        if (memo[key] == memoStamp) {
+            return false;
+        }
+        String[] readings = entry.readings[i];
+        if (readings != null) {
+            for (String syllable : readings) {
+                int len = syllable.length();
+                if (mode != MODE_INITIALS) {
+                    if (q.regionMatches(j, syllable, 0, len) && matchFrom(entry, q, i + 1, j + len, mode)) {
+                        return true;
+                    }
+                    if (m - j < len && syllable.regionMatches(0, q, j, m - j)) {
+                        return true;
+                    }
+                }
+                if (mode != MODE_FULL && syllable.charAt(0) == q.charAt(j)) {
+                    if (matchFrom(entry, q, i + 1, j + 1, mode)) {
+                        return true;
+                    }
+                    if (len > 2 && syllable.charAt(1) == 'h' && j + 1 < m && q.charAt(j + 1) == 'h'
+                            && matchFrom(entry, q, i + 1, j + 2, mode)) {
+                        return true;
+                    }
+                }
+            }
+        } else {
+            char c = entry.folded.charAt(i);
+            if (c == q.charAt(j)) {
+                if (matchFrom(entry, q, i + 1, j + 1, mode)) {
+                    return true;
+                }
+            } else if (c == ' ' && j > 0) {
+                if (matchFrom(entry, q, i + 1, j, mode)) {
+                    return true;
+                }
+            }
+        }
+        memo[key] = memoStamp;
+        return false;
+    }
+
+    // ==================== 倒排表维护 ====================
+
+    private void addSlot(Entry entry) {
+        entry.slot = slots.size();
+        slots.add(entry);
+        for (int gram : entry.grams) {
+            IntList posting = postings.get(gram);
+            if (posting == null) {
+                posting = new IntList();
+                postings.put(gram, posting);
+            }
+            posting.add(entry.slot);
+        }
+    }
+
+    private void removeSlot(Entry entry) {
+        slots.set(entry.slot, null);
+        deadSlots++;
+    }
+
+    private void compact() {
+        slots.clear();
+        postings.clear();
+        deadSlots = 0;
+        for (Entry entry : byId.values()) {
+            addSlot(entry);
+        }
+    }
+
+    private void raise(int slot, float score) {
+        if (score <= 0) {
+            return;
+        }
+        if (scores[slot] == 0) {
+            matched.add(slot);
+        }
+        if (score > scores[slot]) {
+            scores[slot] = score;
+        }
+    }
+
+    // ==================== 分词 ====================
+
+    /**
+     * 去重的二元组（跳过含空白的组合），不足两个字时退化为单字
+     */
+    static int[] literalGrams(String folded) {
+        IntList grams = new IntList();
+        for (int i = 0; i + 1 < folded.length(); i++) {
+            char a = folded.charAt(i);
+            char b = folded.charAt(i + 1);
+            if (a != ' ' && b != ' ') {
+                grams.addDistinct((a << 16) | b);
+            }
+        }
+        if (grams.size == 0) {
+            for (int i = 0; i < folded.length(); i++) {
+                char c = folded.charAt(i);
+                if (c != ' ') {
+                    grams.addDistinct(UNIGRAM | c);
+                }
+            }
+        }
+        return grams.toArray();
+    }
+
+    private static int[] sortedBigrams(String text) {
+        IntList grams = new IntList();
+        for (int i = 0; i + 1 < text.length(); i++) {
+            grams.addDistinct((text.charAt(i) << 16) | text.charAt(i + 1));
+        }
+        int[] sorted = grams.toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * 索引条目，创建时算好折叠标题、倒排键和每个字的拼音
+     */
+    static final class Entry {
+        Notebook notebook;
+        final String title;
+        final String folded;
+        final int firstVisible;       // 第一个非空白字符的位置
+        final int[] grams;            // 写入倒排表的单字和二元组
+        final int bigramCount;
+        final String[][] readings;    // 每个字的拼音，非汉字为null
+        final boolean hasHan;
+        final int initialMask;        // 各字拼音首字母和标题中英文字母的位集
+        final int[] pinyinGrams;      // 首选读音拼接串的二元组，已排序
+        int slot;
+        int seen;
+        float rank;
+
+        Entry(Notebook notebook, String title, PinyinTable pinyin) {
+            this.notebook = notebook;
+            this.title = title;
+            this.folded = SearchTokenizer.fold(title);
+            int first = 0;
+            while (first < folded.length() && folded.charAt(first) == ' ') {
+                first++;
+            }
+            this.firstVisible = first;
+
+            IntList keys = new IntList();
+            int bigrams = 0;
+            for (int i = 0; i < folded.length(); i++) {
+                char c = folded.charAt(i);
+                if (c == ' ') {
+                    continue;
+                }
+                keys.addDistinct(UNIGRAM | c);
+                if (i + 1 < folded.length() && folded.charAt(i + 1) != ' '
+                        && keys.addDistinct((c << 16) | folded.charAt(i + 1))) {
+                    bigrams++;
+                }
+            }
+            this.grams = keys.toArray();
+            this.bigramCount = bigrams;
+
+            readings = new String[folded.length()][];
+            boolean han = false;
+            int mask = 0;
+            StringBuilder primary = new StringBuilder(folded.length() * 3);
+            for (int i = 0; i < folded.length(); i++) {
+                char c = folded.charAt(i);
+                String[] r = c >= 0x80 ? pinyin.readings(c) : null;
+                readings[i] = r;
+                if (r != null) {
+                    han = true;
+                    for (String syllable : r) {
+                        mask |= 1 << (syllable.charAt(0) - 'a');
+                    }
+                    primary.append(r[0]);
+                } else if (c >= 'a' && c <= 'z') {
+                    mask |= 1 << (c - 'a');
+                    primary.append(c);
+                }
+            }
+            this.hasHan = han;
+            this.initialMask = mask;
+            this.pinyinGrams = han ? sortedBigrams(primary.toString()) : new int[0];
+        }
+    }
+
+    /**
+     * 可增长的int数组，避免倒排表装箱
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        boolean addDistinct(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return false;
+                }
+            }
+            add(value);
+            return true;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
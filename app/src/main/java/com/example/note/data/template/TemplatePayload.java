@@ -0,0 +1,327 @@
+package com.example.note.data.template;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 模板数据（templates.data）的二进制格式
+ * 列定义、样式和种子单元格按记录顺序写入并整体deflate压缩；样式在首次出现时定义一次，单元格只引用样式序号。
+ * 读取时逐条回调，不构造中间的Cell列表，可直接写入批量插入语句。
+ *
+ * 格式：[MAGIC][VERSION] 之后是zlib压缩的 [rows][cols] 和若干条记录，以TAG_END结束
+ *   TAG_COLUMN: index, name, width, type, flags(visible, frozen)
+ *   TAG_STYLE:  textColor, backgroundColor, alignment, flags(bold, italic), textSize（序号按出现顺序从0递增）
+ *   TAG_CELL:   与上一个单元格的行差，同一行时为列差、否则为列号，styleId, content
+ * 整数为varint（差值为zigzag编码），字符串为 [长度+1，0表示null][UTF-8]。
+ */
+public final class TemplatePayload {
+
+    private static final int MAGIC = 0x4E54504C; // "NTPL"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+
+    // 列定义的默认值，与Column构造函数一致
+    public static final float DEFAULT_COLUMN_WIDTH = 150.0f;
+    public static final String DEFAULT_COLUMN_TYPE = "TEXT";
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_COLUMN = 1;
+    private static final byte TAG_STYLE = 2;
+    private static final byte TAG_CELL = 3;
+
+    private static final int FLAG_VISIBLE = 1;
+    private static final int FLAG_FROZEN = 1 << 1;
+    private static final int FLAG_BOLD = 1;
+    private static final int FLAG_ITALIC = 1 << 1;
+
+    private TemplatePayload() {
+    }
+
+    /**
+     * 是否为本格式的数据（旧版模板可能是JSON文本或为空）
+     */
+    public static boolean isPayload(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE
+                && ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | (data[3] & 0xFF)) == MAGIC
+                && data[4] == VERSION;
+    }
+
+    /**
+     * 只有表头的模板（系统模板和旧版JSON模板），headers不足cols时用默认列名补齐
+     */
+    public static byte[] ofHeaders(List<String> headers, int rows, int cols) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new Writer(bytes, rows, cols)) {
+            for (int i = 0; i < cols; i++) {
+                String name = i < headers.size() && headers.get(i) != null && !headers.get(i).isEmpty()
+                        ? headers.get(i) : "列" + (i + 1);
+                writer.column(i, name, DEFAULT_COLUMN_WIDTH, DEFAULT_COLUMN_TYPE, true, false);
+            }
+        } catch (IOException e) {
+            // 写入内存不会失败
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 逐条读取模板数据
+     * @throws IOException 数据损坏或版本不支持
+     */
+    public static void read(byte[] data, Visitor visitor) throws IOException {
+        if (!isPayload(data)) {
+            throw new IOException("Not a template payload");
+        }
+        read(new ByteArrayInputStream(data, HEADER_SIZE, data.length - HEADER_SIZE), visitor);
+    }
+
+    private static void read(InputStream body, Visitor visitor) throws IOException {
+        List<Style> styles = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(body))) {
+            visitor.onGrid(readVarint(in), readVarint(in));
+            int row = 0;
+            int col = 0;
+            while (true) {
+                byte tag = in.readByte();
+                switch (tag) {
+                    case TAG_END:
+                        // 读到流尾才会校验zlib的校验和，截断或损坏的数据在这里报错
+                        if (in.read() != -1) {
+                            throw new IOException("Trailing data after template payload");
+                        }
+                        return;
+                    case TAG_COLUMN: {
+                        int index = readVarint(in);
+                        String name = readString(in);
+                        float width = in.readFloat();
+                        String type = readString(in);
+                        int flags = in.readByte();
+                        visitor.onColumn(index, name, width, type,
+                                (flags & FLAG_VISIBLE) != 0, (flags & FLAG_FROZEN) != 0);
+                        break;
+                    }
+                    case TAG_STYLE: {
+                        String textColor = readString(in);
+                        String backgroundColor = readString(in);
+                        String alignment = readString(in);
+                        int flags = in.readByte();
+                        float textSize = in.readFloat();
+                        styles.add(new Style(textColor, backgroundColor,
+                                (flags & FLAG_BOLD) != 0, (flags & FLAG_ITALIC) != 0, textSize, alignment));
+                        break;
+                    }
+                    case TAG_CELL: {
+                        int rowDelta = readSigned(in);
+                        row += rowDelta;
+                        col = rowDelta == 0 ? col + readSigned(in) : readVarint(in);
+                        int styleId = readVarint(in);
+                        if (styleId < 0 || styleId >= styles.size()) {
+                            throw new IOException("Undefined style " + styleId);
+                        }
+                        visitor.onCell(row, col, readString(in), styles.get(styleId));
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown record " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated template payload", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static void writeSigned(DataOutputStream out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int readSigned(DataInputStream in) throws IOException {
+        int value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 读取回调
+     */
+    public interface Visitor {
+        void onGrid(int rows, int cols) throws IOException;
+        void onColumn(int index, String name, float width, String type, boolean visible, boolean frozen)
+                throws IOException;
+        void onCell(int row, int col, String content, Style style) throws IOException;
+    }
+
+    /**
+     * 顺序写入模板数据，close时写入结束标记并完成压缩
+     */
+    public static final class Writer implements Closeable {
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final DataOutputStream out;
+        private final Map<Style, Integer> styleIds = new HashMap<>();
+        private int lastRow;
+        private int lastCol;
+        private boolean closed;
+
+        public Writer(OutputStream target, int rows, int cols) throws IOException {
+            DataOutputStream header = new DataOutputStream(target);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            out = new DataOutputStream(new DeflaterOutputStream(target, deflater, 8192));
+            writeVarint(out, rows);
+            writeVarint(out, cols);
+        }
+
+        public void column(int index, String name, float width, String type, boolean visible, boolean frozen)
+                throws IOException {
+            out.writeByte(TAG_COLUMN);
+            writeVarint(out, index);
+            writeString(out, name);
+            out.writeFloat(width);
+            writeString(out, type);
+            out.writeByte((visible ? FLAG_VISIBLE : 0) | (frozen ? FLAG_FROZEN : 0));
+        }
+
+        public void cell(int row, int col, String content, Style style) throws IOException {
+            Integer styleId = styleIds.get(style);
+            if (styleId == null) {
+                styleId = styleIds.size();
+                styleIds.put(style, styleId);
+                out.writeByte(TAG_STYLE);
+                writeString(out, style.textColor);
+                writeString(out, style.backgroundColor);
+                writeString(out, style.alignment);
+                out.writeByte((style.bold ? FLAG_BOLD : 0) | (style.italic ? FLAG_ITALIC : 0));
+                out.writeFloat(style.textSize);
+            }
+            out.writeByte(TAG_CELL);
+            writeSigned(out, row - lastRow);
+            if (row == lastRow) {
+                writeSigned(out, col - lastCol);
+            } else {
+                writeVarint(out, col);
+            }
+            writeVarint(out, styleId);
+            lastRow = row;
+            lastCol = col;
+            writeString(out, content);
+        }
+
+        /**
+         * 已定义的样式数
+         */
+        public int styleCount() {
+            return styleIds.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.writeByte(TAG_END);
+                out.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * 单元格样式，与Cell的样式字段一一对应
+     */
+    public static final class Style {
+
+        public static final Style DEFAULT = new Style("#000000", "#FFFFFF", false, false, 14.0f, "LEFT");
+
+        public final String textColor;
+        public final String backgroundColor;
+        public final boolean bold;
+        public final boolean italic;
+        public final float textSize;
+        public final String alignment;
+
+        public Style(String textColor, String backgroundColor, boolean bold, boolean italic,
+                     float textSize, String alignment) {
+            this.textColor = textColor;
+            this.backgroundColor = backgroundColor;
+            this.bold = bold;
+            this.italic = italic;
+            this.textSize = textSize;
+            this.alignment = alignment;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Style)) return false;
+            Style style = (Style) o;
+            return bold == style.bold && italic == style.italic
+                    && Float.compare(textSize, style.textSize) == 0
+                    && Objects.equals(textColor, style.textColor)
+                    && Objects.equals(backgroundColor, style.backgroundColor)
+                    && Objects.equals(alignment, style.alignment);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(textColor, backgroundColor, bold, italic, textSize, alignment);
+        }
+    }
+}
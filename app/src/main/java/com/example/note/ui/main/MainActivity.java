@@ -1,8 +1,10 @@
 package com.example.note.ui.main;
 
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -12,20 +14,30 @@ import android.view.View;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 import androidx.appcompat.widget.PopupMenu;
 import com.google.android.material.button.MaterialButton;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.StaggeredGridLayoutManager;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.example.note.R;
-import java.util.ArrayList;
+import com.example.note.data.cache.CacheRegistry;
+import com.example.note.data.cache.NotebookPrefetcher;
+import com.example.note.data.entity.Job;
 import com.example.note.data.entity.Notebook;
+import com.example.note.data.repository.ImportRepository;
 import com.example.note.data.repository.NotebookRepository;
 import com.example.note.ui.dialog.CreateNotebookDialog;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -34,7 +46,8 @@ import com.google.android.material.snackbar.Snackbar;
 import android.content.Intent;
 
 
-import java.util.ArrayList;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.List;
 
 
@@ -48,6 +61,17 @@ public class MainActivity extends AppCompatActivity implements CreateNotebookDia
     
     private static final String TAG = "MainActivity";
     private static final int SEARCH_DELAY_MS = 300; // 搜索节流延迟
+    // 导入时可选的文件类型，部分文件管理器把CSV报告为text/plain
+    private static final String[] IMPORT_MIME_TYPES = {
+            "text/csv", "text/comma-separated-values", "text/tab-separated-values", "text/plain",
+            ImportRepository.XLSX_MIME_TYPE};
+    
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) {
+                    onImportFilePicked(uri);
+                }
+            });
     
     // UI组件
     private Toolbar toolbar;
@@ -145,6 +169,34 @@ public class MainActivity extends AppCompatActivity implements CreateNotebookDia
             public void onPinNotebook(Notebook notebook) {
                 pinNotebook(notebook);
             }
+            
+            @Override
+            public void onDuplicateNotebook(Notebook notebook) {
+                viewModel.duplicateNotebook(notebook.getId());
+            }
+        });
+        
+        // 按下后开始拖动说明不是点击，取消按下时发起的预取
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView view, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+                    NotebookPrefetcher.getInstance(MainActivity.this).cancelTouchPrefetch();
+                }
+            }
+            
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                // 接近已加载末尾时加载下一页
+                if (dy > 0 && view.getLayoutManager() instanceof StaggeredGridLayoutManager) {
+                    int lastVisible = RecyclerView.NO_POSITION;
+                    for (int position : ((StaggeredGridLayoutManager) view.getLayoutManager())
+                            .findLastVisibleItemPositions(null)) {
+                        lastVisible = Math.max(lastVisible, position);
+                    }
+                    viewModel.onListScrolled(lastVisible);
+                }
+            }
         });
         
         // 设置布局管理器（2列瀑布流）
@@ -205,9 +257,11 @@ public class MainActivity extends AppCompatActivity implements CreateNotebookDia
         // 观察笔记本列表
         viewModel.notebooks.observe(this, notebooks -> {
             if (notebooks != null) {
-                // 确保传递新的ArrayList实例给adapter，避免DiffUtil比较问题
-                adapter.submitList(new ArrayList<>(notebooks));
+                // 每次都是新的列表实例，差异由ListAdapter在后台线程计算
+                adapter.submitList(notebooks);
                 updateEmptyState(notebooks.isEmpty());
+                // 预热最可能打开的笔记本
+                NotebookPrefetcher.getInstance(this).prefetchCandidates(notebooks);
             }
         });
         
@@ -295,9 +349,112 @@ public class MainActivity extends AppCompatActivity implements CreateNotebookDia
         Intent intent = new Intent(this, com.example.note.ui.note.NoteActivity.class);
         intent.putExtra(com.example.note.ui.note.NoteActivity.EXTRA_NOTEBOOK_ID, notebookId);
         intent.putExtra(com.example.note.ui.note.NoteActivity.EXTRA_IS_NEW, false);
+        intent.putExtra(com.example.note.ui.note.NoteActivity.EXTRA_OPEN_START_UPTIME, SystemClock.uptimeMillis());
         startActivity(intent);
     }
     
+    /**
+     * 选中导入文件后：XLSX工作簿有多个工作表时先选择工作表
+     */
+    private void onImportFilePicked(Uri uri) {
+        if (!viewModel.isXlsx(uri)) {
+            runImport(uri, -1);
+            return;
+        }
+        viewModel.listSheets(uri, new ImportRepository.RepositoryCallback<List<String>>() {
+            @Override
+            public void onSuccess(List<String> sheets) {
+                if (sheets.isEmpty()) {
+                    Toast.makeText(MainActivity.this, "工作簿中没有工作表", Toast.LENGTH_SHORT).show();
+                } else if (sheets.size() == 1) {
+                    runImport(uri, 0);
+                } else {
+                    new AlertDialog.Builder(MainActivity.this)
+                            .setTitle("选择工作表")
+                            .setItems(sheets.toArray(new String[0]), (d, which) -> runImport(uri, which))
+                            .setNegativeButton("取消", null)
+                            .show();
+                }
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                // 错误信息已由ViewModel显示
+            }
+        });
+    }
+    
+    /**
+     * 添加导入任务，显示进度并允许取消，完成后打开新笔记本
+     * 任务在后台执行，关闭应用后照常继续，下次打开时笔记本已出现在列表中
+     * @param sheetIndex XLSX工作表序号，CSV/TSV文件传-1
+     */
+    private void runImport(Uri uri, int sheetIndex) {
+        // 任务id在添加完成后才知道，在此之前点取消时记下，添加后立即取消
+        long[] jobId = {0};
+        boolean[] cancelRequested = {false};
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("正在导入")
+                .setMessage("正在识别文件格式…")
+                .setCancelable(false)
+                .setNegativeButton("取消", (d, which) -> {
+                    cancelRequested[0] = true;
+                    if (jobId[0] != 0) {
+                        viewModel.cancelImport(jobId[0]);
+                    }
+                })
+                .show();
+        ImportRepository.RepositoryCallback<Long> callback = new ImportRepository.RepositoryCallback<Long>() {
+            @Override
+            public void onSuccess(Long id) {
+                jobId[0] = id;
+                if (cancelRequested[0]) {
+                    viewModel.cancelImport(id);
+                }
+                observeImport(id, progressDialog);
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                progressDialog.dismiss();
+            }
+        };
+        if (sheetIndex >= 0) {
+            viewModel.importSheet(uri, sheetIndex, callback);
+        } else {
+            viewModel.importNotebook(uri, callback);
+        }
+    }
+    
+    /**
+     * 在对话框中显示导入任务的进度，结束后关闭对话框，成功时打开新笔记本
+     */
+    private void observeImport(long jobId, AlertDialog progressDialog) {
+        LiveData<Job> live = viewModel.observeImport(jobId);
+        live.observe(this, new Observer<Job>() {
+            @Override
+            public void onChanged(Job job) {
+                if (job == null) {
+                    return;
+                }
+                if (!job.isFinished()) {
+                    int percent = job.getPercent();
+                    progressDialog.setMessage("已导入 " + ImportRepository.getImportedRows(job) + " 行"
+                            + (percent >= 0 ? "（" + Math.min(99, percent) + "%）" : ""));
+                    return;
+                }
+                live.removeObserver(this);
+                progressDialog.dismiss();
+                long notebookId = viewModel.onImportFinished(job);
+                if (notebookId != 0) {
+                    openNotebook(notebookId);
+                } else if (Job.STATE_CANCELLED.equals(job.getState())) {
+                    Toast.makeText(MainActivity.this, "已取消导入", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+    }
+    
     /**
      * 显示笔记本菜单
      */
@@ -456,6 +613,9 @@ public class MainActivity extends AppCompatActivity implements CreateNotebookDia
         if (id == R.id.action_layout) {
             viewModel.setLayoutMode(getNextLayoutMode());
             return true;
+        } else if (id == R.id.action_import) {
+            importLauncher.launch(IMPORT_MIME_TYPES);
+            return true;
         } else if (id == R.id.action_settings) {
             // TODO: 打开设置页面
             Snackbar.make(recyclerView, "打开设置", Snackbar.LENGTH_SHORT).show();
@@ -490,6 +650,15 @@ public class MainActivity extends AppCompatActivity implements CreateNotebookDia
     
 
      
+    /**
+     * adb shell dumpsys activity com.example.note/.ui.main.MainActivity 输出各缓存的占用和命中率
+     */
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer, @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        CacheRegistry.getInstance(this).dump(prefix, writer);
+    }
+    
      @Override
      protected void onDestroy() {
         super.onDestroy();
@@ -1,6 +1,7 @@
 package com.example.note.ui.main;
 
 import android.app.Application;
+import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
@@ -11,15 +12,32 @@ import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Transformations;
 
+import com.example.note.data.entity.Job;
 import com.example.note.data.entity.Notebook;
+import com.example.note.data.model.SearchHit;
+import com.example.note.data.model.SearchPage;
+import com.example.note.data.repository.ImportRepository;
+import com.example.note.data.repository.NotebookListQuery;
+import com.example.note.data.repository.NotebookPager;
 import com.example.note.data.repository.NotebookRepository;
+import com.example.note.data.repository.SearchRepository;
+import com.example.note.data.search.PinyinTable;
+import com.example.note.data.search.TitleIndex;
 import com.example.note.ui.base.BaseViewModel;
 import com.example.note.util.ColorUtils;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 主页ViewModel
@@ -28,8 +46,14 @@ import java.util.List;
 public class MainViewModel extends BaseViewModel {
     
     private static final String TAG = "MainViewModel";
+    // 每页条数：瀑布流两到三列时约为两屏
+    private static final int PAGE_SIZE = 60;
+    // 全文搜索取的命中条数，按笔记本去重后追加到标题匹配之后
+    private static final int CONTENT_HIT_LIMIT = 200;
     
     private final NotebookRepository notebookRepository;
+    private final ImportRepository importRepository;
+    private final SearchRepository searchRepository;
     
     // 搜索查询
     private final MutableLiveData<String> _searchQuery = new MutableLiveData<>("");
@@ -45,8 +69,8 @@ public class MainViewModel extends BaseViewModel {
     private final MediatorLiveData<List<Notebook>> _notebooks = new MediatorLiveData<>();
     public final LiveData<List<Notebook>> notebooks = _notebooks;
     
-    // 原始笔记本列表
-    private final LiveData<List<Notebook>> allNotebooks;
+    // 按当前排序分页加载的笔记本（没有搜索词时直接显示）
+    private final NotebookPager pager;
     
     // 笔记本总数
     public final LiveData<Integer> notebookCount;
@@ -62,13 +86,28 @@ public class MainViewModel extends BaseViewModel {
     private final MutableLiveData<LayoutMode> _layoutMode = new MutableLiveData<>(LayoutMode.WATERFALL);
     public final LiveData<LayoutMode> layoutMode = _layoutMode;
     
+    // 标题索引在单独的后台线程上建立和查询，笔记本列表变化时增量更新
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 每次列表或查询变化递增，丢弃过期的搜索结果
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    // 列表有变化时置位，下次搜索前从数据库重新同步索引
+    private volatile boolean titleIndexStale = true;
+    // 仅在searchExecutor上访问
+    private TitleIndex titleIndex;
+    
     public MainViewModel(@NonNull Application application) {
         super(application);
         
         notebookRepository = NotebookRepository.getInstance(application);
+        importRepository = ImportRepository.getInstance(application);
+        searchRepository = SearchRepository.getInstance(application);
+        searchExecutor.execute(this::loadTitleIndex);
+        // 预先建立索引，开始输入时不必全量建立
+        searchExecutor.execute(this::syncTitleIndex);
         
         // 初始化LiveData
-        allNotebooks = notebookRepository.getAllNotebooks();
+        pager = notebookRepository.createPager(PAGE_SIZE);
         notebookCount = notebookRepository.getNotebookCount();
         recentNotebooks = notebookRepository.getRecentNotebooks(10);
         
@@ -80,90 +119,169 @@ public class MainViewModel extends BaseViewModel {
      * 设置笔记本列表的数据源
      */
     private void setupNotebooksLiveData() {
+        applySortToPager(_sortType.getValue());
         // 添加数据源
-        _notebooks.addSource(allNotebooks, this::updateNotebooks);
-        _notebooks.addSource(_searchQuery, query -> updateNotebooks(allNotebooks.getValue()));
-        _notebooks.addSource(_sortType, sortType -> updateNotebooks(allNotebooks.getValue()));
+        _notebooks.addSource(pager, this::onPageLoaded);
+        _notebooks.addSource(_searchQuery, query -> updateNotebooks());
+        _notebooks.addSource(_sortType, sortType -> {
+            applySortToPager(sortType);
+            updateNotebooks();
+        });
     }
     
     /**
-     * 更新笔记本列表
+     * 排序交给SQL：分页查询按对应的排序键和方向读取
      */
-    private void updateNotebooks(List<Notebook> source) {
-        if (source == null) {
-            _notebooks.setValue(null);
-            setEmpty(true);
-            return;
+    private void applySortToPager(SortType sort) {
+        if (sort == null) {
+            sort = SortType.UPDATED_DESC;
         }
-        
-        // 重要：永远返回"新实例"
-        List<Notebook> result = filterAndSortNotebooks(source);
-        _notebooks.setValue(result); // result 已是新实例
-        setEmpty(result.isEmpty());
+        switch (sort) {
+            case TITLE_ASC:
+                pager.setOrder(NotebookListQuery.SortKey.TITLE, true);
+                break;
+            case TITLE_DESC:
+                pager.setOrder(NotebookListQuery.SortKey.TITLE, false);
+                break;
+            case CREATED_ASC:
+                pager.setOrder(NotebookListQuery.SortKey.CREATED, true);
+                break;
+            case CREATED_DESC:
+                pager.setOrder(NotebookListQuery.SortKey.CREATED, false);
+                break;
+            case UPDATED_ASC:
+                pager.setOrder(NotebookListQuery.SortKey.UPDATED, true);
+                break;
+            default:
+                pager.setOrder(NotebookListQuery.SortKey.UPDATED, false);
+                break;
+        }
+    }
+    
+    /**
+     * 分页列表有新数据：数据库有变化或追加了一页
+     */
+    private void onPageLoaded(List<Notebook> page) {
+        titleIndexStale = true;
+        updateNotebooks();
     }
     
     /**
-     * 筛选和排序笔记本
+     * 加载拼音表并创建标题索引（后台线程）
      */
-    private List<Notebook> filterAndSortNotebooks(List<Notebook> source) {
-        if (source == null || source.isEmpty()) {
-            return new ArrayList<>();
+    private void loadTitleIndex() {
+        PinyinTable pinyin;
+        try (Reader reader = new InputStreamReader(
+                getApplication().getAssets().open(PinyinTable.ASSET_NAME), StandardCharsets.UTF_8)) {
+            pinyin = PinyinTable.parse(reader);
+        } catch (IOException e) {
+            // 没有拼音表时仍可按字面和容错匹配
+            Log.e(TAG, "Failed to load pinyin table", e);
+            pinyin = PinyinTable.EMPTY;
         }
-        
-        // 重要：先复制，后续所有操作都基于副本
-        List<Notebook> list = new ArrayList<>(source);
-        
-        // 应用搜索筛选（仅支持笔记名模糊匹配）
+        titleIndex = new TitleIndex(pinyin);
+    }
+    
+    /**
+     * 索引与数据库同步（后台线程），列表没有变化时跳过
+     * 模糊和拼音匹配需要全部标题，只有搜索时才读取全表，增量更新只重算变化的标题
+     */
+    private void syncTitleIndex() {
+        if (!titleIndexStale) {
+            return;
+        }
+        // 先清标记再读取，读取期间的修改会再次置位
+        titleIndexStale = false;
+        long start = System.nanoTime();
+        List<Notebook> source = notebookRepository.getAllNotebooksSync();
+        int rebuilt = titleIndex.update(source);
+        Log.d(TAG, "Title index synced: " + rebuilt + "/" + source.size() + " rebuilt in "
+                + (System.nanoTime() - start) / 1000 + "us");
+    }
+    
+    /**
+     * 更新笔记本列表
+     * 没有搜索词时直接显示分页结果（已由SQL排序）；有搜索词时在后台用标题索引匹配并排序，
+     * 再通过SearchRepository追加单元格内容命中的笔记本，主线程只负责提交结果
+     */
+    private void updateNotebooks() {
+        int generation = searchGeneration.incrementAndGet();
         String query = _searchQuery.getValue();
-        if (query != null && !query.trim().isEmpty()) {
-            String lowerQuery = query.toLowerCase().trim();
-            List<Notebook> filtered = new ArrayList<>();
-            for (Notebook notebook : list) {
-                if (notebook.getTitle() != null && notebook.getTitle().toLowerCase().contains(lowerQuery)) {
-                    filtered.add(notebook);
-                }
+        if (query == null || query.isEmpty()) {
+            List<Notebook> page = pager.getValue();
+            if (page != null) {
+                _notebooks.setValue(page);
+                setEmpty(page.isEmpty());
             }
-            list = filtered; // 新实例
+            return;
         }
         
-        // 应用排序（置顶的笔记本始终在前面）
         SortType sort = _sortType.getValue();
-        if (sort == null) {
-            sort = SortType.UPDATED_DESC;
-        }
-        
-        // 如果是默认的更新时间降序排序，直接使用数据库的排序结果
-        // 数据库已经按照 ORDER BY is_pinned DESC, updated_at DESC, id ASC 排序
-        if (sort == SortType.UPDATED_DESC) {
-            return new ArrayList<>(list);
+        long now = System.currentTimeMillis();
+        searchExecutor.execute(() -> {
+            syncTitleIndex();
+            if (searchGeneration.get() != generation) {
+                return;
+            }
+            // 标题匹配（含拼音和容错）先显示，全文索引的内容命中随后接在后面
+            List<Notebook> titleMatches = titleIndex.search(query, now);
+            publishSearchResult(generation, sortNotebooks(titleMatches, sort));
+            searchRepository.search(query, null, CONTENT_HIT_LIMIT, new SearchRepository.RepositoryCallback<SearchPage>() {
+                @Override
+                public void onSuccess(SearchPage page) {
+                    if (searchGeneration.get() != generation) {
+                        return;
+                    }
+                    searchExecutor.execute(() -> publishSearchResult(generation,
+                            sortNotebooks(mergeContentHits(titleMatches, page.hits), sort)));
+                }
+                
+                @Override
+                public void onError(Exception error) {
+                    Log.e(TAG, "Full text search failed: " + query, error);
+                }
+            });
+        });
+    }
+    
+    /**
+     * 在主线程提交搜索结果，期间查询或列表有变化时丢弃
+     */
+    private void publishSearchResult(int generation, List<Notebook> result) {
+        mainHandler.post(() -> {
+            if (searchGeneration.get() != generation) {
+                return;
+            }
+            _notebooks.setValue(result);
+            setEmpty(result.isEmpty());
+        });
+    }
+    
+    /**
+     * 标题匹配之后追加内容命中的笔记本，按全文索引的相关度顺序去重（searchExecutor线程）
+     */
+    private List<Notebook> mergeContentHits(List<Notebook> titleMatches, List<SearchHit> hits) {
+        Map<Long, Notebook> merged = new LinkedHashMap<>();
+        for (Notebook notebook : titleMatches) {
+            merged.put(notebook.getId(), notebook);
         }
-        
-        // 如果是更新时间升序排序，反转数据库的降序结果
-        if (sort == SortType.UPDATED_ASC) {
-            List<Notebook> result = new ArrayList<>(list);
-            // 分别反转置顶和非置顶的部分
-            List<Notebook> pinnedList = new ArrayList<>();
-            List<Notebook> unpinnedList = new ArrayList<>();
-            
-            for (Notebook notebook : result) {
-                if (notebook.isPinned()) {
-                    pinnedList.add(notebook);
-                } else {
-                    unpinnedList.add(notebook);
+        for (SearchHit hit : hits) {
+            if (!merged.containsKey(hit.notebookId)) {
+                Notebook notebook = titleIndex.get(hit.notebookId);
+                if (notebook != null) {
+                    merged.put(hit.notebookId, notebook);
                 }
             }
-            
-            // 反转各自的顺序
-            Collections.reverse(pinnedList);
-            Collections.reverse(unpinnedList);
-            
-            // 重新组合：置顶在前，非置顶在后
-            List<Notebook> finalResult = new ArrayList<>();
-            finalResult.addAll(pinnedList);
-            finalResult.addAll(unpinnedList);
-            
-            return finalResult;
         }
+        return new ArrayList<>(merged.values());
+    }
+    
+    /**
+     * 排序搜索结果（后台线程）
+     * 结果已按匹配度和更新时间排好，默认排序下保持匹配度顺序；置顶的笔记本始终在前面
+     */
+    private static List<Notebook> sortNotebooks(List<Notebook> ranked, SortType sort) {
+        List<Notebook> list = new ArrayList<>(ranked);
         
         // 创建基础比较器：置顶优先
         Comparator<Notebook> baseComparator = (a, b) -> {
@@ -173,6 +291,12 @@ public class MainViewModel extends BaseViewModel {
             return 0;
         };
         
+        if (sort == null || sort == SortType.UPDATED_DESC) {
+            // 稳定排序：只把置顶的提到前面，其余保持匹配度顺序
+            list.sort(baseComparator);
+            return list;
+        }
+        
         switch (sort) {
             case TITLE_ASC:
                 list.sort(baseComparator
@@ -196,14 +320,24 @@ public class MainViewModel extends BaseViewModel {
                     .thenComparing(Comparator.comparingLong(Notebook::getCreatedAt).reversed())
                     .thenComparingLong(Notebook::getId));
                 break;
-            case UPDATED_DESC:
-                // 直接使用数据库的默认排序 (ORDER BY is_pinned DESC, updated_at DESC, id ASC)
-                // 不需要额外排序
+            case UPDATED_ASC:
+                list.sort(baseComparator
+                    .thenComparingLong(Notebook::getUpdatedAt)
+                    .thenComparingLong(Notebook::getId));
+                break;
+            default:
                 break;
         }
-        
-        // 再次返回"新实例"，避免外部误改
-        return new ArrayList<>(list);
+        return list;
+    }
+    
+    /**
+     * 列表滚动时调用，接近已加载末尾时加载下一页（搜索结果不分页）
+     */
+    public void onListScrolled(int lastVisiblePosition) {
+        if (!hasFilters()) {
+            pager.onVisibleRange(lastVisiblePosition);
+        }
     }
     
     /**
@@ -327,6 +461,111 @@ public class MainViewModel extends BaseViewModel {
         });
     }
     
+    /**
+     * 复制笔记本
+     */
+    public void duplicateNotebook(long id) {
+        setRefreshing(true);
+        
+        notebookRepository.duplicateNotebook(id, new NotebookRepository.RepositoryCallback<Long>() {
+            @Override
+            public void onSuccess(Long result) {
+                handleRepositoryCallback(result, null, "笔记本已复制");
+                setRefreshing(false);
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                handleRepositoryCallback(null, error);
+                setRefreshing(false);
+            }
+        });
+    }
+    
+    /**
+     * 添加从CSV/TSV文件导入新笔记本的任务，回调返回任务id；完成后列表通过LiveData自动刷新
+     */
+    public void importNotebook(Uri uri, ImportRepository.RepositoryCallback<Long> callback) {
+        importRepository.importDelimited(uri, importCallback(callback));
+    }
+    
+    /**
+     * 文件是否为XLSX工作簿
+     */
+    public boolean isXlsx(Uri uri) {
+        return importRepository.isXlsx(uri);
+    }
+    
+    /**
+     * 读取XLSX工作簿中的工作表名称
+     */
+    public void listSheets(Uri uri, ImportRepository.RepositoryCallback<List<String>> callback) {
+        importRepository.listSheets(uri, new ImportRepository.RepositoryCallback<List<String>>() {
+            @Override
+            public void onSuccess(List<String> result) {
+                callback.onSuccess(result);
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                showError("无法读取工作簿: " + error.getMessage());
+                callback.onError(error);
+            }
+        });
+    }
+    
+    /**
+     * 添加把XLSX工作簿中的一个工作表导入为新笔记本的任务
+     */
+    public void importSheet(Uri uri, int sheetIndex, ImportRepository.RepositoryCallback<Long> callback) {
+        importRepository.importXlsx(uri, sheetIndex, importCallback(callback));
+    }
+    
+    /**
+     * 观察导入任务的状态和进度
+     */
+    public LiveData<Job> observeImport(long jobId) {
+        return importRepository.observe(jobId);
+    }
+    
+    /**
+     * 取消导入，已写入的部分会被清除
+     */
+    public void cancelImport(long jobId) {
+        importRepository.cancel(jobId);
+    }
+    
+    /**
+     * 导入任务结束后显示结果
+     * @return 成功时返回新笔记本id，否则返回0
+     */
+    public long onImportFinished(Job job) {
+        if (Job.STATE_SUCCEEDED.equals(job.getState())) {
+            showSuccess("导入完成");
+            return ImportRepository.getNotebookId(job);
+        }
+        if (Job.STATE_FAILED.equals(job.getState())) {
+            showError("导入失败: " + job.getMessage());
+        }
+        return 0;
+    }
+    
+    private ImportRepository.RepositoryCallback<Long> importCallback(
+            ImportRepository.RepositoryCallback<Long> callback) {
+        return new ImportRepository.RepositoryCallback<Long>() {
+            @Override
+            public void onSuccess(Long result) {
+                callback.onSuccess(result);
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                showError("导入失败: " + error.getMessage());
+                callback.onError(error);
+            }
+        };
+    }
+    
     /**
      * 置顶笔记本
      */
@@ -431,11 +670,18 @@ public class MainViewModel extends BaseViewModel {
         // 初始化时不需要特殊操作，LiveData会自动加载数据
     }
     
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        searchExecutor.shutdownNow();
+        pager.close();
+    }
+    
     @Override
     protected void onRefresh() {
         Log.d(TAG, "Refreshing main data");
         
-        // 由于getAllNotebooks返回LiveData，数据会自动更新
+        // 分页列表在数据库变化时自动重新加载
         // 这里只需要模拟刷新延迟然后停止刷新状态
         new Handler(Looper.getMainLooper()).postDelayed(() -> {
             setRefreshing(false);
@@ -3,6 +3,7 @@ package com.example.note.ui.main;
 import android.content.Context;
 
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -16,17 +17,13 @@ import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.note.R;
+import com.example.note.data.cache.NotebookPrefetcher;
 import com.example.note.data.entity.Notebook;
 import com.example.note.util.ColorUtils;
 
-import com.example.note.data.dao.CellDao;
-import com.example.note.data.dao.ColumnDao;
-import com.example.note.data.database.AppDatabase;
 
 import java.util.Objects;
 import com.google.android.material.card.MaterialCardView;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * 笔记本适配器
@@ -38,17 +35,12 @@ public class NotebookAdapter extends ListAdapter<Notebook, NotebookAdapter.Noteb
     private OnItemClickListener onItemClickListener;
     private OnItemLongClickListener onItemLongClickListener;
     private OnMenuActionListener onMenuActionListener;
-    private CellDao cellDao;
-    private ColumnDao columnDao;
-    private ExecutorService executor;
+    private final NotebookPrefetcher prefetcher;
 
     public NotebookAdapter(Context context) {
         super(DIFF_CALLBACK);
         setHasStableIds(true);
-        AppDatabase database = AppDatabase.getInstance(context);
-        this.cellDao = database.cellDao();
-        this.columnDao = database.columnDao();
-        this.executor = Executors.newCachedThreadPool();
+        this.prefetcher = NotebookPrefetcher.getInstance(context);
     }
     
     @Override
@@ -68,6 +60,7 @@ public class NotebookAdapter extends ListAdapter<Notebook, NotebookAdapter.Noteb
     public interface OnMenuActionListener {
         void onDeleteNotebook(Notebook notebook);
         void onPinNotebook(Notebook notebook);
+        void onDuplicateNotebook(Notebook notebook);
     }
     
     // Setter方法
@@ -97,6 +90,16 @@ public class NotebookAdapter extends ListAdapter<Notebook, NotebookAdapter.Noteb
         holder.bind(notebook);
     }
     
+    @Override
+    public void onViewRecycled(@NonNull NotebookViewHolder holder) {
+        super.onViewRecycled(holder);
+        // 卡片滑出屏幕，取消尚未开始的预取
+        long notebookId = holder.getItemId();
+        if (notebookId != RecyclerView.NO_ID) {
+            prefetcher.cancel(notebookId);
+        }
+    }
+    
     /**
      * ViewHolder类
      */
@@ -128,6 +131,17 @@ public class NotebookAdapter extends ListAdapter<Notebook, NotebookAdapter.Noteb
             subtitleText = null;
             previewImage = null;
             
+            // 手指按下即开始预取，不消费事件，点击和长按照常处理
+            cardView.setOnTouchListener((v, event) -> {
+                if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        prefetcher.prefetchOnTouch(getItem(position).getId());
+                    }
+                }
+                return false;
+            });
+            
             // 设置点击监听器
             cardView.setOnClickListener(v -> {
                 if (onItemClickListener != null) {
@@ -178,8 +192,8 @@ public class NotebookAdapter extends ListAdapter<Notebook, NotebookAdapter.Noteb
             notebookIcon.setImageResource(R.drawable.ic_notebook_24);
             notebookIcon.setVisibility(View.VISIBLE);
             
-            // 异步获取并设置尺寸信息
-            loadNotebookDimensions(notebook.getId());
+            // 设置尺寸信息
+            bindDimensions(notebook);
             
             // 隐藏状态图标（当前版本不支持置顶和归档）
             statusIcon.setVisibility(View.GONE);
@@ -208,29 +222,12 @@ public class NotebookAdapter extends ListAdapter<Notebook, NotebookAdapter.Noteb
         }
         
         /**
-         * 异步加载笔记本尺寸信息
+         * 显示笔记本尺寸（统计列随列表查询读出，不访问cells）
          */
-        private void loadNotebookDimensions(long notebookId) {
-            executor.execute(() -> {
-                try {
-                    int maxRowIndex = cellDao.getMaxRowIndex(notebookId);
-                    int maxColumnIndex = cellDao.getMaxColumnIndex(notebookId);
-                    int rowCount = maxRowIndex + 1; // 索引从0开始，所以行数要+1
-                    int columnCount = maxColumnIndex + 1; // 索引从0开始，所以列数要+1
-                    
-                    // 切换到主线程更新UI
-                    dimensionsText.post(() -> {
-                        String dimensions = rowCount + "行 × " + columnCount + "列";
-                        dimensionsText.setText(dimensions);
-                        dimensionsText.setVisibility(View.VISIBLE);
-                    });
-                } catch (Exception e) {
-                    // 如果出错，隐藏尺寸显示
-                    dimensionsText.post(() -> {
-                        dimensionsText.setVisibility(View.GONE);
-                    });
-                }
-            });
+        private void bindDimensions(Notebook notebook) {
+            String dimensions = notebook.getRowCount() + "行 × " + notebook.getColumnCount() + "列";
+            dimensionsText.setText(dimensions);
+            dimensionsText.setVisibility(View.VISIBLE);
         }
         
         /**
@@ -259,6 +256,9 @@ public class NotebookAdapter extends ListAdapter<Notebook, NotebookAdapter.Noteb
                     } else if (itemId == R.id.action_pin) {
                         onMenuActionListener.onPinNotebook(notebook);
                         return true;
+                    } else if (itemId == R.id.action_duplicate) {
+                        onMenuActionListener.onDuplicateNotebook(notebook);
+                        return true;
                     }
                 }
                 return false;
@@ -282,7 +282,9 @@ public class NotebookAdapter extends ListAdapter<Notebook, NotebookAdapter.Noteb
                    oldItem.getUpdatedAt() == newItem.getUpdatedAt() &&
                    Objects.equals(oldItem.getColor(), newItem.getColor()) &&
                    oldItem.isPinned() == newItem.isPinned() &&
-                   oldItem.isDeleted() == newItem.isDeleted();
+                   oldItem.isDeleted() == newItem.isDeleted() &&
+                   oldItem.getRowCount() == newItem.getRowCount() &&
+                   oldItem.getColumnCount() == newItem.getColumnCount();
         }
     };
 }
\ No newline at end of file
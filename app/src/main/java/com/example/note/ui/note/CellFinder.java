@@ -0,0 +1,182 @@
+package com.example.note.ui.note;
+
+import com.example.note.data.entity.Cell;
+import com.example.note.data.search.SearchTokenizer;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 笔记本内查找
+ * 对已加载单元格的折叠文本做子串匹配（忽略大小写和全半角），结果按行优先排序。
+ * 新查询包含上一次查询时只在上一次的结果中缩小范围，不重新扫描全部单元格。
+ * 非线程安全：同一实例只应在一个后台线程上使用。
+ */
+public final class CellFinder {
+
+    // 每扫描这么多单元格检查一次是否已被新查询取代
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    /**
+     * 查询被取消的检查
+     */
+    public interface CancelSignal {
+        boolean isCancelled();
+    }
+
+    // 快照：按(row, col)排序，只包含非空单元格
+    private final long[] keys;
+    private final String[] folded;
+
+    private String lastQuery;
+    private Matches lastMatches;
+    // 上一次查找比较过的单元格数，衡量每次按键的工作量
+    private int lastScanned;
+
+    public CellFinder(Collection<Cell> cells) {
+        Cell[] sorted = new Cell[cells.size()];
+        int size = 0;
+        for (Cell cell : cells) {
+            String content = cell.getContent();
+            if (content != null && !content.isEmpty()) {
+                sorted[size++] = cell;
+            }
+        }
+        Arrays.sort(sorted, 0, size, (a, b) -> Long.compare(key(a.getRowIndex(), a.getColIndex()),
+                key(b.getRowIndex(), b.getColIndex())));
+        keys = new long[size];
+        folded = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key(sorted[i].getRowIndex(), sorted[i].getColIndex());
+            folded[i] = SearchTokenizer.fold(sorted[i].getContent());
+        }
+    }
+
+    /**
+     * 查找包含query的单元格；被取消时返回null
+     */
+    public Matches find(String query, CancelSignal cancel) {
+        String q = query != null ? SearchTokenizer.fold(query) : "";
+        if (q.isEmpty()) {
+            lastQuery = null;
+            lastMatches = null;
+            lastScanned = 0;
+            return Matches.EMPTY;
+        }
+
+        int[] candidates;
+        int candidateCount;
+        if (lastMatches != null && q.contains(lastQuery)) {
+            // 查询只是变长了：结果一定是上一次结果的子集
+            candidates = lastMatches.indices;
+            candidateCount = lastMatches.count;
+        } else {
+            candidates = null;
+            candidateCount = keys.length;
+        }
+
+        int[] hits = new int[Math.min(candidateCount, 64)];
+        int count = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            if (cancel != null && i % CANCEL_CHECK_INTERVAL == 0 && cancel.isCancelled()) {
+                lastScanned = i;
+                return null;
+            }
+            int index = candidates != null ? candidates[i] : i;
+            if (folded[index].contains(q)) {
+                if (count == hits.length) {
+                    hits = Arrays.copyOf(hits, Math.min(candidateCount, count * 2));
+                }
+                hits[count++] = index;
+            }
+        }
+
+        Matches matches = new Matches(keys, hits, count);
+        lastScanned = candidateCount;
+        lastQuery = q;
+        lastMatches = matches;
+        return matches;
+    }
+
+    /**
+     * 上一次查找比较过的单元格数：缩小范围时等于上一次的结果数，否则为全部非空单元格数
+     */
+    int getLastScanned() {
+        return lastScanned;
+    }
+
+    /**
+     * 快照中的非空单元格数
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 查找结果，按行优先排序
+     */
+    public static final class Matches {
+        public static final Matches EMPTY = new Matches(new long[0], new int[0], 0);
+
+        private final long[] keys;
+        private final int[] indices;
+        public final int count;
+
+        Matches(long[] keys, int[] indices, int count) {
+            this.keys = keys;
+            this.indices = indices;
+            this.count = count;
+        }
+
+        public int rowAt(int i) {
+            return (int) (keys[indices[i]] >> 32);
+        }
+
+        public int colAt(int i) {
+            return (int) keys[indices[i]];
+        }
+
+        /**
+         * 返回(row, col)在结果中的位置，不在结果中时返回-1
+         */
+        public int indexOf(int row, int col) {
+            long target = key(row, col);
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = keys[indices[mid]];
+                if (value < target) {
+                    low = mid + 1;
+                } else if (value > target) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 第一个位于(row, col)之后（含）的结果位置，用于从当前视口开始定位
+         */
+        public int ceilingIndex(int row, int col) {
+            long target = key(row, col);
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[indices[mid]] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low < count ? low : 0;
+        }
+    }
+}
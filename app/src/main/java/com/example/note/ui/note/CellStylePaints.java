@@ -0,0 +1,93 @@
+package com.example.note.ui.note;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.util.LongSparseArray;
+import android.view.Gravity;
+
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.repository.CellStyleRepository;
+
+/**
+ * 单元格样式的绘制参数缓存
+ * 按style_id缓存解析好的颜色、字体和对齐方式，绑定单元格时不再逐个解析颜色字符串或创建Typeface。
+ * 只在主线程使用；样式行只增不删，同一个id的参数不会变化。
+ */
+public final class CellStylePaints {
+
+    private static CellStylePaints INSTANCE;
+
+    private final CellStyleRepository styleRepository;
+    private final LongSparseArray<Resolved> resolved = new LongSparseArray<>();
+
+    private CellStylePaints(Context context) {
+        styleRepository = CellStyleRepository.getInstance(context);
+    }
+
+    /**
+     * 获取缓存实例（主线程单例）
+     */
+    public static CellStylePaints getInstance(Context context) {
+        if (INSTANCE == null) {
+            INSTANCE = new CellStylePaints(context.getApplicationContext());
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 获取样式的绘制参数；样式尚未载入时按默认样式绘制，不缓存
+     */
+    public Resolved get(long styleId) {
+        Resolved paints = resolved.get(styleId);
+        if (paints == null) {
+            CellStyle style = styleRepository.get(styleId);
+            paints = new Resolved(style);
+            if (style.getId() == styleId) {
+                resolved.put(styleId, paints);
+            }
+        }
+        return paints;
+    }
+
+    /**
+     * 解析后的绘制参数
+     */
+    public static final class Resolved {
+        public final int textColor;
+        /** 背景色，默认白色时为0（透明，沿用单元格容器的背景） */
+        public final int backgroundColor;
+        public final Typeface typeface;
+        public final int gravity;
+        /** 相对默认字号的缩放比例，与缩放后的基准字号相乘 */
+        public final float textScale;
+
+        Resolved(CellStyle style) {
+            textColor = parse(style.getTextColor(), Color.BLACK);
+            backgroundColor = CellStyle.DEFAULT_BACKGROUND_COLOR.equals(style.getBackgroundColor())
+                    ? 0 : parse(style.getBackgroundColor(), 0);
+            int typefaceStyle = (style.isBold() ? Typeface.BOLD : 0) | (style.isItalic() ? Typeface.ITALIC : 0);
+            typeface = Typeface.defaultFromStyle(typefaceStyle);
+            switch (style.getTextAlignment()) {
+                case "CENTER":
+                    gravity = Gravity.CENTER;
+                    break;
+                case "RIGHT":
+                    gravity = Gravity.END | Gravity.CENTER_VERTICAL;
+                    break;
+                default:
+                    gravity = Gravity.START | Gravity.CENTER_VERTICAL;
+                    break;
+            }
+            textScale = style.getTextSize() / CellStyle.DEFAULT_TEXT_SIZE;
+        }
+
+        private static int parse(String color, int fallback) {
+            try {
+                return Color.parseColor(color);
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+    }
+}
@@ -4,8 +4,10 @@ import android.content.Context;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
 
+import com.example.note.data.cache.CacheRegistry;
 import com.example.note.data.entity.Column;
 import com.example.note.data.entity.Notebook;
+import com.example.note.data.entity.Row;
 import com.example.note.data.repository.RowRepository;
 
 import java.util.HashMap;
@@ -16,7 +18,7 @@ import java.util.Map;
  * ColumnWidthProvider的实现类
  * 基于NoteViewModel提供动态的列宽和行高计算
  */
-public class ColumnWidthProviderImpl implements ColumnWidthProvider {
+public class ColumnWidthProviderImpl implements ColumnWidthProvider, CacheRegistry.TrimmableCache {
     
     private final NoteViewModel noteViewModel;
     private final Context context;
@@ -31,6 +33,11 @@ public class ColumnWidthProviderImpl implements ColumnWidthProvider {
     private int[] pixelWidthSnapshot = null;
     private float lastSnapshotScale = -1f;
     private int lastSnapshotColumnCount = -1;
+    private long snapshotHits = 0;
+    private long snapshotMisses = 0;
+    
+    // 行高缓存每项的估算开销（字符串键、Float和HashMap节点）
+    private static final int ROW_HEIGHT_ENTRY_BYTES = 96;
     
     // 默认尺寸（像素）
     private static final float DEFAULT_COLUMN_WIDTH_PX = 120f;
@@ -259,6 +266,54 @@ public class ColumnWidthProviderImpl implements ColumnWidthProvider {
         }
     }
     
+    /**
+     * 用加载时读出的行高数据填充缓存（主线程调用）
+     */
+    public void seedRowHeights(long notebookId, List<Row> rows) {
+        for (Row row : rows) {
+            rowHeightCache.put(notebookId + "_" + row.getRowIndex(), row.getHeight());
+        }
+    }
+    
+    @Override
+    public String getCacheName() {
+        return "columnWidths";
+    }
+    
+    @Override
+    public int getCachePriority() {
+        return CacheRegistry.PRIORITY_ACTIVE;
+    }
+    
+    @Override
+    public long getSizeBytes() {
+        long bytes = (long) rowHeightCache.size() * ROW_HEIGHT_ENTRY_BYTES;
+        if (pixelWidthSnapshot != null) {
+            bytes += 4L * pixelWidthSnapshot.length;
+        }
+        return bytes;
+    }
+    
+    @Override
+    public long getHitCount() {
+        return snapshotHits;
+    }
+    
+    @Override
+    public long getMissCount() {
+        return snapshotMisses;
+    }
+    
+    /**
+     * 只丢弃可重算的像素宽度快照；行高缓存是当前显示状态（未命中即按默认高度绘制），不回收
+     */
+    @Override
+    public void trimToSize(long maxBytes) {
+        if (getSizeBytes() > maxBytes) {
+            invalidatePixelWidthSnapshot();
+        }
+    }
+    
     /**
      * 清除缓存
      */
@@ -284,6 +339,7 @@ public class ColumnWidthProviderImpl implements ColumnWidthProvider {
         if (pixelWidthSnapshot == null || 
             Math.abs(currentScale - lastSnapshotScale) > 0.001f ||
             currentColumnCount != lastSnapshotColumnCount) {
+            snapshotMisses++;
             
             // 重新计算像素宽度快照
             pixelWidthSnapshot = new int[currentColumnCount];
@@ -327,6 +383,8 @@ public class ColumnWidthProviderImpl implements ColumnWidthProvider {
             // 更新快照状态
             lastSnapshotScale = currentScale;
             lastSnapshotColumnCount = currentColumnCount;
+        } else {
+            snapshotHits++;
         }
     }
     
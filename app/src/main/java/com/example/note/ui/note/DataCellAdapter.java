@@ -18,6 +18,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.note.R;
 import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.CellStyle;
 import com.example.note.data.entity.Column;
 
 import java.util.ArrayList;
@@ -35,6 +36,7 @@ public class DataCellAdapter extends RecyclerView.Adapter<DataCellAdapter.DataCe
     private int rowHeightDp = 44;
     private OnCellChangeListener listener;
     private ColumnWidthProvider widthProvider;
+    private CellHighlighter highlighter;
     
     public interface OnCellChangeListener {
         void onCellClick(int rowIndex, int columnIndex);
@@ -42,6 +44,13 @@ public class DataCellAdapter extends RecyclerView.Adapter<DataCellAdapter.DataCe
         void onCellContentChanged(int rowIndex, int columnIndex, String newContent);
     }
     
+    /**
+     * 单元格高亮（查找结果等），返回0表示不高亮
+     */
+    public interface CellHighlighter {
+        int getHighlightColor(int rowIndex, int columnIndex);
+    }
+    
     public void setOnCellChangeListener(OnCellChangeListener listener) {
         this.listener = listener;
     }
@@ -50,6 +59,10 @@ public class DataCellAdapter extends RecyclerView.Adapter<DataCellAdapter.DataCe
         this.widthProvider = widthProvider;
     }
     
+    public void setCellHighlighter(CellHighlighter highlighter) {
+        this.highlighter = highlighter;
+    }
+    
     public void setRowData(int rowIndex, List<Cell> cells, List<Column> columns) {
         this.rowIndex = rowIndex;
         this.cells.clear();
@@ -111,6 +124,8 @@ public class DataCellAdapter extends RecyclerView.Adapter<DataCellAdapter.DataCe
     
     class DataCellViewHolder extends RecyclerView.ViewHolder implements EditingStateHolder.EditingCell {
         private EditText editText;
+        private View highlightView;
+        private final CellStylePaints stylePaints;
         private int currentRowIndex;
         private int currentColumnIndex;
         private boolean isEditing = false;
@@ -118,6 +133,7 @@ public class DataCellAdapter extends RecyclerView.Adapter<DataCellAdapter.DataCe
         
         public DataCellViewHolder(@NonNull View itemView) {
             super(itemView);
+            stylePaints = CellStylePaints.getInstance(itemView.getContext());
             
             // 创建EditText作为主要组件
             editText = new EditText(itemView.getContext());
@@ -132,6 +148,7 @@ public class DataCellAdapter extends RecyclerView.Adapter<DataCellAdapter.DataCe
             FrameLayout container = itemView.findViewById(R.id.cell_container);
             if (container != null) {
                 container.addView(editText);
+                highlightView = container;
             } else {
                 // 如果没有容器，直接添加到itemView
                 ((ViewGroup) itemView).addView(editText);
@@ -279,6 +296,14 @@ public class DataCellAdapter extends RecyclerView.Adapter<DataCellAdapter.DataCe
                 isEditing = false;
             }
             
+            // 单元格样式：按style_id取缓存的绘制参数
+            CellStylePaints.Resolved style = stylePaints.get(cell.getStyleId());
+            editText.setTextColor(style.textColor);
+            if (editText.getTypeface() != style.typeface) {
+                editText.setTypeface(style.typeface);
+            }
+            editText.setGravity(style.gravity);
+            
             // 使用ColumnWidthProvider获取effective尺寸
             ViewGroup.LayoutParams layoutParams = itemView.getLayoutParams();
             if (widthProvider != null) {
@@ -287,14 +312,21 @@ public class DataCellAdapter extends RecyclerView.Adapter<DataCellAdapter.DataCe
                 layoutParams.height = widthProvider.getRowHeightPx(currentRowIndex);
                 
                 // 设置文本大小
-                editText.setTextSize(android.util.TypedValue.COMPLEX_UNIT_PX, widthProvider.getTextSizePx());
+                editText.setTextSize(android.util.TypedValue.COMPLEX_UNIT_PX, widthProvider.getTextSizePx() * style.textScale);
             } else {
                 // 回退到原始方式
                 layoutParams.width = (int) (column.getWidth() * itemView.getContext().getResources().getDisplayMetrics().density);
                 layoutParams.height = (int) (rowHeightDp * itemView.getContext().getResources().getDisplayMetrics().density);
+                editText.setTextSize(CellStyle.DEFAULT_TEXT_SIZE * style.textScale);
             }
             itemView.setLayoutParams(layoutParams);
             
+            // 查找结果高亮优先，否则显示单元格背景色
+            if (highlightView != null) {
+                int color = highlighter != null ? highlighter.getHighlightColor(currentRowIndex, columnIndex) : 0;
+                highlightView.setBackgroundColor(color != 0 ? color : style.backgroundColor);
+            }
+            
             // 设置长按监听器
             itemView.setOnLongClickListener(v -> {
                 if (listener != null) {
@@ -0,0 +1,244 @@
+package com.example.note.ui.note;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodManager;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import com.example.note.R;
+import com.example.note.data.entity.Cell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 笔记本内查找栏
+ * 输入防抖后在后台线程用CellFinder匹配，主线程只负责高亮、计数和跳转，
+ * 每次按键在主线程上的开销与单元格数量无关。
+ */
+public class FindBarController implements DataCellAdapter.CellHighlighter {
+
+    // 输入停顿多久后开始查找
+    private static final long DEBOUNCE_MS = 120;
+    private static final int MATCH_COLOR = 0x66FFEB3B;
+    private static final int CURRENT_MATCH_COLOR = 0xCCFF9800;
+
+    private final Activity activity;
+    private final View findBar;
+    private final EditText findInput;
+    private final TextView findCount;
+    private final TableRowAdapter tableRowAdapter;
+    private final ZoomableRecyclerHost zoomableHost;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger latestRequest = new AtomicInteger();
+    private final Runnable searchRunnable = this::startSearch;
+
+    // 仅在后台线程访问
+    private CellFinder finder;
+
+    // 以下仅在主线程访问
+    private Map<String, Cell> cellsMap;
+    private boolean snapshotDirty = true;
+    private CellFinder.Matches matches = CellFinder.Matches.EMPTY;
+    private int current = -1;
+
+    public FindBarController(Activity activity, TableRowAdapter tableRowAdapter, ZoomableRecyclerHost zoomableHost) {
+        this.activity = activity;
+        this.tableRowAdapter = tableRowAdapter;
+        this.zoomableHost = zoomableHost;
+        findBar = activity.findViewById(R.id.find_bar);
+        findInput = activity.findViewById(R.id.find_input);
+        findCount = activity.findViewById(R.id.find_count);
+        tableRowAdapter.setCellHighlighter(this);
+
+        findInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                scheduleSearch();
+            }
+        });
+        findInput.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+                next();
+                return true;
+            }
+            return false;
+        });
+        activity.findViewById(R.id.find_prev).setOnClickListener(v -> previous());
+        activity.findViewById(R.id.find_next).setOnClickListener(v -> next());
+        activity.findViewById(R.id.find_close).setOnClickListener(v -> hide());
+    }
+
+    /**
+     * 单元格数据变化：下次查找时重建快照，查找栏打开时重新查找
+     */
+    public void setCells(Map<String, Cell> cellsMap) {
+        this.cellsMap = cellsMap;
+        snapshotDirty = true;
+        if (isShowing() && findInput.length() > 0) {
+            scheduleSearch();
+        }
+    }
+
+    /**
+     * 单元格内容被就地修改：下次查找时重建快照
+     */
+    public void invalidateCells() {
+        snapshotDirty = true;
+    }
+
+    public String getQuery() {
+        return findInput.getText().toString();
+    }
+
+    public boolean isShowing() {
+        return findBar.getVisibility() == View.VISIBLE;
+    }
+
+    /**
+     * 显示查找栏并弹出键盘
+     */
+    public void show() {
+        findBar.setVisibility(View.VISIBLE);
+        findInput.requestFocus();
+        findInput.selectAll();
+        InputMethodManager imm = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
+        if (imm != null) {
+            imm.showSoftInput(findInput, InputMethodManager.SHOW_IMPLICIT);
+        }
+    }
+
+    /**
+     * 关闭查找栏并清除高亮
+     */
+    public void hide() {
+        mainHandler.removeCallbacks(searchRunnable);
+        latestRequest.incrementAndGet();
+        InputMethodManager imm = (InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
+        if (imm != null) {
+            imm.hideSoftInputFromWindow(findInput.getWindowToken(), 0);
+        }
+        findInput.clearFocus();
+        findBar.setVisibility(View.GONE);
+        applyMatches(CellFinder.Matches.EMPTY);
+    }
+
+    public void release() {
+        mainHandler.removeCallbacks(searchRunnable);
+        executor.shutdownNow();
+    }
+
+    public void next() {
+        moveTo(current + 1);
+    }
+
+    public void previous() {
+        moveTo(current - 1);
+    }
+
+    @Override
+    public int getHighlightColor(int rowIndex, int columnIndex) {
+        if (matches.count == 0) {
+            return 0;
+        }
+        int index = matches.indexOf(rowIndex, columnIndex);
+        if (index < 0) {
+            return 0;
+        }
+        return index == current ? CURRENT_MATCH_COLOR : MATCH_COLOR;
+    }
+
+    private void scheduleSearch() {
+        mainHandler.removeCallbacks(searchRunnable);
+        mainHandler.postDelayed(searchRunnable, DEBOUNCE_MS);
+    }
+
+    private void startSearch() {
+        int request = latestRequest.incrementAndGet();
+        String query = findInput.getText().toString();
+        // 只在主线程上复制引用，折叠和排序放到后台
+        List<Cell> snapshot = null;
+        if (snapshotDirty && cellsMap != null) {
+            snapshot = new ArrayList<>(cellsMap.values());
+            snapshotDirty = false;
+        }
+        List<Cell> cells = snapshot;
+        executor.execute(() -> {
+            if (cells != null) {
+                finder = new CellFinder(cells);
+            }
+            if (finder == null) {
+                return;
+            }
+            CellFinder.Matches result = finder.find(query, () -> latestRequest.get() != request);
+            if (result != null) {
+                mainHandler.post(() -> {
+                    if (latestRequest.get() == request) {
+                        applyMatches(result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyMatches(CellFinder.Matches result) {
+        // 尽量停留在原来的位置：原结果仍匹配则保持，否则取其后的第一个
+        int anchorRow = 0;
+        int anchorCol = 0;
+        if (current >= 0 && current < matches.count) {
+            anchorRow = matches.rowAt(current);
+            anchorCol = matches.colAt(current);
+        }
+        matches = result;
+        current = result.count > 0 ? result.ceilingIndex(anchorRow, anchorCol) : -1;
+        updateCount();
+        tableRowAdapter.refreshHighlight(-1);
+        if (current >= 0) {
+            zoomableHost.scrollToCell(matches.rowAt(current), matches.colAt(current));
+        }
+    }
+
+    private void moveTo(int index) {
+        if (matches.count == 0) {
+            return;
+        }
+        int previousRow = current >= 0 ? matches.rowAt(current) : -1;
+        current = (index % matches.count + matches.count) % matches.count;
+        int row = matches.rowAt(current);
+        if (previousRow >= 0 && previousRow != row) {
+            tableRowAdapter.refreshHighlight(previousRow);
+        }
+        tableRowAdapter.refreshHighlight(row);
+        updateCount();
+        zoomableHost.scrollToCell(row, matches.colAt(current));
+    }
+
+    private void updateCount() {
+        if (findInput.length() == 0) {
+            findCount.setText("");
+        } else if (matches.count == 0) {
+            findCount.setText("无结果");
+        } else {
+            findCount.setText((current + 1) + "/" + matches.count);
+        }
+    }
+}
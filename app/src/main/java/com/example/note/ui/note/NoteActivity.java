@@ -1,19 +1,30 @@
 package com.example.note.ui.note;
 
 import android.app.AlertDialog;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.PopupMenu;
 import android.widget.ProgressBar;
+import android.widget.RadioButton;
+import android.widget.RadioGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.lifecycle.ViewModelProvider;
@@ -22,18 +33,28 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.note.R;
 import com.example.note.adapter.ColumnHeaderAdapter;
+import com.example.note.data.cache.CacheRegistry;
 import com.example.note.data.entity.Cell;
 import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.io.ExportFormat;
+import com.example.note.data.model.ReplaceResult;
+import com.example.note.data.repository.ExportRepository;
+import com.example.note.data.repository.ReplaceRepository;
 import com.example.note.data.repository.RowRepository;
+import com.example.note.data.search.FindReplaceSpec;
 import com.example.note.ui.note.ColumnSettingsDialog;
 
 import com.google.android.material.appbar.AppBarLayout;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 /**
  * 笔记编辑Activity - 重新设计的类DataGrip表格界面
@@ -48,9 +69,33 @@ public class NoteActivity extends AppCompatActivity {
     public static final String EXTRA_ROWS = "rows";
     public static final String EXTRA_COLS = "cols";
     public static final String EXTRA_IS_NEW = "is_new";
+    public static final String EXTRA_OPEN_START_UPTIME = "open_start_uptime";
     
     private NoteViewModel viewModel;
     
+    // 等待用户选择保存位置的导出
+    private ExportFormat pendingExportFormat;
+    private boolean pendingExportCurrentView;
+    
+    // 文档类型随导出格式变化，在创建Intent时按待导出的格式设置
+    private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("text/plain") {
+                @NonNull
+                @Override
+                public Intent createIntent(@NonNull Context context, @NonNull String input) {
+                    Intent intent = super.createIntent(context, input);
+                    if (pendingExportFormat != null) {
+                        intent.setType(pendingExportFormat.getMimeType());
+                    }
+                    return intent;
+                }
+            }, uri -> {
+                if (uri != null && pendingExportFormat != null) {
+                    runExport(uri, pendingExportFormat, pendingExportCurrentView);
+                }
+                pendingExportFormat = null;
+            });
+    
     // UI组件
     private Toolbar mainToolbar;
     private AppBarLayout appBarLayout;
@@ -72,6 +117,9 @@ public class NoteActivity extends AppCompatActivity {
     private RowHeaderAdapter rowHeaderAdapter;
     private TableRowAdapter tableRowAdapter;
     
+    // 笔记本内查找
+    private FindBarController findBarController;
+    
     // 数据
     private Map<String, Cell> cellsMap = new HashMap<>();
     private List<Column> columns;
@@ -79,6 +127,10 @@ public class NoteActivity extends AppCompatActivity {
     private int currentColumnCount = 0;
     private long notebookId = -1;
     
+    // 打开耗时统计（Intent发出到首帧绘制）
+    private OpenTimeTracker openTimeTracker;
+    private boolean loadStarted = false;
+    
     // 优化：延迟保存Handler
     private Handler rowResizeHandler = new Handler(Looper.getMainLooper());
     private Runnable rowResizeRunnable;
@@ -90,12 +142,16 @@ public class NoteActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        openTimeTracker = new OpenTimeTracker(
+            getIntent().getLongExtra(EXTRA_OPEN_START_UPTIME, SystemClock.uptimeMillis()));
         setContentView(R.layout.activity_note);
+        openTimeTracker.mark("content_view");
         
         initViews();
         initViewModel();
         initAdapters();
         initTableRowAdapter();
+        findBarController = new FindBarController(this, tableRowAdapter, zoomableHost);
         setupObservers();
         setupClickListeners();
         
@@ -111,6 +167,21 @@ public class NoteActivity extends AppCompatActivity {
         }
     }
     
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        findBarController.release();
+    }
+    
+    /**
+     * adb shell dumpsys activity com.example.note/.ui.note.NoteActivity 输出各缓存的占用和命中率
+     */
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer, @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        CacheRegistry.getInstance(this).dump(prefix, writer);
+    }
+    
     private void initViews() {
         mainToolbar = findViewById(R.id.toolbar);
         appBarLayout = findViewById(R.id.app_bar_layout);
@@ -136,6 +207,7 @@ public class NoteActivity extends AppCompatActivity {
         
         // 初始化ColumnWidthProvider
         widthProvider = new ColumnWidthProviderImpl(viewModel, this, rowRepository);
+        CacheRegistry.getInstance(this).register(widthProvider);
     }
     
     private void initAdapters() {
@@ -460,12 +532,12 @@ public class NoteActivity extends AppCompatActivity {
     // setupScrollSync方法已移除，滚动同步现在由ZoomableRecyclerHost处理
     
     private void setupObservers() {
-        // 观察当前笔记本，用于预加载行高数据
-        viewModel.getCurrentNotebook().observe(this, notebook -> {
-            if (notebook != null && widthProvider instanceof ColumnWidthProviderImpl) {
-                // 预加载行高数据到缓存，避免主线程访问数据库
-                ColumnWidthProviderImpl impl = (ColumnWidthProviderImpl) widthProvider;
-                impl.preloadRowHeights(notebook.getId(), 100); // 预加载前100行的数据
+        // 观察加载时一并读出的行高数据，写入缓存，避免主线程访问数据库
+        viewModel.getRowHeights().observe(this, rows -> {
+            Long currentId = viewModel.getCurrentNotebook().getValue() != null
+                ? viewModel.getCurrentNotebook().getValue().getId() : null;
+            if (rows != null && currentId != null && widthProvider instanceof ColumnWidthProviderImpl) {
+                ((ColumnWidthProviderImpl) widthProvider).seedRowHeights(currentId, rows);
             }
         });
         
@@ -500,6 +572,13 @@ public class NoteActivity extends AppCompatActivity {
         // 观察加载状态
         viewModel.getIsLoading().observe(this, isLoading -> {
             loadingProgress.setVisibility(isLoading ? View.VISIBLE : View.GONE);
+            if (isLoading) {
+                loadStarted = true;
+            } else if (loadStarted) {
+                // 表格模型已就绪，等首帧绘制后结束打开耗时统计
+                openTimeTracker.mark("model_ready");
+                openTimeTracker.finishOnNextDraw(this, dataRowsRecycler);
+            }
         });
         
         // 观察错误信息
@@ -512,6 +591,10 @@ public class NoteActivity extends AppCompatActivity {
         // 观察撤销重做状态
         viewModel.getCanUndo().observe(this, canUndo -> {
             // 更新撤销按钮状态
+            findViewById(R.id.undo_button).setEnabled(Boolean.TRUE.equals(canUndo));
+        });
+        viewModel.getCanRedo().observe(this, canRedo -> {
+            findViewById(R.id.redo_button).setEnabled(Boolean.TRUE.equals(canRedo));
         });
         
         // 观察视口状态变化 - 现在由ZoomableRecyclerHost处理
@@ -538,6 +621,7 @@ public class NoteActivity extends AppCompatActivity {
                 String cellKey = cell.getRowIndex() + "_" + cell.getColIndex();
                 cellsMap.put(cellKey, cell);
             }
+            findBarController.setCells(cellsMap);
             updateTableData();
         }
     }
@@ -586,6 +670,11 @@ public class NoteActivity extends AppCompatActivity {
             viewModel.undo();
         });
         
+        // 重做按钮
+        findViewById(R.id.redo_button).setOnClickListener(v -> {
+            viewModel.redo();
+        });
+        
 
     }
     
@@ -598,6 +687,7 @@ public class NoteActivity extends AppCompatActivity {
         
         if (this.notebookId != -1) {
             // 加载现有笔记
+            openTimeTracker.mark("load_requested");
             viewModel.loadNotebook(this.notebookId);
         } else if (templateId != -1 && notebookName != null) {
             // 从模板创建笔记
@@ -621,6 +711,15 @@ public class NoteActivity extends AppCompatActivity {
         if (id == android.R.id.home) {
             onBackPressed();
             return true;
+        } else if (id == R.id.action_find) {
+            findBarController.show();
+            return true;
+        } else if (id == R.id.action_replace) {
+            showReplaceDialog();
+            return true;
+        } else if (id == R.id.action_export) {
+            showExportDialog();
+            return true;
         } else if (id == R.id.action_save) {
             // 手动保存
             viewModel.saveNotebook();
@@ -637,6 +736,10 @@ public class NoteActivity extends AppCompatActivity {
     
     @Override
     public void onBackPressed() {
+        if (findBarController.isShowing()) {
+            findBarController.hide();
+            return;
+        }
         if (viewModel.hasUnsavedChanges()) {
             // 显示保存确认对话框
             // TODO: 实现保存确认对话框
@@ -676,6 +779,174 @@ public class NoteActivity extends AppCompatActivity {
         editText.requestFocus();
     }
     
+    /**
+     * 显示查找替换对话框
+     */
+    private void showReplaceDialog() {
+        Notebook notebook = viewModel.getCurrentNotebook().getValue();
+        if (notebook == null) {
+            return;
+        }
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setPadding(padding, padding / 2, padding, 0);
+        
+        EditText findText = new EditText(this);
+        findText.setHint("查找内容");
+        findText.setSingleLine(true);
+        if (findBarController.isShowing()) {
+            findText.setText(findBarController.getQuery());
+        }
+        EditText replaceText = new EditText(this);
+        replaceText.setHint("替换为");
+        replaceText.setSingleLine(true);
+        
+        RadioGroup modeGroup = new RadioGroup(this);
+        modeGroup.setOrientation(RadioGroup.HORIZONTAL);
+        String[] modeNames = {"区分大小写", "忽略大小写", "正则"};
+        int[] modes = {FindReplaceSpec.MODE_LITERAL, FindReplaceSpec.MODE_IGNORE_CASE, FindReplaceSpec.MODE_REGEX};
+        for (int i = 0; i < modes.length; i++) {
+            RadioButton button = new RadioButton(this);
+            button.setId(View.generateViewId());
+            button.setText(modeNames[i]);
+            button.setTag(modes[i]);
+            modeGroup.addView(button);
+            if (modes[i] == FindReplaceSpec.MODE_IGNORE_CASE) {
+                button.setChecked(true);
+            }
+        }
+        CheckBox allNotebooks = new CheckBox(this);
+        allNotebooks.setText("替换所有笔记本");
+        
+        layout.addView(findText);
+        layout.addView(replaceText);
+        layout.addView(modeGroup);
+        layout.addView(allNotebooks);
+        
+        new AlertDialog.Builder(this)
+                .setTitle("查找替换")
+                .setView(layout)
+                .setPositiveButton("全部替换", (d, which) -> {
+                    RadioButton checked = modeGroup.findViewById(modeGroup.getCheckedRadioButtonId());
+                    int mode = checked != null ? (int) checked.getTag() : FindReplaceSpec.MODE_LITERAL;
+                    FindReplaceSpec spec;
+                    try {
+                        spec = new FindReplaceSpec(mode, findText.getText().toString(), replaceText.getText().toString());
+                    } catch (IllegalArgumentException e) {
+                        Toast.makeText(this, "查找内容无效: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    FindReplaceSpec.Scope scope = allNotebooks.isChecked()
+                            ? FindReplaceSpec.Scope.allNotebooks()
+                            : FindReplaceSpec.Scope.notebook(notebook.getId());
+                    runReplace(spec, scope);
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+    
+    /**
+     * 执行批量替换，显示进度并允许取消
+     */
+    private void runReplace(FindReplaceSpec spec, FindReplaceSpec.Scope scope) {
+        ReplaceRepository.ReplaceTask task = new ReplaceRepository.ReplaceTask();
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("正在替换")
+                .setMessage("正在保存…")
+                .setCancelable(false)
+                .setNegativeButton("取消", (d, which) -> task.cancel())
+                .show();
+        viewModel.replaceAll(spec, scope, task,
+                (scanned, replaced) -> progressDialog.setMessage("已检查 " + scanned + " 个单元格，已替换 " + replaced + " 个"),
+                new ReplaceRepository.RepositoryCallback<ReplaceResult>() {
+                    @Override
+                    public void onSuccess(ReplaceResult result) {
+                        progressDialog.dismiss();
+                        String message = (result.cancelled ? "已取消，" : "") + "共替换 " + result.replacedCells + " 个单元格";
+                        if (result.skippedCells > 0) {
+                            message += "，" + result.skippedCells + " 个已被修改而跳过";
+                        }
+                        Toast.makeText(NoteActivity.this, message, Toast.LENGTH_SHORT).show();
+                    }
+                    
+                    @Override
+                    public void onError(Exception error) {
+                        progressDialog.dismiss();
+                    }
+                });
+    }
+    
+    /**
+     * 选择导出格式；有筛选或排序时再选择导出当前视图还是全部数据
+     */
+    private void showExportDialog() {
+        Notebook notebook = viewModel.getCurrentNotebook().getValue();
+        if (notebook == null) {
+            return;
+        }
+        ExportFormat[] formats = ExportFormat.values();
+        String[] labels = new String[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            labels[i] = formats[i].getLabel();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("导出为")
+                .setItems(labels, (d, which) -> {
+                    ExportFormat format = formats[which];
+                    // XLSX按列类型和单元格样式从数据库写出，总是导出全部数据
+                    if (format == ExportFormat.XLSX || !viewModel.hasViewQuery()) {
+                        chooseExportTarget(notebook, format, false);
+                        return;
+                    }
+                    new AlertDialog.Builder(this)
+                            .setTitle("导出范围")
+                            .setItems(new String[]{"当前视图（筛选和排序后）", "全部数据"},
+                                    (d2, scope) -> chooseExportTarget(notebook, format, scope == 0))
+                            .setNegativeButton("取消", null)
+                            .show();
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+    
+    private void chooseExportTarget(Notebook notebook, ExportFormat format, boolean currentView) {
+        pendingExportFormat = format;
+        pendingExportCurrentView = currentView;
+        exportLauncher.launch(notebook.getTitle() + "." + format.getExtension());
+    }
+    
+    /**
+     * 执行导出，显示进度并允许取消
+     */
+    private void runExport(Uri uri, ExportFormat format, boolean currentView) {
+        ExportRepository.ExportTask task = new ExportRepository.ExportTask();
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("正在导出")
+                .setMessage(currentView ? "正在准备…" : "正在保存…")
+                .setCancelable(false)
+                .setNegativeButton("取消", (d, which) -> task.cancel())
+                .show();
+        viewModel.exportNotebook(uri, format, currentView, task,
+                (rows, percent) -> progressDialog.setMessage("已导出 " + rows + " 行"
+                        + (percent >= 0 ? "（" + percent + "%）" : "")),
+                new ExportRepository.RepositoryCallback<Integer>() {
+                    @Override
+                    public void onSuccess(Integer rows) {
+                        progressDialog.dismiss();
+                        Toast.makeText(NoteActivity.this, "已导出 " + rows + " 行", Toast.LENGTH_SHORT).show();
+                    }
+                    
+                    @Override
+                    public void onError(Exception error) {
+                        progressDialog.dismiss();
+                        if (error instanceof CancellationException) {
+                            Toast.makeText(NoteActivity.this, "已取消导出", Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
+    }
+    
     /**
      * 更新单元格内容
      */
@@ -695,6 +966,8 @@ public class NoteActivity extends AppCompatActivity {
             cell.setContent(newContent);
             cellsMap.put(cellKey, cell);
         }
+        // 编辑过程中只标记查找快照过期，不重新高亮以免重绑定打断输入
+        findBarController.invalidateCells();
         
         // 注释掉刷新表格显示，避免在编辑过程中干扰用户输入
         // updateTableData();
@@ -1,6 +1,7 @@
 package com.example.note.ui.note;
 
 import android.app.Application;
+import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
@@ -13,28 +14,49 @@ import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Observer;
 
+import com.example.note.data.cache.CacheRegistry;
+import com.example.note.data.cache.NotebookPrefetcher;
 import com.example.note.data.entity.Notebook;
 import com.example.note.data.entity.Template;
 import com.example.note.data.entity.Column;
 import com.example.note.data.entity.Cell;
 import com.example.note.data.entity.CellType;
+import com.example.note.data.journal.EditJournal;
+import com.example.note.data.entity.Row;
+import com.example.note.data.io.ExportFormat;
+import com.example.note.data.io.GridTableSource;
 import com.example.note.data.model.FilterOption;
+import com.example.note.data.model.ReplaceResult;
+import com.example.note.data.model.TableModel;
 import com.example.note.data.repository.NotebookRepository;
 import com.example.note.data.repository.TemplateRepository;
 import com.example.note.data.repository.ColumnRepository;
 import com.example.note.data.repository.CellRepository;
+import com.example.note.data.repository.ExportRepository;
+import com.example.note.data.repository.NotebookLoader;
+import com.example.note.data.repository.ReplaceRepository;
+import com.example.note.data.repository.RowQuery;
+import com.example.note.data.search.FindReplaceSpec;
+import com.example.note.util.CellValueUtils;
 import com.example.note.util.ColorUtils;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.Stack;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.HashMap;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Collections;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * 笔记编辑ViewModel
@@ -48,6 +70,9 @@ public class NoteViewModel extends AndroidViewModel {
     private final TemplateRepository templateRepository;
     private final ColumnRepository columnRepository;
     private final CellRepository cellRepository;
+    private final ReplaceRepository replaceRepository;
+    private final ExportRepository exportRepository;
+    private final NotebookPrefetcher notebookPrefetcher;
     
     // LiveData
     private final MutableLiveData<Notebook> _currentNotebook = new MutableLiveData<>();
@@ -75,10 +100,23 @@ public class NoteViewModel extends AndroidViewModel {
     private List<Cell> sourceFrozenCells = new ArrayList<>();
     private List<Cell> sourceScrollableCells = new ArrayList<>();
     
-    // 撤销重做相关
-    private final Stack<TableOperation> undoStack = new Stack<>();
+    // 撤销重做相关（按笔记本打开，超出内存上限的历史溢出到磁盘）
+    private UndoLog undoLog;
     private final MutableLiveData<Boolean> _canUndo = new MutableLiveData<>(false);
     public final LiveData<Boolean> canUndo = _canUndo;
+    private final MutableLiveData<Boolean> _canRedo = new MutableLiveData<>(false);
+    public final LiveData<Boolean> canRedo = _canRedo;
+    
+    // 编辑日志：尚未写入数据库的编辑先落盘到日志，进程被杀后重放
+    private EditJournal editJournal;
+    // 日志的打开和关闭在后台执行；代次用于丢弃过期的打开结果
+    private final ExecutorService journalExecutor = Executors.newSingleThreadExecutor();
+    private int journalGeneration = 0;
+    
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    // 批量替换直接改库期间跳过自动保存，否则整表覆盖会冲掉已提交的替换
+    private volatile boolean bulkWriteInProgress;
     
     // 延迟保存相关
     private final Handler delayedSaveHandler = new Handler(Looper.getMainLooper());
@@ -90,6 +128,10 @@ public class NoteViewModel extends AndroidViewModel {
         return _canUndo;
     }
     
+    public LiveData<Boolean> getCanRedo() {
+        return _canRedo;
+    }
+    
 
     public final LiveData<List<Cell>> frozenColumnCells = _frozenColumnCells;
     
@@ -112,12 +154,18 @@ public class NoteViewModel extends AndroidViewModel {
     private final MutableLiveData<Integer> _columnCount = new MutableLiveData<>(0);
     public final LiveData<Integer> columnCount = _columnCount;
     
+    // 加载时一并读出的自定义行高
+    private final MutableLiveData<List<Row>> _rowHeights = new MutableLiveData<>(new ArrayList<>());
+    public final LiveData<List<Row>> rowHeights = _rowHeights;
+    
     // 行顺序追踪字段
-    private int[] originalRowOrder = null; // 初次加载时建立，不再修改
     private int[] currentRowOrder = null; // 最近一次排序的行序
     
-    // 当前可见的"原始行索引"；null 代表未筛选（全部可见）
-    private List<Integer> activeVisibleRows = null;
+    // 各列当前的筛选条件（按列索引），多列之间为"且"；为空代表未筛选（全部可见）
+    private final Map<Integer, RowQuery.Filter> activeFilters = new TreeMap<>();
+    
+    // 行查询的代次，用于丢弃过期的SQL查询结果
+    private int rowQueryGeneration = 0;
     
     /**
      * 判断指定列索引是否为冻结列
@@ -155,6 +203,9 @@ public class NoteViewModel extends AndroidViewModel {
         templateRepository = TemplateRepository.getInstance(application);
         columnRepository = ColumnRepository.getInstance(application);
         cellRepository = CellRepository.getInstance(application);
+        replaceRepository = ReplaceRepository.getInstance(application);
+        exportRepository = ExportRepository.getInstance(application);
+        notebookPrefetcher = NotebookPrefetcher.getInstance(application);
     }
     
     // Getter methods for LiveData
@@ -178,6 +229,10 @@ public class NoteViewModel extends AndroidViewModel {
         return isSaved;
     }
     
+    public LiveData<List<Row>> getRowHeights() {
+        return rowHeights;
+    }
+    
     // 视口状态管理方法已在其他位置定义
     
     /**
@@ -197,9 +252,9 @@ public class NoteViewModel extends AndroidViewModel {
                 notebook.setTitle(name);
                 notebook.setColor(ColorUtils.getDefaultNotebookColor());
                 _currentNotebook.postValue(notebook);
-                
-                // 初始化空表格数据
-                initializeEmptyTableData();
+                openUndoLog(notebookId);
+                // 日志打开后再初始化表格，之后的编辑都能记入日志
+                mainHandler.post(() -> openEditJournal(notebookId, 0, pendingEdits -> initializeEmptyTableData()));
                 
                 Log.d(TAG, "Blank notebook created with ID: " + notebookId + ", rows: " + rows + ", cols: " + cols);
             }
@@ -255,14 +310,12 @@ public class NoteViewModel extends AndroidViewModel {
                 
                 _currentTemplate.postValue(template);
                 
-                // 创建笔记本
-                notebookRepository.createNotebook(name, ColorUtils.getDefaultNotebookColor(), new NotebookRepository.RepositoryCallback<Long>() {
+                // 创建笔记本，列和空白单元格在同一事务中按模板生成
+                notebookRepository.createNotebookFromTemplate(name, ColorUtils.getDefaultNotebookColor(), template, new NotebookRepository.RepositoryCallback<Long>() {
                     @Override
                     public void onSuccess(Long notebookId) {
                         _isLoading.postValue(false);
                         
-                        // 创建笔记本成功，应用模板
-                        // TODO: 实现应用模板的逻辑，根据模板的data字段创建表格结构
                         Log.d(TAG, "Notebook created with template. NotebookId: " + notebookId + ", TemplateId: " + templateId);
                         
                         // 加载创建的笔记本
@@ -283,210 +336,151 @@ public class NoteViewModel extends AndroidViewModel {
     
     /**
      * 加载现有笔记
+     * 通过NotebookLoader在单个读事务中读出全部数据，一次性填充表格模型；
+     * 主页已预取且仍然有效时直接使用预取结果
      */
     public void loadNotebook(long notebookId) {
         _isLoading.postValue(true);
         
-        // 观察笔记本数据
-        LiveData<Notebook> notebookLiveData = notebookRepository.getNotebookById(notebookId);
-        Observer<Notebook> notebookObserver = new Observer<Notebook>() {
-             @Override
-             public void onChanged(Notebook notebook) {
-                 notebookLiveData.removeObserver(this);
-                 
-                 if (notebook != null) {
-                     _currentNotebook.postValue(notebook);
-                     Log.d(TAG, "Notebook loaded: " + notebook.getTitle());
-                     
-                     // 加载笔记的表格数据
-                     loadTableData(notebookId);
-                 } else {
-                     _errorMessage.postValue("笔记不存在");
-                     Log.e(TAG, "Notebook not found: " + notebookId);
-                     _isLoading.postValue(false);
-                 }
-             }
-         };
-        notebookLiveData.observeForever(notebookObserver);
-    }
-    
-    /**
-     * 加载表格数据（列和单元格）
-     */
-    private void loadTableData(long notebookId) {
-        // 加载列数据
-        LiveData<List<Column>> columnsLiveData = columnRepository.getColumnsByNotebookId(notebookId);
-        Observer<List<Column>> columnsObserver = new Observer<List<Column>>() {
+        notebookPrefetcher.open(notebookId, new NotebookLoader.RepositoryCallback<TableModel>() {
             @Override
-            public void onChanged(List<Column> columns) {
-                columnsLiveData.removeObserver(this);
-                
-                if (columns != null && !columns.isEmpty()) {
-                    _columns.postValue(columns);
-                    Log.d(TAG, "Loaded " + columns.size() + " columns for notebook " + notebookId);
-                    
-                    // 加载单元格数据（单元格数据加载时会设置正确的行数和列数）
-                    loadCellData(notebookId);
-                } else {
-                    Log.d(TAG, "No existing columns found, keeping empty table structure");
-                    // 如果没有现有列数据，保持空表格结构（0行0列）
-                    initializeEmptyTableData();
+            public void onSuccess(TableModel model) {
+                if (model == null) {
+                    _errorMessage.postValue("笔记不存在");
+                    Log.e(TAG, "Notebook not found: " + notebookId);
                     _isLoading.postValue(false);
+                    return;
                 }
+                // 日志的校验和恢复在后台完成，只重放数据库保存之后的记录
+                openEditJournal(notebookId, model.notebook.getJournalSeq(),
+                        pendingEdits -> applyTableModel(model, pendingEdits));
             }
-        };
-        columnsLiveData.observeForever(columnsObserver);
+            
+            @Override
+            public void onError(Exception error) {
+                _isLoading.postValue(false);
+                _errorMessage.postValue("加载笔记失败: " + error.getMessage());
+            }
+        });
     }
     
     /**
-     * 加载单元格数据
+     * 用加载完成的表格模型填充源数据缓存并输出显示数据（主线程调用）
+     * @param pendingEdits 编辑日志中尚未写入数据库的记录
      */
-    private void loadCellData(long notebookId) {
-        // 加载所有单元格数据
-        LiveData<List<Cell>> cellsLiveData = cellRepository.getCellsByNotebookId(notebookId);
-        Observer<List<Cell>> cellsObserver = new Observer<List<Cell>>() {
-            @Override
-            public void onChanged(List<Cell> cells) {
-                cellsLiveData.removeObserver(this);
-                
-                if (cells != null) {
-                    Log.d(TAG, "Loaded " + cells.size() + " cells for notebook " + notebookId);
-                    
-                    // 分离冻结列和可滚动列的单元格
-                    List<Cell> frozenCells = new ArrayList<>();
-                    List<Cell> scrollableCells = new ArrayList<>();
-                    
-                    // 计算实际的行数和列数
-                int maxRow = -1;
-                int maxCol = -1;
-                
-                for (Cell cell : cells) {
-                    maxRow = Math.max(maxRow, cell.getRowIndex());
-                    maxCol = Math.max(maxCol, cell.getColIndex());
-                    
-                    if (isFrozenColumnIndex(cell.getColIndex())) {
-                        frozenCells.add(cell);
-                    } else {
-                        scrollableCells.add(cell);
-                    }
-                }
-                
-                // 初始化源数据缓存（深拷贝）
-                sourceFrozenCells = deepCopyCells(frozenCells);
-                sourceScrollableCells = deepCopyCells(scrollableCells);
-                
-                // 设置实际的行数和列数（索引+1）
-                int rows, cols;
-                if (maxRow >= 0 && maxCol >= 0) {
-                    rows = maxRow + 1;
-                    // 列数应该与实际的列数据保持一致，而不是单元格的最大列索引
-                    List<Column> currentColumns = _columns.getValue();
-                    if (currentColumns != null && !currentColumns.isEmpty()) {
-                        cols = currentColumns.size();
-                    } else {
-                        cols = maxCol + 1;
-                    }
-                } else {
-                    // 即使没有单元格数据，也要根据列数据设置正确的行数和列数
-                    List<Column> currentColumns = _columns.getValue();
-                    if (currentColumns != null && !currentColumns.isEmpty()) {
-                        cols = currentColumns.size();
-                        rows = 1; // 如果有列但没有单元格，至少应该有1行（标题行）
-                    } else {
-                        rows = 0;
-                        cols = 0;
-                    }
-                }
-                
-                _rowCount.postValue(rows);
-                _columnCount.postValue(cols);
-                
-                // 初始化行顺序追踪数组
-                if (rows > 0) {
-                    originalRowOrder = new int[rows];
-                    currentRowOrder = new int[rows];
-                    for (int i = 0; i < rows; i++) {
-                        originalRowOrder[i] = i;
-                        currentRowOrder[i] = i;
-                    }
-                } else {
-                    originalRowOrder = new int[0];
-                    currentRowOrder = new int[0];
-                }
-                
-                // 使用网格重建逻辑，确保与排序路径的数据形态一致
-                if (rows > 0 && cols > 0) {
-                    // 构建完整网格（使用源数据）
-                    List<List<Cell>> grid = buildFullGrid(sourceFrozenCells, sourceScrollableCells, rows, cols);
-                    // 按原序输出（0..rows-1）
-                    int[] order = new int[rows];
-                    for (int i = 0; i < rows; i++) {
-                        order[i] = i;
-                    }
-                    emitGridInOrder(grid, order);
-                } else {
-                    _frozenColumnCells.postValue(new ArrayList<>());
-                    _scrollableColumnsCells.postValue(new ArrayList<>());
-                }
-                } else {
-                    Log.d(TAG, "No existing cells found");
-                    // 空数据情况已在上面统一处理
-                    _rowCount.postValue(0);
-                    _columnCount.postValue(0);
-                    _frozenColumnCells.postValue(new ArrayList<>());
-                    _scrollableColumnsCells.postValue(new ArrayList<>());
-                }
-                
-                _isLoading.postValue(false);
+    private void applyTableModel(TableModel model, List<EditJournal.Entry> pendingEdits) {
+        Notebook notebook = model.notebook;
+        long notebookId = notebook.getId();
+        _currentNotebook.setValue(notebook);
+        openUndoLog(notebookId);
+        Log.d(TAG, "Notebook loaded: " + notebook.getTitle());
+        
+        // 列数据需先于isFrozenColumnIndex等查询生效，这里在主线程直接setValue
+        _columns.setValue(model.columns);
+        _rowHeights.setValue(model.rows);
+        
+        // 初始化源数据缓存（加载器产出的对象不与其他地方共享，无需再深拷贝）
+        sourceFrozenCells = new ArrayList<>(model.frozenCells);
+        sourceScrollableCells = new ArrayList<>(model.scrollableCells);
+        int rows = model.rowCount;
+        int cols = model.columnCount;
+        
+        // 重放上次未写入数据库的编辑（进程被杀等情况）
+        if (!pendingEdits.isEmpty()) {
+            rows = replayJournal(pendingEdits, rows);
+            List<Column> replayedColumns = _columns.getValue();
+            if (replayedColumns != null && !replayedColumns.isEmpty()) {
+                cols = replayedColumns.size();
             }
-        };
-        cellsLiveData.observeForever(cellsObserver);
+            // 触发自动保存，保存成功后日志被截断
+            markAsModified();
+            Log.i(TAG, "Replayed " + pendingEdits.size() + " journal records for notebook " + notebookId);
+        }
+        
+        _rowCount.setValue(rows);
+        _columnCount.setValue(cols);
+        
+        // 初始化行顺序追踪数组
+        currentRowOrder = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            currentRowOrder[i] = i;
+        }
+        activeFilters.clear();
+        rowQueryGeneration++;
+        
+        // 使用网格重建逻辑，确保与排序路径的数据形态一致
+        if (rows > 0 && cols > 0) {
+            List<List<Cell>> grid = buildFullGrid(sourceFrozenCells, sourceScrollableCells, rows, cols);
+            emitGridInOrder(grid, currentRowOrder.clone());
+        } else {
+            _frozenColumnCells.setValue(new ArrayList<>());
+            _scrollableColumnsCells.setValue(new ArrayList<>());
+        }
+        
+        _isLoading.setValue(false);
+        Log.d(TAG, "Loaded " + model.getCellCount() + " cells for notebook " + notebookId
+                + " (query " + model.queryMillis + "ms, decode " + model.decodeMillis + "ms)");
     }
     
     /**
      * 保存笔记
      */
     public void saveNotebook() {
+        saveNotebook(null);
+    }
+    
+    /**
+     * 保存笔记，成功后在主线程执行onSaved（直接改库的操作需要先落盘内存中的编辑）
+     */
+    public void saveNotebook(@Nullable Runnable onSaved) {
         Notebook notebook = _currentNotebook.getValue();
         if (notebook == null) {
             _errorMessage.postValue("没有可保存的笔记");
             return;
         }
+        if (bulkWriteInProgress && onSaved == null) {
+            Log.d(TAG, "Skip save while bulk replace is running");
+            return;
+        }
         
         _isLoading.postValue(true);
+        long notebookId = notebook.getId();
         
-        // 保存列数据
-        List<Column> columns = _columns.getValue();
-        if (columns != null && !columns.isEmpty()) {
-            for (Column column : columns) {
-                column.setNotebookId(notebook.getId());
+        // 日志位置和要保存的数据在同一时刻取得：此后的编辑留在日志中，此前的编辑都包含在本次保存里
+        final long journalMark = editJournal != null ? editJournal.mark() : notebook.getJournalSeq();
+        List<Column> columns = _columns.getValue() != null ? new ArrayList<>(_columns.getValue()) : new ArrayList<>();
+        List<Cell> allCells = collectCellsForSave(notebookId);
+        
+        // 列、单元格和日志序号在同一事务内写入
+        cellRepository.saveGrid(notebookId, columns, allCells, journalMark, new CellRepository.RepositoryCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                // 笔记本updatedAt已在同一事务内更新，并已回写快照
+                notebook.setJournalSeq(journalMark);
+                persistUndoLog();
+                truncateJournal(journalMark);
+                _isLoading.postValue(false);
+                _isSaved.postValue(true);
+                Log.d(TAG, "Notebook saved successfully: " + allCells.size() + " cells");
+                if (onSaved != null) {
+                    mainHandler.post(onSaved);
+                }
             }
             
-            columnRepository.saveColumns(columns, new ColumnRepository.RepositoryCallback<Void>() {
-                @Override
-                public void onSuccess(Void result) {
-                    Log.d(TAG, "Columns saved successfully");
-                    // 保存单元格数据
-                    saveCellsData(notebook.getId());
-                }
-                
-                @Override
-                public void onError(Exception e) {
-                    _isLoading.postValue(false);
-                    _errorMessage.postValue("保存列数据失败: " + e.getMessage());
-                    Log.e(TAG, "Failed to save columns", e);
-                }
-            });
-        } else {
-            // 如果没有列数据，直接保存单元格数据
-            saveCellsData(notebook.getId());
-        }
+            @Override
+            public void onError(Exception e) {
+                bulkWriteInProgress = false;
+                _isLoading.postValue(false);
+                _errorMessage.postValue("保存笔记失败: " + e.getMessage());
+                Log.e(TAG, "Failed to save notebook", e);
+            }
+        });
     }
     
     /**
-     * 保存单元格数据
+     * 从源数据缓存收集要保存的单元格副本（避免使用显示数据）
      */
-    private void saveCellsData(long notebookId) {
+    private List<Cell> collectCellsForSave(long notebookId) {
         List<Cell> allCells = new ArrayList<>();
         
         // 从源数据缓存收集冻结列单元格（避免使用显示数据）
@@ -510,32 +504,7 @@ public class NoteViewModel extends AndroidViewModel {
                 allCells.add(cellCopy);
             }
         }
-        
-        if (!allCells.isEmpty()) {
-            cellRepository.replaceAllCells(notebookId, allCells, new CellRepository.RepositoryCallback<Void>() {
-                @Override
-                public void onSuccess(Void result) {
-                    // 更新笔记本的updatedAt时间戳
-                    notebookRepository.touchNotebook(notebookId);
-                    _isLoading.postValue(false);
-                    _isSaved.postValue(true);
-                    Log.d(TAG, "Notebook saved successfully: " + allCells.size() + " cells");
-                }
-                
-                @Override
-                public void onError(Exception e) {
-                    _isLoading.postValue(false);
-                    _errorMessage.postValue("保存单元格数据失败: " + e.getMessage());
-                    Log.e(TAG, "Failed to save cells", e);
-                }
-            });
-        } else {
-            // 即使没有单元格数据也要更新笔记本的updatedAt时间戳
-            notebookRepository.touchNotebook(notebookId);
-            _isLoading.postValue(false);
-            _isSaved.postValue(true);
-            Log.d(TAG, "Notebook saved: no cells to save");
-        }
+        return allCells;
     }
     
     /**
@@ -550,11 +519,22 @@ public class NoteViewModel extends AndroidViewModel {
         
         _isLoading.postValue(true);
         
-        // TODO: 实现保存为模板的逻辑
-        // 需要序列化当前表格结构为JSON格式
-        
-        _isLoading.postValue(false);
-        Log.d(TAG, "Notebook saved as template: " + templateName);
+        // 先落盘内存中的编辑，再从数据库编码列和单元格
+        saveNotebook(() -> templateRepository.saveNotebookAsTemplate(notebook.getId(), templateName, description,
+                new TemplateRepository.RepositoryCallback<Long>() {
+                    @Override
+                    public void onSuccess(Long templateId) {
+                        _isLoading.postValue(false);
+                        Log.d(TAG, "Notebook saved as template: " + templateName + ", id: " + templateId);
+                    }
+                    
+                    @Override
+                    public void onError(Exception error) {
+                        _isLoading.postValue(false);
+                        _errorMessage.postValue("保存模板失败: " + error.getMessage());
+                        Log.e(TAG, "Failed to save notebook as template", error);
+                    }
+                }));
     }
     
     /**
@@ -764,8 +744,9 @@ public class NoteViewModel extends AndroidViewModel {
             _columns.postValue(colsDef);
         }
 
-        // 统一渲染（会对 activeVisibleRows 这批"可见行"应用排序/恢复默认顺序）
+        // 统一渲染（在筛选后的可见行上应用排序/恢复默认顺序）；排序状态随列定义保存
         refreshViewRespectingFilterAndSort();
+        markAsModified();
     }
     
     /**
@@ -799,12 +780,7 @@ public class NoteViewModel extends AndroidViewModel {
         copy.setRowIndex(original.getRowIndex());
         copy.setColIndex(original.getColIndex());
         copy.setContent(original.getContent());
-        copy.setTextColor(original.getTextColor());
-        copy.setBackgroundColor(original.getBackgroundColor());
-        copy.setBold(original.isBold());
-        copy.setItalic(original.isItalic());
-        copy.setTextSize(original.getTextSize());
-        copy.setTextAlignment(original.getTextAlignment());
+        copy.setStyleId(original.getStyleId());
         copy.setImageId(original.getImageId());
         copy.setCreatedAt(original.getCreatedAt());
         copy.setUpdatedAt(original.getUpdatedAt());
@@ -844,52 +820,10 @@ public class NoteViewModel extends AndroidViewModel {
     }
     
     /**
-     * 比较非空内容（用于新的排序逻辑）
-     */
-    private int compareExcelStyleNonEmpty(String content1, String content2) {
-        // c1、c2 均保证非空
-        Double num1 = tryParseNumber(content1);
-        Double num2 = tryParseNumber(content2);
-        
-        // 如果都是数字，按数值比较
-        if (num1 != null && num2 != null) {
-            return Double.compare(num1, num2);
-        }
-        
-        // 如果一个是数字一个不是，数字排在前面
-        if (num1 != null && num2 == null) {
-            return -1;
-        }
-        if (num1 == null && num2 != null) {
-            return 1;
-        }
-        
-        // 都不是数字，按字符串比较（忽略大小写）
-        return content1.compareToIgnoreCase(content2);
-    }
-    
-    /**
-     * 尝试将字符串解析为数字
+     * 尝试将字符串解析为数字（与数据库num_value列使用同一规则）
      */
     private Double tryParseNumber(String str) {
-        if (str == null || str.trim().isEmpty()) {
-            return null;
-        }
-        
-        try {
-            // 移除千分位分隔符和货币符号
-            String cleaned = str.replaceAll("[,￥$€£¥]", "").trim();
-            
-            // 处理百分号
-            if (cleaned.endsWith("%")) {
-                cleaned = cleaned.substring(0, cleaned.length() - 1);
-                return Double.parseDouble(cleaned) / 100.0;
-            }
-            
-            return Double.parseDouble(cleaned);
-        } catch (NumberFormatException e) {
-            return null;
-        }
+        return CellValueUtils.parseNumber(str);
     }
     
     /**
@@ -929,12 +863,7 @@ public class NoteViewModel extends AndroidViewModel {
         copy.setRowIndex(displayRowIndex); // 使用展示用的行索引
         copy.setColIndex(original.getColIndex());
         copy.setContent(original.getContent());
-        copy.setTextColor(original.getTextColor());
-        copy.setBackgroundColor(original.getBackgroundColor());
-        copy.setBold(original.isBold());
-        copy.setItalic(original.isItalic());
-        copy.setTextSize(original.getTextSize());
-        copy.setTextAlignment(original.getTextAlignment());
+        copy.setStyleId(original.getStyleId());
         copy.setImageId(original.getImageId());
         
         // 不设置稳定ID，避免UI稳定ID污染数据库
@@ -957,12 +886,7 @@ public class NoteViewModel extends AndroidViewModel {
         copy.setRowIndex(displayRowIndex);
         copy.setColIndex(original.getColIndex());
         copy.setContent(original.getContent());
-        copy.setTextColor(original.getTextColor());
-        copy.setBackgroundColor(original.getBackgroundColor());
-        copy.setBold(original.isBold());
-        copy.setItalic(original.isItalic());
-        copy.setTextSize(original.getTextSize());
-        copy.setTextAlignment(original.getTextAlignment());
+        copy.setStyleId(original.getStyleId());
         copy.setImageId(original.getImageId());
         
         // 不设置稳定ID，避免UI稳定ID污染数据库
@@ -972,13 +896,15 @@ public class NoteViewModel extends AndroidViewModel {
     }
 
     /**
-     * 统一渲染管线：基于源缓存、可见行集合和当前排序状态输出到LiveData
+     * 统一渲染管线：基于源缓存、当前筛选条件和排序状态输出到LiveData
+     * 筛选和排序编译成一个RowQuery；行数少时直接在内存网格上求值，行数多且数据已保存时交给SQLite在后台执行
      */
     private void refreshViewRespectingFilterAndSort() {
         // 1) 获取源数据总行数和总列数
         int rows = totalRowsFromSource();
         int cols = totalColsFromColumns();
         if (rows <= 0 || cols <= 0) {
+            rowQueryGeneration++;
             _frozenColumnCells.postValue(new ArrayList<>());
             _scrollableColumnsCells.postValue(new ArrayList<>());
             _rowCount.postValue(0);
@@ -988,51 +914,71 @@ public class NoteViewModel extends AndroidViewModel {
         // 2) 基于源缓存构建完整网格
         List<List<Cell>> grid = buildFullGrid(sourceFrozenCells, sourceScrollableCells, rows, cols);
 
-        // 3) 确定候选行（筛选逻辑）
-        List<Integer> candidates;
-        if (activeVisibleRows == null) {
-            // 未筛选：全部行
-            candidates = new ArrayList<>();
-            for (int i = 0; i < rows; i++) {
-                candidates.add(i);
-            }
-        } else {
-            // 已筛选：只取可见行
-            candidates = new ArrayList<>(activeVisibleRows);
+        // 3) 组合筛选和排序
+        RowQuery.Builder builder = RowQuery.builder();
+        for (RowQuery.Filter filter : activeFilters.values()) {
+            builder.where(filter);
         }
-
-        // 4) 应用排序（如果有）
         Column sortedCol = getSortedColumnDef();
         if (sortedCol != null) {
-            final int sortCol = sortedCol.getColumnIndex();
-            final boolean desc = "DESC".equals(sortedCol.getSortOrder());
-            candidates.sort((r1, r2) -> {
-                String s1 = getCellContent(grid.get(r1).get(sortCol));
-                String s2 = getCellContent(grid.get(r2).get(sortCol));
-                if (s1.isEmpty() && s2.isEmpty()) return 0;
-                if (s1.isEmpty()) return 1;   // 空值末尾
-                if (s2.isEmpty()) return -1;
-                int c = compareExcelStyleNonEmpty(s1, s2);
-                return desc ? -c : c;
+            builder.orderBy(sortedCol.getColumnIndex(), "DESC".equals(sortedCol.getSortOrder()));
+        }
+        RowQuery query = builder.build();
+        int generation = ++rowQueryGeneration;
+        if (query.isEmpty()) {
+            emitVisibleRows(grid, null);
+            return;
+        }
+
+        // 4) 按行数统计选择求值方式；SQL读取的是数据库中的数据，有未保存的修改时只能在内存中求值
+        Notebook notebook = _currentNotebook.getValue();
+        RowQuery.CellSource source = (r, c) -> c < grid.get(r).size() ? grid.get(r).get(c).getContent() : null;
+        if (notebook != null && !hasUnsavedChanges()
+                && query.prefersSql(Math.max(notebook.getRowCount(), rows))) {
+            cellRepository.queryRowOrder(notebook.getId(), query, rows, new CellRepository.RepositoryCallback<List<Integer>>() {
+                @Override
+                public void onSuccess(List<Integer> result) {
+                    mainHandler.post(() -> {
+                        if (generation == rowQueryGeneration) {
+                            emitVisibleRows(grid, result);
+                        }
+                    });
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    mainHandler.post(() -> {
+                        if (generation == rowQueryGeneration) {
+                            emitVisibleRows(grid, query.evaluate(source, rows));
+                        }
+                    });
+                }
             });
+            return;
         }
+        emitVisibleRows(grid, query.evaluate(source, rows));
+    }
 
-        // 5) 构建"可见 grid"，并更新 currentRowOrder（显示行 -> 原始行）
-        List<List<Cell>> viewGrid = new ArrayList<>(candidates.size());
-        currentRowOrder = new int[candidates.size()];
-        for (int i = 0; i < candidates.size(); i++) {
-            int ori = candidates.get(i);
+    /**
+     * 按显示顺序输出可见行，并更新 currentRowOrder（显示行 -> 原始行）
+     * @param visibleRows 按显示顺序排列的原始行号，null表示全部行按原始顺序
+     */
+    private void emitVisibleRows(List<List<Cell>> grid, @Nullable List<Integer> visibleRows) {
+        int count = visibleRows != null ? visibleRows.size() : grid.size();
+        List<List<Cell>> viewGrid = new ArrayList<>(count);
+        currentRowOrder = new int[count];
+        for (int i = 0; i < count; i++) {
+            int ori = visibleRows != null ? visibleRows.get(i) : i;
             viewGrid.add(grid.get(ori));
             currentRowOrder[i] = ori;
         }
 
-        // 6) 发射（identity order，因为 viewGrid 已按显示顺序排列）
-        int[] order = new int[viewGrid.size()];
+        // identity order，因为 viewGrid 已按显示顺序排列
+        int[] order = new int[count];
         for (int i = 0; i < order.length; i++) order[i] = i;
 
         emitGridInOrder(viewGrid, order);
-        _rowCount.postValue(viewGrid.size());
-        markAsModified();
+        _rowCount.postValue(count);
     }
 
     @Nullable
@@ -1218,10 +1164,11 @@ public class NoteViewModel extends AndroidViewModel {
             return;
         }
         
-        // 记录撤销重做操作（使用 row*1000 + col 编码位置）
+        // 记录撤销重做操作（使用原始行号，排序/筛选后撤销仍能定位到同一单元格）
         TableOperation operation = new TableOperation(
             TableOperation.OperationType.UPDATE_CELL,
-            row * 1000 + col,
+            originalRow,
+            col,
             oldValue,
             value
         );
@@ -1244,14 +1191,7 @@ public class NoteViewModel extends AndroidViewModel {
             }
             
             // 同步更新源数据缓存（使用原始行号）
-            if (sourceFrozenCells != null) {
-                for (Cell cell : sourceFrozenCells) {
-                    if (cell.getRowIndex() == originalRow && cell.getColIndex() == col) {
-                        cell.setContent(value);
-                        break;
-                    }
-                }
-            }
+            sourceCellAt(originalRow, col).setContent(value);
         } else {
             // 更新可滚动列（使用显示行号查找显示数据）
             List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
@@ -1268,14 +1208,7 @@ public class NoteViewModel extends AndroidViewModel {
             }
             
             // 同步更新源数据缓存（使用原始行号）
-            if (sourceScrollableCells != null) {
-                for (Cell cell : sourceScrollableCells) {
-                    if (cell.getRowIndex() == originalRow && cell.getColIndex() == col) {
-                        cell.setContent(value);
-                        break;
-                    }
-                }
-            }
+            sourceCellAt(originalRow, col).setContent(value);
         }
         
         // 立即保存到数据库（编辑即保存，使用原始行号）
@@ -1284,20 +1217,25 @@ public class NoteViewModel extends AndroidViewModel {
             targetCell.setNotebookId(currentNotebook.getId());
         }
         // 数据库中存储的是原始行号，所以必须使用originalRow
-        cellRepository.updateCellContent(currentNotebook.getId(), originalRow, col, value, new CellRepository.RepositoryCallback<Void>() {
-            @Override
-            public void onSuccess(Void result) {
-                // 更新笔记本的updatedAt时间戳
-                notebookRepository.touchNotebook(currentNotebook.getId());
-                Log.d(TAG, "Cell saved: (" + originalRow + ", " + col + ") = " + value);
-            }
-            
-            @Override
-            public void onError(Exception e) {
-                Log.e(TAG, "Failed to save cell: (" + originalRow + ", " + col + ")", e);
-                _errorMessage.postValue("保存失败: " + e.getMessage());
-            }
-        });
+        if (editJournal != null) {
+            // 写后保存：编辑先落盘到日志，由自动保存批量写库
+            editJournal.appendSetCell(originalRow, col, value);
+        } else {
+            cellRepository.updateCellContent(currentNotebook.getId(), originalRow, col, value, new CellRepository.RepositoryCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                    // 更新笔记本的updatedAt时间戳
+                    notebookRepository.touchNotebook(currentNotebook.getId());
+                    Log.d(TAG, "Cell saved: (" + originalRow + ", " + col + ") = " + value);
+                }
+                
+                @Override
+                public void onError(Exception e) {
+                    Log.e(TAG, "Failed to save cell: (" + originalRow + ", " + col + ")", e);
+                    _errorMessage.postValue("保存失败: " + e.getMessage());
+                }
+            });
+        }
         
         markAsModified();
     }
@@ -1318,6 +1256,9 @@ public class NoteViewModel extends AndroidViewModel {
             newColumn.setFrozen(false);
             
             currentColumns.add(newColumn);
+            if (editJournal != null) {
+                editJournal.appendInsertColumn(newColIndex, newColumn.getName());
+            }
             _columns.postValue(currentColumns);
             
             // 为新列添加单元格（只有非冻结列才添加到scrollableCells）
@@ -1357,11 +1298,11 @@ public class NoteViewModel extends AndroidViewModel {
      * 添加新行
      */
     public void addNewRow() {
-        Integer currentRows = _rowCount.getValue();
         Integer currentCols = _columnCount.getValue();
         
-        if (currentRows != null && currentCols != null) {
-            int newRowIndex = currentRows;
+        if (currentCols != null) {
+            // 追加到源数据末尾（原始行号），排序或筛选时按当前规则显示
+            int newRowIndex = totalRowsFromSource();
             
             // 记录撤销重做操作
             TableOperation operation = new TableOperation(
@@ -1372,49 +1313,11 @@ public class NoteViewModel extends AndroidViewModel {
             );
             addToUndoStack(operation);
             
-            // 为冻结列添加新行（只有真正存在冻结列时才操作）
-            int firstFrozenColIndex = getFirstFrozenColumnIndex();
-            if (firstFrozenColIndex >= 0) {
-                List<Cell> frozenCells = _frozenColumnCells.getValue();
-                if (frozenCells != null) {
-                    Cell newFrozenCell = new Cell();
-                    newFrozenCell.setRowIndex(newRowIndex);
-                    newFrozenCell.setColIndex(firstFrozenColIndex);
-                    newFrozenCell.setContent("");
-                    frozenCells.add(newFrozenCell);
-                    _frozenColumnCells.postValue(frozenCells);
-                    
-                    // 同步维护源数据缓存
-                    Cell sourceFrozenCell = createCellCopy(newFrozenCell);
-                    sourceFrozenCells.add(sourceFrozenCell);
-                }
-            }
-            
-            // 为可滚动列添加新行（遍历所有列并跳过冻结列）
-            List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
-            if (scrollableCells != null) {
-                for (int col = 0; col < currentCols; col++) {
-                    if (isFrozenColumnIndex(col)) continue; // 跳过冻结列
-                    Cell newCell = new Cell();
-                    newCell.setRowIndex(newRowIndex);
-                    newCell.setColIndex(col);
-                    newCell.setContent("");
-                    scrollableCells.add(newCell);
-                    
-                    // 同步维护源数据缓存
-                    Cell sourceCell = createCellCopy(newCell);
-                    sourceScrollableCells.add(sourceCell);
-                }
-                _scrollableColumnsCells.postValue(scrollableCells);
+            insertSourceRow(newRowIndex, null);
+            if (editJournal != null) {
+                editJournal.appendInsertRow(newRowIndex);
             }
             
-            _rowCount.postValue(newRowIndex + 1);
-            
-            // 维护行顺序数组
-            insertKey(newRowIndex);
-            
-            markAsModified();
-            
             // 立即触发保存（延迟500ms避免频繁保存）
             triggerDelayedSave();
         }
@@ -1549,82 +1452,28 @@ public class NoteViewModel extends AndroidViewModel {
     
     /**
      * 在指定位置插入行
+     * @param position 显示位置，新行插在该位置当前显示的行之前
      */
     public void insertRowAt(int position) {
         Integer currentRows = _rowCount.getValue();
         Integer currentCols = _columnCount.getValue();
         
         if (currentRows != null && currentCols != null && position >= 0 && position <= currentRows) {
-            // 为冻结列插入新行
-            List<Cell> frozenCells = _frozenColumnCells.getValue();
-            if (frozenCells != null) {
-                // 更新插入位置之后的行索引
-                for (Cell cell : frozenCells) {
-                    if (cell.getRowIndex() >= position) {
-                        cell.setRowIndex(cell.getRowIndex() + 1);
-                    }
-                }
-                
-                // 插入新的冻结列单元格
-                Cell newFrozenCell = new Cell();
-                newFrozenCell.setRowIndex(position);
-                int firstFrozenColIndex = getFirstFrozenColumnIndex();
-                newFrozenCell.setColIndex(firstFrozenColIndex >= 0 ? firstFrozenColIndex : 0);
-                newFrozenCell.setContent("行" + position);
-                frozenCells.add(position, newFrozenCell);
-                _frozenColumnCells.postValue(frozenCells);
-                
-                // 同步维护源数据缓存
-                for (Cell cell : sourceFrozenCells) {
-                    if (cell.getRowIndex() >= position) {
-                        cell.setRowIndex(cell.getRowIndex() + 1);
-                    }
-                }
-                Cell sourceFrozenCell = createCellCopy(newFrozenCell);
-                sourceFrozenCells.add(position, sourceFrozenCell);
-            }
+            int originalRow = toOriginalRow(position);
             
-            // 为可滚动列插入新行
-            List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
-            if (scrollableCells != null) {
-                // 更新插入位置之后的行索引
-                for (Cell cell : scrollableCells) {
-                    if (cell.getRowIndex() >= position) {
-                        cell.setRowIndex(cell.getRowIndex() + 1);
-                    }
-                }
-                
-                // 插入新的可滚动列单元格
-                for (int col = 1; col < currentCols; col++) {
-                    Cell newCell = new Cell();
-                    newCell.setRowIndex(position);
-                    newCell.setColIndex(col);
-                    newCell.setContent("");
-                    scrollableCells.add(position * (currentCols - 1) + (col - 1), newCell);
-                }
-                _scrollableColumnsCells.postValue(scrollableCells);
-                
-                // 同步维护源数据缓存
-                for (Cell cell : sourceScrollableCells) {
-                    if (cell.getRowIndex() >= position) {
-                        cell.setRowIndex(cell.getRowIndex() + 1);
-                    }
-                }
-                for (int col = 1; col < currentCols; col++) {
-                    Cell sourceCell = new Cell();
-                    sourceCell.setRowIndex(position);
-                    sourceCell.setColIndex(col);
-                    sourceCell.setContent("");
-                    sourceScrollableCells.add(position * (currentCols - 1) + (col - 1), sourceCell);
-                }
-            }
-            
-            _rowCount.postValue(currentRows + 1);
-            
-            // 维护行顺序数组
-            insertKey(position);
+            // 冻结列（没有冻结列时为第一列）显示行标签
+            int firstFrozenColIndex = getFirstFrozenColumnIndex();
+            int labelCol = firstFrozenColIndex >= 0 ? firstFrozenColIndex : 0;
+            String label = "行" + position;
+            Cell labelCell = new Cell();
+            labelCell.setColIndex(labelCol);
+            labelCell.setContent(label);
             
-            markAsModified();
+            insertSourceRow(originalRow, Collections.singletonList(labelCell));
+            if (editJournal != null) {
+                editJournal.appendInsertRow(originalRow);
+                editJournal.appendSetCell(originalRow, labelCol, label);
+            }
         }
         Log.d(TAG, "Row inserted at position: " + position);
     }
@@ -1655,6 +1504,10 @@ public class NoteViewModel extends AndroidViewModel {
             
             currentColumns.add(position, newColumn);
             _columns.postValue(currentColumns);
+            if (editJournal != null) {
+                editJournal.appendInsertColumn(position, newColumn.getName());
+                editJournal.appendSetCell(0, position, "标题" + (position + 1));
+            }
             
             // 为新列添加单元格
             List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
@@ -1707,75 +1560,34 @@ public class NoteViewModel extends AndroidViewModel {
     
     /**
      * 删除指定位置的行
+     * @param position 显示位置
      */
     public void deleteRowAt(int position) {
         Integer currentRows = _rowCount.getValue();
         Integer currentCols = _columnCount.getValue();
         
-        if (currentRows != null && currentCols != null && position >= 0 && position < currentRows && currentRows > 1) {
+        if (currentRows != null && currentCols != null && position >= 0 && position < currentRows
+                && totalRowsFromSource() > 1) {
+            // 撤销记录和编辑日志都使用原始行号，排序/筛选变化后仍能定位到同一行
+            int originalRow = toOriginalRow(position);
+            
             // 快照要删除的行数据用于撤销
-            List<Cell> rowSnapshot = snapshotRow(position, currentCols);
+            List<Cell> rowSnapshot = snapshotRow(originalRow, currentCols);
             
             // 记录撤销重做操作
             TableOperation operation = new TableOperation(
                 TableOperation.OperationType.DELETE_ROW,
-                position,
+                originalRow,
                 null,
                 null
             );
             operation.setAffectedCells(rowSnapshot);
             addToUndoStack(operation);
             
-            // 删除冻结列中的行
-            List<Cell> frozenCells = _frozenColumnCells.getValue();
-            if (frozenCells != null) {
-                frozenCells.removeIf(cell -> cell.getRowIndex() == position);
-                
-                // 更新删除位置之后的行索引
-                for (Cell cell : frozenCells) {
-                    if (cell.getRowIndex() > position) {
-                        cell.setRowIndex(cell.getRowIndex() - 1);
-                    }
-                }
-                _frozenColumnCells.postValue(frozenCells);
-                
-                // 同步维护源数据缓存
-                sourceFrozenCells.removeIf(cell -> cell.getRowIndex() == position);
-                for (Cell cell : sourceFrozenCells) {
-                    if (cell.getRowIndex() > position) {
-                        cell.setRowIndex(cell.getRowIndex() - 1);
-                    }
-                }
-            }
-            
-            // 删除可滚动列中的行
-            List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
-            if (scrollableCells != null) {
-                scrollableCells.removeIf(cell -> cell.getRowIndex() == position);
-                
-                // 更新删除位置之后的行索引
-                for (Cell cell : scrollableCells) {
-                    if (cell.getRowIndex() > position) {
-                        cell.setRowIndex(cell.getRowIndex() - 1);
-                    }
-                }
-                _scrollableColumnsCells.postValue(scrollableCells);
-                
-                // 同步维护源数据缓存
-                sourceScrollableCells.removeIf(cell -> cell.getRowIndex() == position);
-                for (Cell cell : sourceScrollableCells) {
-                    if (cell.getRowIndex() > position) {
-                        cell.setRowIndex(cell.getRowIndex() - 1);
-                    }
-                }
+            deleteSourceRow(originalRow);
+            if (editJournal != null) {
+                editJournal.appendDeleteRow(originalRow);
             }
-            
-            _rowCount.postValue(currentRows - 1);
-            
-            // 维护行顺序数组
-            removeKey(position);
-            
-            markAsModified();
         }
         Log.d(TAG, "Row deleted at position: " + position);
     }
@@ -1789,7 +1601,7 @@ public class NoteViewModel extends AndroidViewModel {
         
         if (currentColumns != null && currentRows != null && position >= 0 && position < currentColumns.size() && currentColumns.size() > 1) {
             // 快照要删除的列数据用于撤销
-            List<Cell> columnSnapshot = snapshotColumn(position, currentRows);
+            List<Cell> columnSnapshot = snapshotColumn(position, totalRowsFromSource());
             Column deletedColumn = null;
             for (Column column : currentColumns) {
                 if (column.getColumnIndex() == position) {
@@ -1809,126 +1621,742 @@ public class NoteViewModel extends AndroidViewModel {
             operation.setAffectedColumn(deletedColumn);
             addToUndoStack(operation);
             
-            // 删除列定义
+            deleteSourceColumn(position);
+            if (editJournal != null) {
+                editJournal.appendDeleteColumn(position);
+            }
+        }
+        Log.d(TAG, "Column deleted at position: " + position);
+    }
+    
+    /**
+     * 显示行号转换为原始行号（源数据缓存、撤销记录和编辑日志使用的坐标）
+     * @param displayRow 显示行号，等于显示行数时表示追加到末尾
+     */
+    private int toOriginalRow(int displayRow) {
+        if (currentRowOrder == null) {
+            return displayRow;
+        }
+        if (displayRow >= 0 && displayRow < currentRowOrder.length) {
+            return currentRowOrder[displayRow];
+        }
+        return totalRowsFromSource();
+    }
+    
+    /**
+     * 在源数据缓存的原始行position处插入一行，其后的行顺延，然后按当前筛选和排序刷新显示
+     * @param rowCells 新行的单元格（按列索引取内容和样式），为null或缺少某列时该列为空
+     */
+    private void insertSourceRow(int position, @Nullable List<Cell> rowCells) {
+        for (Cell cell : sourceFrozenCells) {
+            if (cell.getRowIndex() >= position) {
+                cell.setRowIndex(cell.getRowIndex() + 1);
+            }
+        }
+        for (Cell cell : sourceScrollableCells) {
+            if (cell.getRowIndex() >= position) {
+                cell.setRowIndex(cell.getRowIndex() + 1);
+            }
+        }
+        
+        Map<Integer, Cell> cellsByCol = new HashMap<>();
+        if (rowCells != null) {
+            for (Cell cell : rowCells) {
+                cellsByCol.put(cell.getColIndex(), cell);
+            }
+        }
+        Notebook notebook = _currentNotebook.getValue();
+        int cols = Math.max(totalColsFromColumns(), cellsByCol.isEmpty() ? 0 : Collections.max(cellsByCol.keySet()) + 1);
+        for (int col = 0; col < cols; col++) {
+            Cell template = cellsByCol.get(col);
+            Cell cell = template != null ? createCellCopy(template) : new Cell();
+            if (template == null) {
+                cell.setContent("");
+            }
+            if (notebook != null) {
+                cell.setNotebookId(notebook.getId());
+            }
+            cell.setRowIndex(position);
+            cell.setColIndex(col);
+            if (isFrozenColumnIndex(col)) {
+                sourceFrozenCells.add(cell);
+            } else {
+                sourceScrollableCells.add(cell);
+            }
+        }
+        
+        refreshAfterSourceChange();
+    }
+    
+    /**
+     * 源数据缓存中原始行row、列col的单元格，没有时创建空白单元格加入缓存
+     * 显示网格中的空位只是占位对象，编辑必须落到源数据缓存中才会被整表保存写入数据库
+     */
+    private Cell sourceCellAt(int row, int col) {
+        List<Cell> sourceCells = isFrozenColumnIndex(col) ? sourceFrozenCells : sourceScrollableCells;
+        for (Cell cell : sourceCells) {
+            if (cell.getRowIndex() == row && cell.getColIndex() == col) {
+                return cell;
+            }
+        }
+        Notebook notebook = _currentNotebook.getValue();
+        Cell cell = new Cell(notebook != null ? notebook.getId() : 0, row, col, "");
+        sourceCells.add(cell);
+        return cell;
+    }
+    
+    /**
+     * 删除源数据缓存中原始行position，其后的行前移，然后按当前筛选和排序刷新显示
+     */
+    private void deleteSourceRow(int position) {
+        sourceFrozenCells.removeIf(cell -> cell.getRowIndex() == position);
+        sourceScrollableCells.removeIf(cell -> cell.getRowIndex() == position);
+        for (Cell cell : sourceFrozenCells) {
+            if (cell.getRowIndex() > position) {
+                cell.setRowIndex(cell.getRowIndex() - 1);
+            }
+        }
+        for (Cell cell : sourceScrollableCells) {
+            if (cell.getRowIndex() > position) {
+                cell.setRowIndex(cell.getRowIndex() - 1);
+            }
+        }
+        
+        refreshAfterSourceChange();
+    }
+    
+    /**
+     * 删除列定义和源数据缓存中该列的单元格，其后的列前移，然后刷新显示
+     */
+    private void deleteSourceColumn(int position) {
+        List<Column> currentColumns = _columns.getValue();
+        if (currentColumns != null) {
             currentColumns.removeIf(column -> column.getColumnIndex() == position);
-            
-            // 更新删除位置之后的列索引
             for (Column column : currentColumns) {
                 if (column.getColumnIndex() > position) {
                     column.setColumnIndex(column.getColumnIndex() - 1);
                 }
             }
-            _columns.postValue(currentColumns);
+            // 主线程直接setValue，刷新时按新的列定义构建网格
+            _columns.setValue(currentColumns);
+            _columnCount.setValue(currentColumns.size());
+        }
+        
+        sourceFrozenCells.removeIf(cell -> cell.getColIndex() == position);
+        sourceScrollableCells.removeIf(cell -> cell.getColIndex() == position);
+        for (Cell cell : sourceFrozenCells) {
+            if (cell.getColIndex() > position) {
+                cell.setColIndex(cell.getColIndex() - 1);
+            }
+        }
+        for (Cell cell : sourceScrollableCells) {
+            if (cell.getColIndex() > position) {
+                cell.setColIndex(cell.getColIndex() - 1);
+            }
+        }
+        
+        refreshAfterSourceChange();
+    }
+    
+    /**
+     * 源数据缓存结构变更后刷新显示（主线程调用）
+     */
+    private void refreshAfterSourceChange() {
+        // 同步标记为未保存：刷新时不会走读取数据库的SQL路径
+        _isSaved.setValue(false);
+        refreshViewRespectingFilterAndSort();
+    }
+    
+    // ==================== 撤销重做功能 ====================
+    
+    /**
+     * 打开笔记本对应的撤销日志（进程被杀后可继续撤销上次保存前的操作）
+     */
+    private void openUndoLog(long notebookId) {
+        CacheRegistry cacheRegistry = CacheRegistry.getInstance(getApplication());
+        if (undoLog != null) {
+            undoLog.persist();
+            cacheRegistry.unregister(undoLog);
+        }
+        undoLog = UndoLog.open(getApplication(), notebookId);
+        // 从磁盘预读到更早的记录后刷新撤销按钮
+        undoLog.setOnLoadedListener(this::updateUndoRedoState);
+        cacheRegistry.register(undoLog);
+        updateUndoRedoState();
+    }
+    
+    /**
+     * 将内存中的撤销记录落盘
+     */
+    private void persistUndoLog() {
+        if (undoLog != null) {
+            undoLog.persist();
+        }
+    }
+    
+    /**
+     * 在后台打开笔记本对应的编辑日志（校验和截掉残缺尾部都要读写文件），之前的日志先落盘再关闭；
+     * 完成后在主线程回调（主线程调用）
+     * @param savedSeq 数据库中已保存到的日志序号，序号不大于它的记录已包含在数据库中，不再重放
+     * @param onOpened 收到尚未写入数据库的记录，日志不可用时为空列表
+     */
+    private void openEditJournal(long notebookId, long savedSeq, Consumer<List<EditJournal.Entry>> onOpened) {
+        EditJournal previous = editJournal;
+        editJournal = null;
+        int generation = ++journalGeneration;
+        File file = EditJournal.fileFor(getApplication().getFilesDir(), notebookId);
+        journalExecutor.execute(() -> {
+            closeJournal(previous);
+            EditJournal journal = null;
+            List<EditJournal.Entry> pendingEdits = Collections.emptyList();
+            try {
+                journal = EditJournal.open(file);
+                // 日志被截断后重新打开时序号从已保存的位置续上
+                journal.advanceTo(savedSeq);
+                pendingEdits = journal.getRecoveredEntriesAfter(savedSeq);
+            } catch (IOException e) {
+                // 日志不可用时退回到逐格直接写库
+                Log.e(TAG, "Failed to open edit journal for notebook " + notebookId, e);
+            }
+            EditJournal opened = journal;
+            List<EditJournal.Entry> edits = pendingEdits;
+            mainHandler.post(() -> {
+                if (generation != journalGeneration) {
+                    // 期间又打开了其他笔记本或页面已关闭
+                    if (opened != null) {
+                        opened.close();
+                    }
+                    return;
+                }
+                editJournal = opened;
+                onOpened.accept(edits);
+            });
+        });
+    }
+    
+    /**
+     * 落盘并关闭日志（后台线程调用）
+     */
+    private static void closeJournal(@Nullable EditJournal journal) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to sync edit journal", e);
+        }
+        journal.close();
+    }
+    
+    /**
+     * 数据库保存成功后截断日志
+     */
+    private void truncateJournal(long journalMark) {
+        if (editJournal != null) {
+            editJournal.truncate(journalMark);
+        }
+    }
+    
+    /**
+     * 撤销/重做的结构变更写入编辑日志（单元格内容在updateCellValueInternal中记录）
+     * @param reverse true表示撤销，即记录操作的逆操作
+     */
+    private void journalStructuralChange(TableOperation operation, boolean reverse) {
+        if (editJournal == null) {
+            return;
+        }
+        int position = operation.getPosition();
+        switch (operation.getType()) {
+            case ADD_ROW:
+                if (reverse) {
+                    editJournal.appendDeleteRow(position);
+                } else {
+                    editJournal.appendInsertRow(position);
+                }
+                break;
+            case DELETE_ROW:
+                if (reverse) {
+                    editJournal.appendInsertRow(position);
+                    journalRestoredCells(operation.getAffectedCells(), position, -1);
+                } else {
+                    editJournal.appendDeleteRow(position);
+                }
+                break;
+            case ADD_COLUMN:
+                if (reverse) {
+                    editJournal.appendDeleteColumn(position);
+                } else {
+                    editJournal.appendInsertColumn(position, "列" + (position + 1));
+                }
+                break;
+            case DELETE_COLUMN:
+                if (reverse) {
+                    Column column = operation.getAffectedColumn();
+                    editJournal.appendInsertColumn(position, column != null ? column.getName() : null);
+                    journalRestoredCells(operation.getAffectedCells(), -1, position);
+                } else {
+                    editJournal.appendDeleteColumn(position);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * 恢复的行/列中非空单元格写入日志；row或col为-1时使用单元格自身的索引
+     */
+    private void journalRestoredCells(List<Cell> cells, int row, int col) {
+        if (cells == null) {
+            return;
+        }
+        for (Cell cell : cells) {
+            if (cell.getContent() != null && !cell.getContent().isEmpty()) {
+                editJournal.appendSetCell(row >= 0 ? row : cell.getRowIndex(),
+                        col >= 0 ? col : cell.getColIndex(), cell.getContent());
+            }
+        }
+    }
+    
+    /**
+     * 将日志中尚未写入数据库的编辑重放到源数据缓存
+     * @param entries 日志记录
+     * @param rows 数据库中的行数
+     * @return 重放后的行数
+     */
+    private int replayJournal(List<EditJournal.Entry> entries, int rows) {
+        List<Cell> allCells = new ArrayList<>(sourceFrozenCells);
+        allCells.addAll(sourceScrollableCells);
+        List<Column> currentColumns = _columns.getValue() != null ? _columns.getValue() : new ArrayList<>();
+        Notebook notebook = _currentNotebook.getValue();
+        long notebookId = notebook != null ? notebook.getId() : 0;
+        int[] rowCount = {rows};
+        
+        EditJournal.replay(entries, new EditJournal.Applier() {
+            @Override
+            public void setCell(int row, int col, String value) {
+                for (Cell cell : allCells) {
+                    if (cell.getRowIndex() == row && cell.getColIndex() == col) {
+                        cell.setContent(value);
+                        return;
+                    }
+                }
+                allCells.add(new Cell(notebookId, row, col, value));
+                rowCount[0] = Math.max(rowCount[0], row + 1);
+            }
             
-            // 删除可滚动列中的单元格
-            List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
-            if (scrollableCells != null) {
-                scrollableCells.removeIf(cell -> cell.getColIndex() == position);
-                
-                // 更新删除位置之后的列索引
-                for (Cell cell : scrollableCells) {
-                    if (cell.getColIndex() > position) {
-                        cell.setColIndex(cell.getColIndex() - 1);
+            @Override
+            public void insertRow(int row) {
+                for (Cell cell : allCells) {
+                    if (cell.getRowIndex() >= row) {
+                        cell.setRowIndex(cell.getRowIndex() + 1);
                     }
                 }
-                _scrollableColumnsCells.postValue(scrollableCells);
+                // 与insertSourceRow一致，每列放一个空单元格，末尾的空行也计入源数据行数
+                for (int col = 0; col < currentColumns.size(); col++) {
+                    allCells.add(new Cell(notebookId, row, col, ""));
+                }
+                rowCount[0]++;
             }
             
-            // 同步删除源缓存中的单元格
-            sourceScrollableCells.removeIf(cell -> cell.getColIndex() == position);
+            @Override
+            public void deleteRow(int row) {
+                allCells.removeIf(cell -> cell.getRowIndex() == row);
+                for (Cell cell : allCells) {
+                    if (cell.getRowIndex() > row) {
+                        cell.setRowIndex(cell.getRowIndex() - 1);
+                    }
+                }
+                rowCount[0] = Math.max(0, rowCount[0] - 1);
+            }
             
-            // 同步更新源缓存中删除位置之后的列索引
-            for (Cell cell : sourceScrollableCells) {
-                if (cell.getColIndex() > position) {
-                    cell.setColIndex(cell.getColIndex() - 1);
+            @Override
+            public void insertColumn(int col, String name) {
+                for (Column column : currentColumns) {
+                    if (column.getColumnIndex() >= col) {
+                        column.setColumnIndex(column.getColumnIndex() + 1);
+                    }
                 }
+                for (Cell cell : allCells) {
+                    if (cell.getColIndex() >= col) {
+                        cell.setColIndex(cell.getColIndex() + 1);
+                    }
+                }
+                Column column = new Column(notebookId, col, name != null ? name : "列" + (col + 1));
+                column.setWidth(150);
+                column.setType("TEXT");
+                column.setVisible(true);
+                column.setFrozen(false);
+                currentColumns.add(Math.min(col, currentColumns.size()), column);
             }
             
-            _columnCount.postValue(currentColumns.size());
-            markAsModified();
+            @Override
+            public void deleteColumn(int col) {
+                currentColumns.removeIf(column -> column.getColumnIndex() == col);
+                for (Column column : currentColumns) {
+                    if (column.getColumnIndex() > col) {
+                        column.setColumnIndex(column.getColumnIndex() - 1);
+                    }
+                }
+                allCells.removeIf(cell -> cell.getColIndex() == col);
+                for (Cell cell : allCells) {
+                    if (cell.getColIndex() > col) {
+                        cell.setColIndex(cell.getColIndex() - 1);
+                    }
+                }
+            }
+        });
+        
+        _columns.postValue(currentColumns);
+        
+        // 按冻结状态重新拆分源数据缓存
+        sourceFrozenCells = new ArrayList<>();
+        sourceScrollableCells = new ArrayList<>();
+        for (Cell cell : allCells) {
+            if (isFrozenColumnIndex(cell.getColIndex())) {
+                sourceFrozenCells.add(cell);
+            } else {
+                sourceScrollableCells.add(cell);
+            }
+        }
+        return rowCount[0];
+    }
+    
+    /**
+     * 添加操作到撤销栈（同一单元格的连续输入会被合并）
+     */
+    private void addToUndoStack(TableOperation operation) {
+        if (undoLog == null) {
+            return;
+        }
+        undoLog.record(operation);
+        updateUndoRedoState();
+    }
+    
+    /**
+     * 撤销操作
+     */
+    public void undo() {
+        if (undoLog == null) {
+            return;
+        }
+        TableOperation operation = undoLog.popUndo();
+        if (operation != null) {
+            executeUndoOperation(operation);
+            journalStructuralChange(operation, true);
+        }
+        updateUndoRedoState();
+    }
+    
+    /**
+     * 重做操作
+     */
+    public void redo() {
+        if (undoLog == null) {
+            return;
+        }
+        TableOperation operation = undoLog.popRedo();
+        if (operation != null) {
+            executeRedoOperation(operation);
+            journalStructuralChange(operation, false);
+        }
+        updateUndoRedoState();
+    }
+    
+
+    
+    /**
+     * 执行撤销操作
+     */
+    private void executeUndoOperation(TableOperation operation) {
+        switch (operation.getType()) {
+            case ADD_ROW:
+                // 撤销添加行：删除添加的那一行
+                deleteRowAtInternal(operation.getPosition());
+                break;
+            case DELETE_ROW:
+                // 撤销删除行：恢复行数据
+                if (operation.getAffectedCells() != null) {
+                    restoreRowData(operation.getPosition(), operation.getAffectedCells());
+                }
+                break;
+            case ADD_COLUMN:
+                // 撤销添加列：删除最后一列
+                deleteColumnAtInternal(operation.getPosition());
+                break;
+            case DELETE_COLUMN:
+                // 撤销删除列：恢复列数据
+                if (operation.getAffectedColumn() != null) {
+                    restoreColumnData(operation.getPosition(), operation.getAffectedColumn(), operation.getAffectedCells());
+                }
+                break;
+            case UPDATE_CELL:
+                // 撤销单元格更新：恢复旧值
+                updateCellValueInternal(operation.getPosition(), operation.getColumn(), (String) operation.getOldValue());
+                break;
+            case REPLACE_CELLS:
+                replayReplace(operation, true);
+                break;
+        }
+    }
+    
+    /**
+     * 执行重做操作
+     */
+    private void executeRedoOperation(TableOperation operation) {
+        switch (operation.getType()) {
+            case ADD_ROW:
+                addRowInternal(operation.getPosition());
+                break;
+            case DELETE_ROW:
+                deleteRowAtInternal(operation.getPosition());
+                break;
+            case ADD_COLUMN:
+                addColumnInternal();
+                break;
+            case DELETE_COLUMN:
+                deleteColumnAtInternal(operation.getPosition());
+                break;
+            case UPDATE_CELL:
+                updateCellValueInternal(operation.getPosition(), operation.getColumn(), (String) operation.getNewValue());
+                break;
+            case REPLACE_CELLS:
+                replayReplace(operation, false);
+                break;
+        }
+    }
+    
+
+    
+    // ==================== 批量替换 ====================
+    
+    /**
+     * 在范围内批量替换；先保存内存中的编辑，替换直接在数据库中分批执行，完成后重新加载。
+     * 整次替换生成一条撤销记录（跨笔记本时也是一条），撤销时恢复所有受影响的笔记本。
+     * @param task 取消句柄，取消前已提交的替换保留并可撤销
+     */
+    public void replaceAll(FindReplaceSpec spec, FindReplaceSpec.Scope scope, ReplaceRepository.ReplaceTask task,
+                           ReplaceRepository.ProgressListener listener,
+                           ReplaceRepository.RepositoryCallback<ReplaceResult> callback) {
+        Notebook notebook = _currentNotebook.getValue();
+        if (notebook == null) {
+            callback.onError(new IllegalStateException("没有打开的笔记"));
+            return;
+        }
+        long currentId = notebook.getId();
+        // 替换会整体写库，待执行的延迟保存由下面的保存取代
+        if (delayedSaveRunnable != null) {
+            delayedSaveHandler.removeCallbacks(delayedSaveRunnable);
+        }
+        bulkWriteInProgress = true;
+        saveNotebook(() -> replaceRepository.replaceAll(spec, scope, task, listener,
+                new ReplaceRepository.RepositoryCallback<ReplaceResult>() {
+                    @Override
+                    public void onSuccess(ReplaceResult result) {
+                        bulkWriteInProgress = false;
+                        recordReplace(spec, result);
+                        if (result.oldCells.containsKey(currentId)) {
+                            reloadData();
+                        }
+                        callback.onSuccess(result);
+                    }
+                    
+                    @Override
+                    public void onError(Exception error) {
+                        bulkWriteInProgress = false;
+                        _errorMessage.postValue("批量替换失败: " + error.getMessage());
+                        callback.onError(error);
+                    }
+                }));
+    }
+    
+    /**
+     * 当前视图是否有筛选或排序
+     */
+    public boolean hasViewQuery() {
+        return !activeFilters.isEmpty() || getSortedColumnDef() != null;
+    }
+    
+    /**
+     * 导出笔记本到用户选择的文档
+     * @param currentView true时按当前筛选/排序后的视图导出内存中的数据；否则先保存，再从数据库按原始行序流式导出
+     */
+    public void exportNotebook(Uri uri, ExportFormat format, boolean currentView, ExportRepository.ExportTask task,
+                               ExportRepository.ProgressListener listener,
+                               ExportRepository.RepositoryCallback<Integer> callback) {
+        Notebook notebook = _currentNotebook.getValue();
+        if (notebook == null) {
+            callback.onError(new IllegalStateException("没有打开的笔记"));
+            return;
+        }
+        ExportRepository.RepositoryCallback<Integer> wrapped = new ExportRepository.RepositoryCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer result) {
+                callback.onSuccess(result);
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                if (!(error instanceof CancellationException)) {
+                    _errorMessage.postValue("导出失败: " + error.getMessage());
+                }
+                callback.onError(error);
+            }
+        };
+        if (currentView) {
+            exportRepository.exportTable(createViewSource(), notebook.getTitle(), format, uri, task, listener, wrapped);
+        } else {
+            saveNotebook(() -> exportRepository.exportNotebook(notebook.getId(), format, uri, task, listener, wrapped));
         }
-        Log.d(TAG, "Column deleted at position: " + position);
     }
     
-    // ==================== 撤销重做功能 ====================
-    
     /**
-     * 添加操作到撤销栈
+     * 按当前显示顺序把可见行的单元格文本放进一个数组（只引用已有的字符串），交给后台线程导出
      */
-    private void addToUndoStack(TableOperation operation) {
-        undoStack.push(operation);
-        updateUndoRedoState();
+    private GridTableSource createViewSource() {
+        int rows = totalRowsFromSource();
+        int cols = totalColsFromColumns();
+        List<Column> cs = _columns.getValue();
+        List<String> names = new ArrayList<>(cols);
+        for (int c = 0; c < cols; c++) {
+            String name = cs != null && c < cs.size() ? cs.get(c).getName() : null;
+            names.add(name != null ? name : "");
+        }
+        // 原始行 -> 显示位置，不可见的行为-1
+        int[] position = new int[Math.max(rows, 0)];
+        Arrays.fill(position, -1);
+        int visible = 0;
+        if (currentRowOrder != null) {
+            for (int ori : currentRowOrder) {
+                if (ori >= 0 && ori < position.length && position[ori] < 0) {
+                    position[ori] = visible++;
+                }
+            }
+        } else {
+            for (int r = 0; r < position.length; r++) {
+                position[r] = visible++;
+            }
+        }
+        String[] contents = new String[visible * cols];
+        for (List<Cell> cells : Arrays.asList(sourceFrozenCells, sourceScrollableCells)) {
+            if (cells == null) {
+                continue;
+            }
+            for (Cell cell : cells) {
+                int r = cell.getRowIndex();
+                int c = cell.getColIndex();
+                if (r >= 0 && r < position.length && position[r] >= 0 && c >= 0 && c < cols) {
+                    contents[position[r] * cols + c] = cell.getContent();
+                }
+            }
+        }
+        return new GridTableSource(names, contents, visible);
     }
     
     /**
-     * 撤销操作
+     * 把一次批量替换记为一条撤销操作，覆盖所有被修改的笔记本，写入发起替换的笔记本的撤销日志
      */
-    public void undo() {
-        if (!undoStack.isEmpty()) {
-            TableOperation operation = undoStack.pop();
-            executeUndoOperation(operation);
-            updateUndoRedoState();
+    private void recordReplace(FindReplaceSpec spec, ReplaceResult result) {
+        List<Cell> oldCells = new ArrayList<>(result.replacedCells);
+        for (List<Cell> cells : result.oldCells.values()) {
+            oldCells.addAll(cells);
         }
+        if (oldCells.isEmpty()) {
+            return;
+        }
+        TableOperation operation = new TableOperation(
+                TableOperation.OperationType.REPLACE_CELLS, 0, result.operationId, spec.encode());
+        operation.setAffectedCells(oldCells);
+        addToUndoStack(operation);
+        persistUndoLog();
     }
     
-
-    
     /**
-     * 执行撤销操作
+     * 撤销/重做批量替换：先保存内存中的编辑，再直接改库；涉及当前笔记本时重新加载
+     * @param undo true写回旧值，false对旧值重新执行替换；两者都跳过替换后又被修改的单元格
      */
-    private void executeUndoOperation(TableOperation operation) {
-        switch (operation.getType()) {
-            case ADD_ROW:
-                // 撤销添加行：删除最后一行
-                deleteRowAtInternal(operation.getPosition());
-                break;
-            case DELETE_ROW:
-                // 撤销删除行：恢复行数据
-                if (operation.getAffectedCells() != null) {
-                    restoreRowData(operation.getPosition(), operation.getAffectedCells());
-                }
-                break;
-            case ADD_COLUMN:
-                // 撤销添加列：删除最后一列
-                deleteColumnAtInternal(operation.getPosition());
-                break;
-            case DELETE_COLUMN:
-                // 撤销删除列：恢复列数据
-                if (operation.getAffectedColumn() != null) {
-                    restoreColumnData(operation.getPosition(), operation.getAffectedColumn(), operation.getAffectedCells());
-                }
-                break;
-            case UPDATE_CELL:
-                // 撤销单元格更新：恢复旧值
-                updateCellValueInternal(operation.getPosition() / 1000, operation.getPosition() % 1000, (String) operation.getOldValue());
+    private void replayReplace(TableOperation operation, boolean undo) {
+        Notebook notebook = _currentNotebook.getValue();
+        List<Cell> oldCells = operation.getAffectedCells();
+        if (notebook == null || oldCells == null || oldCells.isEmpty()) {
+            return;
+        }
+        long currentId = notebook.getId();
+        boolean touchesCurrent = false;
+        for (Cell cell : oldCells) {
+            if (cell.getNotebookId() == currentId) {
+                touchesCurrent = true;
                 break;
+            }
         }
+        boolean reloadCurrent = touchesCurrent;
+        String operationId = (String) operation.getOldValue();
+        FindReplaceSpec spec = FindReplaceSpec.decode((String) operation.getNewValue());
+        bulkWriteInProgress = true;
+        ReplaceRepository.RepositoryCallback<Integer> reload = new ReplaceRepository.RepositoryCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer written) {
+                bulkWriteInProgress = false;
+                if (reloadCurrent) {
+                    reloadData();
+                }
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                bulkWriteInProgress = false;
+                _errorMessage.postValue((undo ? "撤销" : "重做") + "批量替换失败: " + error.getMessage());
+            }
+        };
+        saveNotebook(() -> {
+            if (undo) {
+                replaceRepository.restoreContents(operationId, spec, oldCells, reload);
+            } else {
+                replaceRepository.reapply(operationId, spec, oldCells, reload);
+            }
+        });
     }
     
-
-    
     /**
      * 更新撤销状态
      */
     private void updateUndoRedoState() {
-        _canUndo.postValue(!undoStack.isEmpty());
+        _canUndo.postValue(undoLog != null && undoLog.canUndo());
+        _canRedo.postValue(undoLog != null && undoLog.canRedo());
     }
     
     /**
      * 内部更新单元格值方法（不记录操作历史）
+     * @param originalRow 原始行号
+     * @param col 列号
      */
-    private void updateCellValueInternal(int row, int col, String value) {
+    private void updateCellValueInternal(int originalRow, int col, String value) {
         Notebook currentNotebook = _currentNotebook.getValue();
         if (currentNotebook == null) {
             return;
         }
         
-        // 更新内存中的数据
+        // 原始行号映射为当前显示行号
+        int displayRow = originalRow;
+        if (currentRowOrder != null) {
+            for (int i = 0; i < currentRowOrder.length; i++) {
+                if (currentRowOrder[i] == originalRow) {
+                    displayRow = i;
+                    break;
+                }
+            }
+        }
+        
+        // 更新源数据缓存
+        sourceCellAt(originalRow, col).setContent(value);
+        
+        // 更新内存中的显示数据
         if (isFrozenColumnIndex(col)) {
             List<Cell> frozenCells = _frozenColumnCells.getValue();
             if (frozenCells != null) {
                 for (Cell cell : frozenCells) {
-                    if (cell.getRowIndex() == row && cell.getColIndex() == col) {
+                    if (cell.getRowIndex() == displayRow && cell.getColIndex() == col) {
                         cell.setContent(value);
                         break;
                     }
@@ -1939,7 +2367,7 @@ public class NoteViewModel extends AndroidViewModel {
             List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
             if (scrollableCells != null) {
                 for (Cell cell : scrollableCells) {
-                    if (cell.getRowIndex() == row && cell.getColIndex() == col) {
+                    if (cell.getRowIndex() == displayRow && cell.getColIndex() == col) {
                         cell.setContent(value);
                         break;
                     }
@@ -1948,46 +2376,33 @@ public class NoteViewModel extends AndroidViewModel {
             }
         }
         
+        // 与普通编辑一致：优先记入日志，由自动保存写库
+        if (editJournal != null) {
+            editJournal.appendSetCell(originalRow, col, value);
+        } else {
+            cellRepository.updateCellContent(currentNotebook.getId(), originalRow, col, value, new CellRepository.RepositoryCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                    notebookRepository.touchNotebook(currentNotebook.getId());
+                }
+                
+                @Override
+                public void onError(Exception e) {
+                    Log.e(TAG, "Failed to save cell from history: (" + originalRow + ", " + col + ")", e);
+                }
+            });
+        }
+        
         markAsModified();
     }
     
     /**
      * 内部添加行方法（不记录操作历史）
+     * @param position 原始行号
      */
-    private void addRowInternal() {
-        Integer currentRows = _rowCount.getValue();
-        Integer currentCols = _columnCount.getValue();
-        
-        if (currentRows != null && currentCols != null) {
-            int newRowIndex = currentRows;
-            
-            // 为冻结列添加新行
-            List<Cell> frozenCells = _frozenColumnCells.getValue();
-            if (frozenCells != null) {
-                Cell newFrozenCell = new Cell();
-                newFrozenCell.setRowIndex(newRowIndex);
-                int firstFrozenColIndex = getFirstFrozenColumnIndex();
-                newFrozenCell.setColIndex(firstFrozenColIndex >= 0 ? firstFrozenColIndex : 0);
-                newFrozenCell.setContent("");
-                frozenCells.add(newFrozenCell);
-                _frozenColumnCells.postValue(frozenCells);
-            }
-            
-            // 为可滚动列添加新行
-            List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
-            if (scrollableCells != null) {
-                for (int col = 1; col < currentCols; col++) {
-                    Cell newCell = new Cell();
-                    newCell.setRowIndex(newRowIndex);
-                    newCell.setColIndex(col);
-                    newCell.setContent("");
-                    scrollableCells.add(newCell);
-                }
-                _scrollableColumnsCells.postValue(scrollableCells);
-            }
-            
-            _rowCount.postValue(newRowIndex + 1);
-            markAsModified();
+    private void addRowInternal(int position) {
+        if (position >= 0 && position <= totalRowsFromSource()) {
+            insertSourceRow(position, null);
         }
     }
     
@@ -2009,61 +2424,26 @@ public class NoteViewModel extends AndroidViewModel {
             newColumn.setFrozen(false);
             
             currentColumns.add(newColumn);
-            _columns.postValue(currentColumns);
+            _columns.setValue(currentColumns);
+            _columnCount.setValue(currentColumns.size());
             
-            // 为新列添加单元格
-            List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
-            if (scrollableCells != null) {
-                for (int row = 0; row < currentRows; row++) {
-                    Cell newCell = new Cell();
-                    newCell.setRowIndex(row);
-                    newCell.setColIndex(newColIndex);
-                    newCell.setContent("");
-                    scrollableCells.add(newCell);
-                }
-                _scrollableColumnsCells.postValue(scrollableCells);
+            // 新列的空单元格加入源数据缓存，之后的编辑才会随整表保存写入数据库
+            int rows = totalRowsFromSource();
+            for (int row = 0; row < rows; row++) {
+                sourceCellAt(row, newColIndex);
             }
-            
-            _columnCount.postValue(currentColumns.size());
-            markAsModified();
+            refreshAfterSourceChange();
         }
     }
     
     /**
      * 内部删除行方法（不记录操作历史）
+     * @param position 原始行号
      */
     private void deleteRowAtInternal(int position) {
-        Integer currentRows = _rowCount.getValue();
-        if (currentRows != null && position >= 0 && position < currentRows && currentRows > 1) {
-            // 删除冻结列中的行
-            List<Cell> frozenCells = _frozenColumnCells.getValue();
-            if (frozenCells != null) {
-                frozenCells.removeIf(cell -> cell.getRowIndex() == position);
-                
-                // 更新删除位置之后的行索引
-                for (Cell cell : frozenCells) {
-                    if (cell.getRowIndex() > position) {
-                        cell.setRowIndex(cell.getRowIndex() - 1);
-                    }
-                }
-                _frozenColumnCells.postValue(frozenCells);
-            }
-            
-            // 删除可滚动列中的行
-            List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
-            if (scrollableCells != null) {
-                scrollableCells.removeIf(cell -> cell.getRowIndex() == position);
-                
-                // 更新删除位置之后的行索引
-                for (Cell cell : scrollableCells) {
-                    if (cell.getRowIndex() > position) {
-                        cell.setRowIndex(cell.getRowIndex() - 1);
-                    }
-                }
-                _scrollableColumnsCells.postValue(scrollableCells);
-            }
-            
-            _rowCount.postValue(currentRows - 1);
+        int totalRows = totalRowsFromSource();
+        if (position >= 0 && position < totalRows && totalRows > 1) {
+            deleteSourceRow(position);
         }
     }
     
@@ -2073,32 +2453,7 @@ public class NoteViewModel extends AndroidViewModel {
     private void deleteColumnAtInternal(int position) {
         List<Column> currentColumns = _columns.getValue();
         if (currentColumns != null && position >= 0 && position < currentColumns.size() && currentColumns.size() > 1) {
-            // 删除列定义
-            currentColumns.removeIf(column -> column.getColumnIndex() == position);
-            
-            // 更新删除位置之后的列索引
-            for (Column column : currentColumns) {
-                if (column.getColumnIndex() > position) {
-                    column.setColumnIndex(column.getColumnIndex() - 1);
-                }
-            }
-            _columns.postValue(currentColumns);
-            
-            // 删除可滚动列中的单元格
-            List<Cell> scrollableCells = _scrollableColumnsCells.getValue();
-            if (scrollableCells != null) {
-                scrollableCells.removeIf(cell -> cell.getColIndex() == position);
-                
-                // 更新删除位置之后的列索引
-                for (Cell cell : scrollableCells) {
-                    if (cell.getColIndex() > position) {
-                        cell.setColIndex(cell.getColIndex() - 1);
-                    }
-                }
-                _scrollableColumnsCells.postValue(scrollableCells);
-            }
-            
-            _columnCount.postValue(currentColumns.size());
+            deleteSourceColumn(position);
         }
     }
     
@@ -2201,53 +2556,14 @@ public class NoteViewModel extends AndroidViewModel {
     
     /**
      * 恢复行数据
-     * @param position 插入位置
+     * @param position 插入位置（原始行号）
      * @param rowCells 要恢复的行单元格数据
      */
     private void restoreRowData(int position, List<Cell> rowCells) {
         if (rowCells == null || rowCells.isEmpty()) {
             return;
         }
-        
-        Integer currentRows = _rowCount.getValue();
-        Integer currentCols = _columnCount.getValue();
-        if (currentRows == null || currentCols == null) {
-            return;
-        }
-        
-        // 更新插入位置之后的行索引
-        for (Cell cell : sourceFrozenCells) {
-            if (cell.getRowIndex() >= position) {
-                cell.setRowIndex(cell.getRowIndex() + 1);
-            }
-        }
-        for (Cell cell : sourceScrollableCells) {
-            if (cell.getRowIndex() >= position) {
-                cell.setRowIndex(cell.getRowIndex() + 1);
-            }
-        }
-        
-        // 插入恢复的单元格到源数据缓存
-        for (Cell cell : rowCells) {
-            Cell restoredCell = createCellCopy(cell);
-            restoredCell.setRowIndex(position);
-            
-            if (isFrozenColumnIndex(restoredCell.getColIndex())) {
-                sourceFrozenCells.add(restoredCell);
-            } else {
-                sourceScrollableCells.add(restoredCell);
-            }
-        }
-        
-        // 更新行数
-        _rowCount.postValue(currentRows + 1);
-        
-        // 维护行顺序数组
-        insertKey(position);
-        
-        // 刷新视图
-        refreshViewRespectingFilterAndSort();
-        markAsModified();
+        insertSourceRow(position, rowCells);
     }
     
     /**
@@ -2511,11 +2827,11 @@ public class NoteViewModel extends AndroidViewModel {
         
         // 使用原始行号进行数据库操作
         cellRepository.updateCellFormat(notebook.getId(), originalRow, col, textColor, backgroundColor, 
-                                      isBold, isItalic, textSize, textAlignment, new CellRepository.RepositoryCallback<Void>() {
+                                      isBold, isItalic, textSize, textAlignment, new CellRepository.RepositoryCallback<Long>() {
             @Override
-            public void onSuccess(Void result) {
+            public void onSuccess(Long styleId) {
                 // 更新本地数据（使用显示行号）
-                updateLocalCellStyle(row, col, textColor, backgroundColor, isBold, isItalic, textSize, textAlignment);
+                updateLocalCellStyle(row, col, styleId);
                 markAsModified();
             }
             
@@ -2529,19 +2845,13 @@ public class NoteViewModel extends AndroidViewModel {
     /**
      * 更新本地单元格样式数据
      */
-    private void updateLocalCellStyle(int row, int col, String textColor, String backgroundColor, 
-                                     boolean isBold, boolean isItalic, int textSize, String textAlignment) {
+    private void updateLocalCellStyle(int row, int col, long styleId) {
         // 更新冻结列单元格
         List<Cell> frozenCells = _frozenColumnCells.getValue();
         if (frozenCells != null) {
             for (Cell cell : frozenCells) {
                 if (cell.getRowIndex() == row && cell.getColIndex() == col) {
-                    cell.setTextColor(textColor);
-                    cell.setBackgroundColor(backgroundColor);
-                    cell.setBold(isBold);
-                    cell.setItalic(isItalic);
-                    cell.setTextSize(textSize);
-                    cell.setTextAlignment(textAlignment);
+                    cell.setStyleId(styleId);
                     break;
                 }
             }
@@ -2553,12 +2863,7 @@ public class NoteViewModel extends AndroidViewModel {
         if (scrollableCells != null) {
             for (Cell cell : scrollableCells) {
                 if (cell.getRowIndex() == row && cell.getColIndex() == col) {
-                    cell.setTextColor(textColor);
-                    cell.setBackgroundColor(backgroundColor);
-                    cell.setBold(isBold);
-                    cell.setItalic(isItalic);
-                    cell.setTextSize(textSize);
-                    cell.setTextAlignment(textAlignment);
+                    cell.setStyleId(styleId);
                     break;
                 }
             }
@@ -2612,9 +2917,9 @@ public class NoteViewModel extends AndroidViewModel {
      * 否则只显示选中值对应的行
      */
     public void filterByColumnValues(int columnIndex, Set<String> selectedValues) {
-        // 1) 空集合或"全选" => 清除筛选
+        // 1) 空集合或"全选" => 清除该列的筛选
         if (selectedValues == null || selectedValues.isEmpty()) {
-            activeVisibleRows = null;
+            activeFilters.remove(columnIndex);
             refreshViewRespectingFilterAndSort();
             return;
         }
@@ -2630,22 +2935,12 @@ public class NoteViewModel extends AndroidViewModel {
             }
         }
         if (selectedValues.containsAll(allColumnValues)) {
-            activeVisibleRows = null;
-            refreshViewRespectingFilterAndSort();
-            return;
-        }
-
-        // 3) 求可见的"原始行索引"
-        Set<Integer> valid = new HashSet<>();
-        for (Cell cell : allSourceCells) {
-            if (cell.getColIndex() == columnIndex) {
-                String v = cell.getContent() != null ? cell.getContent() : "";
-                if (selectedValues.contains(v)) valid.add(cell.getRowIndex());
-            }
+            activeFilters.remove(columnIndex);
+        } else {
+            activeFilters.put(columnIndex, RowQuery.Filter.valueIn(columnIndex, selectedValues));
         }
 
-        // 4) 记录为状态 + 渲染（排序会在渲染阶段应用）
-        activeVisibleRows = new ArrayList<>(valid);
+        // 3) 渲染（与其他列的筛选组合，排序在渲染阶段应用）
         refreshViewRespectingFilterAndSort();
     }
 
@@ -2665,49 +2960,26 @@ public class NoteViewModel extends AndroidViewModel {
     
     /**
      * 按列筛选（带数值范围）
+     * @param filterType text_contains、boolean、number_range、date_range（min/max为距1970-01-01的天数），空字符串清除该列筛选
      */
     public void filterByColumn(int columnIndex, String filterType, String filterValue, double minValue, double maxValue) {
-        Notebook notebook = _currentNotebook.getValue();
-        if (notebook == null) {
-            return;
+        RowQuery.Filter filter = null;
+        if ("text_contains".equals(filterType)) {
+            filter = filterValue != null && !filterValue.isEmpty()
+                    ? RowQuery.Filter.contains(columnIndex, filterValue) : null;
+        } else if ("boolean".equals(filterType)) {
+            filter = RowQuery.Filter.equalTo(columnIndex, filterValue);
+        } else if ("number_range".equals(filterType)) {
+            filter = RowQuery.Filter.numberBetween(columnIndex, minValue, maxValue);
+        } else if ("date_range".equals(filterType)) {
+            filter = RowQuery.Filter.dateBetween(columnIndex, (long) Math.ceil(minValue), (long) Math.floor(maxValue));
+        }
+        if (filter != null) {
+            activeFilters.put(columnIndex, filter);
+        } else {
+            activeFilters.remove(columnIndex);
         }
-        
-        // 使用Repository中的筛选方法，返回LiveData
-        LiveData<List<Cell>> filteredCells = cellRepository.getCellsByColumnWithFilter(
-            notebook.getId(), columnIndex, filterType, filterValue, minValue, maxValue, "ASC");
-            
-        // 观察筛选结果
-        filteredCells.observeForever(new Observer<List<Cell>>() {
-            @Override
-            public void onChanged(List<Cell> result) {
-                if (result != null) {
-                    // 分离冻结列和可滚动列
-                    List<Cell> newFrozenCells = new ArrayList<>();
-                    List<Cell> newScrollableCells = new ArrayList<>();
-                    
-                    for (Cell cell : result) {
-                        if (isFrozenColumnIndex(cell.getColIndex())) {
-                            newFrozenCells.add(cell);
-                        } else {
-                            newScrollableCells.add(cell);
-                        }
-                    }
-                    
-                    _frozenColumnCells.postValue(newFrozenCells);
-                    _scrollableColumnsCells.postValue(newScrollableCells);
-                    
-                    // 更新行数
-                    int maxRow = 0;
-                    for (Cell cell : result) {
-                        maxRow = Math.max(maxRow, cell.getRowIndex());
-                    }
-                    _rowCount.postValue(maxRow + 1);
-                }
-                
-                // 移除观察者避免内存泄漏
-                filteredCells.removeObserver(this);
-            }
-        });
+        refreshViewRespectingFilterAndSort();
     }
     
     /**
@@ -2716,89 +2988,12 @@ public class NoteViewModel extends AndroidViewModel {
     public void reloadData() {
         Notebook notebook = _currentNotebook.getValue();
         if (notebook != null) {
-            loadCellData(notebook.getId());
+            loadNotebook(notebook.getId());
         }
     }
     
     // ========== 行维护辅助方法 ==========
     
-    /**
-     * 获取下一个原始行键值
-     */
-    private int nextOriginalKey() {
-        if (originalRowOrder == null || originalRowOrder.length == 0) {
-            return 0;
-        }
-        int max = originalRowOrder[0];
-        for (int key : originalRowOrder) {
-            max = Math.max(max, key);
-        }
-        return max + 1;
-    }
-    
-    /**
-     * 在指定位置插入新行，维护行顺序数组
-     * @param insertPosition 插入位置（显示位置）
-     */
-    private void insertKey(int insertPosition) {
-        if (originalRowOrder == null || currentRowOrder == null) {
-            return;
-        }
-        
-        int newKey = nextOriginalKey();
-        int[] newOriginal = new int[originalRowOrder.length + 1];
-        int[] newCurrent = new int[currentRowOrder.length + 1];
-        
-        // 复制原始数组
-        System.arraycopy(originalRowOrder, 0, newOriginal, 0, originalRowOrder.length);
-        newOriginal[originalRowOrder.length] = newKey;
-        
-        // 在当前顺序中插入新键
-        for (int i = 0; i < insertPosition; i++) {
-            newCurrent[i] = currentRowOrder[i];
-        }
-        newCurrent[insertPosition] = newKey;
-        for (int i = insertPosition; i < currentRowOrder.length; i++) {
-            newCurrent[i + 1] = currentRowOrder[i];
-        }
-        
-        originalRowOrder = newOriginal;
-        currentRowOrder = newCurrent;
-    }
-    
-    /**
-     * 删除指定位置的行，维护行顺序数组
-     * @param removePosition 删除位置（显示位置）
-     */
-    private void removeKey(int removePosition) {
-        if (currentRowOrder == null || removePosition < 0 || removePosition >= currentRowOrder.length) {
-            return;
-        }
-        
-        int removedKey = currentRowOrder[removePosition];
-        
-        // 从originalRowOrder中移除
-        int[] newOriginal = new int[originalRowOrder.length - 1];
-        int originalIndex = 0;
-        for (int key : originalRowOrder) {
-            if (key != removedKey) {
-                newOriginal[originalIndex++] = key;
-            }
-        }
-        
-        // 从currentRowOrder中移除
-        int[] newCurrent = new int[currentRowOrder.length - 1];
-        int currentIndex = 0;
-        for (int i = 0; i < currentRowOrder.length; i++) {
-            if (i != removePosition) {
-                newCurrent[currentIndex++] = currentRowOrder[i];
-            }
-        }
-        
-        originalRowOrder = newOriginal;
-        currentRowOrder = newCurrent;
-    }
-    
     /**
      * 深拷贝单元格列表
      * @param source 源单元格列表
@@ -2970,7 +3165,7 @@ public class NoteViewModel extends AndroidViewModel {
      * 清除筛选
      */
     public void clearFilter() {
-        activeVisibleRows = null;
+        activeFilters.clear();
         refreshViewRespectingFilterAndSort();
     }
     
@@ -3038,5 +3233,22 @@ public class NoteViewModel extends AndroidViewModel {
         Float currentOffsetY = _offsetY.getValue();
         return currentOffsetY != null ? currentOffsetY : 0f;
     }
+    
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        // 离开编辑页时把撤销历史落盘，下次打开同一笔记本可继续撤销
+        persistUndoLog();
+        if (undoLog != null) {
+            CacheRegistry.getInstance(getApplication()).unregister(undoLog);
+        }
+        // 未保存的编辑留在日志中，下次打开时重放
+        journalGeneration++;
+        if (editJournal != null) {
+            editJournal.close();
+            editJournal = null;
+        }
+        journalExecutor.shutdown();
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.example.note.ui.note;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 笔记本打开耗时统计
+ * 从列表点击发出Intent开始计时，记录各阶段耗时，表格首帧绘制后输出汇总并调用reportFullyDrawn
+ */
+class OpenTimeTracker {
+
+    private static final String TAG = "OpenTime";
+
+    private final long startUptime;
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+    private boolean finished = false;
+
+    /**
+     * @param startUptime Intent发出时的SystemClock.uptimeMillis()
+     */
+    OpenTimeTracker(long startUptime) {
+        this.startUptime = startUptime;
+    }
+
+    /**
+     * 记录一个阶段完成的时间点
+     */
+    void mark(String stage) {
+        if (!finished && !marks.containsKey(stage)) {
+            marks.put(stage, SystemClock.uptimeMillis() - startUptime);
+        }
+    }
+
+    /**
+     * 在view下一次绘制时结束统计
+     */
+    void finishOnNextDraw(Activity activity, View view) {
+        if (finished) {
+            return;
+        }
+        ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                long total = SystemClock.uptimeMillis() - startUptime;
+                // onDraw期间不能移除监听，延后到下一轮消息
+                view.post(() -> view.getViewTreeObserver().removeOnDrawListener(this));
+                activity.reportFullyDrawn();
+                Log.i(TAG, "Notebook opened in " + total + "ms " + marks);
+            }
+        };
+        view.getViewTreeObserver().addOnDrawListener(listener);
+        view.invalidate();
+    }
+}
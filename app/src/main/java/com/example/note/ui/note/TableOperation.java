@@ -19,11 +19,15 @@ public class TableOperation {
         UPDATE_CELL,
         UPDATE_COLUMN,
         SORT_COLUMN,
-        FILTER_COLUMN
+        FILTER_COLUMN,
+        // 批量替换：一次替换一条记录，oldValue为操作id，affectedCells为所有笔记本中被替换单元格的旧值（带笔记本id），
+        // newValue为编码后的FindReplaceSpec（撤销日志按序号存储，只能追加）
+        REPLACE_CELLS
     }
     
     private OperationType type;
     private int position;
+    private int column = -1; // UPDATE_CELL 使用：position为原始行号，column为列号
     private Object oldValue;
     private Object newValue;
     private List<Cell> affectedCells;
@@ -44,6 +48,11 @@ public class TableOperation {
         this.timestamp = System.currentTimeMillis();
     }
     
+    public TableOperation(OperationType type, int row, int column, Object oldValue, Object newValue) {
+        this(type, row, oldValue, newValue);
+        this.column = column;
+    }
+    
     // Getters and Setters
     public OperationType getType() {
         return type;
@@ -61,6 +70,14 @@ public class TableOperation {
         this.position = position;
     }
     
+    public int getColumn() {
+        return column;
+    }
+    
+    public void setColumn(int column) {
+        this.column = column;
+    }
+    
     public Object getOldValue() {
         return oldValue;
     }
@@ -106,6 +123,7 @@ public class TableOperation {
         return "TableOperation{" +
                 "type=" + type +
                 ", position=" + position +
+                ", column=" + column +
                 ", timestamp=" + timestamp +
                 '}';
     }
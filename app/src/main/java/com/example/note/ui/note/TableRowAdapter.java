@@ -29,6 +29,7 @@ public class TableRowAdapter extends RecyclerView.Adapter<TableRowAdapter.TableR
     private DataCellAdapter.OnCellChangeListener cellChangeListener;
     private ColumnWidthProvider widthProvider;
     private int globalHorizontalOffset = 0;
+    private DataCellAdapter.CellHighlighter cellHighlighter;
     
     // 锚点缓存字段
     private int anchorFirstColIndex = 0;
@@ -77,6 +78,24 @@ public class TableRowAdapter extends RecyclerView.Adapter<TableRowAdapter.TableR
         this.widthProvider = widthProvider;
     }
     
+    /**
+     * 设置单元格高亮；高亮结果变化后调用refreshHighlight刷新
+     */
+    public void setCellHighlighter(DataCellAdapter.CellHighlighter highlighter) {
+        this.cellHighlighter = highlighter;
+    }
+    
+    /**
+     * 重新绑定指定行以刷新高亮，row<0表示全部行
+     */
+    public void refreshHighlight(int rowIndex) {
+        if (rowIndex < 0) {
+            notifyItemRangeChanged(0, rowCount);
+        } else if (rowIndex < rowCount) {
+            notifyItemChanged(rowIndex);
+        }
+    }
+    
     public void updateColumnWidth(int columnIndex, float widthDp) {
         if (columnIndex >= 0 && columnIndex < columns.size()) {
             columns.get(columnIndex).setWidth(widthDp);
@@ -404,6 +423,7 @@ public class TableRowAdapter extends RecyclerView.Adapter<TableRowAdapter.TableR
             itemView.setLayoutParams(layoutParams);
             
             // 更新适配器数据
+            dataCellAdapter.setCellHighlighter(cellHighlighter);
             dataCellAdapter.setRowData(rowIndex, rowCells, columns);
             dataCellAdapter.setRowHeight(rowHeightDp);
             
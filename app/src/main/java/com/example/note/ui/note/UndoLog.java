@@ -0,0 +1,719 @@
+package com.example.note.ui.note;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.note.data.cache.CacheRegistry;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Column;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 撤销重做日志
+ * 操作以紧凑的二进制记录保存在内存中，超过内存上限后把最旧的记录溢出到
+ * 每个笔记本一个的追加写文件，进程被杀后可从该文件继续撤销。
+ * 落盘后内存中仍保留最近的一段记录（与文件尾部相同），撤销到所剩不多时在后台
+ * 预读文件中更早的一批，撤销本身不等待磁盘。
+ *
+ * 文件格式：[MAGIC][VERSION] 之后是若干条 [len][payload][len] 记录，
+ * 尾部长度用于从文件末尾反向弹出记录。
+ */
+public class UndoLog implements CacheRegistry.TrimmableCache {
+
+    private static final String TAG = "UndoLog";
+    private static final String UNDO_DIR = "undo";
+    private static final int MAGIC = 0x554E444F; // "UNDO"
+    private static final byte VERSION = 2;
+    private static final int HEADER_SIZE = 5;
+
+    // 内存中撤销记录的字节上限，超过后溢出到磁盘
+    private static final int MAX_MEMORY_BYTES = 256 * 1024;
+    // 落盘后内存中保留的已落盘记录的字节上限
+    private static final int MAX_TAIL_BYTES = 64 * 1024;
+    // 内存中剩余记录不多于此数时预读下一批
+    private static final int PREFETCH_LOW_WATER = 8;
+    // 每次预读的字节上限
+    private static final int PREFETCH_BYTES = 64 * 1024;
+    // 重做栈的字节上限，超过后丢弃最远的重做记录
+    private static final int MAX_REDO_BYTES = 256 * 1024;
+    // 同一单元格连续输入的合并窗口
+    private static final long COALESCE_WINDOW_MS = 1500;
+
+    // 单元格字段标志位：非默认样式（记录cell_styles的id）、有图片、带笔记本id（跨笔记本的批量替换）
+    private static final int FLAG_STYLE = 1;
+    private static final int FLAG_IMAGE = 1 << 1;
+    private static final int FLAG_NOTEBOOK = 1 << 2;
+
+    private static final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    private final File file;
+    // 队尾为最新；队首的mirroredCount条同时也是文件尾部的记录
+    private final Deque<byte[]> undoRecords = new ArrayDeque<>();
+    private final Deque<byte[]> redoRecords = new ArrayDeque<>();  // 队尾为最新
+    private int undoBytes = 0;
+    private int redoBytes = 0;
+    // 撤销时命中内存记录/需要从磁盘读取的次数
+    private long memoryPops = 0;
+    private long diskPops = 0;
+
+    // 文件中的记录数，按提交到ioExecutor的顺序计算（包括尚未执行的写入和截断）
+    private int diskRecordCount = 0;
+    // 内存队首中同时在文件尾部的记录数
+    private int mirroredCount = 0;
+    // 正在预读时为true；clear后递增generation使进行中的预读作废
+    private boolean loading = true;
+    private int generation = 0;
+    private Runnable onLoadedListener;
+
+    // 最近一次记录的单元格编辑，用于合并连续输入
+    private TableOperation lastCellEdit;
+
+    UndoLog(File file) {
+        this.file = file;
+        ioExecutor.execute(this::recoverFile);
+    }
+
+    /**
+     * 从磁盘预读完成后回调（在后台线程），用于刷新撤销按钮状态
+     */
+    public synchronized void setOnLoadedListener(Runnable listener) {
+        this.onLoadedListener = listener;
+    }
+
+    /**
+     * 打开指定笔记本的撤销日志
+     */
+    public static UndoLog open(Context context, long notebookId) {
+        return new UndoLog(getLogFile(context, notebookId));
+    }
+
+    /**
+     * 删除指定笔记本的撤销日志文件
+     */
+    public static void delete(Context context, long notebookId) {
+        File file = getLogFile(context, notebookId);
+        ioExecutor.execute(() -> {
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Failed to delete undo log: " + file.getAbsolutePath());
+            }
+        });
+    }
+
+    private static File getLogFile(Context context, long notebookId) {
+        File dir = new File(context.getFilesDir(), UNDO_DIR);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return new File(dir, notebookId + ".log");
+    }
+
+    // ==================== 公共接口 ====================
+
+    /**
+     * 记录新操作：清空重做栈，连续编辑同一单元格时合并为一条记录
+     */
+    public synchronized void record(TableOperation operation) {
+        clearRedo();
+
+        if (operation.getType() == TableOperation.OperationType.UPDATE_CELL
+                && lastCellEdit != null
+                && !undoRecords.isEmpty()
+                && lastCellEdit.getPosition() == operation.getPosition()
+                && lastCellEdit.getColumn() == operation.getColumn()
+                && operation.getTimestamp() - lastCellEdit.getTimestamp() <= COALESCE_WINDOW_MS) {
+            // 保留最初的旧值，只替换新值
+            byte[] previous = undoRecords.pollLast();
+            undoBytes -= previous.length;
+            lastCellEdit.setNewValue(operation.getNewValue());
+            lastCellEdit.setTimestamp(operation.getTimestamp());
+            pushUndo(encode(lastCellEdit));
+            return;
+        }
+
+        lastCellEdit = operation.getType() == TableOperation.OperationType.UPDATE_CELL ? operation : null;
+        pushUndo(encode(operation));
+    }
+
+    /**
+     * 弹出一条待撤销的操作，并移入重做栈
+     * 内存中的记录已用完而下一批还在预读时返回null，预读完成后通过监听器通知
+     */
+    public synchronized TableOperation popUndo() {
+        lastCellEdit = null;
+        byte[] record = undoRecords.pollLast();
+        if (record == null) {
+            if (diskRecordCount > mirroredCount) {
+                diskPops++;
+            }
+            prefetch();
+            return null;
+        }
+        undoBytes -= record.length;
+        memoryPops++;
+        if (undoRecords.size() < mirroredCount) {
+            // 弹出的是已落盘的记录，文件中同步去掉
+            mirroredCount--;
+            diskRecordCount--;
+            ioExecutor.execute(this::dropLastFromDisk);
+        }
+        if (undoRecords.size() <= PREFETCH_LOW_WATER) {
+            prefetch();
+        }
+        pushRedo(record);
+        return decode(record);
+    }
+
+    /**
+     * 弹出一条待重做的操作，并移回撤销栈
+     */
+    public synchronized TableOperation popRedo() {
+        lastCellEdit = null;
+        byte[] record = redoRecords.pollLast();
+        if (record == null) {
+            return null;
+        }
+        redoBytes -= record.length;
+        pushUndo(record);
+        return decode(record);
+    }
+
+    /**
+     * 是否有可撤销的操作；内存已空而下一批还在预读时为false
+     */
+    public synchronized boolean canUndo() {
+        return !undoRecords.isEmpty() || (diskRecordCount > mirroredCount && !loading);
+    }
+
+    public synchronized boolean canRedo() {
+        return !redoRecords.isEmpty();
+    }
+
+    /**
+     * 将内存中尚未落盘的撤销记录追加到磁盘，保证进程被杀后可继续撤销；
+     * 最近的一段记录仍留在内存中，撤销时不用读文件
+     */
+    public synchronized void persist() {
+        lastCellEdit = null;
+        int fresh = undoRecords.size() - mirroredCount;
+        if (fresh > 0) {
+            List<byte[]> batch = new ArrayList<>(fresh);
+            int index = 0;
+            for (byte[] record : undoRecords) {
+                if (index++ >= mirroredCount) {
+                    batch.add(record);
+                }
+            }
+            mirroredCount += fresh;
+            diskRecordCount += fresh;
+            ioExecutor.execute(() -> appendToDisk(batch));
+        }
+        // 已落盘的记录只在内存中保留最近的一段
+        while (undoBytes > MAX_TAIL_BYTES && undoRecords.size() > 1) {
+            undoBytes -= undoRecords.pollFirst().length;
+            mirroredCount--;
+        }
+    }
+
+    /**
+     * 清空全部历史（包括磁盘文件）
+     */
+    public synchronized void clear() {
+        undoRecords.clear();
+        undoBytes = 0;
+        clearRedo();
+        lastCellEdit = null;
+        diskRecordCount = 0;
+        mirroredCount = 0;
+        loading = false;
+        generation++;
+        ioExecutor.execute(() -> {
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Failed to clear undo log: " + file.getAbsolutePath());
+            }
+        });
+    }
+
+    // ==================== 内存管理 ====================
+
+    @Override
+    public String getCacheName() {
+        return "undo:" + file.getName();
+    }
+
+    @Override
+    public int getCachePriority() {
+        return CacheRegistry.PRIORITY_REBUILDABLE;
+    }
+
+    @Override
+    public synchronized long getSizeBytes() {
+        return undoBytes + redoBytes;
+    }
+
+    @Override
+    public synchronized long getHitCount() {
+        return memoryPops;
+    }
+
+    @Override
+    public synchronized long getMissCount() {
+        return diskPops;
+    }
+
+    /**
+     * 把撤销记录溢出到磁盘直到不超过maxBytes，不丢失历史；重做记录只在内存中，保留
+     */
+    @Override
+    public synchronized void trimToSize(long maxBytes) {
+        if (maxBytes <= redoBytes) {
+            // 全部落盘，内存中只留最新一条
+            persist();
+            spillUntil(0);
+            return;
+        }
+        spillUntil(maxBytes - redoBytes);
+    }
+
+    private void pushUndo(byte[] record) {
+        undoRecords.addLast(record);
+        undoBytes += record.length;
+        if (undoBytes > MAX_MEMORY_BYTES) {
+            spillOldest();
+        }
+    }
+
+    private void pushRedo(byte[] record) {
+        redoRecords.addLast(record);
+        redoBytes += record.length;
+        while (redoBytes > MAX_REDO_BYTES && redoRecords.size() > 1) {
+            redoBytes -= redoRecords.pollFirst().length;
+        }
+    }
+
+    private void clearRedo() {
+        redoRecords.clear();
+        redoBytes = 0;
+    }
+
+    /**
+     * 把最旧的一半记录溢出到磁盘，避免每条记录都触发一次写入
+     */
+    private void spillOldest() {
+        spillUntil(MAX_MEMORY_BYTES / 2);
+    }
+
+    private void spillUntil(long target) {
+        List<byte[]> batch = new ArrayList<>();
+        while (undoBytes > target && undoRecords.size() > 1) {
+            byte[] record = undoRecords.pollFirst();
+            undoBytes -= record.length;
+            if (mirroredCount > 0) {
+                // 已在文件中，直接丢弃内存副本
+                mirroredCount--;
+            } else {
+                batch.add(record);
+            }
+        }
+        if (!batch.isEmpty()) {
+            diskRecordCount += batch.size();
+            ioExecutor.execute(() -> appendToDisk(batch));
+            Log.d(TAG, "Spilled " + batch.size() + " undo records to disk");
+        }
+    }
+
+    /**
+     * 在后台读取文件中位于内存记录之前的一批记录，读完后放到内存队首
+     */
+    private void prefetch() {
+        int end = diskRecordCount - mirroredCount;
+        if (loading || end <= 0) {
+            return;
+        }
+        loading = true;
+        int skip = mirroredCount;
+        int expectedGeneration = generation;
+        ioExecutor.execute(() -> {
+            List<byte[]> batch = readBefore(skip);
+            onPrefetched(batch, end, expectedGeneration);
+        });
+    }
+
+    /**
+     * 预读完成：期间内存队首没有变化时才接上，否则丢弃，下次需要时重新预读
+     */
+    private void onPrefetched(List<byte[]> batch, int end, int expectedGeneration) {
+        Runnable listener;
+        synchronized (this) {
+            if (expectedGeneration != generation) {
+                return;
+            }
+            loading = false;
+            if (batch != null && diskRecordCount - mirroredCount == end) {
+                // batch为从新到旧的顺序
+                for (byte[] record : batch) {
+                    undoRecords.addFirst(record);
+                    undoBytes += record.length;
+                }
+                mirroredCount += batch.size();
+            }
+            listener = onLoadedListener;
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 等待之前提交的磁盘读写完成（测试用）
+     */
+    void awaitIo() throws Exception {
+        ioExecutor.submit(() -> { }).get();
+    }
+
+    // ==================== 磁盘读写（ioExecutor线程） ====================
+
+    /**
+     * 打开时校验文件，截掉进程被杀时写了一半的尾部记录，并预读最近的一批记录
+     */
+    private void recoverFile() {
+        int count = countRecords();
+        synchronized (this) {
+            if (generation != 0) {
+                // 恢复前已被clear
+                return;
+            }
+            // 恢复前提交的写入已计入diskRecordCount，文件中原有的记录排在它们之前
+            diskRecordCount += count;
+        }
+        onPrefetched(count > 0 ? readBefore(0) : null, count, 0);
+    }
+
+    private int countRecords() {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC || raf.readByte() != VERSION) {
+                raf.setLength(0);
+                return 0;
+            }
+            long pos = HEADER_SIZE;
+            long length = raf.length();
+            int count = 0;
+            while (pos + 8 <= length) {
+                raf.seek(pos);
+                int len = raf.readInt();
+                if (len < 0 || pos + 8 + len > length) {
+                    break;
+                }
+                raf.seek(pos + 4 + len);
+                if (raf.readInt() != len) {
+                    break;
+                }
+                pos += 8 + len;
+                count++;
+            }
+            if (pos != length) {
+                Log.w(TAG, "Truncating torn undo log tail at " + pos);
+                raf.setLength(pos);
+            }
+            return count;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to recover undo log", e);
+            return 0;
+        }
+    }
+
+    private void appendToDisk(List<byte[]> batch) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < HEADER_SIZE) {
+                raf.setLength(0);
+                raf.writeInt(MAGIC);
+                raf.writeByte(VERSION);
+            }
+            int total = 0;
+            for (byte[] record : batch) {
+                total += record.length + 8;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(total);
+            for (byte[] record : batch) {
+                buffer.putInt(record.length).put(record).putInt(record.length);
+            }
+            raf.seek(raf.length());
+            raf.write(buffer.array());
+            raf.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to append undo records", e);
+        }
+    }
+
+    /**
+     * 读取文件尾部跳过skip条之后的一批记录（从新到旧），不修改文件；失败时返回null
+     */
+    private List<byte[]> readBefore(int skip) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long end = raf.length();
+            for (int i = 0; i < skip && end >= HEADER_SIZE + 8; i++) {
+                raf.seek(end - 4);
+                end -= 8 + raf.readInt();
+            }
+            List<byte[]> batch = new ArrayList<>();
+            int bytes = 0;
+            while (end >= HEADER_SIZE + 8 && bytes < PREFETCH_BYTES) {
+                raf.seek(end - 4);
+                int len = raf.readInt();
+                long start = end - 8 - len;
+                if (len < 0 || start < HEADER_SIZE) {
+                    Log.w(TAG, "Corrupt undo record at " + end);
+                    return null;
+                }
+                byte[] record = new byte[len];
+                raf.seek(start + 4);
+                raf.readFully(record);
+                batch.add(record);
+                bytes += len;
+                end = start;
+            }
+            return batch;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read undo records", e);
+            return null;
+        }
+    }
+
+    /**
+     * 去掉文件中最后一条记录（已从内存中撤销的已落盘记录）
+     */
+    private void dropLastFromDisk() {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = raf.length();
+            if (length < HEADER_SIZE + 8) {
+                return;
+            }
+            raf.seek(length - 4);
+            int len = raf.readInt();
+            long start = length - 8 - len;
+            raf.setLength(len < 0 || start < HEADER_SIZE ? HEADER_SIZE : start);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to drop undo record from disk", e);
+        }
+    }
+
+    // ==================== 二进制编解码 ====================
+
+    static byte[] encode(TableOperation operation) {
+        RecordWriter out = new RecordWriter();
+        out.writeByte(operation.getType().ordinal());
+        out.writeVarInt(operation.getPosition());
+        out.writeVarInt(operation.getColumn() + 1); // -1 表示无列
+        out.writeLong(operation.getTimestamp());
+        out.writeString(asString(operation.getOldValue()));
+        out.writeString(asString(operation.getNewValue()));
+
+        List<Cell> cells = operation.getAffectedCells();
+        if (cells == null) {
+            out.writeVarInt(0);
+        } else {
+            // 只保存非空或有格式的单元格，空白占位在恢复时由网格重建补齐
+            List<Cell> meaningful = new ArrayList<>();
+            for (Cell cell : cells) {
+                if (!cell.isEmpty() || styleFlags(cell) != 0) {
+                    meaningful.add(cell);
+                }
+            }
+            // 批量替换可能跨多个笔记本，单元格需要带上所属笔记本
+            boolean withNotebook = operation.getType() == TableOperation.OperationType.REPLACE_CELLS;
+            out.writeVarInt(meaningful.size() + 1);
+            for (Cell cell : meaningful) {
+                writeCell(out, cell, withNotebook);
+            }
+        }
+
+        Column column = operation.getAffectedColumn();
+        out.writeByte(column != null ? 1 : 0);
+        if (column != null) {
+            out.writeString(column.getName());
+            out.writeFloat(column.getWidth());
+            out.writeString(column.getType());
+            out.writeByte((column.isVisible() ? 1 : 0) | (column.isFrozen() ? 2 : 0));
+        }
+        return out.toByteArray();
+    }
+
+    static TableOperation decode(byte[] record) {
+        RecordReader in = new RecordReader(record);
+        TableOperation.OperationType type = TableOperation.OperationType.values()[in.readByte()];
+        int position = in.readVarInt();
+        int column = in.readVarInt() - 1;
+        long timestamp = in.readLong();
+        String oldValue = in.readString();
+        String newValue = in.readString();
+
+        TableOperation operation = new TableOperation(type, position, column, oldValue, newValue);
+        operation.setTimestamp(timestamp);
+
+        int cellCount = in.readVarInt();
+        if (cellCount > 0) {
+            List<Cell> cells = new ArrayList<>(cellCount - 1);
+            for (int i = 0; i < cellCount - 1; i++) {
+                cells.add(readCell(in));
+            }
+            operation.setAffectedCells(cells);
+        }
+
+        if (in.readByte() == 1) {
+            Column col = new Column();
+            col.setColumnIndex(position);
+            col.setName(in.readString());
+            col.setWidth(in.readFloat());
+            col.setType(in.readString());
+            int flags = in.readByte();
+            col.setVisible((flags & 1) != 0);
+            col.setFrozen((flags & 2) != 0);
+            operation.setAffectedColumn(col);
+        }
+        return operation;
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static int styleFlags(Cell cell) {
+        int flags = 0;
+        if (cell.getStyleId() != CellStyle.DEFAULT_ID) flags |= FLAG_STYLE;
+        if (cell.hasImage()) flags |= FLAG_IMAGE;
+        return flags;
+    }
+
+    private static void writeCell(RecordWriter out, Cell cell, boolean withNotebook) {
+        int flags = styleFlags(cell) | (withNotebook ? FLAG_NOTEBOOK : 0);
+        out.writeVarInt(cell.getRowIndex());
+        out.writeVarInt(cell.getColIndex());
+        out.writeString(cell.getContent());
+        out.writeByte(flags);
+        if ((flags & FLAG_STYLE) != 0) out.writeVarInt((int) cell.getStyleId());
+        if ((flags & FLAG_IMAGE) != 0) out.writeString(cell.getImageId());
+        if ((flags & FLAG_NOTEBOOK) != 0) out.writeLong(cell.getNotebookId());
+    }
+
+    private static Cell readCell(RecordReader in) {
+        Cell cell = new Cell();
+        cell.setRowIndex(in.readVarInt());
+        cell.setColIndex(in.readVarInt());
+        String content = in.readString();
+        cell.setContent(content != null ? content : "");
+        int flags = in.readByte();
+        if ((flags & FLAG_STYLE) != 0) cell.setStyleId(in.readVarInt());
+        if ((flags & FLAG_IMAGE) != 0) cell.setImageId(in.readString());
+        if ((flags & FLAG_NOTEBOOK) != 0) cell.setNotebookId(in.readLong());
+        return cell;
+    }
+
+    /**
+     * 记录写入器：变长整数 + UTF-8字符串
+     */
+    private static final class RecordWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+        void writeByte(int value) {
+            out.write(value);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (value >>> shift));
+            }
+        }
+
+        void writeFloat(float value) {
+            int bits = Float.floatToIntBits(value);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out.write(bits >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1); // 0 表示null
+            out.write(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 记录读取器
+     */
+    private static final class RecordReader {
+        private final ByteBuffer buffer;
+
+        RecordReader(byte[] data) {
+            this.buffer = ByteBuffer.wrap(data);
+        }
+
+        int readByte() {
+            return buffer.get() & 0xFF;
+        }
+
+        int readVarInt() {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = buffer.get() & 0xFF;
+                result |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        long readLong() {
+            return buffer.getLong();
+        }
+
+        float readFloat() {
+            return buffer.getFloat();
+        }
+
+        String readString() {
+            int len = readVarInt();
+            if (len == 0) {
+                return null;
+            }
+            String value = new String(buffer.array(), buffer.position(), len - 1, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + len - 1);
+            return value;
+        }
+    }
+}
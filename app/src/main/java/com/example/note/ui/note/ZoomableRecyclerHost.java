@@ -737,5 +737,35 @@ public class ZoomableRecyclerHost extends FrameLayout {
         });
     }
     
-
+    /**
+     * 滚动使指定单元格可见；已完全可见时不移动
+     */
+    public void scrollToCell(int rowIndex, int columnIndex) {
+        // 纵向：行不在可见范围内时滚到视口上方约三分之一处
+        if (bodyRV.getLayoutManager() instanceof LinearLayoutManager) {
+            LinearLayoutManager llm = (LinearLayoutManager) bodyRV.getLayoutManager();
+            int first = llm.findFirstCompletelyVisibleItemPosition();
+            int last = llm.findLastCompletelyVisibleItemPosition();
+            if (first == RecyclerView.NO_POSITION || rowIndex < first || rowIndex > last) {
+                int offset = bodyRV.getHeight() / 3;
+                bodyRV.stopScroll();
+                llm.scrollToPositionWithOffset(rowIndex, offset);
+                if (frozenRV != null && frozenRV.getLayoutManager() instanceof LinearLayoutManager) {
+                    frozenRV.stopScroll();
+                    ((LinearLayoutManager) frozenRV.getLayoutManager()).scrollToPositionWithOffset(rowIndex, offset);
+                }
+            }
+        }
+        
+        // 横向：列超出视口时把它放到左侧留出少量边距
+        int left = 0;
+        for (int i = 0; i < columnIndex; i++) {
+            left += widthProvider.getColumnWidthPx(i);
+        }
+        int right = left + widthProvider.getColumnWidthPx(columnIndex);
+        int viewport = getHeaderViewportWidth();
+        if (left < horizontalOffsetPx || right > horizontalOffsetPx + viewport) {
+            jumpHeaderTo(left - viewport / 8);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.example.note.util;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * 单元格取值工具类
+ * 把单元格文本解析为数值和日期，写入cells表的num_value/date_value列，
+ * 排序和范围筛选直接比较这两列；界面上的Excel风格比较也使用同一套规则。
+ * 解析在每次写入单元格时执行，不使用正则表达式，非数字文本在第一个字符处即返回。
+ */
+public class CellValueUtils {
+
+    private CellValueUtils() {
+    }
+
+    /**
+     * 尝试将文本解析为数字
+     * 忽略千分位分隔符和货币符号，末尾的百分号除以100；NaN和无穷大不视为数字
+     * @return 数值，不是数字时返回null
+     */
+    public static Double parseNumber(String str) {
+        if (str == null) {
+            return null;
+        }
+        String cleaned = stripNumberSymbols(str).trim();
+        if (cleaned.isEmpty() || !isNumberStart(cleaned.charAt(0))) {
+            return null;
+        }
+        boolean percent = cleaned.charAt(cleaned.length() - 1) == '%';
+        if (percent) {
+            cleaned = cleaned.substring(0, cleaned.length() - 1);
+        }
+        double value;
+        try {
+            value = Double.parseDouble(cleaned);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (percent) {
+            value /= 100.0;
+        }
+        return Double.isNaN(value) || Double.isInfinite(value) ? null : value;
+    }
+
+    /**
+     * 尝试将文本解析为日期（与CellType识别的格式一致）
+     * 支持yyyy-M-d、yyyy/M/d以及M-d-yyyy、M/d/yyyy；后两种在首段大于12时按d-M-yyyy理解
+     * @return 距1970-01-01的天数，不是合法日期时返回null
+     */
+    public static Long parseDate(String str) {
+        if (str == null) {
+            return null;
+        }
+        String s = str.trim();
+        int length = s.length();
+        if (length < 8 || length > 10) {
+            return null;
+        }
+        char separator = s.indexOf('-') >= 0 ? '-' : '/';
+        int first = s.indexOf(separator);
+        int second = first < 0 ? -1 : s.indexOf(separator, first + 1);
+        if (second < 0 || s.indexOf(separator, second + 1) >= 0) {
+            return null;
+        }
+        int a = parseDigits(s, 0, first);
+        int b = parseDigits(s, first + 1, second);
+        int c = parseDigits(s, second + 1, length);
+        if (a < 0 || b < 0 || c < 0) {
+            return null;
+        }
+        int firstLength = first;
+        int middleLength = second - first - 1;
+        int lastLength = length - second - 1;
+        if (middleLength > 2) {
+            return null;
+        }
+        try {
+            if (firstLength == 4 && lastLength <= 2) {
+                return LocalDate.of(a, b, c).toEpochDay();
+            }
+            if (firstLength <= 2 && lastLength == 4) {
+                return a > 12
+                        ? LocalDate.of(c, b, a).toEpochDay()
+                        : LocalDate.of(c, a, b).toEpochDay();
+            }
+        } catch (DateTimeException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static String stripNumberSymbols(String str) {
+        StringBuilder builder = null;
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            boolean symbol = ch == ',' || ch == '￥' || ch == '$' || ch == '€' || ch == '£' || ch == '¥';
+            if (symbol && builder == null) {
+                builder = new StringBuilder(str.length());
+                builder.append(str, 0, i);
+            } else if (!symbol && builder != null) {
+                builder.append(ch);
+            }
+        }
+        return builder != null ? builder.toString() : str;
+    }
+
+    private static boolean isNumberStart(char ch) {
+        return (ch >= '0' && ch <= '9') || ch == '-' || ch == '+' || ch == '.';
+    }
+
+    /**
+     * 解析1到4位十进制数字，不是纯数字时返回-1
+     */
+    private static int parseDigits(String s, int start, int end) {
+        if (end <= start || end - start > 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.note.data.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.example.note.data.dao.CellDao;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.repository.NotebookListQuery;
+import com.example.note.data.repository.RowQuery;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询计划审计的核心，本地（Robolectric原生SQLite）和设备上（androidTest）共用
+ * 逐个调用DAO方法，记录Room实际执行的SQL，用EXPLAIN QUERY PLAN检查：
+ * 不允许全表扫描主要的表，也不允许临时B树排序（下面列出的方法除外，并写明原因）；
+ * 同时拒绝minSdk 26自带的SQLite 3.18不支持的语法。失败信息带上sqlite_version()，
+ * 因为计划随SQLite版本变化，只有在API 26设备上运行的结果才代表最低版本。
+ */
+public final class QueryPlanAudit {
+
+    private static final Set<String> AUDITED_TABLES = new HashSet<>(Arrays.asList(
+            "cells", "rows", "columns", "notebooks", "jobs"));
+
+    private static final Map<String, String> ALLOWED_TEMP_SORTS = new HashMap<>();
+
+    static {
+        String tieBreak = "num_value范围扫描已有序，只对数值相同的行按行号排序";
+        ALLOWED_TEMP_SORTS.put("CellDao.getCellsByColumnInNumberRange", tieBreak);
+        ALLOWED_TEMP_SORTS.put("CellDao.getCellsByColumnInNumberRangeDesc", tieBreak);
+        String dateRange = "date_value没有单独的索引，在(notebook_id, col_index)范围内排序";
+        ALLOWED_TEMP_SORTS.put("CellDao.getCellsByColumnInDateRange", dateRange);
+        ALLOWED_TEMP_SORTS.put("CellDao.getCellsByColumnInDateRangeDesc", dateRange);
+        String generated = "行列号由递归CTE生成，不读取任何表";
+        ALLOWED_TEMP_SORTS.put("CellDao.insertEmptyGrid", generated);
+        ALLOWED_TEMP_SORTS.put("CellDao.insertEmptyGridRows", generated);
+        ALLOWED_TEMP_SORTS.put("CellDao.getRowOrder", "多列筛选用INTERSECT/EXCEPT求行集合，再按Excel风格排序");
+        ALLOWED_TEMP_SORTS.put("NotebookDao.getUsedColors", "笔记本颜色去重，数据量为笔记本数");
+    }
+
+    /**
+     * SQLite 3.18之后才支持的语法及其引入版本
+     */
+    private static final Map<Pattern, String> NEWER_SYNTAX = new LinkedHashMap<>();
+
+    static {
+        NEWER_SYNTAX.put(Pattern.compile("\\bON\\s+CONFLICT\\b[^;]*?\\bDO\\s+(?:UPDATE|NOTHING)\\b",
+                Pattern.CASE_INSENSITIVE), "UPSERT（3.24）");
+        NEWER_SYNTAX.put(Pattern.compile("\\bNULLS\\s+(?:FIRST|LAST)\\b", Pattern.CASE_INSENSITIVE), "NULLS FIRST/LAST（3.30）");
+        NEWER_SYNTAX.put(Pattern.compile("\\bOVER\\s*\\(", Pattern.CASE_INSENSITIVE), "窗口函数（3.25）");
+        NEWER_SYNTAX.put(Pattern.compile("\\bRETURNING\\b", Pattern.CASE_INSENSITIVE), "RETURNING（3.35）");
+        NEWER_SYNTAX.put(Pattern.compile("\\bIIF\\s*\\(", Pattern.CASE_INSENSITIVE), "IIF（3.32）");
+        NEWER_SYNTAX.put(Pattern.compile("\\bFILTER\\s*\\(\\s*WHERE\\b", Pattern.CASE_INSENSITIVE), "聚合FILTER子句（3.30）");
+        NEWER_SYNTAX.put(Pattern.compile("\\bMATERIALIZED\\b", Pattern.CASE_INSENSITIVE), "CTE的MATERIALIZED提示（3.35）");
+    }
+
+    private static final Pattern SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\w+)");
+    private static final Pattern MATERIALIZED = Pattern.compile("^(?:MATERIALIZE|CO-ROUTINE) (\\w+)");
+
+    private final List<CapturedQuery> captured = Collections.synchronizedList(new ArrayList<>());
+    private final AppDatabase database;
+    private final Executor mainThread;
+    private final Notebook anchor;
+
+    /**
+     * @param mainThread 在主线程上同步执行（观察LiveData要求在主线程）
+     */
+    public QueryPlanAudit(Context context, Executor mainThread) {
+        this.mainThread = mainThread;
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(AppDatabase.DATABASE_CALLBACK)
+                .allowMainThreadQueries()
+                .setQueryExecutor(Runnable::run)
+                .setTransactionExecutor(Runnable::run)
+                .setQueryCallback((sql, args) -> captured.add(new CapturedQuery(sql, args)), Runnable::run)
+                .build();
+        // 外键要求单元格、行、列所属的笔记本存在，DAO方法的参数统一使用id 1
+        long id = database.notebookDao().insert(new Notebook("审计", "#FFFFFF"));
+        assertEquals(1, id);
+        anchor = database.notebookDao().getByIdSync(id);
+    }
+
+    public AppDatabase getDatabase() {
+        return database;
+    }
+
+    public void close() {
+        database.close();
+    }
+
+    /**
+     * 当前连接的SQLite版本
+     */
+    public String sqliteVersion() {
+        try (Cursor cursor = database.getOpenHelper().getWritableDatabase().query("SELECT sqlite_version()")) {
+            return cursor.moveToFirst() ? cursor.getString(0) : "?";
+        }
+    }
+
+    /**
+     * 审计一个DAO接口的全部查询方法，有问题时断言失败
+     */
+    public void audit(Class<?> daoType, Object dao) throws Exception {
+        List<String> problems = new ArrayList<>();
+        Set<String> audited = new HashSet<>();
+        Method[] methods = daoType.getDeclaredMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::getName));
+        for (Method method : methods) {
+            if (method.isDefault() || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            String name = daoType.getSimpleName() + "." + method.getName();
+            audited.add(name);
+            for (CapturedQuery query : run(daoType, dao, method)) {
+                for (String syntax : newerSyntax(query.sql)) {
+                    problems.add(name + ": 使用了SQLite 3.18不支持的" + syntax + "\n    " + query.sql);
+                }
+                List<String> plan = explain(query);
+                Set<String> subqueries = new HashSet<>();
+                for (String detail : plan) {
+                    Matcher materialized = MATERIALIZED.matcher(detail);
+                    if (materialized.find()) {
+                        subqueries.add(materialized.group(1));
+                    }
+                }
+                for (String detail : plan) {
+                    Matcher scan = SCAN.matcher(detail);
+                    if (scan.find() && !subqueries.contains(scan.group(1)) && isAuditedTable(scan.group(1), query.sql)) {
+                        problems.add(name + ": " + detail + "\n    " + query.sql);
+                    } else if (detail.contains("TEMP B-TREE") && !ALLOWED_TEMP_SORTS.containsKey(name)) {
+                        problems.add(name + ": " + detail + "\n    " + query.sql);
+                    }
+                }
+            }
+        }
+        String version = "sqlite_version() = " + sqliteVersion();
+        for (String allowed : ALLOWED_TEMP_SORTS.keySet()) {
+            if (allowed.startsWith(daoType.getSimpleName() + ".")) {
+                assertTrue("豁免列表中的方法已不存在: " + allowed + "（" + version + "）", audited.contains(allowed));
+            }
+        }
+        assertTrue("以下查询没有走索引或不兼容SQLite 3.18（" + version + "）:\n" + String.join("\n", problems),
+                problems.isEmpty());
+    }
+
+    /**
+     * SQL中用到的SQLite 3.18之后才支持的语法
+     */
+    public static List<String> newerSyntax(String sql) {
+        List<String> found = new ArrayList<>();
+        for (Map.Entry<Pattern, String> entry : NEWER_SYNTAX.entrySet()) {
+            if (entry.getKey().matcher(sql).find()) {
+                found.add(entry.getValue());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 扫描对象是表本身或该查询中给表起的别名
+     */
+    private static boolean isAuditedTable(String name, String sql) {
+        if (AUDITED_TABLES.contains(name)) {
+            return true;
+        }
+        Matcher alias = Pattern.compile("\\b(\\w+)`?\\s+(?:AS\\s+)?" + Pattern.quote(name) + "\\b",
+                Pattern.CASE_INSENSITIVE).matcher(sql);
+        while (alias.find()) {
+            if (AUDITED_TABLES.contains(alias.group(1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 调用DAO方法并返回它执行的SQL（LiveData查询在观察时执行）
+     */
+    private List<CapturedQuery> run(Class<?> daoType, Object dao, Method method) throws Exception {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = argumentFor(daoType, types[i]);
+        }
+        captured.clear();
+        try {
+            Object result = method.invoke(dao, args);
+            if (result instanceof LiveData) {
+                LiveData<?> liveData = (LiveData<?>) result;
+                Observer<Object> observer = value -> { };
+                mainThread.execute(() -> {
+                    liveData.observeForever(observer);
+                    liveData.removeObserver(observer);
+                });
+            }
+        } catch (InvocationTargetException e) {
+            // 占位参数可能违反约束；SQL在执行前已经记录，只关心它的查询计划
+            if (!(e.getCause() instanceof SQLException)) {
+                throw e;
+            }
+        }
+        List<CapturedQuery> queries = new ArrayList<>();
+        synchronized (captured) {
+            for (CapturedQuery query : captured) {
+                if (query.isDaoStatement()) {
+                    queries.add(query);
+                }
+            }
+        }
+        return queries;
+    }
+
+    private Object argumentFor(Class<?> daoType, Class<?> type) throws Exception {
+        if (type == long.class || type == Long.class) {
+            return 1L;
+        }
+        if (type == int.class || type == Integer.class) {
+            return 1;
+        }
+        if (type == double.class || type == Double.class) {
+            return 1.0;
+        }
+        if (type == float.class || type == Float.class) {
+            return 1f;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return true;
+        }
+        if (type == String.class) {
+            return "a";
+        }
+        if (type == List.class) {
+            return Collections.emptyList();
+        }
+        if (type == SupportSQLiteQuery.class && daoType == CellDao.class) {
+            // 表格视图的行查询：正向和排除型筛选各一个，加一个排序键
+            return RowQuery.builder()
+                    .where(RowQuery.Filter.numberBetween(1, 0, 100))
+                    .where(RowQuery.Filter.contains(0, "a"))
+                    .where(RowQuery.Filter.valueIn(2, Arrays.asList("", "a")))
+                    .orderBy(1, true)
+                    .build()
+                    .toSql(1, 20);
+        }
+        if (type == SupportSQLiteQuery.class) {
+            // 主页列表的翻页查询
+            return NotebookListQuery.page(NotebookListQuery.SortKey.UPDATED, false, false, anchor, 20);
+        }
+        return type.getDeclaredConstructor().newInstance();
+    }
+
+    private List<String> explain(CapturedQuery query) {
+        List<String> details = new ArrayList<>();
+        try (Cursor cursor = database.getOpenHelper().getWritableDatabase()
+                .query("EXPLAIN QUERY PLAN " + query.sql, query.args.toArray())) {
+            int column = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(column));
+            }
+        }
+        return details;
+    }
+
+    private static final class CapturedQuery {
+        final String sql;
+        final List<Object> args;
+
+        CapturedQuery(String sql, List<Object> args) {
+            this.sql = sql;
+            this.args = new ArrayList<>(args);
+        }
+
+        /**
+         * 排除事务控制语句和Room失效跟踪器自己的查询
+         */
+        boolean isDaoStatement() {
+            String head = sql.trim().toUpperCase();
+            return (head.startsWith("SELECT") || head.startsWith("INSERT") || head.startsWith("UPDATE")
+                    || head.startsWith("DELETE") || head.startsWith("WITH"))
+                    && !sql.contains("room_table_modification_log");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.note.data.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Notebook;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import static org.junit.Assert.*;
+
+/**
+ * 笔记本统计列测试（真实SQLite）：插入、修改、移动、删除和复制后触发器维护的值与全量重算一致，正在清除的笔记本不再维护
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class NotebookStatsTest {
+
+    private AppDatabase database;
+    private long notebookId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(AppDatabase.DATABASE_CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+        notebookId = database.notebookDao().insert(new Notebook("统计", "#FFFFFF"));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void insertUpdateAndDeleteKeepCounts() {
+        long a = database.cellDao().insert(new Cell(notebookId, 0, 0, "a"));
+        long blank = database.cellDao().insert(new Cell(notebookId, 2, 3, ""));
+        Cell image = new Cell(notebookId, 1, 1, "");
+        image.setImageId("img");
+        long imageId = database.cellDao().insert(image);
+        // 行数、列数、单元格数、非空数、图片数
+        assertStats(notebookId, 3, 4, 3, 2, 1);
+
+        database.cellDao().updateContent(blank, "x", null, null, 2);
+        assertStats(notebookId, 3, 4, 3, 3, 1);
+        database.cellDao().updateContent(a, "", null, null, 3);
+        assertStats(notebookId, 3, 4, 3, 2, 1);
+
+        // 删除边界上的单元格时重新取MAX
+        database.getOpenHelper().getWritableDatabase().execSQL("DELETE FROM cells WHERE id = " + blank);
+        assertStats(notebookId, 2, 2, 2, 1, 1);
+
+        database.cellDao().updateImage(imageId, null, 4);
+        assertStats(notebookId, 2, 2, 2, 0, 0);
+        assertMatchesRecompute();
+    }
+
+    @Test
+    public void movingBoundaryCellsBackShrinksCounts() {
+        database.cellDao().insert(new Cell(notebookId, 0, 0, "a"));
+        database.cellDao().insert(new Cell(notebookId, 2, 2, "b"));
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+
+        // 删除第1行后下面的行上移
+        db.execSQL("UPDATE cells SET row_index = row_index - 1 WHERE notebook_id = " + notebookId + " AND row_index > 1");
+        assertStats(notebookId, 2, 3, 2, 2, 0);
+        db.execSQL("UPDATE cells SET col_index = col_index - 2 WHERE notebook_id = " + notebookId + " AND col_index = 2");
+        assertStats(notebookId, 2, 1, 2, 2, 0);
+        // 往外移直接扩大
+        db.execSQL("UPDATE cells SET row_index = 5 WHERE notebook_id = " + notebookId + " AND row_index = 1");
+        assertStats(notebookId, 6, 1, 2, 2, 0);
+        assertMatchesRecompute();
+    }
+
+    @Test
+    public void copiedNotebookCountsFromCopiedCells() {
+        database.cellDao().insert(new Cell(notebookId, 0, 0, "a"));
+        database.cellDao().insert(new Cell(notebookId, 3, 1, ""));
+        Cell image = new Cell(notebookId, 1, 2, "");
+        image.setImageId("img");
+        database.cellDao().insert(image);
+
+        long copyId = database.runInTransaction(() -> {
+            long id = database.notebookDao().copyNotebook(notebookId, "统计（副本）", 5);
+            database.cellDao().copyCells(notebookId, id, 5);
+            return id;
+        });
+        assertStats(copyId, 4, 3, 3, 2, 1);
+        assertStats(notebookId, 4, 3, 3, 2, 1);
+        assertMatchesRecompute();
+    }
+
+    @Test
+    public void purgingNotebookIsNotMaintained() {
+        database.cellDao().insert(new Cell(notebookId, 0, 0, "a"));
+        database.cellDao().insert(new Cell(notebookId, 1, 1, "b"));
+        long other = database.notebookDao().insert(new Notebook("其他", "#FFFFFF"));
+        database.cellDao().insert(new Cell(other, 0, 0, "c"));
+
+        database.notebookDao().markPurging(notebookId, 6);
+        // 分块删除时统计列保持不变，列表不会随每块刷新
+        assertEquals(2, database.cellDao().deleteCellsChunk(notebookId, 100));
+        database.cellDao().insert(new Cell(notebookId, 4, 4, "d"));
+        assertStats(notebookId, 2, 2, 2, 2, 0);
+        // 其他笔记本照常维护
+        database.cellDao().insert(new Cell(other, 1, 0, "e"));
+        assertStats(other, 2, 1, 2, 2, 0);
+    }
+
+    /**
+     * 触发器维护的值与从cells全量重算的值相同
+     */
+    private void assertMatchesRecompute() {
+        int[] before = stats(notebookId);
+        NotebookStats.recompute(database.getOpenHelper().getWritableDatabase());
+        assertArrayEquals(before, stats(notebookId));
+    }
+
+    private void assertStats(long id, int rows, int cols, int cells, int nonEmpty, int images) {
+        assertArrayEquals(new int[]{rows, cols, cells, nonEmpty, images}, stats(id));
+    }
+
+    private int[] stats(long id) {
+        try (Cursor cursor = database.query("SELECT row_count, col_count, cell_count, non_empty_count, image_count "
+                + "FROM notebooks WHERE id = ?", new Object[]{id})) {
+            assertTrue(cursor.moveToFirst());
+            return new int[]{cursor.getInt(0), cursor.getInt(1), cursor.getInt(2), cursor.getInt(3), cursor.getInt(4)};
+        }
+    }
+}
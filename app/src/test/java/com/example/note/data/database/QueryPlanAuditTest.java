@@ -0,0 +1,94 @@
+package com.example.note.data.database;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.dao.CellDao;
+import com.example.note.data.dao.ColumnDao;
+import com.example.note.data.dao.JobDao;
+import com.example.note.data.dao.NotebookDao;
+import com.example.note.data.dao.RowDao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询计划审计（本地）：在Robolectric的原生SQLite上运行QueryPlanAudit
+ * 本地SQLite比minSdk 26自带的3.18新，计划可能不同；3.18上的计划由androidTest中的
+ * QueryPlanAuditDeviceTest在API 26设备上检查，语法兼容性两处都检查。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class QueryPlanAuditTest {
+
+    private QueryPlanAudit audit;
+
+    @Before
+    public void setUp() {
+        audit = new QueryPlanAudit(ApplicationProvider.getApplicationContext(), Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        audit.close();
+    }
+
+    @Test
+    public void cellDaoQueriesUseIndexes() throws Exception {
+        audit.audit(CellDao.class, audit.getDatabase().cellDao());
+    }
+
+    @Test
+    public void rowDaoQueriesUseIndexes() throws Exception {
+        audit.audit(RowDao.class, audit.getDatabase().rowDao());
+    }
+
+    @Test
+    public void columnDaoQueriesUseIndexes() throws Exception {
+        audit.audit(ColumnDao.class, audit.getDatabase().columnDao());
+    }
+
+    @Test
+    public void notebookDaoQueriesUseIndexes() throws Exception {
+        audit.audit(NotebookDao.class, audit.getDatabase().notebookDao());
+    }
+
+    @Test
+    public void jobDaoQueriesUseIndexes() throws Exception {
+        audit.audit(JobDao.class, audit.getDatabase().jobDao());
+    }
+
+    @Test
+    public void newerSyntaxIsRejected() {
+        assertEquals(1, QueryPlanAudit.newerSyntax(
+                "INSERT INTO cells (id) VALUES (1) ON CONFLICT(id) DO UPDATE SET content = ''").size());
+        assertEquals(1, QueryPlanAudit.newerSyntax("SELECT * FROM cells ORDER BY num_value NULLS LAST").size());
+        assertEquals(1, QueryPlanAudit.newerSyntax("SELECT ROW_NUMBER() OVER (ORDER BY id) FROM cells").size());
+        assertEquals(1, QueryPlanAudit.newerSyntax("DELETE FROM cells WHERE id = 1 RETURNING id").size());
+        assertEquals(1, QueryPlanAudit.newerSyntax("SELECT iif(num_value IS NULL, 0, 1) FROM cells").size());
+        assertEquals(1, QueryPlanAudit.newerSyntax("SELECT COUNT(*) FILTER (WHERE content != '') FROM cells").size());
+        assertEquals(1, QueryPlanAudit.newerSyntax("WITH m AS MATERIALIZED (SELECT 1) SELECT * FROM m").size());
+    }
+
+    @Test
+    public void olderSyntaxIsAccepted() {
+        // 建表时的冲突子句、CASE排序和递归CTE在3.18上都可用
+        for (String sql : Arrays.asList(
+                "CREATE TABLE t (id INTEGER PRIMARY KEY ON CONFLICT REPLACE)",
+                "SELECT * FROM cells ORDER BY CASE WHEN num_value IS NULL THEN 1 ELSE 0 END, num_value",
+                "WITH RECURSIVE r(i) AS (SELECT 0 UNION ALL SELECT i + 1 FROM r WHERE i < 9) SELECT i FROM r",
+                "INSERT OR REPLACE INTO cells (id) VALUES (1)")) {
+            assertEquals(sql, Collections.emptyList(), QueryPlanAudit.newerSyntax(sql));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.note.data.entity;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 单元格样式测试：规范化后相同外观的样式相等，id不参与比较
+ */
+public class CellStyleTest {
+
+    @Test
+    public void normalizesBlankValuesToDefaults() {
+        CellStyle blank = new CellStyle(null, "", false, false, 0f, "  ");
+        assertEquals(CellStyle.DEFAULT, blank);
+        assertTrue(blank.isDefault());
+        assertEquals("#000000", blank.getTextColor());
+        assertEquals("#FFFFFF", blank.getBackgroundColor());
+        assertEquals(14.0f, blank.getTextSize(), 0f);
+        assertEquals("LEFT", blank.getTextAlignment());
+
+        // 旧数据中颜色大小写和对齐方式写法不一致
+        CellStyle lower = new CellStyle("#ff0000", " #ffffff ", true, false, 16f, "center");
+        CellStyle upper = new CellStyle("#FF0000", "#FFFFFF", true, false, 16f, "CENTER");
+        assertEquals(upper, lower);
+        assertEquals(upper.hashCode(), lower.hashCode());
+        assertFalse(lower.isDefault());
+    }
+
+    @Test
+    public void equalityIgnoresId() {
+        CellStyle style = new CellStyle("#0000FF", "#FFFF00", false, true, 18f, "RIGHT");
+        CellStyle stored = style.withId(42);
+        assertEquals(42, stored.getId());
+        assertEquals(0, style.getId());
+        assertEquals(style, stored);
+
+        Map<CellStyle, Long> ids = new HashMap<>();
+        ids.put(stored, stored.getId());
+        assertEquals(Long.valueOf(42), ids.get(new CellStyle("#0000ff", "#ffff00", false, true, 18f, "right")));
+        assertNull(ids.get(new CellStyle("#0000FF", "#FFFF00", true, true, 18f, "RIGHT")));
+        assertNotEquals(style, new CellStyle("#0000FF", "#FFFF00", false, true, 18.5f, "RIGHT"));
+    }
+}
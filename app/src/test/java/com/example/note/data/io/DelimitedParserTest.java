@@ -0,0 +1,211 @@
+package com.example.note.data.io;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * CSV/TSV解析测试：RFC 4180的引号和换行、跨缓冲区的字段、格式识别，以及大文件的内存占用
+ */
+public class DelimitedParserTest {
+
+    @Test
+    public void parsesQuotedFieldsAndLineEndings() throws IOException {
+        String csv = "a,\"b,c\",\"say \"\"hi\"\"\"\r\n" +
+                "\"multi\nline\",,x\n" +
+                "\r\n" +
+                "last,\"unterminated";
+        assertEquals(Arrays.asList(
+                Arrays.asList("a", "b,c", "say \"hi\""),
+                Arrays.asList("multi\nline", "", "x"),
+                Arrays.asList(""),
+                Arrays.asList("last", "unterminated")), parse(csv, ',', 64));
+    }
+
+    @Test
+    public void toleratesStrayQuotes() throws IOException {
+        // 未加引号字段中的引号按普通字符，右引号后的字符接在字段后
+        assertEquals(Arrays.asList(Arrays.asList("5\"", "\"ab\"c", "x")),
+                parse("5\",\"\"\"ab\"\"\"c,x", ',', 64));
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "")), parse("a\tb\t\n", '\t', 64));
+    }
+
+    @Test
+    public void sameResultForAnyBufferSize() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            csv.append(i).append(",\"q").append(i).append(",\"\"x\"\"\r\n\"").append(",tail").append(i).append("\r\n");
+        }
+        List<List<String>> expected = parse(csv.toString(), ',', 64 * 1024);
+        assertEquals(200, expected.size());
+        assertEquals(Arrays.asList("7", "q7,\"x\"\r\n", "tail7"), expected.get(7));
+        for (int size : new int[]{16, 17, 31, 100}) {
+            assertEquals("buffer " + size, expected, parse(csv.toString(), ',', size));
+        }
+    }
+
+    @Test
+    public void rejectsRunawayQuotedField() {
+        Reader endless = new Reader() {
+            private boolean first = true;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                Arrays.fill(buffer, offset, offset + length, 'x');
+                if (first) {
+                    buffer[offset] = '"';
+                    first = false;
+                }
+                return length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try {
+            new DelimitedParser(endless, ',').parse(new Collector());
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("缺少右引号"));
+        }
+    }
+
+    @Test
+    public void streamsMillionRowsInBoundedMemory() throws IOException {
+        int rows = 1_000_000;
+        Reader generated = new GeneratedCsv(rows);
+        int[] fields = new int[1];
+        long[] chars = new long[1];
+        int parsed = new DelimitedParser(generated, ',').parse(new DelimitedParser.Handler() {
+            @Override
+            public void onField(int row, int col, char[] buffer, int start, int length) {
+                fields[0]++;
+                chars[0] += length;
+            }
+
+            @Override
+            public boolean onRowEnd(int row, int fieldCount) {
+                assertEquals(3, fieldCount);
+                return true;
+            }
+        });
+        assertEquals(rows, parsed);
+        assertEquals(rows * 3, fields[0]);
+        assertTrue(chars[0] > 0);
+    }
+
+    @Test
+    public void detectsDelimiterHeaderAndTypes() {
+        DelimitedFormat csv = detect("姓名,年龄,入职日期,在职\n张三,30,2024-01-05,是\n李四,41,2023-12-31,否\n",
+                StandardCharsets.UTF_8, null);
+        assertEquals(StandardCharsets.UTF_8, csv.getCharset());
+        assertEquals(',', csv.getDelimiter());
+        assertTrue(csv.hasHeader());
+        assertEquals(Arrays.asList("姓名", "年龄", "入职日期", "在职"), csv.getHeaderNames());
+        assertEquals("TEXT", csv.getColumnType(0));
+        assertEquals("NUMBER", csv.getColumnType(1));
+        assertEquals("DATE", csv.getColumnType(2));
+        assertEquals("BOOLEAN", csv.getColumnType(3));
+        assertEquals("TEXT", csv.getColumnType(9));
+
+        // 逗号只出现在引号内，按字段数一致的制表符切分
+        DelimitedFormat tsv = detect("1\t\"a,b\"\t3\n4\t\"c,d,e\"\t6\n", StandardCharsets.UTF_8, null);
+        assertEquals('\t', tsv.getDelimiter());
+        assertFalse(tsv.hasHeader());
+
+        assertEquals(';', detect("a;b\n1;2\n3;4\n", StandardCharsets.UTF_8, null).getDelimiter());
+        // 只有一列时按扩展名
+        assertEquals('\t', detect("x\ny\n", StandardCharsets.UTF_8, "data.TSV").getDelimiter());
+    }
+
+    @Test
+    public void detectsEncoding() {
+        Charset gbk = Charset.forName("GBK");
+        DelimitedFormat format = detect("水果名称,数量\n苹果,3\n香蕉,5\n", gbk, null);
+        assertEquals(gbk, format.getCharset());
+        assertEquals(Arrays.asList("水果名称", "数量"), format.getHeaderNames());
+
+        byte[] bom = "\uFEFFa,b\n".getBytes(StandardCharsets.UTF_8);
+        DelimitedFormat withBom = DelimitedFormat.detect(bom, bom.length, true, null);
+        assertEquals(3, withBom.getBomLength());
+        assertEquals(StandardCharsets.UTF_8, withBom.getCharset());
+
+        // 样本在多字节字符中间截断仍识别为UTF-8
+        byte[] utf8 = "中文,内容\n".getBytes(StandardCharsets.UTF_8);
+        assertTrue(DelimitedFormat.isUtf8(utf8, 0, 2, false));
+        assertFalse(DelimitedFormat.isUtf8(utf8, 0, 2, true));
+    }
+
+    private static DelimitedFormat detect(String text, Charset charset, String fileName) {
+        byte[] bytes = text.getBytes(charset);
+        return DelimitedFormat.detect(bytes, bytes.length, true, fileName);
+    }
+
+    private static List<List<String>> parse(String text, char delimiter, int bufferSize) throws IOException {
+        Collector collector = new Collector();
+        new DelimitedParser(new StringReader(text), delimiter, bufferSize).parse(collector);
+        return collector.rows;
+    }
+
+    private static final class Collector implements DelimitedParser.Handler {
+        final List<List<String>> rows = new ArrayList<>();
+        private List<String> current = new ArrayList<>();
+
+        @Override
+        public void onField(int row, int col, char[] chars, int start, int length) {
+            current.add(new String(chars, start, length));
+        }
+
+        @Override
+        public boolean onRowEnd(int row, int fieldCount) {
+            assertEquals(current.size(), fieldCount);
+            rows.add(current);
+            current = new ArrayList<>();
+            return true;
+        }
+    }
+
+    /**
+     * 按需生成的CSV，不在内存中保存整个文件
+     */
+    private static final class GeneratedCsv extends Reader {
+        private final int rows;
+        private int row;
+        private String line = "";
+        private int position;
+
+        GeneratedCsv(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == line.length()) {
+                if (row == rows) {
+                    return -1;
+                }
+                line = row + ",\"name " + row + "\"," + (row % 97) + ".5\n";
+                position = 0;
+                row++;
+            }
+            int n = Math.min(length, line.length() - position);
+            line.getChars(position, position + n, buffer, offset);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
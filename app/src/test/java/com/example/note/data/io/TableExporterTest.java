@@ -0,0 +1,176 @@
+package com.example.note.data.io;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 导出测试：各格式的转义、CSV经导入解析后还原、进度中途停止，以及大表格的内存占用
+ */
+public class TableExporterTest {
+
+    private static final List<String> NAMES = Arrays.asList("名称", "备注");
+
+    @Test
+    public void writesQuotedCsvThatParsesBack() throws IOException {
+        String[] cells = {
+                "苹果", "a,b",
+                "say \"hi\"", "多行\n文本",
+                null, "  ",
+        };
+        String csv = export(ExportFormat.CSV, cells, 3);
+        assertEquals("\uFEFF名称,备注\r\n苹果,\"a,b\"\r\n\"say \"\"hi\"\"\",\"多行\n文本\"\r\n,  \r\n", csv);
+
+        List<List<String>> parsed = new ArrayList<>();
+        new DelimitedParser(new StringReader(csv.substring(1)), ',').parse(new DelimitedParser.Handler() {
+            @Override
+            public void onField(int row, int col, char[] chars, int start, int length) {
+                if (col == 0) {
+                    parsed.add(new ArrayList<>());
+                }
+                parsed.get(row).add(new String(chars, start, length));
+            }
+
+            @Override
+            public boolean onRowEnd(int row, int fieldCount) {
+                return true;
+            }
+        });
+        assertEquals(Arrays.asList(
+                Arrays.asList("名称", "备注"),
+                Arrays.asList("苹果", "a,b"),
+                Arrays.asList("say \"hi\"", "多行\n文本"),
+                Arrays.asList("", "  ")), parsed);
+    }
+
+    @Test
+    public void quotesOnlyTheDelimiterInUseForTsv() throws IOException {
+        String tsv = export(ExportFormat.TSV, new String[]{"a,b", "c\td"}, 1);
+        assertEquals("\uFEFF名称\t备注\r\na,b\t\"c\td\"\r\n", tsv);
+    }
+
+    @Test
+    public void escapesMarkdownCells() throws IOException {
+        String md = export(ExportFormat.MARKDOWN, new String[]{"a|b", "c\\d<e>\r\nf"}, 1);
+        assertEquals("| 名称 | 备注 |\n| --- | --- |\n| a\\|b | c\\\\d&lt;e><br>f |\n", md);
+    }
+
+    @Test
+    public void escapesHtmlCells() throws IOException {
+        String html = export(ExportFormat.HTML, new String[]{"<b>&\"", "一\n二"}, 1);
+        assertTrue(html.startsWith("<!DOCTYPE html>"));
+        assertTrue(html.contains("<title>标题 &amp; 副标题</title>"));
+        assertTrue(html.contains("<tr><th>名称</th><th>备注</th></tr>"));
+        assertTrue(html.contains("<tr><td>&lt;b&gt;&amp;&quot;</td><td>一<br>二</td></tr>"));
+        assertTrue(html.endsWith("</table>\n</body>\n</html>\n"));
+    }
+
+    @Test
+    public void stopsWhenProgressReturnsFalse() throws IOException {
+        int rows = 3 * TableExporter.PROGRESS_CELLS;
+        List<Integer> reported = new ArrayList<>();
+        int written = TableExporter.export(new GeneratedSource(1, rows), ExportFormat.CSV.newFormatter(), null,
+                new StringWriter(), r -> {
+                    reported.add(r);
+                    return reported.size() < 2;
+                });
+        assertEquals(Arrays.asList(TableExporter.PROGRESS_CELLS, 2 * TableExporter.PROGRESS_CELLS), reported);
+        assertEquals(2 * TableExporter.PROGRESS_CELLS, written);
+    }
+
+    @Test
+    public void rejectsMismatchedGrid() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new GridTableSource(NAMES, new String[3], 2));
+    }
+
+    @Test
+    public void streamsMillionCellsInConstantMemory() throws IOException {
+        // 10列 × 10万行；输出只计数不保存，行数据由GeneratedSource即时生成
+        CountingWriter out = new CountingWriter();
+        int rows = TableExporter.export(new GeneratedSource(10, 100_000), ExportFormat.CSV.newFormatter(), null,
+                out, null);
+        assertEquals(100_000, rows);
+        assertTrue("written " + out.count, out.count > 5_000_000L);
+    }
+
+    private static String export(ExportFormat format, String[] cells, int rows) throws IOException {
+        StringWriter out = new StringWriter();
+        TableExporter.export(new GridTableSource(NAMES, cells, rows), format.newFormatter(), "标题 & 副标题",
+                out, null);
+        return out.toString();
+    }
+
+    /**
+     * 按行生成单元格文本的数据来源
+     */
+    private static final class GeneratedSource implements TableSource {
+        private final List<String> names = new ArrayList<>();
+        private final int rowCount;
+        private int row;
+
+        GeneratedSource(int cols, int rowCount) {
+            for (int col = 0; col < cols; col++) {
+                names.add("列" + (col + 1));
+            }
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        public List<String> getColumnNames() {
+            return names;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public boolean nextRow(String[] values) {
+            if (row >= rowCount) {
+                return false;
+            }
+            for (int col = 0; col < values.length; col++) {
+                values[col] = col % 3 == 0 ? "r" + row + ",c" + col : String.valueOf(row * 31 + col);
+            }
+            row++;
+            return true;
+        }
+    }
+
+    private static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.note.data.io;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * XLSX流式读取测试：工作表目录、共享字符串、数字/日期/布尔值、单元格格式，以及工作表排在共享字符串之前的文件
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class XlsxReaderTest {
+
+    private static final String WORKBOOK = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" " +
+            "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">" +
+            "<workbookPr%s/><sheets>" +
+            "<sheet name=\"数据\" sheetId=\"1\" r:id=\"rId1\"/>" +
+            "<sheet name=\"空表\" sheetId=\"2\" r:id=\"rId2\"/>" +
+            "</sheets></workbook>";
+
+    private static final String RELS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+            "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>" +
+            "<Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"/xl/worksheets/sheet2.xml\"/>" +
+            "<Relationship Id=\"rId3\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings\" Target=\"sharedStrings.xml\"/>" +
+            "<Relationship Id=\"rId4\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>" +
+            "</Relationships>";
+
+    private static final String SHARED_STRINGS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" count=\"4\" uniqueCount=\"4\">" +
+            "<si><t>名称</t></si>" +
+            "<si><t>日期</t></si>" +
+            "<si><r><rPr><b/></rPr><t>苹</t></r><r><t xml:space=\"preserve\">果 </t></r>" +
+            "<rPh sb=\"0\" eb=\"1\"><t>ping</t></rPh></si>" +
+            "<si><t>a &amp; b</t></si>" +
+            "</sst>";
+
+    // 0：默认；1：粗体+黄色填充+居中；2：日期格式（内置14）；3：自定义日期时间格式；4：引号中的字母不算日期
+    private static final String STYLES = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">" +
+            "<numFmts count=\"2\">" +
+            "<numFmt numFmtId=\"164\" formatCode=\"yyyy/m/d\\ h:mm\"/>" +
+            "<numFmt numFmtId=\"165\" formatCode=\"0.00&quot;d&quot;\"/>" +
+            "</numFmts>" +
+            "<fonts count=\"2\"><font><sz val=\"11\"/><color theme=\"1\"/></font>" +
+            "<font><b/><sz val=\"11\"/><color rgb=\"FFFF0000\"/></font></fonts>" +
+            "<fills count=\"3\"><fill><patternFill patternType=\"none\"/></fill>" +
+            "<fill><patternFill patternType=\"gray125\"/></fill>" +
+            "<fill><patternFill patternType=\"solid\"><fgColor rgb=\"FFFFFF00\"/></patternFill></fill></fills>" +
+            "<cellXfs count=\"5\">" +
+            "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\"/>" +
+            "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"2\" applyAlignment=\"1\"><alignment horizontal=\"center\"/></xf>" +
+            "<xf numFmtId=\"14\" fontId=\"0\" fillId=\"0\"/>" +
+            "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\"/>" +
+            "<xf numFmtId=\"165\" fontId=\"0\" fillId=\"0\"/>" +
+            "</cellXfs></styleSheet>";
+
+    private static final String SHEET1 = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>" +
+            "<row r=\"1\"><c r=\"A1\" s=\"1\" t=\"s\"><v>0</v></c><c r=\"B1\" s=\"1\" t=\"s\"><v>1</v></c>" +
+            "<c r=\"C1\" s=\"1\"/></row>" +
+            "<row r=\"2\"><c r=\"A2\" t=\"s\"><v>2</v></c><c r=\"B2\" s=\"2\"><v>45292</v></c>" +
+            "<c r=\"C2\"><v>0.1</v></c><c r=\"D2\" s=\"2\"/><c r=\"E2\" t=\"b\"><v>1</v></c></row>" +
+            "<row r=\"4\"><c r=\"A4\" t=\"inlineStr\"><is><t>内联</t></is></c>" +
+            "<c r=\"B4\" s=\"3\"><v>45292.5</v></c><c r=\"C4\"><v>1.2345678901234567E+20</v></c>" +
+            "<c r=\"D4\" t=\"str\"><f>A1</f><v>公式</v></c><c r=\"E4\" t=\"b\"><v>0</v></c>" +
+            "<c r=\"F4\" s=\"4\"><v>3</v></c><c r=\"G4\" t=\"s\"><v>3</v></c></row>" +
+            "</sheetData></worksheet>";
+
+    private static final String SHEET2 = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData/></worksheet>";
+
+    @Test
+    public void readsSheetNamesAndCells() throws IOException {
+        XlsxReader reader = new XlsxReader(opener(workbook(false, true)));
+        assertEquals(Arrays.asList("数据", "空表"), reader.getSheetNames());
+
+        List<String> cells = read(reader, 0);
+        assertEquals(Arrays.asList(
+                "0,0=名称@1", "0,1=日期@1", "0,2=@1",
+                "1,0=苹果 @0", "1,1=2024-01-01@2", "1,2=0.1@0", "1,4=true@0",
+                "3,0=内联@0", "3,1=2024-01-01 12:00@3", "3,2=123456789012346000000@0", "3,3=公式@0",
+                "3,4=false@0", "3,5=3@4", "3,6=a & b@0"), cells);
+
+        XlsxReader.CellFormat header = reader.getCellFormat(1);
+        assertTrue(header.bold);
+        assertFalse(header.italic);
+        assertEquals("#FF0000", header.textColor);
+        assertEquals("#FFFF00", header.backgroundColor);
+        assertEquals("CENTER", header.alignment);
+        assertFalse(header.isPlain());
+        assertTrue(reader.getCellFormat(0).isPlain());
+        assertTrue(reader.getCellFormat(2).isPlain());
+        assertSame(XlsxReader.CellFormat.DEFAULT, reader.getCellFormat(99));
+
+        assertTrue(read(reader, 1).isEmpty());
+    }
+
+    @Test
+    public void rereadsWhenSheetPrecedesSharedStrings() throws IOException {
+        byte[] file = workbook(false, false);
+        AtomicInteger opens = new AtomicInteger();
+        XlsxReader reader = new XlsxReader(() -> {
+            opens.incrementAndGet();
+            return new ByteArrayInputStream(file);
+        });
+        List<String> cells = read(reader, 0);
+        assertEquals("0,0=名称@1", cells.get(0));
+        assertEquals("1,1=2024-01-01@2", cells.get(4));
+        // 目录一遍，载入共享字符串和样式一遍，读取工作表一遍
+        assertEquals(3, opens.get());
+        assertTrue(reader.getCellFormat(1).bold);
+    }
+
+    @Test
+    public void stopsWhenHandlerReturnsFalse() throws IOException {
+        XlsxReader reader = new XlsxReader(opener(workbook(false, true)));
+        List<String> cells = new ArrayList<>();
+        reader.readSheet(0, (row, col, value, styleIndex) -> {
+            cells.add(value);
+            return cells.size() < 2;
+        });
+        assertEquals(Arrays.asList("名称", "日期"), cells);
+    }
+
+    @Test
+    public void convertsDateSerials() throws IOException {
+        XlsxReader reader = new XlsxReader(opener(workbook(false, true)));
+        assertEquals("1900-01-01", reader.dateValue(1));
+        assertEquals("1900-02-28", reader.dateValue(59));
+        assertEquals("1900-03-01", reader.dateValue(61));
+        assertEquals("2024-01-01", reader.dateValue(45292));
+        assertEquals("2024-01-01 06:30", reader.dateValue(45292.270833333333));
+        assertEquals("2024-01-01 00:00:01", reader.dateValue(45292 + 1 / 86400.0));
+        assertEquals("12:00", reader.dateValue(0.5));
+
+        XlsxReader reader1904 = new XlsxReader(opener(workbook(true, true)));
+        assertEquals("1904-01-01", reader1904.dateValue(0));
+        assertEquals("2024-01-01", reader1904.dateValue(45292 - 1462));
+    }
+
+    @Test
+    public void recognizesDateFormats() {
+        assertTrue(XlsxReader.isDateFormat(14, null));
+        assertTrue(XlsxReader.isDateFormat(22, null));
+        assertTrue(XlsxReader.isDateFormat(57, null));
+        assertFalse(XlsxReader.isDateFormat(0, null));
+        assertFalse(XlsxReader.isDateFormat(4, null));
+        assertTrue(XlsxReader.isDateFormat(164, "yyyy\"年\"m\"月\"d\"日\""));
+        assertTrue(XlsxReader.isDateFormat(164, "[$-409]mmm dd, yyyy"));
+        assertTrue(XlsxReader.isDateFormat(164, "hh:mm:ss"));
+        assertFalse(XlsxReader.isDateFormat(164, "0.00\"days\""));
+        assertFalse(XlsxReader.isDateFormat(164, "[Red]#,##0.00"));
+        assertFalse(XlsxReader.isDateFormat(164, "#,##0;\\-#,##0;\"-\";@"));
+        assertFalse(XlsxReader.isDateFormat(164, "General"));
+    }
+
+    @Test
+    public void parsesColumnReferences() {
+        assertEquals(0, XlsxReader.parseColumn("A1"));
+        assertEquals(25, XlsxReader.parseColumn("Z9"));
+        assertEquals(26, XlsxReader.parseColumn("AA10"));
+        assertEquals(16383, XlsxReader.parseColumn("XFD1048576"));
+        assertEquals(-1, XlsxReader.parseColumn("12"));
+        assertEquals(-1, XlsxReader.parseColumn(null));
+    }
+
+    @Test
+    public void rejectsNonWorkbook() {
+        byte[] notZip = "a,b,c\n1,2,3\n".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> new XlsxReader(opener(notZip)));
+    }
+
+    private static List<String> read(XlsxReader reader, int sheet) throws IOException {
+        List<String> cells = new ArrayList<>();
+        reader.readSheet(sheet, (row, col, value, styleIndex) -> {
+            cells.add(row + "," + col + "=" + value + "@" + styleIndex);
+            return true;
+        });
+        return cells;
+    }
+
+    private static XlsxReader.StreamOpener opener(byte[] file) {
+        return () -> new ByteArrayInputStream(file);
+    }
+
+    /**
+     * @param stringsFirst false时把工作表放在共享字符串和样式之前
+     */
+    private static byte[] workbook(boolean date1904, boolean stringsFirst) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            put(zip, "[Content_Types].xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Types/>");
+            put(zip, "xl/workbook.xml", String.format(WORKBOOK, date1904 ? " date1904=\"1\"" : ""));
+            put(zip, "xl/_rels/workbook.xml.rels", RELS);
+            if (stringsFirst) {
+                put(zip, "xl/sharedStrings.xml", SHARED_STRINGS);
+                put(zip, "xl/styles.xml", STYLES);
+            }
+            put(zip, "xl/worksheets/sheet1.xml", SHEET1);
+            put(zip, "xl/worksheets/sheet2.xml", SHEET2);
+            if (!stringsFirst) {
+                put(zip, "xl/sharedStrings.xml", SHARED_STRINGS);
+                put(zip, "xl/styles.xml", STYLES);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void put(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
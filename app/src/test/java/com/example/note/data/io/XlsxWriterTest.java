@@ -0,0 +1,192 @@
+package com.example.note.data.io;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * XLSX流式写出测试：经XlsxReader读回的值和格式、冻结窗格、样式去重、非法字符，以及大表格的流式写出
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class XlsxWriterTest {
+
+    private static final List<String> NAMES = Arrays.asList("名称", "数量", "日期", "完成");
+
+    @Test
+    public void roundTripsTypedCellsAndStyles() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (XlsxWriter writer = new XlsxWriter(out)) {
+            writer.startSheet("清单", NAMES, new float[]{20, 10, 12, 0}, 0);
+            int highlight = writer.style(true, false, "#FF0000", "#FFFF00", "CENTER", XlsxWriter.FORMAT_GENERAL);
+            int date = writer.style(false, false, null, null, null, XlsxWriter.FORMAT_DATE);
+            int percent = writer.style(false, false, null, null, null, XlsxWriter.FORMAT_PERCENT);
+            writer.startRow(0);
+            writer.writeString(0, "a & <b>\r\n\"c\"", highlight);
+            writer.writeNumber(1, 1234.5, 0);
+            writer.writeDate(2, LocalDate.of(2024, 1, 1).toEpochDay(), date);
+            writer.writeBoolean(3, true, 0);
+            writer.endRow();
+            writer.startRow(2);
+            writer.writeNumber(1, 0.5, percent);
+            writer.writeDate(2, LocalDate.of(1899, 12, 31).toEpochDay(), date);
+            writer.endRow();
+            writer.finish();
+        }
+
+        XlsxReader reader = new XlsxReader(() -> new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(Arrays.asList("清单"), reader.getSheetNames());
+        List<String> cells = new ArrayList<>();
+        List<Integer> styles = new ArrayList<>();
+        reader.readSheet(0, (row, col, value, styleIndex) -> {
+            cells.add(row + "," + col + "=" + value);
+            styles.add(styleIndex);
+            return true;
+        });
+        assertEquals(Arrays.asList(
+                "0,0=名称", "0,1=数量", "0,2=日期", "0,3=完成",
+                "1,0=a & <b>\r\n\"c\"", "1,1=1234.5", "1,2=2024-01-01", "1,3=true",
+                "3,1=0.5", "3,2=1899-12-31"), cells);
+
+        assertTrue(reader.getCellFormat(styles.get(0)).bold);
+        XlsxReader.CellFormat format = reader.getCellFormat(styles.get(4));
+        assertTrue(format.bold);
+        assertFalse(format.italic);
+        assertEquals("#FF0000", format.textColor);
+        assertEquals("#FFFF00", format.backgroundColor);
+        assertEquals("CENTER", format.alignment);
+        assertTrue(reader.getCellFormat(styles.get(5)).isPlain());
+    }
+
+    @Test
+    public void freezesHeaderRowAndColumns() throws IOException {
+        String sheet = entry(write(2), "xl/worksheets/sheet1.xml");
+        assertTrue(sheet.contains("<pane xSplit=\"2\" ySplit=\"1\" topLeftCell=\"C2\" activePane=\"bottomRight\" state=\"frozen\"/>"));
+        assertTrue(sheet.contains("<col min=\"1\" max=\"1\" width=\"20\" customWidth=\"1\"/>"));
+
+        sheet = entry(write(0), "xl/worksheets/sheet1.xml");
+        assertTrue(sheet.contains("<pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/>"));
+    }
+
+    @Test
+    public void deduplicatesStyles() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (XlsxWriter writer = new XlsxWriter(out)) {
+            int a = writer.style(false, true, "#0000ff", null, null, XlsxWriter.FORMAT_GENERAL);
+            int b = writer.style(false, true, "#0000FF", null, null, XlsxWriter.FORMAT_GENERAL);
+            int c = writer.style(false, true, "#0000FF", null, null, XlsxWriter.FORMAT_DATE);
+            assertEquals(a, b);
+            assertNotEquals(a, c);
+            assertEquals(0, writer.style(false, false, null, null, "UNKNOWN", XlsxWriter.FORMAT_GENERAL));
+            writer.finish();
+        }
+        String styles = entry(out.toByteArray(), "xl/styles.xml");
+        // 默认、表头、两个斜体蓝字
+        assertTrue(styles.contains("<cellXfs count=\"4\">"));
+        assertTrue(styles.contains("<fonts count=\"3\">"));
+    }
+
+    @Test
+    public void dropsCharactersExcelRejects() {
+        assertEquals("ab&#13;\tc", XlsxWriter.escape("a\u0001b\r\tc\uD800", false));
+        assertEquals("\uD83D\uDE00&quot;", XlsxWriter.escape("\uD83D\uDE00\"", true));
+        assertEquals("abc1", XlsxWriter.sheetName("'a/b:c[1]*?'"));
+        assertEquals("Sheet1", XlsxWriter.sheetName(" \\ "));
+        assertEquals("AB", XlsxWriter.columnName(27));
+        assertEquals(1, XlsxWriter.dateSerial(LocalDate.of(1900, 1, 1).toEpochDay()), 0);
+        assertEquals(61, XlsxWriter.dateSerial(LocalDate.of(1900, 3, 1).toEpochDay()), 0);
+        assertEquals("1", XlsxWriter.formatNumber(1.0));
+        assertEquals("0.1", XlsxWriter.formatNumber(0.1));
+    }
+
+    @Test
+    public void rejectsRowsOutOfOrder() throws IOException {
+        try (XlsxWriter writer = new XlsxWriter(new ByteArrayOutputStream())) {
+            writer.startSheet(null, NAMES, null, 0);
+            writer.startRow(3);
+            writer.endRow();
+            assertThrows(IllegalArgumentException.class, () -> writer.startRow(3));
+        }
+    }
+
+    @Test
+    public void streamsMillionCellsInConstantMemory() throws IOException {
+        // 10列 × 10万行，输出只计数不保存
+        CountingStream out = new CountingStream();
+        List<String> names = new ArrayList<>();
+        for (int col = 0; col < 10; col++) {
+            names.add("列" + (col + 1));
+        }
+        try (XlsxWriter writer = new XlsxWriter(out)) {
+            writer.startSheet("大表", names, null, 1);
+            int bold = writer.style(true, false, null, null, null, XlsxWriter.FORMAT_GENERAL);
+            for (int row = 0; row < 100_000; row++) {
+                writer.startRow(row);
+                for (int col = 0; col < 10; col++) {
+                    if (col % 3 == 0) {
+                        writer.writeString(col, "r" + row + "c" + col, row % 2 == 0 ? bold : 0);
+                    } else {
+                        writer.writeNumber(col, row * 31 + col, 0);
+                    }
+                }
+                writer.endRow();
+            }
+            writer.finish();
+        }
+        assertTrue("written " + out.count, out.count > 1_000_000L);
+    }
+
+    private static byte[] write(int frozenColumns) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (XlsxWriter writer = new XlsxWriter(out)) {
+            writer.startSheet("表", NAMES, new float[]{20, 10}, frozenColumns);
+            writer.finish();
+        }
+        return out.toByteArray();
+    }
+
+    private static String entry(byte[] file, String name) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(file))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.getName().equals(name)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    for (int n = zip.read(buffer); n > 0; n = zip.read(buffer)) {
+                        out.write(buffer, 0, n);
+                    }
+                    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new AssertionError("缺少" + name);
+    }
+
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.note.data.job;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Job;
+import com.example.note.data.entity.Notebook;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import static org.junit.Assert.*;
+
+/**
+ * 任务执行测试：被停止后从检查点继续、失败的块连同检查点回滚、取消在让出点生效
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class JobRunnerTest {
+
+    private static final int CHUNKS = 5;
+
+    private AppDatabase database;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(AppDatabase.DATABASE_CALLBACK)
+                .allowMainThreadQueries()
+                .setQueryExecutor(Runnable::run)
+                .setTransactionExecutor(Runnable::run)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void resumesFromCheckpointAfterStop() {
+        long jobId = insertJob();
+        ChunkHandler handler = new ChunkHandler();
+
+        // 系统在第3块提交后要求停止
+        assertEquals(JobRunner.Outcome.STOPPED, JobRunner.run(database, jobId, handler, () -> notebookCount() >= 3));
+        Job job = database.jobDao().getByIdSync(jobId);
+        assertEquals(Job.STATE_PENDING, job.getState());
+        assertEquals("{\"next\":3}", job.getCheckpoint());
+        assertEquals(3, job.getProgress());
+        assertEquals(CHUNKS, job.getTotal());
+
+        // 再次调度时只执行剩下的块
+        assertEquals(JobRunner.Outcome.SUCCEEDED, JobRunner.run(database, jobId, handler, () -> false));
+        job = database.jobDao().getByIdSync(jobId);
+        assertEquals(Job.STATE_SUCCEEDED, job.getState());
+        assertEquals(CHUNKS, notebookCount());
+        assertEquals(2, job.getAttempts());
+        assertEquals(100, job.getPercent());
+
+        // 已结束的任务不再执行
+        assertEquals(JobRunner.Outcome.SUCCEEDED, JobRunner.run(database, jobId, handler, () -> false));
+        assertEquals(2, handler.runs);
+    }
+
+    @Test
+    public void rollsBackFailedChunkWithItsCheckpoint() {
+        long jobId = insertJob();
+        ChunkHandler handler = new ChunkHandler();
+        handler.failAt = 2;
+
+        assertEquals(JobRunner.Outcome.FAILED, JobRunner.run(database, jobId, handler, () -> false));
+        Job job = database.jobDao().getByIdSync(jobId);
+        assertEquals(Job.STATE_FAILED, job.getState());
+        assertEquals("第2块失败", job.getMessage());
+        assertEquals("{\"next\":2}", job.getCheckpoint());
+        assertEquals(2, notebookCount());
+    }
+
+    @Test
+    public void cancelTakesEffectAtNextYieldPoint() {
+        long jobId = insertJob();
+        ChunkHandler handler = new ChunkHandler();
+        handler.cancelAfter = 2;
+
+        assertEquals(JobRunner.Outcome.CANCELLED, JobRunner.run(database, jobId, handler, () -> false));
+        assertEquals(Job.STATE_CANCELLED, database.jobDao().getStateSync(jobId));
+        assertEquals(2, notebookCount());
+
+        // 取消后的任务不会被改回运行
+        assertEquals(JobRunner.Outcome.CANCELLED, JobRunner.run(database, jobId, handler, () -> false));
+        assertEquals(1, handler.runs);
+        assertEquals(0, database.jobDao().markRunning(jobId, 0));
+    }
+
+    @Test
+    public void failsJobsOfUnknownType() {
+        long jobId = insertJob();
+        assertEquals(JobRunner.Outcome.FAILED, JobRunner.run(database, jobId, null, () -> false));
+        assertEquals(Job.STATE_FAILED, database.jobDao().getStateSync(jobId));
+    }
+
+    private long insertJob() {
+        Job job = new Job();
+        job.setType("TEST");
+        return database.jobDao().insert(job);
+    }
+
+    private int notebookCount() {
+        try (Cursor cursor = database.query("SELECT COUNT(*) FROM notebooks", null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    /**
+     * 每块插入一个笔记本，检查点记录下一块的序号
+     */
+    private final class ChunkHandler implements JobHandler {
+        int failAt = -1;
+        int cancelAfter = -1;
+        int runs;
+
+        @Override
+        public void run(JobContext job) throws Exception {
+            runs++;
+            int next = job.getCheckpoint().optInt("next", 0);
+            while (next < CHUNKS) {
+                int current = next;
+                job.commit(() -> {
+                    database.notebookDao().insert(new Notebook("块" + current, "#FFFFFF"));
+                    if (current == failAt) {
+                        throw new IllegalStateException("第" + current + "块失败");
+                    }
+                    job.checkpoint(new JSONObject().put("next", current + 1), current + 1, CHUNKS);
+                    return null;
+                });
+                next = current + 1;
+                if (next == cancelAfter) {
+                    // 相当于用户在另一个线程调用JobRepository.cancel
+                    database.jobDao().cancel(job.getJobId(), System.currentTimeMillis());
+                }
+                job.yieldPoint();
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.note.data.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 编辑日志的恢复测试：强杀写入进程后重新打开，已sync的记录必须全部可重放
+ */
+public class EditJournalTest {
+
+    private static final int SYNCED_RECORDS = 200;
+
+    private File dir;
+    private File journalFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal-test").toFile();
+        journalFile = EditJournal.fileFor(dir, 42);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = journalFile.getParentFile().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        journalFile.getParentFile().delete();
+        dir.delete();
+    }
+
+    @Test
+    public void killedProcess_syncedRecordsAreReplayed() throws Exception {
+        String javaBin = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(javaBin,
+                "-cp", System.getProperty("java.class.path"),
+                Writer.class.getName(),
+                journalFile.getAbsolutePath(),
+                String.valueOf(SYNCED_RECORDS));
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null && !line.equals(Writer.SYNCED)) {
+                // 跳过子进程的其他输出
+            }
+            assertEquals(Writer.SYNCED, line);
+            // 子进程仍在不停追加未sync的记录，此时直接强杀
+            process.destroyForcibly();
+            assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+        }
+
+        EditJournal journal = EditJournal.open(journalFile);
+        List<EditJournal.Entry> entries = journal.getRecoveredEntries();
+        assertTrue(entries.size() >= SYNCED_RECORDS);
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(i + 1, entries.get(i).seq);
+        }
+
+        GridModel grid = new GridModel();
+        EditJournal.replay(entries.subList(0, SYNCED_RECORDS), grid);
+        assertEquals(Writer.expectedGrid(SYNCED_RECORDS), grid.cells);
+        assertEquals(1, grid.rowsInserted);
+
+        // 新记录的序号接在恢复的记录之后
+        assertEquals(entries.size() + 1, journal.appendSetCell(0, 0, "next"));
+        journal.sync();
+        journal.close();
+    }
+
+    @Test
+    public void tornTail_isTruncatedOnOpen() throws Exception {
+        EditJournal journal = EditJournal.open(journalFile);
+        journal.appendSetCell(0, 0, "a");
+        journal.appendSetCell(0, 1, "b");
+        journal.sync();
+        journal.close();
+        long validLength = journalFile.length();
+
+        // 模拟写到一半时被杀：尾部残留不完整的记录
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+            raf.seek(raf.length());
+            raf.writeInt(64);
+            raf.write(new byte[]{1, 2, 3});
+        }
+
+        EditJournal reopened = EditJournal.open(journalFile);
+        assertEquals(2, reopened.getRecoveredEntries().size());
+        assertEquals("b", reopened.getRecoveredEntries().get(1).value);
+        assertEquals(validLength, journalFile.length());
+        reopened.close();
+    }
+
+    @Test
+    public void truncate_keepsRecordsAppendedDuringSave() throws Exception {
+        EditJournal journal = EditJournal.open(journalFile);
+        journal.appendSetCell(0, 0, "saved");
+        long mark = journal.mark();
+        journal.appendSetCell(1, 0, "unsaved");
+        journal.truncate(mark);
+        journal.sync();
+        journal.close();
+
+        EditJournal reopened = EditJournal.open(journalFile);
+        List<EditJournal.Entry> entries = reopened.getRecoveredEntries();
+        assertEquals(1, entries.size());
+        assertEquals("unsaved", entries.get(0).value);
+
+        reopened.truncate(reopened.mark());
+        reopened.sync();
+        reopened.close();
+        assertTrue(EditJournal.open(journalFile).getRecoveredEntries().isEmpty());
+    }
+
+    @Test
+    public void savedBeforeTruncate_savedRecordsAreSkipped() throws Exception {
+        // 数据库保存已提交（记下序号），截断日志前进程被杀
+        EditJournal journal = EditJournal.open(journalFile);
+        journal.appendInsertRow(0);
+        journal.appendSetCell(0, 0, "saved");
+        long savedSeq = journal.mark();
+        journal.appendInsertRow(0);
+        journal.sync();
+        journal.close();
+
+        EditJournal reopened = EditJournal.open(journalFile);
+        assertEquals(3, reopened.getRecoveredEntries().size());
+        List<EditJournal.Entry> pending = reopened.getRecoveredEntriesAfter(savedSeq);
+        assertEquals(1, pending.size());
+        assertEquals(EditJournal.TYPE_INSERT_ROW, pending.get(0).type);
+
+        // 重放到已保存的数据上，已保存的插入行不会重复执行
+        GridModel grid = new GridModel();
+        grid.cells.put("0_0", "saved");
+        EditJournal.replay(pending, grid);
+        assertEquals("saved", grid.cells.get("1_0"));
+        assertEquals(1, grid.rowsInserted);
+        reopened.close();
+    }
+
+    @Test
+    public void advanceTo_continuesAfterSavedSeqOnEmptyJournal() throws Exception {
+        EditJournal journal = EditJournal.open(journalFile);
+        journal.appendSetCell(0, 0, "a");
+        long savedSeq = journal.mark();
+        journal.truncate(savedSeq);
+        journal.sync();
+        journal.close();
+
+        // 截断后的日志为空，序号从数据库记录的位置续上
+        EditJournal reopened = EditJournal.open(journalFile);
+        assertTrue(reopened.getRecoveredEntries().isEmpty());
+        reopened.advanceTo(savedSeq);
+        assertEquals(savedSeq + 1, reopened.appendSetCell(0, 0, "b"));
+        reopened.sync();
+        reopened.close();
+
+        EditJournal again = EditJournal.open(journalFile);
+        assertEquals(1, again.getRecoveredEntriesAfter(savedSeq).size());
+        again.close();
+    }
+
+    /**
+     * 子进程：写入并sync固定数量的记录后继续无限追加，等待被强杀
+     */
+    public static class Writer {
+        static final String SYNCED = "SYNCED";
+
+        public static void main(String[] args) throws Exception {
+            EditJournal journal = EditJournal.open(new File(args[0]));
+            int count = Integer.parseInt(args[1]);
+            journal.appendInsertRow(0);
+            for (int i = 1; i < count; i++) {
+                journal.appendSetCell(i % 10, i % 3, "v" + i);
+            }
+            journal.sync();
+            System.out.println(SYNCED);
+            System.out.flush();
+
+            int i = count;
+            while (true) {
+                journal.appendSetCell(i % 10, i % 3, "late" + i);
+                i++;
+                Thread.sleep(1);
+            }
+        }
+
+        static Map<String, String> expectedGrid(int count) {
+            Map<String, String> cells = new HashMap<>();
+            for (int i = 1; i < count; i++) {
+                cells.put((i % 10) + "_" + (i % 3), "v" + i);
+            }
+            return cells;
+        }
+    }
+
+    /**
+     * 以"row_col"为键的简单表格模型
+     */
+    private static class GridModel implements EditJournal.Applier {
+        final Map<String, String> cells = new HashMap<>();
+        int rowsInserted = 0;
+
+        @Override
+        public void setCell(int row, int col, String value) {
+            cells.put(row + "_" + col, value);
+        }
+
+        @Override
+        public void insertRow(int row) {
+            rowsInserted++;
+            shiftRows(row, 1);
+        }
+
+        @Override
+        public void deleteRow(int row) {
+            shiftRows(row, -1);
+        }
+
+        @Override
+        public void insertColumn(int col, String name) {
+        }
+
+        @Override
+        public void deleteColumn(int col) {
+        }
+
+        private void shiftRows(int from, int delta) {
+            List<Map.Entry<String, String>> moved = new ArrayList<>();
+            for (Map.Entry<String, String> e : new ArrayList<>(cells.entrySet())) {
+                int row = Integer.parseInt(e.getKey().split("_")[0]);
+                if (row >= from) {
+                    cells.remove(e.getKey());
+                    if (delta > 0 || row > from) {
+                        moved.add(new HashMap.SimpleEntry<>(
+                                (row + delta) + "_" + e.getKey().split("_")[1], e.getValue()));
+                    }
+                }
+            }
+            for (Map.Entry<String, String> e : moved) {
+                cells.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Notebook;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 导入写入测试：去掉末尾只有格式的行列、补齐范围内的空白单元格、被停止后从提交的状态继续
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class CellBulkWriterTest {
+
+    private static final long STYLED = CellStyle.DEFAULT_ID + 1;
+    private static final String TEXT = Column.ColumnType.TEXT.getValue();
+
+    private AppDatabase database;
+    private long notebookId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(AppDatabase.DATABASE_CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+        notebookId = database.notebookDao().insert(new Notebook("导入", "#FFFFFF"));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void fillsGridInsideContentAndTrimsStyledOutside() throws Exception {
+        try (CellBulkWriter writer = new CellBulkWriter(database, notebookId, 1, null)) {
+            writer.write(0, 0, "a", CellStyle.DEFAULT_ID);
+            writer.write(0, 1, "", CellStyle.DEFAULT_ID);
+            // 这一列后面没有内容，末尾只有格式的列被去掉
+            writer.write(0, 2, "", STYLED);
+            // 范围之内的格式单元格保留
+            writer.write(1, 0, "", STYLED);
+            writer.write(2, 1, "b", CellStyle.DEFAULT_ID);
+            // 末尾只有格式的行被去掉
+            writer.write(5, 0, "", STYLED);
+            assertTrue(writer.finish(Collections.emptyList(), col -> TEXT, null));
+            assertEquals(3, writer.getRows());
+            assertEquals(2, writer.getCols());
+        }
+        // 范围内的空白单元格都已补齐，编辑时总能找到对应的单元格
+        assertEquals("0,0=a;0,1=;1,0=;1,1=;2,0=;2,1=b", cells());
+        assertEquals(1, count("SELECT COUNT(*) FROM cells WHERE notebook_id = ? AND style_id = " + STYLED));
+        assertEquals(2, count("SELECT COUNT(*) FROM columns WHERE notebook_id = ?"));
+    }
+
+    @Test
+    public void headerOnlySheetGetsOneBlankRow() throws Exception {
+        try (CellBulkWriter writer = new CellBulkWriter(database, notebookId, 1, null)) {
+            writer.setColumnCount(3);
+            assertTrue(writer.finish(Collections.emptyList(), col -> TEXT, null));
+            assertEquals(0, writer.getRows());
+        }
+        assertEquals("0,0=;0,1=;0,2=", cells());
+    }
+
+    @Test
+    public void resumesAfterLastCommittedChunk() throws Exception {
+        int total = CellBulkWriter.CHUNK_CELLS * 3 / 2;
+        List<JSONObject> states = new ArrayList<>();
+
+        // 第一块提交后被停止
+        try (CellBulkWriter writer = new CellBulkWriter(database, notebookId, 1, listener(states, false))) {
+            int row = 0;
+            while (row < total && writer.write(row, 0, "r" + row, CellStyle.DEFAULT_ID)) {
+                row++;
+            }
+            assertEquals(CellBulkWriter.CHUNK_CELLS, row);
+        }
+        assertEquals(1, states.size());
+        JSONObject state = states.get(0);
+        assertEquals(CellBulkWriter.CHUNK_CELLS, state.getInt(CellBulkWriter.STATE_ROW));
+        assertEquals(CellBulkWriter.CHUNK_CELLS, count("SELECT COUNT(*) FROM cells WHERE notebook_id = ?"));
+
+        // 从头重写，已提交的行被跳过，不会重复插入
+        try (CellBulkWriter writer = new CellBulkWriter(database, notebookId, 1, listener(states, true))) {
+            writer.resume(state);
+            for (int row = 0; row < total; row++) {
+                assertTrue(writer.write(row, 0, "r" + row, CellStyle.DEFAULT_ID));
+            }
+            assertTrue(writer.finish(Collections.emptyList(), col -> TEXT, null));
+            assertEquals(total, writer.getRows());
+            assertEquals(1, writer.getCols());
+        }
+        assertEquals(total, count("SELECT COUNT(*) FROM cells WHERE notebook_id = ?"));
+    }
+
+    private static CellBulkWriter.ChunkListener listener(List<JSONObject> states, boolean keepGoing) {
+        return new CellBulkWriter.ChunkListener() {
+            @Override
+            public void beforeCommit(JSONObject state) {
+                states.add(state);
+            }
+
+            @Override
+            public boolean onChunkCommitted(int rows) {
+                return keepGoing;
+            }
+        };
+    }
+
+    /**
+     * 按行优先列出"行,列=内容"，以分号分隔
+     */
+    private String cells() {
+        StringBuilder builder = new StringBuilder();
+        try (Cursor cursor = database.query("SELECT row_index, col_index, content FROM cells WHERE notebook_id = ? "
+                + "ORDER BY row_index, col_index", new Object[]{notebookId})) {
+            while (cursor.moveToNext()) {
+                if (builder.length() > 0) {
+                    builder.append(';');
+                }
+                builder.append(cursor.getInt(0)).append(',').append(cursor.getInt(1)).append('=')
+                        .append(cursor.getString(2));
+            }
+        }
+        return builder.toString();
+    }
+
+    private int count(String sql) {
+        try (Cursor cursor = database.query(sql, new Object[]{notebookId})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        }
+    }
+}
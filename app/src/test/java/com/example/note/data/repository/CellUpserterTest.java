@@ -0,0 +1,153 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.database.NotebookStats;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.search.SearchIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import static org.junit.Assert.*;
+
+/**
+ * 单元格UPSERT测试：原生UPSERT和UPDATE后INSERT两种写法结果相同，都不删除重建行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class CellUpserterTest {
+
+    private AppDatabase database;
+    private long notebookId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        // 与正式数据库相同的搜索队列和统计触发器
+                        SearchIndex.createSchema(db);
+                        NotebookStats.createTriggers(db);
+                    }
+                })
+                .build();
+        notebookId = database.notebookDao().insert(new Notebook("写入", "#FFFFFF"));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void nativeUpsertUpdatesInPlace() throws Exception {
+        assertUpdatesInPlace(new CellUpserter(database, true));
+    }
+
+    @Test
+    public void fallbackUpdatesInPlace() throws Exception {
+        assertUpdatesInPlace(new CellUpserter(database, false));
+    }
+
+    @Test
+    public void parsesSqliteVersion() {
+        assertTrue(CellUpserter.isAtLeast("3.24.0", 3, 24));
+        assertTrue(CellUpserter.isAtLeast("3.28.0", 3, 24));
+        assertTrue(CellUpserter.isAtLeast("4.0", 3, 24));
+        assertFalse(CellUpserter.isAtLeast("3.22.0", 3, 24));
+        assertFalse(CellUpserter.isAtLeast("3.9.2", 3, 24));
+        assertFalse(CellUpserter.isAtLeast("", 3, 24));
+        assertFalse(CellUpserter.isAtLeast(null, 3, 24));
+        // Robolectric使用的原生SQLite支持UPSERT
+        assertTrue(CellUpserter.supportsUpsert(database.getOpenHelper().getWritableDatabase()));
+    }
+
+    private void assertUpdatesInPlace(CellUpserter upserter) throws Exception {
+        // 不存在时插入，默认样式
+        upserter.upsertContent(notebookId, 2, 3, "1,200", 100);
+        Cell cell = database.cellDao().getCellByPositionSync(notebookId, 2, 3);
+        long id = cell.getId();
+        assertEquals("1,200", cell.getContent());
+        assertEquals("1200.0/null", storedTypedValues(2, 3));
+        assertEquals(1, cell.getStyleId());
+        assertEquals(100, cell.getCreatedAt());
+        assertEquals(1, countSearchDirty(id));
+
+        // 只改样式：内容和数值保持不变，不进入搜索队列
+        database.getOpenHelper().getWritableDatabase().execSQL("DELETE FROM search_dirty");
+        upserter.upsertStyle(notebookId, 2, 3, 7, 200);
+        cell = database.cellDao().getCellByPositionSync(notebookId, 2, 3);
+        assertEquals(id, cell.getId());
+        assertEquals(7, cell.getStyleId());
+        assertEquals("1,200", cell.getContent());
+        assertEquals("1200.0/null", storedTypedValues(2, 3));
+        assertEquals(200, cell.getUpdatedAt());
+        assertEquals(0, countSearchDirty(id));
+
+        // 连续改内容两次：保留id、样式和创建时间，搜索队列中只有一条
+        upserter.upsertContent(notebookId, 2, 3, "2024-01-05", 300);
+        upserter.upsertContent(notebookId, 2, 3, "abc", 400);
+        cell = database.cellDao().getCellByPositionSync(notebookId, 2, 3);
+        assertEquals(id, cell.getId());
+        assertEquals("abc", cell.getContent());
+        assertEquals("null/null", storedTypedValues(2, 3));
+        assertEquals(7, cell.getStyleId());
+        assertEquals(100, cell.getCreatedAt());
+        assertEquals(400, cell.getUpdatedAt());
+        assertEquals(1, countSearchDirty(id));
+
+        // 值没有变化时不写入
+        upserter.upsertContent(notebookId, 2, 3, "abc", 500);
+        upserter.upsertStyle(notebookId, 2, 3, 7, 500);
+        assertEquals(400, database.cellDao().getCellByPositionSync(notebookId, 2, 3).getUpdatedAt());
+
+        // 不存在时只设置样式会创建空单元格
+        upserter.upsertStyle(notebookId, 0, 0, 5, 600);
+        Cell styled = database.cellDao().getCellByPositionSync(notebookId, 0, 0);
+        assertEquals("", styled.getContent());
+        assertEquals(5, styled.getStyleId());
+
+        Notebook notebook = database.notebookDao().getByIdSync(notebookId);
+        assertEquals(2, notebook.getCellCount());
+        assertEquals(3, notebook.getRowCount());
+    }
+
+    /**
+     * 数据库中保存的num_value/date_value（实体的getter会从内容重新解析，不能用来检查）
+     */
+    private String storedTypedValues(int row, int col) {
+        try (Cursor cursor = database.query("SELECT num_value, date_value FROM cells " +
+                "WHERE notebook_id = ? AND row_index = ? AND col_index = ?", new Object[]{notebookId, row, col})) {
+            cursor.moveToFirst();
+            return (cursor.isNull(0) ? "null" : String.valueOf(cursor.getDouble(0))) + "/"
+                    + (cursor.isNull(1) ? "null" : String.valueOf(cursor.getLong(1)));
+        }
+    }
+
+    private int countSearchDirty(long cellId) {
+        try (Cursor cursor = database.query("SELECT COUNT(*) FROM search_dirty WHERE kind = 1 AND doc_id = ?",
+                new Object[]{cellId})) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.CellStyle;
+import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.model.TableModel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 导入的笔记本中编辑原本空白的单元格：按编辑页的做法修改加载出的单元格、整表保存后重新加载，编辑不能丢失
+ * 数据库访问不能在主线程，全部放到后台线程执行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ImportedNotebookEditTest {
+
+    private static final String TEXT = Column.ColumnType.TEXT.getValue();
+
+    @Test
+    public void editedBlankCellSurvivesSaveAndReload() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        AppDatabase database = AppDatabase.getInstance(context);
+        NotebookLoader loader = NotebookLoader.getInstance(context);
+        ExecutorService background = Executors.newSingleThreadExecutor();
+        try {
+            long notebookId = onBackground(background, () -> {
+                long id = database.notebookDao().insert(new Notebook("导入", "#FFFFFF"));
+                try (CellBulkWriter writer = new CellBulkWriter(database, id, 1, null)) {
+                    writer.write(0, 0, "a", CellStyle.DEFAULT_ID);
+                    writer.write(1, 1, "b", CellStyle.DEFAULT_ID);
+                    assertTrue(writer.finish(Collections.emptyList(), col -> TEXT, null));
+                }
+                return id;
+            });
+
+            TableModel model = onBackground(background, () -> loader.loadSync(notebookId));
+            // 编辑页只修改源数据中已有的单元格，文件中空白的(0,1)也必须在加载结果里
+            Cell blank = find(model, 0, 1);
+            assertNotNull(blank);
+            assertEquals("", blank.getContent());
+            blank.setContent("x");
+
+            List<Cell> cells = new ArrayList<>(model.frozenCells);
+            cells.addAll(model.scrollableCells);
+            save(context, notebookId, new ArrayList<>(model.columns), cells);
+
+            TableModel reloaded = onBackground(background, () -> loader.loadSync(notebookId));
+            assertEquals("x", find(reloaded, 0, 1).getContent());
+            assertEquals("a", find(reloaded, 0, 0).getContent());
+            assertEquals("b", find(reloaded, 1, 1).getContent());
+            assertEquals(2, reloaded.rowCount);
+            assertEquals(2, reloaded.columnCount);
+        } finally {
+            background.shutdown();
+        }
+    }
+
+    private static void save(Context context, long notebookId, List<Column> columns, List<Cell> cells)
+            throws Exception {
+        CountDownLatch saved = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        CellRepository.getInstance(context).saveGrid(notebookId, columns, cells, 0,
+                new CellRepository.RepositoryCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                        saved.countDown();
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        failure.set(error);
+                        saved.countDown();
+                    }
+                });
+        assertTrue(saved.await(10, TimeUnit.SECONDS));
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static Cell find(TableModel model, int row, int col) {
+        List<Cell> cells = new ArrayList<>(model.frozenCells);
+        cells.addAll(model.scrollableCells);
+        for (Cell cell : cells) {
+            if (cell.getRowIndex() == row && cell.getColIndex() == col) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    private static <T> T onBackground(ExecutorService executor, Callable<T> task) throws Exception {
+        return executor.submit(task).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Column;
+import com.example.note.data.entity.Job;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.entity.Row;
+import com.example.note.data.job.JobRunner;
+import com.example.note.data.job.JobType;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 笔记本清除测试（真实SQLite）：在单元格和行阶段中途停止后从检查点继续，子表删空后删除笔记本
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class NotebookPurgerTest {
+
+    // 单元格和行都超过一块
+    private static final int ROWS = NotebookPurger.CHUNK_SIZE + 100;
+    private static final int COLS = 3;
+
+    private AppDatabase database;
+    private NotebookPurger purger;
+    private int vacuums;
+    private long notebookId;
+    private long otherId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(AppDatabase.DATABASE_CALLBACK)
+                .allowMainThreadQueries()
+                .setQueryExecutor(Runnable::run)
+                .setTransactionExecutor(Runnable::run)
+                .build();
+        // 测试中没有WorkManager，只记录维护任务的排队
+        purger = new NotebookPurger(context, database) {
+            @Override
+            void scheduleVacuum() {
+                vacuums++;
+            }
+        };
+        notebookId = insertNotebook("清除");
+        otherId = insertNotebook("保留");
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void resumesStagesAfterStopAndDeletesNotebook() throws Exception {
+        long now = System.currentTimeMillis();
+        database.notebookDao().markPurging(notebookId, now);
+        long jobId = insertJob(notebookId);
+        int cells = ROWS * COLS;
+
+        // 第一块单元格删除后停止
+        assertEquals(JobRunner.Outcome.STOPPED,
+                JobRunner.run(database, jobId, purger, () -> count("cells", notebookId) < cells));
+        Job job = database.jobDao().getByIdSync(jobId);
+        assertEquals(Job.STATE_PENDING, job.getState());
+        assertEquals(0, new JSONObject(job.getCheckpoint()).getInt("stage"));
+        assertEquals(NotebookPurger.CHUNK_SIZE, job.getProgress());
+        assertEquals(cells - NotebookPurger.CHUNK_SIZE, count("cells", notebookId));
+        assertEquals(ROWS, count("rows", notebookId));
+        assertEquals(0, vacuums);
+
+        // 继续，在行阶段的第一块之后再次停止
+        assertEquals(JobRunner.Outcome.STOPPED,
+                JobRunner.run(database, jobId, purger, () -> count("rows", notebookId) < ROWS));
+        job = database.jobDao().getByIdSync(jobId);
+        assertEquals(1, new JSONObject(job.getCheckpoint()).getInt("stage"));
+        assertEquals(cells + NotebookPurger.CHUNK_SIZE, job.getProgress());
+        assertEquals(0, count("cells", notebookId));
+        assertEquals(ROWS - NotebookPurger.CHUNK_SIZE, count("rows", notebookId));
+        assertEquals(COLS, count("columns", notebookId));
+        assertNotNull(database.notebookDao().getByIdSync(notebookId));
+
+        assertEquals(JobRunner.Outcome.SUCCEEDED, JobRunner.run(database, jobId, purger, () -> false));
+        job = database.jobDao().getByIdSync(jobId);
+        assertEquals(Job.STATE_SUCCEEDED, job.getState());
+        assertEquals(cells + ROWS + COLS, job.getProgress());
+        assertEquals(0, count("cells", notebookId));
+        assertEquals(0, count("rows", notebookId));
+        assertEquals(0, count("columns", notebookId));
+        assertNull(database.notebookDao().getByIdSync(notebookId));
+        assertEquals(1, vacuums);
+
+        // 其他笔记本不受影响
+        assertNotNull(database.notebookDao().getByIdSync(otherId));
+        assertEquals(cells, count("cells", otherId));
+        assertEquals(ROWS, count("rows", otherId));
+        assertEquals(COLS, count("columns", otherId));
+    }
+
+    /**
+     * 插入带满格单元格、行和列的笔记本
+     */
+    private long insertNotebook(String title) {
+        return database.runInTransaction(() -> {
+            long id = database.notebookDao().insert(new Notebook(title, "#FFFFFF"));
+            long now = System.currentTimeMillis();
+            database.cellDao().insertEmptyGrid(id, ROWS, COLS, now);
+            List<Row> rows = new ArrayList<>();
+            for (int index = 0; index < ROWS; index++) {
+                Row row = new Row();
+                row.setNotebookId(id);
+                row.setRowIndex(index);
+                rows.add(row);
+            }
+            database.rowDao().insertRows(rows);
+            List<Column> columns = new ArrayList<>();
+            for (int index = 0; index < COLS; index++) {
+                columns.add(new Column(id, index, "列" + index));
+            }
+            database.columnDao().insertAll(columns);
+            return id;
+        });
+    }
+
+    private long insertJob(long id) throws Exception {
+        Job job = new Job();
+        job.setType(JobType.PURGE.name());
+        job.setUniqueKey("purge:" + id);
+        job.setParams(new JSONObject().put("notebookId", id).toString());
+        return database.jobDao().insert(job);
+    }
+
+    private int count(String table, long id) {
+        try (Cursor cursor = database.query("SELECT COUNT(*) FROM " + table + " WHERE notebook_id = ?", new Object[]{id})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.model.ReplaceResult;
+import com.example.note.data.search.FindReplaceSpec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 批量替换测试（真实SQLite）：跨笔记本替换和一次撤销、扫描后被修改的单元格跳过、撤销不覆盖再次编辑的单元格、取消
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ReplaceRepositoryTest {
+
+    private static final FindReplaceSpec SPEC = new FindReplaceSpec(FindReplaceSpec.MODE_LITERAL, "apple", "梨");
+
+    private AppDatabase database;
+    private ReplaceRepository repository;
+    private long first;
+    private long second;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(AppDatabase.DATABASE_CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+        repository = new ReplaceRepository(context, database);
+        first = database.notebookDao().insert(new Notebook("第一本", "#FFFFFF"));
+        second = database.notebookDao().insert(new Notebook("第二本", "#FFFFFF"));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void replacesAcrossNotebooksAndUndoesTogether() throws Exception {
+        insert(first, "apple pie", "banana", "apple");
+        insert(second, "green apple");
+
+        ReplaceResult result = repository.replaceAllSync(SPEC, FindReplaceSpec.Scope.allNotebooks(),
+                new ReplaceRepository.ReplaceTask(), null);
+        assertEquals(3, result.replacedCells);
+        assertEquals(0, result.skippedCells);
+        assertFalse(result.cancelled);
+        assertEquals(2, result.oldCells.size());
+        assertEquals("梨 pie", content(first, 0));
+        assertEquals("banana", content(first, 1));
+        assertEquals("梨", content(first, 2));
+        assertEquals("green 梨", content(second, 0));
+
+        // 一条撤销记录覆盖两个笔记本
+        List<Cell> old = flatten(result);
+        assertEquals(3, repository.replayGuarded(SPEC, old, true));
+        assertEquals("apple pie", content(first, 0));
+        assertEquals("apple", content(first, 2));
+        assertEquals("green apple", content(second, 0));
+
+        assertEquals(3, repository.replayGuarded(SPEC, old, false));
+        assertEquals("梨 pie", content(first, 0));
+        assertEquals("green 梨", content(second, 0));
+    }
+
+    @Test
+    public void skipsCellEditedBetweenScanAndWrite() throws Exception {
+        insert(first, "apple", "apple");
+        // 写第一格时改掉第二格，模拟扫描之后、写入之前的并发编辑
+        database.getOpenHelper().getWritableDatabase().execSQL("CREATE TEMP TRIGGER concurrent_edit " +
+                "AFTER UPDATE OF content ON cells WHEN new.notebook_id = " + first + " AND new.row_index = 0 BEGIN " +
+                "UPDATE cells SET content = '用户编辑' WHERE notebook_id = " + first + " AND row_index = 1; END");
+
+        ReplaceResult result = repository.replaceAllSync(SPEC, FindReplaceSpec.Scope.notebook(first),
+                new ReplaceRepository.ReplaceTask(), null);
+        assertEquals(1, result.replacedCells);
+        assertEquals(1, result.skippedCells);
+        assertEquals("梨", content(first, 0));
+        assertEquals("用户编辑", content(first, 1));
+        // 撤销记录只包含实际写入的单元格
+        List<Cell> old = flatten(result);
+        assertEquals(1, old.size());
+        assertEquals(0, old.get(0).getRowIndex());
+    }
+
+    @Test
+    public void undoAndRedoLeaveReEditedCellsAlone() throws Exception {
+        insert(first, "apple", "apple");
+        ReplaceResult result = repository.replaceAllSync(SPEC, FindReplaceSpec.Scope.notebook(first),
+                new ReplaceRepository.ReplaceTask(), null);
+        assertEquals(2, result.replacedCells);
+
+        setContent(first, 1, "新内容");
+        List<Cell> old = flatten(result);
+        assertEquals(1, repository.replayGuarded(SPEC, old, true));
+        assertEquals("apple", content(first, 0));
+        assertEquals("新内容", content(first, 1));
+
+        assertEquals(1, repository.replayGuarded(SPEC, old, false));
+        assertEquals("梨", content(first, 0));
+        assertEquals("新内容", content(first, 1));
+    }
+
+    @Test
+    public void cancelKeepsCommittedChunks() throws Exception {
+        int total = ReplaceRepository.CHUNK_SIZE + 100;
+        String[] contents = new String[total];
+        Arrays.fill(contents, "apple");
+        insert(first, contents);
+
+        ReplaceRepository.ReplaceTask task = new ReplaceRepository.ReplaceTask();
+        // 第一页写入后取消
+        ReplaceResult result = repository.replaceAllSync(SPEC, FindReplaceSpec.Scope.notebook(first), task,
+                (scanned, replaced) -> task.cancel());
+        assertTrue(result.cancelled);
+        assertEquals(ReplaceRepository.CHUNK_SIZE, result.scannedCells);
+        assertEquals(ReplaceRepository.CHUNK_SIZE, result.replacedCells);
+        assertEquals(ReplaceRepository.CHUNK_SIZE, flatten(result).size());
+        assertEquals(ReplaceRepository.CHUNK_SIZE, count("SELECT COUNT(*) FROM cells WHERE notebook_id = ? "
+                + "AND content = '梨'", first));
+        assertEquals("apple", content(first, total - 1));
+    }
+
+    /**
+     * 在第0列从第0行起依次写入
+     */
+    private void insert(long notebookId, String... contents) {
+        List<Cell> cells = new ArrayList<>();
+        for (int row = 0; row < contents.length; row++) {
+            cells.add(new Cell(notebookId, row, 0, contents[row]));
+        }
+        database.cellDao().insertAll(cells);
+    }
+
+    private void setContent(long notebookId, int row, String content) {
+        database.getOpenHelper().getWritableDatabase().execSQL("UPDATE cells SET content = ? "
+                + "WHERE notebook_id = ? AND row_index = ? AND col_index = 0", new Object[]{content, notebookId, row});
+    }
+
+    private String content(long notebookId, int row) {
+        try (Cursor cursor = database.query("SELECT content FROM cells WHERE notebook_id = ? AND row_index = ? "
+                + "AND col_index = 0", new Object[]{notebookId, row})) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    private int count(String sql, long notebookId) {
+        try (Cursor cursor = database.query(sql, new Object[]{notebookId})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        }
+    }
+
+    private static List<Cell> flatten(ReplaceResult result) {
+        List<Cell> cells = new ArrayList<>();
+        for (List<Cell> notebookCells : result.oldCells.values()) {
+            cells.addAll(notebookCells);
+        }
+        return cells;
+    }
+}
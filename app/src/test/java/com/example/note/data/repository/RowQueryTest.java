@@ -0,0 +1,145 @@
+package com.example.note.data.repository;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Notebook;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 行查询测试：同一查询编译成SQL在SQLite中执行与在内存网格上求值的结果必须一致
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class RowQueryTest {
+
+    // null表示单元格不存在
+    private static final String[][] GRID = {
+            {"apple", "10", "true", "2024-01-05"},
+            {"Banana", "9", "false", "2024-02-01"},
+            {"  ", "abc", "true", null},
+            {"APPLE pie", "-3", null, "2023-12-31"},
+            {"50%_off", "1,000", "false", "not a date"},
+            {null, "", "true", "2024-01-05"},
+            {"cherry", "Zed", "", "1/5/2024"},
+            {"b_x", "zed", "true", "2024-03-01"},
+    };
+
+    private AppDatabase database;
+    private long notebookId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        notebookId = database.notebookDao().insert(new Notebook("行查询", "#FFFFFF"));
+        List<Cell> cells = new ArrayList<>();
+        for (int row = 0; row < GRID.length; row++) {
+            for (int col = 0; col < GRID[row].length; col++) {
+                if (GRID[row][col] != null) {
+                    cells.add(new Cell(notebookId, row, col, GRID[row][col]));
+                }
+            }
+        }
+        database.cellDao().insertAll(cells);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void sortsExcelStyleWithEmptiesLast() {
+        assertEquals(Arrays.asList(3, 1, 0, 4, 2, 6, 7, 5),
+                run(RowQuery.builder().orderBy(1, false).build()));
+        // 降序时文本在数字前，空值仍在最后，值相同的行保持原始顺序
+        assertEquals(Arrays.asList(6, 7, 2, 4, 0, 1, 3, 5),
+                run(RowQuery.builder().orderBy(1, true).build()));
+    }
+
+    @Test
+    public void combinesFiltersAcrossColumns() {
+        assertEquals(Arrays.asList(0, 3),
+                run(RowQuery.builder().where(RowQuery.Filter.contains(0, "apple")).build()));
+        // LIKE通配符按字面匹配
+        assertEquals(Arrays.asList(4),
+                run(RowQuery.builder().where(RowQuery.Filter.contains(0, "%_")).build()));
+        assertEquals(Arrays.asList(1, 0, 4),
+                run(RowQuery.builder()
+                        .where(RowQuery.Filter.numberBetween(1, 0, 1000))
+                        .orderBy(1, false)
+                        .build()));
+        assertEquals(Arrays.asList(0, 5, 6),
+                run(RowQuery.builder()
+                        .where(RowQuery.Filter.dateBetween(3, 19727, 19727))
+                        .build()));
+        assertEquals(Arrays.asList(7),
+                run(RowQuery.builder()
+                        .where(RowQuery.Filter.equalTo(2, "true"))
+                        .where(RowQuery.Filter.contains(0, "b_x"))
+                        .build()));
+    }
+
+    @Test
+    public void emptyValueMatchesMissingCells() {
+        // 空字符串代表空白和不存在的单元格，SQL只能排除不满足的行
+        assertEquals(Arrays.asList(1, 3, 4, 6),
+                run(RowQuery.builder().where(RowQuery.Filter.valueIn(2, Arrays.asList("", "false"))).build()));
+        assertEquals(Arrays.asList(6, 3),
+                run(RowQuery.builder()
+                        .where(RowQuery.Filter.valueIn(2, Arrays.asList("", "false")))
+                        .where(RowQuery.Filter.valueIn(0, Arrays.asList("", "cherry", "APPLE pie")))
+                        .orderBy(0, true)
+                        .build()));
+    }
+
+    @Test
+    public void chooseSqlOnlyForLargeTables() {
+        RowQuery filter = RowQuery.builder().where(RowQuery.Filter.contains(0, "a")).build();
+        RowQuery sort = RowQuery.builder().orderBy(0, false).build();
+        assertFalse(RowQuery.builder().build().prefersSql(1_000_000));
+        assertFalse(filter.prefersSql(1_000));
+        assertTrue(filter.prefersSql(1_000_000));
+        assertFalse(sort.prefersSql(500));
+        assertTrue(sort.prefersSql(50_000));
+
+        // 超出SQLite参数个数限制时只能在内存中求值
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add("v" + i);
+        }
+        assertFalse(RowQuery.builder().where(RowQuery.Filter.valueIn(0, values)).orderBy(0, false).build()
+                .prefersSql(1_000_000));
+    }
+
+    /**
+     * 分别用SQL和内存求值，断言两者一致后返回结果
+     */
+    private List<Integer> run(RowQuery query) {
+        List<Integer> sql = database.cellDao().getRowOrder(query.toSql(notebookId, GRID.length));
+        List<Integer> memory = query.evaluate((row, col) -> GRID[row][col], GRID.length);
+        assertEquals(memory, sql);
+        return sql;
+    }
+}
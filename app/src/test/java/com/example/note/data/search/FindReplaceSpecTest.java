@@ -0,0 +1,59 @@
+package com.example.note.data.search;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查找替换条件测试：三种模式的替换结果、LIKE预筛选模式和撤销记录中的序列化
+ */
+public class FindReplaceSpecTest {
+
+    @Test
+    public void literalIsCaseSensitiveAndQuoted() {
+        FindReplaceSpec spec = new FindReplaceSpec(FindReplaceSpec.MODE_LITERAL, "a.b", "$1");
+        assertEquals("x$1y$1", spec.apply("xa.bya.b"));
+        assertNull(spec.apply("A.B"));
+        assertNull(spec.apply("axb"));
+    }
+
+    @Test
+    public void ignoreCaseMatchesAnyCase() {
+        FindReplaceSpec spec = new FindReplaceSpec(FindReplaceSpec.MODE_IGNORE_CASE, "apple", "梨");
+        assertEquals("梨 梨 梨", spec.apply("Apple APPLE apple"));
+        assertNull(spec.apply("香蕉"));
+    }
+
+    @Test
+    public void regexSupportsGroupReferences() {
+        FindReplaceSpec spec = new FindReplaceSpec(FindReplaceSpec.MODE_REGEX, "(\\d{4})-(\\d{2})", "$2/$1");
+        assertEquals("日期 05/2024", spec.apply("日期 2024-05"));
+        // 替换后不变视为未修改
+        assertNull(new FindReplaceSpec(FindReplaceSpec.MODE_REGEX, "a", "a").apply("banana"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRegexIsRejected() {
+        new FindReplaceSpec(FindReplaceSpec.MODE_REGEX, "(", "");
+    }
+
+    @Test
+    public void likePatternEscapesWildcards() {
+        assertEquals("%50\\%\\_a\\\\b%",
+                new FindReplaceSpec(FindReplaceSpec.MODE_LITERAL, "50%_a\\b", "").likePattern());
+        assertNull(new FindReplaceSpec(FindReplaceSpec.MODE_REGEX, "a+", "").likePattern());
+        // SQLite的LIKE只对ASCII忽略大小写，非ASCII的忽略大小写查找不能预筛选
+        assertNull(new FindReplaceSpec(FindReplaceSpec.MODE_IGNORE_CASE, "Ärger", "").likePattern());
+        assertEquals("%订单%", new FindReplaceSpec(FindReplaceSpec.MODE_LITERAL, "订单", "").likePattern());
+    }
+
+    @Test
+    public void encodeRoundTrips() {
+        FindReplaceSpec spec = new FindReplaceSpec(FindReplaceSpec.MODE_REGEX, "a|b", "");
+        FindReplaceSpec decoded = FindReplaceSpec.decode(spec.encode());
+        assertEquals(spec.mode, decoded.mode);
+        assertEquals(spec.find, decoded.find);
+        assertEquals("", decoded.replacement);
+        assertEquals(spec.apply("cab"), decoded.apply("cab"));
+    }
+}
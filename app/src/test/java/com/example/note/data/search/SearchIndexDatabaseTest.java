@@ -0,0 +1,194 @@
+package com.example.note.data.search;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.note.data.database.AppDatabase;
+import com.example.note.data.entity.Cell;
+import com.example.note.data.entity.Notebook;
+import com.example.note.data.model.SearchHit;
+import com.example.note.data.model.SearchPage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 搜索索引测试（真实SQLite）：单元格和标题的触发器、软删除和恢复、迁移时的全量入队、翻页期间索引变化
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class SearchIndexDatabaseTest {
+
+    private AppDatabase database;
+    private SearchIndex index;
+    private long notebookId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(AppDatabase.DATABASE_CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+        index = new SearchIndex(database);
+        notebookId = database.notebookDao().insert(new Notebook("季度报告", "#FFFFFF"));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void cellInsertUpdateAndDeleteReachIndex() {
+        Cell cell = new Cell(notebookId, 0, 0, "红苹果");
+        cell.setId(database.cellDao().insert(cell));
+        List<SearchHit> hits = search("苹果");
+        assertEquals(1, hits.size());
+        assertEquals(SearchHit.KIND_CELL, hits.get(0).kind);
+        assertEquals(cell.getId(), hits.get(0).cellId);
+
+        // 旧内容的索引词必须被删掉
+        cell.setContent("香蕉");
+        database.cellDao().update(cell);
+        assertTrue(search("苹果").isEmpty());
+        assertEquals(1, search("香蕉").size());
+
+        database.cellDao().delete(cell);
+        assertTrue(search("香蕉").isEmpty());
+    }
+
+    @Test
+    public void blankCellsAreNotQueued() {
+        database.cellDao().insert(new Cell(notebookId, 0, 0, ""));
+        assertEquals(0, index.drainSync());
+    }
+
+    @Test
+    public void titleUpdateSoftDeleteAndDeleteReachIndex() {
+        database.cellDao().insert(new Cell(notebookId, 0, 0, "红苹果"));
+        List<SearchHit> hits = search("报告");
+        assertEquals(1, hits.size());
+        assertEquals(SearchHit.KIND_TITLE, hits.get(0).kind);
+
+        database.notebookDao().updateTitle(notebookId, "年度总结", 2);
+        assertTrue(search("报告").isEmpty());
+        assertEquals(1, search("总结").size());
+
+        // 回收站中的笔记本，标题和单元格都搜不到；恢复后重新出现
+        database.notebookDao().softDelete(notebookId, 3, 3);
+        assertTrue(search("总结").isEmpty());
+        assertTrue(search("苹果").isEmpty());
+        database.notebookDao().restore(notebookId, 4);
+        assertEquals(1, search("总结").size());
+        assertEquals(1, search("苹果").size());
+
+        // 彻底删除后单元格随笔记本级联删除
+        database.notebookDao().delete(database.notebookDao().getByIdSync(notebookId));
+        assertTrue(search("总结").isEmpty());
+        assertTrue(search("苹果").isEmpty());
+        assertEquals(0, count("SELECT COUNT(*) FROM search_fts"));
+    }
+
+    @Test
+    public void migrationQueuesExistingRows() {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        // 回到版本10之前：没有索引表和触发器
+        SearchIndex.dropCellTriggers(db);
+        db.execSQL("DROP TRIGGER search_notebooks_ai");
+        db.execSQL("DROP TRIGGER search_notebooks_au");
+        db.execSQL("DROP TRIGGER search_notebooks_ad");
+        db.execSQL("DROP TABLE search_fts");
+        db.execSQL("DROP TABLE search_dirty");
+        database.cellDao().insert(new Cell(notebookId, 0, 0, "红苹果"));
+        database.cellDao().insert(new Cell(notebookId, 1, 0, ""));
+
+        // 与MIGRATION_9_10相同
+        SearchIndex.dropLegacySchema(db);
+        SearchIndex.createSchema(db);
+        assertEquals(2, count("SELECT COUNT(*) FROM search_dirty"));
+        assertEquals(1, search("苹果").size());
+        assertEquals(1, search("报告").size());
+    }
+
+    @Test
+    public void pagesStayConsistentWhileIndexChanges() {
+        int cells = 60;
+        List<Cell> batch = new ArrayList<>();
+        for (int row = 0; row < cells; row++) {
+            // 内容长度不同，得分各不相同
+            batch.add(new Cell(notebookId, row, 0, "苹果" + "x".repeat(row % 7 + 1) + row));
+        }
+        database.cellDao().insertAll(batch);
+        index.drainSync();
+
+        Set<Long> seen = new HashSet<>();
+        SearchPage page = index.searchSync("苹果", 0, null, 10);
+        int added = 0;
+        while (true) {
+            for (SearchHit hit : page.hits) {
+                assertTrue("duplicate " + hit.cellId, seen.add(hit.cellId));
+            }
+            if (page.next == null) {
+                break;
+            }
+            // 翻页之间有新的文档入索引，总文档数和平均长度都变了
+            List<Cell> more = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                more.add(new Cell(notebookId, cells + added * 20 + i, 1, "无关内容" + i));
+            }
+            database.cellDao().insertAll(more);
+            index.drainSync();
+            added++;
+            page = index.searchSync("苹果", 0, page.next, 10);
+        }
+        assertEquals(cells, seen.size());
+    }
+
+    @Test
+    public void candidatesAreCapped() {
+        List<Cell> batch = new ArrayList<>();
+        for (int row = 0; row < SearchIndex.MAX_CANDIDATES + 5; row++) {
+            batch.add(new Cell(notebookId, row, 0, "苹果" + row));
+        }
+        database.cellDao().insertAll(batch);
+
+        int total = 0;
+        SearchPage page = index.searchSync("苹果", 0, null, 500);
+        while (true) {
+            total += page.hits.size();
+            if (page.next == null) {
+                break;
+            }
+            page = index.searchSync("苹果", 0, page.next, 500);
+        }
+        assertEquals(SearchIndex.MAX_CANDIDATES, total);
+    }
+
+    private List<SearchHit> search(String query) {
+        return index.searchSync(query, 0, null, 50).hits;
+    }
+
+    private int count(String sql) {
+        try (Cursor cursor = database.query(sql, null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.note.data.search;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * 搜索排名测试：由matchinfo('pcnalx')计算的BM25得分
+ */
+public class SearchIndexTest {
+
+    private static final int DOCS = 1000;
+    private static final int AVG_LENGTH = 20;
+
+    @Test
+    public void moreHitsScoreHigher() {
+        assertTrue(SearchIndex.score(matchinfo(20, hits(3, 10)), false)
+                > SearchIndex.score(matchinfo(20, hits(1, 10)), false));
+    }
+
+    @Test
+    public void rarePhraseScoresHigher() {
+        assertTrue(SearchIndex.score(matchinfo(20, hits(1, 5)), false)
+                > SearchIndex.score(matchinfo(20, hits(1, 400)), false));
+    }
+
+    @Test
+    public void shorterDocumentScoresHigher() {
+        assertTrue(SearchIndex.score(matchinfo(5, hits(1, 10)), false)
+                > SearchIndex.score(matchinfo(200, hits(1, 10)), false));
+    }
+
+    @Test
+    public void titleIsWeighted() {
+        byte[] info = matchinfo(20, hits(1, 10));
+        assertEquals(SearchIndex.score(info, false) * SearchIndex.TITLE_WEIGHT,
+                SearchIndex.score(info, true), 1e-9);
+    }
+
+    @Test
+    public void commonPhraseStillCountsHits() {
+        // 超过一半文档都包含的短语idf为负，仍应按命中次数给出正的得分
+        double once = SearchIndex.score(matchinfo(20, hits(1, 900)), false);
+        assertTrue(once > 0);
+        assertTrue(SearchIndex.score(matchinfo(20, hits(4, 900)), false) > once);
+    }
+
+    @Test
+    public void missingPhraseAddsNothing() {
+        double one = SearchIndex.score(matchinfo(20, hits(2, 10)), false);
+        double withMiss = SearchIndex.score(matchinfo(20, hits(2, 10), hits(0, 50)), false);
+        assertEquals(one, withMiss, 1e-9);
+    }
+
+    /**
+     * 单列表的一个短语：本文档命中次数、全部文档命中次数、包含它的文档数
+     */
+    private static int[] hits(int hitsHere, int docsWithHit) {
+        return new int[]{hitsHere, hitsHere * 2, docsWithHit};
+    }
+
+    /**
+     * 按'pcnalx'布局拼出matchinfo：p, c, n, a[c], l[c], x[p*c*3]
+     */
+    private static byte[] matchinfo(int length, int[]... phrases) {
+        int values = 5 + 3 * phrases.length;
+        ByteBuffer buffer = ByteBuffer.allocate(values * 4).order(ByteOrder.nativeOrder());
+        buffer.putInt(phrases.length).putInt(1).putInt(DOCS).putInt(AVG_LENGTH).putInt(length);
+        for (int[] phrase : phrases) {
+            for (int value : phrase) {
+                buffer.putInt(value);
+            }
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.note.data.search;
+
+import com.example.note.data.model.SearchHit;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 搜索分词测试：任意子串查询生成的MATCH表达式都要能命中原文的索引词
+ */
+public class SearchTokenizerTest {
+
+    @Test
+    public void indexTermsAreBigramsWithTrailingUnigram() {
+        assertEquals("笔记 记本 本", SearchTokenizer.indexTerms("笔记本"));
+        assertEquals("ab b 12 2", SearchTokenizer.indexTerms("AB, 12"));
+        assertEquals("", SearchTokenizer.indexTerms(""));
+        assertEquals("", SearchTokenizer.indexTerms(null));
+    }
+
+    @Test
+    public void foldsFullWidthAndCase() {
+        assertEquals("abc 1", SearchTokenizer.fold("ＡＢｃ　１"));
+        assertEquals(SearchTokenizer.indexTerms("abc"), SearchTokenizer.indexTerms("ＡＢＣ"));
+    }
+
+    @Test
+    public void matchQueryBuildsPhrasePerRun() {
+        assertEquals("\"笔记 记本\"", SearchTokenizer.matchQuery("笔记本"));
+        assertEquals("\"ab\" c*", SearchTokenizer.matchQuery("AB c"));
+        assertNull(SearchTokenizer.matchQuery("  ,。"));
+        assertNull(SearchTokenizer.matchQuery(null));
+    }
+
+    @Test
+    public void everySubstringMatchesItsSource() {
+        String text = "2024年第三季度销售报表 Q3-Report";
+        List<String> terms = Arrays.asList(SearchTokenizer.indexTerms(text).split(" "));
+        for (int start = 0; start < text.length(); start++) {
+            for (int end = start + 1; end <= text.length(); end++) {
+                String query = text.substring(start, end);
+                String match = SearchTokenizer.matchQuery(query);
+                if (match == null) {
+                    continue;
+                }
+                assertTrue("query \"" + query + "\" -> " + match, matches(terms, match));
+            }
+        }
+    }
+
+    @Test
+    public void nonSubstringDoesNotMatch() {
+        List<String> terms = Arrays.asList(SearchTokenizer.indexTerms("销售报表").split(" "));
+        assertFalse(matches(terms, SearchTokenizer.matchQuery("售表")));
+        assertFalse(matches(terms, SearchTokenizer.matchQuery("采购")));
+    }
+
+    @Test
+    public void snippetMarksMatchInsideWindow() {
+        String text = "这是一段很长的前缀文字用于测试摘要截取效果，然后才出现关键词销售报表，后面还有更多的内容继续延伸下去，直到明显超过摘要窗口的长度为止，这样结尾才会被截断";
+        SearchHit hit = SearchIndex.buildHit(SearchIndex.KIND_CELL, 1, "nb", 7, 2, 3, text,
+                SearchTokenizer.queryRuns("销售报表"));
+        assertTrue(hit.snippet.startsWith("…"));
+        assertTrue(hit.snippet.endsWith("…"));
+        assertEquals("销售报表", hit.snippet.substring(hit.matchStart, hit.matchEnd));
+        assertEquals(SearchHit.KIND_CELL, hit.kind);
+    }
+
+    @Test
+    public void snippetWithoutMatchKeepsHead() {
+        SearchHit hit = SearchIndex.buildHit(SearchIndex.KIND_NOTEBOOK, 1, "月报", -1, -1, -1, "月报",
+                Collections.singletonList("周报"));
+        assertEquals("月报", hit.snippet);
+        assertEquals(-1, hit.matchStart);
+        assertEquals(SearchHit.KIND_TITLE, hit.kind);
+    }
+
+    /**
+     * 模拟FTS4对"短语"和前缀词的AND匹配
+     */
+    private static boolean matches(List<String> terms, String match) {
+        for (String part : match.split(" (?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)")) {
+            boolean found;
+            if (part.startsWith("\"")) {
+                List<String> phrase = Arrays.asList(part.substring(1, part.length() - 1).split(" "));
+                found = Collections.indexOfSubList(terms, phrase) >= 0;
+            } else {
+                String prefix = part.substring(0, part.length() - 1);
+                found = terms.stream().anyMatch(t -> t.startsWith(prefix));
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
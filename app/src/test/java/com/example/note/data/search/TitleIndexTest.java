@@ -0,0 +1,218 @@
+package com.example.note.data.search;
+
+import com.example.note.data.entity.Notebook;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 标题索引测试：拼音全拼/首字母/混合、容错、排序和增量更新，以及1万个笔记本下每次按键检查的标题数
+ */
+public class TitleIndexTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long NOW = 1_700_000_000_000L;
+    private static final int NOTEBOOKS = 10_000;
+
+    private PinyinTable pinyin;
+
+    @Before
+    public void setUp() throws IOException {
+        // 单元测试的工作目录是模块目录
+        try (Reader reader = new InputStreamReader(
+                new FileInputStream("src/main/assets/" + PinyinTable.ASSET_NAME), StandardCharsets.UTF_8)) {
+            pinyin = PinyinTable.parse(reader);
+        }
+    }
+
+    @Test
+    public void pinyinTableCoversCommonCharacters() {
+        assertArrayEquals(new String[]{"bi"}, pinyin.readings('笔'));
+        assertTrue(Arrays.asList(pinyin.readings('行')).containsAll(Arrays.asList("hang", "xing")));
+        assertNull(pinyin.readings('a'));
+        assertTrue(pinyin.size() > 3700);
+    }
+
+    @Test
+    public void matchesFullPinyinInitialsAndMixed() {
+        TitleIndex index = new TitleIndex(pinyin);
+        index.update(Arrays.asList(
+                notebook(1, "读书笔记本", 1),
+                notebook(2, "购物清单", 1),
+                notebook(3, "Project 计划", 1)));
+
+        assertEquals(ids(1), ids(index.search("bijiben", NOW)));
+        assertEquals(ids(1), ids(index.search("bjb", NOW)));
+        assertEquals(ids(1), ids(index.search("bijib", NOW)));
+        assertEquals(ids(1), ids(index.search("bij b", NOW)));
+        assertEquals(ids(2), ids(index.search("gwqd", NOW)));
+        assertEquals(ids(2), ids(index.search("qingdan", NOW)));
+        assertEquals(ids(3), ids(index.search("jihua", NOW)));
+        assertEquals(ids(3), ids(index.search("ＰＲＯＪ", NOW)));
+        assertTrue(index.search("zzz", NOW).isEmpty());
+    }
+
+    @Test
+    public void toleratesTyposAndHomophones() {
+        TitleIndex index = new TitleIndex(pinyin);
+        index.update(Arrays.asList(
+                notebook(1, "Quarterly report", 1),
+                notebook(2, "会议记录", 1),
+                notebook(3, "旅行计划", 1)));
+
+        assertEquals(ids(1), ids(index.search("quartely report", NOW)));
+        assertEquals(ids(2), ids(index.search("huiyijilv", NOW)));
+        // 拼音打错一个字母
+        assertEquals(ids(2), ids(index.search("huiyijilu", NOW)));
+        // 输入法选错同音字
+        assertEquals(ids(2), ids(index.search("会议纪录", NOW)));
+    }
+
+    @Test
+    public void ranksByMatchQualityThenRecency() {
+        TitleIndex index = new TitleIndex(pinyin);
+        index.update(Arrays.asList(
+                notebook(1, "工作日志", 300),
+                notebook(2, "日志", 200),
+                notebook(3, "本周工作", 1),
+                notebook(4, "工作总结", 2),
+                notebook(5, "工作周报", 100)));
+
+        // 开头匹配优先于最近更新，同等匹配下更新越近越靠前
+        assertEquals(ids(4, 5, 1, 3), ids(index.search("工作", NOW)));
+        assertEquals(ids(4, 5, 1, 3), ids(index.search("gongzuo", NOW)));
+        // 子串优先于拼音
+        assertEquals(ids(2, 1), ids(index.search("日志", NOW)));
+    }
+
+    @Test
+    public void updatesIncrementally() {
+        TitleIndex index = new TitleIndex(pinyin);
+        List<Notebook> notebooks = new ArrayList<>(Arrays.asList(
+                notebook(1, "读书笔记", 1),
+                notebook(2, "健身计划", 1)));
+        assertEquals(2, index.update(notebooks));
+
+        // 只改更新时间不重新计算
+        notebooks.set(0, notebook(1, "读书笔记", 0));
+        assertEquals(0, index.update(notebooks));
+
+        notebooks.set(1, notebook(2, "旅行清单", 1));
+        assertEquals(1, index.update(notebooks));
+        assertTrue(index.search("jianshen", NOW).isEmpty());
+        assertEquals(ids(2), ids(index.search("lvxing", NOW)));
+
+        notebooks.remove(0);
+        assertEquals(0, index.update(notebooks));
+        assertEquals(1, index.size());
+        assertTrue(index.search("dushu", NOW).isEmpty());
+    }
+
+    @Test
+    public void keystrokeOnTenThousandNotebooksOnlyProbesCandidates() {
+        List<Notebook> notebooks = generate(NOTEBOOKS);
+        TitleIndex index = new TitleIndex(pinyin);
+        index.update(notebooks);
+
+        // 增量更新：改一个标题只重新计算一条
+        notebooks.set(42, notebook(42, "新的项目笔记", 0));
+        assertEquals(1, index.update(notebooks));
+
+        // 不走拼音的查询只检查倒排表中有共同字或二元组的标题
+        String digits = "9917";
+        for (int i = 1; i <= digits.length(); i++) {
+            String prefix = digits.substring(0, i);
+            index.search(prefix, NOW);
+            assertEquals(prefix, sharingGrams(notebooks, prefix), index.getLastProbes());
+        }
+        assertTrue("probes " + index.getLastProbes(), index.getLastProbes() < NOTEBOOKS / 10);
+
+        // 字面、拼音、拼音容错三遍各自最多检查每个标题一次
+        String[] queries = {"xiangmubiji", "项目计划", "xmjh", "projetc plan", "会议纪录"};
+        for (String query : queries) {
+            for (int i = 1; i <= query.length(); i++) {
+                String prefix = query.substring(0, i);
+                index.search(prefix, NOW);
+                assertTrue(prefix + " probes " + index.getLastProbes(), index.getLastProbes() <= 3 * NOTEBOOKS);
+            }
+        }
+        assertEquals(42L, index.search("xinde", NOW).get(0).getId());
+    }
+
+    /**
+     * 与查询有共同二元组（查询只有一个字时为共同字）的标题数
+     */
+    private static int sharingGrams(List<Notebook> notebooks, String query) {
+        List<String> grams = new ArrayList<>();
+        if (query.length() == 1) {
+            grams.add(query);
+        }
+        for (int i = 0; i + 1 < query.length(); i++) {
+            grams.add(query.substring(i, i + 2));
+        }
+        int count = 0;
+        for (Notebook notebook : notebooks) {
+            String folded = SearchTokenizer.fold(notebook.getTitle());
+            for (String gram : grams) {
+                if (folded.contains(gram)) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static List<Notebook> generate(int count) {
+        String[] words = {"项目", "计划", "会议", "记录", "读书", "笔记", "旅行", "清单", "财务", "报表",
+                "工作", "总结", "学习", "日程", "健身", "菜谱", "客户", "名单", "Project", "plan", "weekly"};
+        Random random = new Random(7);
+        List<Notebook> notebooks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            int parts = 2 + random.nextInt(3);
+            for (int p = 0; p < parts; p++) {
+                title.append(words[random.nextInt(words.length)]);
+            }
+            title.append(' ').append(i);
+            notebooks.add(notebook(i, title.toString(), random.nextInt(365)));
+        }
+        return notebooks;
+    }
+
+    private static Notebook notebook(long id, String title, int daysAgo) {
+        Notebook notebook = new Notebook();
+        notebook.setId(id);
+        notebook.setTitle(title);
+        notebook.setUpdatedAt(NOW - daysAgo * DAY);
+        return notebook;
+    }
+
+    private static List<Long> ids(long... ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static List<Long> ids(List<Notebook> notebooks) {
+        List<Long> list = new ArrayList<>();
+        for (Notebook notebook : notebooks) {
+            list.add(notebook.getId());
+        }
+        return list;
+    }
+}
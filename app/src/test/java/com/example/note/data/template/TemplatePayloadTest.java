@@ -0,0 +1,133 @@
+package com.example.note.data.template;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 模板数据格式测试：往返一致、样式去重、体积，以及损坏数据的拒绝
+ */
+public class TemplatePayloadTest {
+
+    private static final TemplatePayload.Style BOLD_RED =
+            new TemplatePayload.Style("#FF0000", "#FFFFFF", true, false, 14.0f, "CENTER");
+
+    @Test
+    public void roundTripsColumnsStylesAndCells() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TemplatePayload.Writer writer = new TemplatePayload.Writer(bytes, 20, 3)) {
+            writer.column(0, "日期", 120.5f, "DATE", true, true);
+            writer.column(2, null, 150f, "NUMBER", false, false);
+            writer.cell(0, 0, "标题", BOLD_RED);
+            writer.cell(0, 2, null, TemplatePayload.Style.DEFAULT);
+            writer.cell(5, 1, "", new TemplatePayload.Style(null, null, false, true, 18.0f, null));
+        }
+        byte[] data = bytes.toByteArray();
+        assertTrue(TemplatePayload.isPayload(data));
+
+        Recorder recorder = new Recorder();
+        TemplatePayload.read(data, recorder);
+        assertEquals(Arrays.asList(
+                "grid 20x3",
+                "column 0 日期 120.5 DATE true true",
+                "column 2 null 150.0 NUMBER false false",
+                "cell 0,0 标题 #FF0000 #FFFFFF true false 14.0 CENTER",
+                "cell 0,2 null #000000 #FFFFFF false false 14.0 LEFT",
+                "cell 5,1  null null false true 18.0 null"), recorder.events);
+    }
+
+    @Test
+    public void internsRepeatedStyles() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int rows = 10_000;
+        try (TemplatePayload.Writer writer = new TemplatePayload.Writer(bytes, rows, 4)) {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < 4; col++) {
+                    TemplatePayload.Style style = col == 0 ? BOLD_RED : TemplatePayload.Style.DEFAULT;
+                    // 每次都是新对象，按值去重
+                    writer.cell(row, col, "项目" + (row % 50), new TemplatePayload.Style(style.textColor,
+                            style.backgroundColor, style.bold, style.italic, style.textSize, style.alignment));
+                }
+            }
+            assertEquals(2, writer.styleCount());
+        }
+        byte[] data = bytes.toByteArray();
+
+        // 读取时同一样式只构造一次
+        IdentityHashMap<TemplatePayload.Style, Boolean> distinct = new IdentityHashMap<>();
+        int[] cells = new int[1];
+        TemplatePayload.read(data, new Recorder() {
+            @Override
+            public void onCell(int row, int col, String content, TemplatePayload.Style style) {
+                distinct.put(style, true);
+                cells[0]++;
+            }
+        });
+        assertEquals(rows * 4, cells[0]);
+        assertEquals(2, distinct.size());
+        // 有序单元格按差值编码后再压缩，平均每个单元格不到1字节
+        System.out.println("40000 cells: " + data.length + " bytes");
+        assertTrue("payload " + data.length + " bytes", data.length < rows * 4);
+    }
+
+    @Test
+    public void headersFillDefaultColumnNames() throws IOException {
+        byte[] data = TemplatePayload.ofHeaders(Arrays.asList("时间", "", "地点"), 10, 4);
+        Recorder recorder = new Recorder();
+        TemplatePayload.read(data, recorder);
+        assertEquals(Arrays.asList(
+                "grid 10x4",
+                "column 0 时间 150.0 TEXT true false",
+                "column 1 列2 150.0 TEXT true false",
+                "column 2 地点 150.0 TEXT true false",
+                "column 3 列4 150.0 TEXT true false"), recorder.events);
+
+        recorder = new Recorder();
+        TemplatePayload.read(TemplatePayload.ofHeaders(Collections.emptyList(), 0, 0), recorder);
+        assertEquals(Collections.singletonList("grid 0x0"), recorder.events);
+    }
+
+    @Test
+    public void rejectsLegacyAndCorruptData() {
+        assertFalse(TemplatePayload.isPayload(null));
+        assertFalse(TemplatePayload.isPayload(new byte[0]));
+        assertFalse(TemplatePayload.isPayload("{\"headers\":[\"a\"],\"rows\":3}".getBytes()));
+
+        byte[] data = TemplatePayload.ofHeaders(Arrays.asList("a", "b", "c"), 5, 3);
+        byte[] truncated = Arrays.copyOf(data, data.length - 4);
+        assertThrows(IOException.class, () -> TemplatePayload.read(truncated, new Recorder()));
+
+        byte[] corrupt = data.clone();
+        corrupt[corrupt.length / 2] ^= 0x5A;
+        assertThrows(IOException.class, () -> TemplatePayload.read(corrupt, new Recorder()));
+    }
+
+    private static class Recorder implements TemplatePayload.Visitor {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onGrid(int rows, int cols) {
+            events.add("grid " + rows + "x" + cols);
+        }
+
+        @Override
+        public void onColumn(int index, String name, float width, String type, boolean visible, boolean frozen) {
+            events.add("column " + index + " " + name + " " + width + " " + type + " " + visible + " " + frozen);
+        }
+
+        @Override
+        public void onCell(int row, int col, String content, TemplatePayload.Style style) {
+            events.add("cell " + row + "," + col + " " + content + " " + style.textColor + " "
+                    + style.backgroundColor + " " + style.bold + " " + style.italic + " " + style.textSize + " "
+                    + style.alignment);
+        }
+    }
+}
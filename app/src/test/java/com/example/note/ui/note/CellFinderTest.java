@@ -0,0 +1,90 @@
+package com.example.note.ui.note;
+
+import com.example.note.data.entity.Cell;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 笔记本内查找测试：缩小范围的结果必须与全量扫描一致，10万单元格下只有第一次按键扫描全部单元格
+ */
+public class CellFinderTest {
+
+    private static final int ROWS = 5000;
+    private static final int COLS = 20;
+
+    private List<Cell> cells;
+
+    @Before
+    public void setUp() {
+        cells = new ArrayList<>(ROWS * COLS);
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLS; c++) {
+                cells.add(new Cell(1, r, c, "订单" + r + "-" + c + (r % 7 == 0 ? " Apple" : " pear")));
+            }
+        }
+        // 快照不依赖输入顺序
+        Collections.shuffle(cells, new java.util.Random(42));
+    }
+
+    @Test
+    public void resultsAreRowMajorAndCaseInsensitive() {
+        CellFinder finder = new CellFinder(cells);
+        CellFinder.Matches matches = finder.find("ＡＰＰＬＥ", null);
+        assertEquals(((ROWS + 6) / 7) * COLS, matches.count);
+        for (int i = 1; i < matches.count; i++) {
+            long prev = CellFinder.key(matches.rowAt(i - 1), matches.colAt(i - 1));
+            assertTrue(prev < CellFinder.key(matches.rowAt(i), matches.colAt(i)));
+        }
+        assertEquals(0, matches.indexOf(0, 0));
+        assertEquals(-1, matches.indexOf(1, 0));
+    }
+
+    @Test
+    public void narrowingMatchesFullScan() {
+        CellFinder incremental = new CellFinder(cells);
+        String query = "订单12-1";
+        for (int i = 1; i <= query.length(); i++) {
+            String prefix = query.substring(0, i);
+            CellFinder.Matches narrowed = incremental.find(prefix, null);
+            CellFinder.Matches full = new CellFinder(cells).find(prefix, null);
+            assertEquals(prefix, full.count, narrowed.count);
+            for (int j = 0; j < full.count; j++) {
+                assertEquals(full.rowAt(j), narrowed.rowAt(j));
+                assertEquals(full.colAt(j), narrowed.colAt(j));
+            }
+        }
+        // 删除字符后回到全量扫描
+        assertEquals(new CellFinder(cells).find("订单1", null).count, incremental.find("订单1", null).count);
+    }
+
+    @Test
+    public void cancelledSearchReturnsNull() {
+        CellFinder finder = new CellFinder(cells);
+        assertNull(finder.find("订单", () -> true));
+        assertEquals(ROWS * COLS, finder.find("订单", null).count);
+    }
+
+    @Test
+    public void keystrokeOnlyScansPreviousMatches() {
+        CellFinder finder = new CellFinder(cells);
+        String query = "订单4321-7";
+        int previousCount = -1;
+        for (int i = 1; i <= query.length(); i++) {
+            CellFinder.Matches matches = finder.find(query.substring(0, i), null);
+            int expectedScan = previousCount < 0 ? finder.size() : previousCount;
+            assertEquals("keystroke " + i, expectedScan, finder.getLastScanned());
+            assertTrue(matches.count <= expectedScan);
+            previousCount = matches.count;
+        }
+        // 最后一次按键只比较"订单4321-"命中的那一行
+        assertEquals(COLS, finder.getLastScanned());
+        assertEquals(1, previousCount);
+    }
+}
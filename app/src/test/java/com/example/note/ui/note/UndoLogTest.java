@@ -0,0 +1,152 @@
+package com.example.note.ui.note;
+
+import com.example.note.data.entity.Cell;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 撤销日志测试：溢出到磁盘和重新打开后按从新到旧的顺序撤销，落盘后最近的记录不用读文件
+ */
+public class UndoLogTest {
+
+    // 每条约1KB，数百条即超过内存上限
+    private static final String PADDING = new String(new char[1000]).replace('\0', 'x');
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("undo", ".log");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void undoesInReverseOrderAcrossSpill() throws Exception {
+        UndoLog log = new UndoLog(file);
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            log.record(operation(i));
+        }
+        log.awaitIo();
+        assertTrue("超过内存上限后应溢出到磁盘", file.length() > 0);
+
+        assertEquals(count, drain(log, count));
+        assertFalse(log.canUndo());
+    }
+
+    @Test
+    public void persistKeepsRecentTailInMemory() throws Exception {
+        UndoLog log = new UndoLog(file);
+        log.awaitIo();
+        for (int i = 0; i < 10; i++) {
+            log.record(operation(i));
+        }
+        log.persist();
+
+        // 不等待磁盘：落盘后最近的记录仍在内存中
+        assertEquals(9, log.popUndo().getPosition());
+        assertEquals(8, log.popUndo().getPosition());
+        assertEquals(0, log.getMissCount());
+
+        // 重做后再撤销，顺序不变
+        assertEquals(8, log.popRedo().getPosition());
+        assertEquals(8, log.popUndo().getPosition());
+
+        // 撤销掉的已落盘记录也从文件中去掉
+        log.awaitIo();
+        UndoLog reopened = new UndoLog(file);
+        reopened.awaitIo();
+        assertEquals(8, drain(reopened, 8));
+    }
+
+    @Test
+    public void reopenContinuesFromPersistedHistory() throws Exception {
+        UndoLog log = new UndoLog(file);
+        int count = 500;
+        for (int i = 0; i < count; i++) {
+            log.record(operation(i));
+        }
+        log.persist();
+        log.awaitIo();
+
+        UndoLog reopened = new UndoLog(file);
+        reopened.awaitIo();
+        assertTrue(reopened.canUndo());
+        // 新的操作排在已落盘的历史之后
+        reopened.record(operation(count));
+        assertEquals(count + 1, drain(reopened, count + 1));
+    }
+
+    @Test
+    public void clearDropsDiskHistory() throws Exception {
+        UndoLog log = new UndoLog(file);
+        for (int i = 0; i < 500; i++) {
+            log.record(operation(i));
+        }
+        log.persist();
+        log.clear();
+        log.awaitIo();
+        assertFalse(log.canUndo());
+        assertNull(log.popUndo());
+
+        UndoLog reopened = new UndoLog(file);
+        reopened.awaitIo();
+        assertFalse(reopened.canUndo());
+    }
+
+    @Test
+    public void replaceRecordKeepsNotebookOfEachCell() {
+        TableOperation replace = new TableOperation(TableOperation.OperationType.REPLACE_CELLS, 0, "op-1", "spec");
+        replace.setAffectedCells(Arrays.asList(new Cell(7, 0, 1, "a"), new Cell(9, 3, 0, "b")));
+
+        TableOperation decoded = UndoLog.decode(UndoLog.encode(replace));
+        assertEquals("op-1", decoded.getOldValue());
+        List<Cell> cells = decoded.getAffectedCells();
+        assertEquals(2, cells.size());
+        assertEquals(7, cells.get(0).getNotebookId());
+        assertEquals(9, cells.get(1).getNotebookId());
+        assertEquals("b", cells.get(1).getContent());
+        assertEquals(3, cells.get(1).getRowIndex());
+    }
+
+    /**
+     * 撤销全部记录，检查位置从expectedTop递减；内存用完时等预读完成再继续
+     */
+    private static int drain(UndoLog log, int expectedTop) throws Exception {
+        int popped = 0;
+        int expected = expectedTop - 1;
+        while (true) {
+            TableOperation operation = log.popUndo();
+            if (operation == null) {
+                log.awaitIo();
+                if (!log.canUndo()) {
+                    return popped;
+                }
+                continue;
+            }
+            assertEquals(expected--, operation.getPosition());
+            assertEquals(PADDING + operation.getPosition(), operation.getOldValue());
+            popped++;
+        }
+    }
+
+    private static TableOperation operation(int position) {
+        // 不同位置的编辑不会被合并
+        return new TableOperation(TableOperation.OperationType.UPDATE_CELL, position, 0,
+                PADDING + position, "new");
+    }
+}
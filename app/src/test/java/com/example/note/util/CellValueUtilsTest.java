@@ -0,0 +1,55 @@
+package com.example.note.util;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * 单元格取值解析测试：规则需与排序比较和num_value/date_value列保持一致
+ */
+public class CellValueUtilsTest {
+
+    @Test
+    public void parsesNumbersWithCurrencyAndPercent() {
+        assertEquals(42.0, CellValueUtils.parseNumber("42"), 0);
+        assertEquals(-3.5, CellValueUtils.parseNumber(" -3.5 "), 0);
+        assertEquals(1234567.0, CellValueUtils.parseNumber("1,234,567"), 0);
+        assertEquals(99.9, CellValueUtils.parseNumber("$99.9"), 0);
+        assertEquals(1200.0, CellValueUtils.parseNumber("￥1,200"), 0);
+        assertEquals(0.15, CellValueUtils.parseNumber("15%"), 1e-12);
+        assertEquals(0.5, CellValueUtils.parseNumber(".5"), 0);
+
+        assertNull(CellValueUtils.parseNumber(null));
+        assertNull(CellValueUtils.parseNumber(""));
+        assertNull(CellValueUtils.parseNumber("   "));
+        assertNull(CellValueUtils.parseNumber("abc"));
+        assertNull(CellValueUtils.parseNumber("12abc"));
+        assertNull(CellValueUtils.parseNumber("%"));
+        assertNull(CellValueUtils.parseNumber("NaN"));
+        assertNull(CellValueUtils.parseNumber("-Infinity"));
+        assertNull(CellValueUtils.parseNumber("2024-01-02"));
+    }
+
+    @Test
+    public void parsesDatesAsEpochDays() {
+        long expected = LocalDate.of(2024, 3, 5).toEpochDay();
+        assertEquals(Long.valueOf(expected), CellValueUtils.parseDate("2024-03-05"));
+        assertEquals(Long.valueOf(expected), CellValueUtils.parseDate("2024/3/5"));
+        assertEquals(Long.valueOf(expected), CellValueUtils.parseDate(" 3/5/2024 "));
+        // 首段大于12时只能是日
+        assertEquals(Long.valueOf(LocalDate.of(2024, 3, 25).toEpochDay()), CellValueUtils.parseDate("25-3-2024"));
+        assertEquals(Long.valueOf(0), CellValueUtils.parseDate("1970-01-01"));
+
+        assertNull(CellValueUtils.parseDate(null));
+        assertNull(CellValueUtils.parseDate("2024-02-30"));
+        assertNull(CellValueUtils.parseDate("2024-13-01"));
+        assertNull(CellValueUtils.parseDate("2024-1/5"));
+        assertNull(CellValueUtils.parseDate("2024-01-05-01"));
+        assertNull(CellValueUtils.parseDate("24-01-05"));
+        assertNull(CellValueUtils.parseDate("2024-001-5"));
+        assertNull(CellValueUtils.parseDate("abcd-ef-gh"));
+        assertNull(CellValueUtils.parseDate("42"));
+    }
+}